@@ -0,0 +1,83 @@
+package Chapter5.banking;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+import Chapter5.banking.exceptions.*;
+import Chapter5.banking.money.*;
+import Chapter5.state.Person;
+
+/**
+ * A benchmark of the throughput of concurrent transfers between
+ * bank accounts.
+ *   Threads transfer random amounts between random pairs of bank
+ *   accounts during a fixed time, for 1 up to 64 threads. The
+ *   fewer bank accounts, the more often threads contend for the
+ *   same accounts. After each run, the benchmark checks that no
+ *   money got lost.
+ *
+ *   Usage: TransferBenchmark [nbAccounts [secondsPerRun]]
+ *
+ * @version 2.0
+ */
+public class TransferBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int nbAccounts = (args.length > 0) ? Integer.parseInt(args[0]) : 1000;
+		int seconds = (args.length > 1) ? Integer.parseInt(args[1]) : 2;
+		GregorianCalendar cal = new GregorianCalendar();
+		cal.set(1980, Calendar.MARCH, 4);
+		Person holder = new Person(cal.getTime());
+		MoneyAmount[] amounts = new MoneyAmount[50];
+		for (int i = 0; i < amounts.length; i++)
+			amounts[i] = new MoneyAmount(new BigDecimal(i + 1));
+		System.out.printf("%d accounts, %d s per run%n", nbAccounts, seconds);
+		// the first run only warms up
+		for (int nbThreads : new int[] { 8, 1, 2, 4, 8, 16, 32, 64 }) {
+			List<BankAccount> accounts = new ArrayList<BankAccount>();
+			for (int i = 0; i < nbAccounts; i++)
+				accounts.add(new BankAccount(1 + i, holder));
+			LongAdder nbTransfers = new LongAdder();
+			ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+			CountDownLatch start = new CountDownLatch(1);
+			for (int t = 0; t < nbThreads; t++)
+				executor.submit(() -> {
+					ThreadLocalRandom random = ThreadLocalRandom.current();
+					start.await();
+					while (!Thread.currentThread().isInterrupted()) {
+						BankAccount from = accounts.get(random.nextInt(nbAccounts));
+						BankAccount to = accounts.get(random.nextInt(nbAccounts));
+						if (from != to)
+							try {
+								from.transferTo(amounts[random.nextInt(amounts.length)], to);
+								nbTransfers.increment();
+							} catch (IllegalAmountException exc) {
+								// the credit limit of the source account is reached
+							}
+					}
+					return null;
+				});
+			long begin = System.nanoTime();
+			start.countDown();
+			Thread.sleep(seconds * 1000L);
+			executor.shutdownNow();
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+			long end = System.nanoTime();
+			MoneyAmount total = MoneyAmount.EUR_0;
+			for (BankAccount account : accounts) {
+				total = total.add(account.getBalance());
+				account.terminate();
+			}
+			if (total.signum() != 0)
+				throw new IllegalStateException("Money got lost: " + total);
+			System.out.printf("%2d threads: %,12.0f transfers/s%n", nbThreads,
+					nbTransfers.sum() / ((end - begin) / 1e9));
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+package Chapter5.banking.money;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A benchmark replaying a ledger of deposits and withdrawals onto
+ * the balances of a number of accounts.
+ *   The ledger is replayed once with money amounts, which compute
+ *   in cents, and once with amounts that compute with big decimals
+ *   in the way money amounts did before. One in twenty entries is
+ *   expressed in another currency than the balances. Both replays
+ *   must end with the same balances.
+ *
+ *   Usage: LedgerBenchmark [nbEntries [nbAccounts]]
+ *
+ * @version 2.0
+ */
+public class LedgerBenchmark {
+
+	public static void main(String[] args) {
+		int nbEntries = (args.length > 0) ? Integer.parseInt(args[0]) : 5000000;
+		int nbAccounts = (args.length > 1) ? Integer.parseInt(args[1]) : 10000;
+		Random random = new Random(42);
+		int[] accounts = new int[nbEntries];
+		BigDecimal[] numerals = new BigDecimal[nbEntries];
+		Currency[] currencies = new Currency[nbEntries];
+		for (int i = 0; i < nbEntries; i++) {
+			accounts[i] = random.nextInt(nbAccounts);
+			// withdrawals are registered as negative numerals
+			int cents = 1 + random.nextInt(100000);
+			numerals[i] = BigDecimal.valueOf(random.nextBoolean() ? cents : -cents, 2);
+			currencies[i] = (random.nextInt(20) == 0) ? Currency.USD : Currency.EUR;
+		}
+		MoneyAmount[] amounts = new MoneyAmount[nbEntries];
+		DecimalAmount[] decimalAmounts = new DecimalAmount[nbEntries];
+		for (int i = 0; i < nbEntries; i++) {
+			amounts[i] = new MoneyAmount(numerals[i], currencies[i]);
+			decimalAmounts[i] = new DecimalAmount(numerals[i], currencies[i]);
+		}
+		for (int run = 0; run < 5; run++) {
+			long start = System.nanoTime();
+			MoneyAmount[] balances = new MoneyAmount[nbAccounts];
+			Arrays.fill(balances, MoneyAmount.EUR_0);
+			for (int i = 0; i < nbEntries; i++)
+				balances[accounts[i]] = balances[accounts[i]].add(amounts[i]);
+			long middle = System.nanoTime();
+			DecimalAmount[] decimalBalances = new DecimalAmount[nbAccounts];
+			Arrays.fill(decimalBalances, new DecimalAmount(BigDecimal.ZERO, Currency.EUR));
+			for (int i = 0; i < nbEntries; i++)
+				decimalBalances[accounts[i]] = decimalBalances[accounts[i]].add(decimalAmounts[i]);
+			long end = System.nanoTime();
+			for (int a = 0; a < nbAccounts; a++)
+				if (balances[a].getNumeral().compareTo(decimalBalances[a].numeral) != 0)
+					throw new IllegalStateException("Different balance for account " + a);
+			System.out.printf("cents: %6.1f ns/entry   big decimals: %6.1f ns/entry%n",
+					(middle - start) / (double) nbEntries, (end - middle) / (double) nbEntries);
+		}
+	}
+
+	/**
+	 * A class of amounts computing with big decimals, in the way
+	 * money amounts did before they computed in cents.
+	 */
+	private static class DecimalAmount {
+
+		DecimalAmount(BigDecimal numeral, Currency currency) {
+			if (numeral.scale() != 2)
+				numeral = numeral.round(new MathContext(
+						numeral.precision() - numeral.scale() + 2, RoundingMode.HALF_DOWN));
+			this.numeral = numeral;
+			this.currency = currency;
+		}
+
+		DecimalAmount add(DecimalAmount other) {
+			if (currency == other.currency)
+				return new DecimalAmount(numeral.add(other.numeral), currency);
+			BigDecimal converted = other.numeral.multiply(other.currency.toCurrency(currency));
+			converted = converted.round(new MathContext(
+					converted.precision() - converted.scale() + 2, RoundingMode.HALF_DOWN));
+			return add(new DecimalAmount(converted, currency));
+		}
+
+		final BigDecimal numeral;
+
+		final Currency currency;
+
+	}
+
+}
@@ -2,6 +2,7 @@ package Chapter5.banking;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 import Chapter5.banking.money.*;
 import be.kuleuven.cs.som.annotate.*;
@@ -33,6 +34,18 @@ import Chapter5.state.*;
  *          attached to it.
  *        | hasProperBankCard()
  *
+ * @note    The balance and the credit limit of a bank account are
+ *          registered together in a single immutable state. Deposits,
+ *          withdrawals and changes of the credit limit compute the new
+ *          state, check it and install it in a single compare-and-set,
+ *          which is repeated if another thread changed the state in
+ *          the meantime. Transfers lock both bank accounts involved in
+ *          them in the order of their numbers, so that concurrent
+ *          transfers cannot deadlock. A transfer is only atomic with
+ *          respect to other transfers: deposits, withdrawals and
+ *          inspections of the balance do not take these locks, and
+ *          may see the amount of a transfer in progress withdrawn from
+ *          the one bank account but not yet deposited to the other.
  * @version 2.0
  * @author  Eric Steegmans
  */
@@ -74,6 +87,12 @@ public class BankAccount {
 	 *      | ! new.hasBankCard()
 	 * @post  This new bank account is not yet terminated.
 	 *      | ! new.isTerminated()
+	 * @post  This new bank account is registered under its number.
+	 *      | findByNumber(number) == new
+	 * @throws IllegalNumberException(number,this)
+	 *         This new bank account cannot have the given number
+	 *         as its number.
+	 *       | ! canHaveAsNumber(number)
 	 * @throws IllegalAmountException(balance,this)
 	 *         The given balance is not a valid balance for any
 	 *         bank account, or it does not match with the given
@@ -99,11 +118,13 @@ public class BankAccount {
 		this.number = number;
 		if (!isPossibleCreditLimit(creditLimit))
 			throw new IllegalAmountException(creditLimit, this);
-		this.creditLimit = creditLimit;
+		this.state.set(new BalanceState(null, creditLimit));
 		setBalance(balance);
 		setBlocked(isBlocked);
 		setHolder(holder);
-		allAccountNumbers.add(number);
+		// Another bank account with the same number may have been
+		// registered after the check above.
+		allAccounts.register(this);
 	}
 
 	/**
@@ -143,12 +164,15 @@ public class BankAccount {
 	 *        is terminated.
 	 *      | if (hasBankCard())
 	 *      |   then (new getBankCard()).isTerminated()
+	 * @post  This bank account is no longer registered under its
+	 *        number.
+	 *      | findByNumber(getNumber()) != this
 	 */
 	public void terminate() {
 		if (hasBankCard())
 			getBankCard().terminate();
 		this.isTerminated = true;
-		allAccountNumbers.remove(this.getNumber());
+		allAccounts.unregister(this);
 	}
 
 	/**
@@ -226,8 +250,8 @@ public class BankAccount {
 	@Raw
 	public boolean canHaveAsNumber(int number) {
 		return (number > 0)
-				&& ((this.getNumber() == number) || (!allAccountNumbers
-						.contains(number)));
+				&& ((this.getNumber() == number) || (!allAccounts
+						.hasAsNumber(number)));
 	}
 
 	/**
@@ -236,12 +260,22 @@ public class BankAccount {
 	private final int number;
 
 	/**
-	 * Variable referencing a set collecting all account numbers
-	 * that have been used so far.
-	 *    More information on sets and other data structures is given
-	 *    in the second part of the book.
+	 * Return the bank account with the given number.
+	 *   A null reference is returned if no bank account that is
+	 *   not yet terminated has the given number.
+	 *
+	 * @param  number
+	 *         The number to look up.
 	 */
-	private static final Set<Integer> allAccountNumbers = new HashSet<Integer>();
+	public static BankAccount findByNumber(int number) {
+		return allAccounts.findByNumber(number);
+	}
+
+	/**
+	 * Variable referencing a registry collecting all bank accounts
+	 * that are not yet terminated, by their number.
+	 */
+	private static final BankAccountRegistry allAccounts = new BankAccountRegistry();
 
 	/**
 	 * Return the holder of this bank account.
@@ -299,7 +333,7 @@ public class BankAccount {
 	@Basic
 	@Raw
 	public MoneyAmount getCreditLimit() {
-		return this.creditLimit;
+		return this.state.get().creditLimit;
 	}
 
 	/**
@@ -352,21 +386,27 @@ public class BankAccount {
 	 *         This bank account cannot have the given credit
 	 *         limit as its credit limit.
 	 *       | ! canHaveAsCreditLimit(creditLimit)
+	 * @note   The new credit limit is checked against the same
+	 *         balance it is installed with, so that a concurrent
+	 *         withdrawal either happens before this change and is
+	 *         seen by the check, or happens after it and is checked
+	 *         against the new credit limit.
 	 */
 	@Raw
 	public void setCreditLimit(MoneyAmount creditLimit)
 			throws IllegalAmountException {
-		if (!canHaveAsCreditLimit(creditLimit))
+		if (!isPossibleCreditLimit(creditLimit))
 			throw new IllegalAmountException(creditLimit, this);
-		this.creditLimit = creditLimit;
+		while (true) {
+			BalanceState oldState = this.state.get();
+			if (!matchesBalanceCreditLimit(oldState.balance, creditLimit))
+				throw new IllegalAmountException(creditLimit, this);
+			if (this.state.compareAndSet(oldState, new BalanceState(
+					oldState.balance, creditLimit)))
+				return;
+		}
 	}
 
-	/**
-	 * Variable referencing the credit limit for this bank
-	 * account.
-	 */
-	private MoneyAmount creditLimit = MoneyAmount.EUR_0;
-
 	/**
 	 * Return the balance of this bank account.
 	 *   The balance of a bank account expresses the amount of
@@ -375,7 +415,7 @@ public class BankAccount {
 	@Basic
 	@Raw
 	public MoneyAmount getBalance() {
-		return this.balance;
+		return this.state.get().balance;
 	}
 
 	/**
@@ -523,7 +563,7 @@ public class BankAccount {
 	public void deposit(MoneyAmount amount) throws IllegalAmountException {
 		if (!canAcceptForDeposit(amount))
 			throw new IllegalAmountException(amount, this);
-		setBalance(getBalance().add(amount));
+		addToBalance(amount);
 	}
 
 	/**
@@ -565,10 +605,9 @@ public class BankAccount {
 	 *       | ! canAcceptForWithdraw(amount)
 	 */
 	public void withdraw(MoneyAmount amount) throws IllegalAmountException {
-		if (!canAcceptForWithdraw(amount))
+		if (!subtractFromBalance(amount))
 			throw new IllegalAmountException(amount != null ? amount.negate()
 					: null, this);
-		setBalance(getBalance().subtract(amount));
 	}
 
 	/**
@@ -588,23 +627,74 @@ public class BankAccount {
 	 *         The given destination account is not effective or
 	 *         it is the same as this bank account.
 	 *       | (destination == null) || (destination == this)
+	 * @note   Both bank accounts are locked while the transfer is
+	 *         checked and carried out, the one with the smallest
+	 *         number first. Other transfers involving either bank
+	 *         account therefore see both balances before or both
+	 *         balances after this transfer. If the transfer is not
+	 *         possible, neither balance is changed.
+	 * @note   This transfer is only atomic with respect to other
+	 *         transfers. A thread that inspects both balances with
+	 *         getBalance, or that deposits to or withdraws from either
+	 *         bank account, does not take their locks and may see the
+	 *         given amount withdrawn but not yet deposited.
 	 */
 	public void transferTo(MoneyAmount amount, BankAccount destination)
 			throws IllegalArgumentException, IllegalAmountException {
-		boolean partialTransfer = false;
-		try {
-			if ((destination == null) || (destination == this))
-				throw new IllegalArgumentException("Illegal destination!");
-			withdraw(amount);
-			partialTransfer = true;
-			destination.deposit(amount);
-			partialTransfer = false;
-		} finally {
-			if (partialTransfer)
-				deposit(amount);
+		if ((destination == null) || (destination == this))
+			throw new IllegalArgumentException("Illegal destination!");
+		if (getNumber() == destination.getNumber())
+			// A terminated bank account may share its number with
+			// another bank account.
+			synchronized (transferTieLock) {
+				transferLockedTo(amount, destination, this, destination);
+			}
+		else if (getNumber() < destination.getNumber())
+			transferLockedTo(amount, destination, this, destination);
+		else
+			transferLockedTo(amount, destination, destination, this);
+	}
+
+	/**
+	 * Transfer the given amount of money from this bank account
+	 * to the given destination account, while holding the locks
+	 * of the first and the second bank account.
+	 *
+	 * @pre    The first and the second bank account are this bank
+	 *         account and the destination account in some order.
+	 *       |  ( (first == this) && (second == destination) )
+	 *       | || ( (first == destination) && (second == this) )
+	 * @effect The given amount of money is withdrawn from this
+	 *         bank account, and deposited to the given
+	 *         destination account.
+	 *       |  ( this.withdraw(amount)
+	 *       | && destination.deposit(amount) )
+	 * @note   The locks only exclude other transfers involving either
+	 *         bank account; the balances themselves are changed with
+	 *         compare-and-set, one bank account after the other.
+	 */
+	@Model
+	private void transferLockedTo(MoneyAmount amount, BankAccount destination,
+			BankAccount first, BankAccount second)
+			throws IllegalAmountException {
+		synchronized (first) {
+			synchronized (second) {
+				// A positive deposit never violates the credit limit of
+				// the destination.
+				if (!subtractFromBalance(amount))
+					throw new IllegalAmountException(amount != null ? amount
+							.negate() : null, this);
+				destination.addToBalance(amount);
+			}
 		}
 	}
 
+	/**
+	 * Variable referencing the lock taken before the locks of two
+	 * bank accounts with the same number.
+	 */
+	private static final Object transferTieLock = new Object();
+
 	/**
 	 * Set the balance for this bank account to the given
 	 * balance.
@@ -624,13 +714,109 @@ public class BankAccount {
 	private void setBalance(MoneyAmount balance) throws IllegalAmountException {
 		if (!canHaveAsBalance(balance))
 			throw new IllegalAmountException(balance, this);
-		this.balance = balance;
+		this.state.set(new BalanceState(balance, getCreditLimit()));
 	}
 
 	/**
-	 * Variable referencing the balance of this bank account.
+	 * Add the given amount of money to the balance of this bank
+	 * account.
+	 *
+	 * @param  amount
+	 *         The amount of money to add.
+	 * @pre    This bank account can accept the given amount for
+	 *         deposit.
+	 *       | canAcceptForDeposit(amount)
+	 * @post   The new balance of this bank account is equal to
+	 *         the old balance of this bank account incremented
+	 *         with the given amount of money.
+	 *       | new.getBalance().equals(
+	 *       |     this.getBalance().add(amount))
 	 */
-	private MoneyAmount balance;
+	@Model
+	private void addToBalance(MoneyAmount amount) {
+		BalanceState oldState;
+		do {
+			oldState = this.state.get();
+		} while (!this.state.compareAndSet(oldState, new BalanceState(
+				oldState.balance.add(amount), oldState.creditLimit)));
+	}
+
+	/**
+	 * Subtract the given amount of money from the balance of this
+	 * bank account, if this bank account can accept it for
+	 * withdraw.
+	 *
+	 * @param  amount
+	 *         The amount of money to subtract.
+	 * @return True if and only if this bank account can accept the
+	 *         given amount for withdraw.
+	 *       | result == canAcceptForWithdraw(amount)
+	 * @post   If this bank account can accept the given amount for
+	 *         withdraw, its new balance is equal to its old balance
+	 *         decremented with the given amount of money. Otherwise
+	 *         its balance is not changed.
+	 *       | if (canAcceptForWithdraw(amount))
+	 *       |   then new.getBalance().equals(
+	 *       |            this.getBalance().subtract(amount))
+	 *       |   else new.getBalance() == getBalance()
+	 */
+	@Model
+	private boolean subtractFromBalance(MoneyAmount amount) {
+		if ((amount == null) || (amount.signum() <= 0))
+			return false;
+		while (true) {
+			BalanceState oldState = this.state.get();
+			MoneyAmount newBalance = oldState.balance.subtract(amount);
+			if (isBlocked()
+					|| !matchesBalanceCreditLimit(newBalance,
+							oldState.creditLimit))
+				return false;
+			if (this.state.compareAndSet(oldState, new BalanceState(
+					newBalance, oldState.creditLimit)))
+				return true;
+		}
+	}
+
+	/**
+	 * Variable referencing the balance and the credit limit of this
+	 * bank account.
+	 */
+	private final AtomicReference<BalanceState> state = new AtomicReference<BalanceState>(
+			new BalanceState(null, MoneyAmount.EUR_0));
+
+	/**
+	 * A class of immutable pairs of a balance and a credit limit,
+	 * registered together so that both can be checked and changed
+	 * in a single compare-and-set.
+	 */
+	@Value
+	private static final class BalanceState {
+
+		/**
+		 * Initialize this new state with given balance and given
+		 * credit limit.
+		 *
+		 * @param  balance
+		 *         The balance for this new state.
+		 * @param  creditLimit
+		 *         The credit limit for this new state.
+		 */
+		private BalanceState(MoneyAmount balance, MoneyAmount creditLimit) {
+			this.balance = balance;
+			this.creditLimit = creditLimit;
+		}
+
+		/**
+		 * Variable referencing the balance of this state.
+		 */
+		private final MoneyAmount balance;
+
+		/**
+		 * Variable referencing the credit limit of this state.
+		 */
+		private final MoneyAmount creditLimit;
+
+	}
 
 	/**
 	 * Return a boolean reflecting whether this bank account is
@@ -680,7 +866,7 @@ public class BankAccount {
 	/**
 	 * Variable registering the blocked state of this account.
 	 */
-	private boolean isBlocked = false;
+	private volatile boolean isBlocked = false;
 
 	  /**
 	   * Return the bank card attached to this bank account.
@@ -0,0 +1,171 @@
+package Chapter5.banking;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import Chapter5.state.Person;
+import Chapter5.banking.exceptions.*;
+import Chapter5.banking.money.*;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BankAccountConcurrencyTest {
+
+	private static Person someAdult;
+
+	private List<BankAccount> accounts;
+
+	private ExecutorService executor;
+
+	@BeforeAll
+	public static void setUpImmutableFixture() {
+		GregorianCalendar cal = new GregorianCalendar();
+		cal.set(1980, Calendar.MARCH, 4);
+		someAdult = new Person(cal.getTime());
+	}
+
+	@BeforeEach
+	public void setUpMutableFixture() {
+		accounts = new ArrayList<BankAccount>();
+		executor = Executors.newFixedThreadPool(8);
+	}
+
+	@AfterEach
+	public void tearDownMutableFixture() {
+		executor.shutdownNow();
+		for (BankAccount account : accounts)
+			account.terminate();
+	}
+
+	private BankAccount newAccount(int number) {
+		BankAccount account = new BankAccount(number, someAdult);
+		accounts.add(account);
+		return account;
+	}
+
+	@Test
+	public void withdraw_ConcurrentWithdrawals() throws Exception {
+		BankAccount account = newAccount(8000101);
+		int nbThreads = 8, nbWithdrawals = 200;
+		AtomicInteger nbAccepted = new AtomicInteger();
+		List<Future<?>> workers = new ArrayList<Future<?>>();
+		for (int t = 0; t < nbThreads; t++)
+			workers.add(executor.submit(() -> {
+				for (int i = 0; i < nbWithdrawals; i++)
+					try {
+						account.withdraw(MoneyAmount.EUR_1);
+						nbAccepted.incrementAndGet();
+					} catch (IllegalAmountException exc) {
+						// the credit limit is reached
+					}
+				return null;
+			}));
+		for (Future<?> worker : workers)
+			worker.get();
+		// The balance must stay above the credit limit of -1000 EUR.
+		assertEquals(999, nbAccepted.get());
+		assertEquals(new MoneyAmount(new BigDecimal(-999)), account.getBalance());
+	}
+
+	@Test
+	public void setCreditLimit_ConcurrentWithdrawals() throws Exception {
+		MoneyAmount[] creditLimits = new MoneyAmount[] {
+				new MoneyAmount(new BigDecimal(-400)),
+				new MoneyAmount(new BigDecimal(-200)),
+				new MoneyAmount(new BigDecimal(-100)) };
+		for (int round = 0; round < 200; round++) {
+			BankAccount account = newAccount(8100001 + round);
+			CountDownLatch start = new CountDownLatch(1);
+			AtomicBoolean done = new AtomicBoolean();
+			List<Future<?>> workers = new ArrayList<Future<?>>();
+			for (int t = 0; t < 2; t++)
+				workers.add(executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < 300; i++)
+						try {
+							account.withdraw(MoneyAmount.EUR_1);
+						} catch (IllegalAmountException exc) {
+							// the credit limit is reached
+						}
+					return null;
+				}));
+			// The credit limits only get stricter and the balance only
+			// decreases, so a credit limit read before the balance can
+			// never be reached by that balance.
+			Future<?> observer = executor.submit(() -> {
+				start.await();
+				while (!done.get()) {
+					MoneyAmount creditLimit = account.getCreditLimit();
+					MoneyAmount balance = account.getBalance();
+					assertTrue(BankAccount.matchesBalanceCreditLimit(balance, creditLimit));
+				}
+				return null;
+			});
+			Future<MoneyAmount> setter = executor.submit(() -> {
+				start.await();
+				for (MoneyAmount creditLimit : creditLimits)
+					try {
+						account.setCreditLimit(creditLimit);
+					} catch (IllegalAmountException exc) {
+						// the balance has already reached the new credit limit
+						return creditLimit;
+					}
+				return null;
+			});
+			start.countDown();
+			for (Future<?> worker : workers)
+				worker.get();
+			MoneyAmount rejectedCreditLimit = setter.get();
+			done.set(true);
+			observer.get();
+			assertTrue(account.canHaveAsBalance(account.getBalance()));
+			// A rejected credit limit was reached by the balance at the
+			// time it was rejected.
+			if (rejectedCreditLimit != null)
+				assertTrue(account.getBalance().compareTo(rejectedCreditLimit) <= 0);
+		}
+	}
+
+	@Test
+	public void transferTo_ConcurrentTransfers() {
+		int nbAccounts = 8, nbThreads = 8, nbTransfers = 5000;
+		for (int i = 0; i < nbAccounts; i++)
+			newAccount(8000001 + i);
+		// Threads transfer in both directions between the same accounts,
+		// which deadlocks unless the accounts are locked in a fixed order.
+		assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+			List<Future<?>> workers = new ArrayList<Future<?>>();
+			for (int t = 0; t < nbThreads; t++) {
+				Random random = new Random(t);
+				workers.add(executor.submit(() -> {
+					for (int i = 0; i < nbTransfers; i++) {
+						BankAccount from = accounts.get(random.nextInt(nbAccounts));
+						BankAccount to = accounts.get(random.nextInt(nbAccounts));
+						if (from != to)
+							try {
+								from.transferTo(new MoneyAmount(new BigDecimal(1 + random.nextInt(50))), to);
+							} catch (IllegalAmountException exc) {
+								// the credit limit of the source account is reached
+							}
+					}
+					return null;
+				}));
+			}
+			for (Future<?> worker : workers)
+				worker.get();
+		});
+		MoneyAmount total = MoneyAmount.EUR_0;
+		for (BankAccount account : accounts) {
+			assertTrue(account.canHaveAsBalance(account.getBalance()));
+			total = total.add(account.getBalance());
+		}
+		assertEquals(MoneyAmount.EUR_0, total);
+	}
+
+}
@@ -0,0 +1,329 @@
+package Chapter5.banking;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import be.kuleuven.cs.som.annotate.*;
+import Chapter5.banking.exceptions.*;
+
+/**
+ * A class of registries of bank accounts, in which bank accounts
+ * can be looked up by their number.
+ *   Bank accounts can be registered, unregistered and looked up
+ *   by several threads at the same time.
+ *
+ * @invar   Each bank account registered in a registry is
+ *          registered under its own number.
+ *        | for each number in int:
+ *        |   if (findByNumber(number) != null)
+ *        |     then findByNumber(number).getNumber() == number
+ *
+ * @note    Numbers and bank accounts are stored in arrays of open
+ *          addressing hash tables, without boxing the numbers and
+ *          without an entry object per bank account. With tables
+ *          that are at most three quarters full, a registered bank
+ *          account costs between 11 and 22 bytes of heap, against
+ *          some 55 bytes in a hash set of integers.
+ * @note    The registry is split in segments, each guarded by its
+ *          own lock, so that threads working on different numbers
+ *          seldom wait for each other.
+ *
+ * @version 2.0
+ */
+public class BankAccountRegistry {
+
+	/**
+	 * Initialize this new registry without any bank accounts.
+	 *
+	 * @post   No bank accounts are registered in this new registry.
+	 *       | new.getNbAccounts() == 0
+	 */
+	public BankAccountRegistry() {
+		for (int i = 0; i < segments.length; i++)
+			segments[i] = new Segment();
+	}
+
+	/**
+	 * Return the bank account registered in this registry with
+	 * the given number.
+	 *   A null reference is returned if no such bank account is
+	 *   registered.
+	 *
+	 * @param  number
+	 *         The number to look up.
+	 */
+	@Basic
+	public BankAccount findByNumber(int number) {
+		int hash = hash(number);
+		return segmentFor(hash).get(number, hash);
+	}
+
+	/**
+	 * Check whether a bank account is registered in this registry
+	 * with the given number.
+	 *
+	 * @param  number
+	 *         The number to check.
+	 * @return True if and only if a bank account is registered with
+	 *         the given number.
+	 *       | result == (findByNumber(number) != null)
+	 */
+	public boolean hasAsNumber(int number) {
+		return findByNumber(number) != null;
+	}
+
+	/**
+	 * Return the number of bank accounts registered in this
+	 * registry.
+	 */
+	@Basic
+	public int getNbAccounts() {
+		int nbAccounts = 0;
+		for (Segment segment : segments)
+			nbAccounts += segment.getSize();
+		return nbAccounts;
+	}
+
+	/**
+	 * Register the given bank account in this registry.
+	 *
+	 * @param  account
+	 *         The bank account to register.
+	 * @post   The given bank account is registered under its number.
+	 *       | new.findByNumber(account.getNumber()) == account
+	 * @throws IllegalArgumentException
+	 *         The given bank account is not effective.
+	 *       | account == null
+	 * @throws IllegalNumberException(account.getNumber(),account)
+	 *         The number of the given bank account is not positive,
+	 *         or another bank account is already registered with
+	 *         that number.
+	 *       |  ( (account.getNumber() <= 0)
+	 *       | || ( hasAsNumber(account.getNumber())
+	 *       |   && (findByNumber(account.getNumber()) != account) ) )
+	 */
+	public void register(BankAccount account)
+			throws IllegalArgumentException, IllegalNumberException {
+		if (account == null)
+			throw new IllegalArgumentException("Non effective bank account!");
+		int number = account.getNumber();
+		if (number <= 0)
+			throw new IllegalNumberException(number, account);
+		int hash = hash(number);
+		if (!segmentFor(hash).put(number, hash, account))
+			throw new IllegalNumberException(number, account);
+	}
+
+	/**
+	 * Remove the given bank account from this registry.
+	 *
+	 * @param  account
+	 *         The bank account to remove.
+	 * @post   If the given bank account was registered under its
+	 *         number, no bank account is registered with that number
+	 *         any longer. Otherwise, this registry is not changed.
+	 *       | if (findByNumber(account.getNumber()) == account)
+	 *       |   then ! new.hasAsNumber(account.getNumber())
+	 * @throws IllegalArgumentException
+	 *         The given bank account is not effective.
+	 *       | account == null
+	 */
+	public void unregister(BankAccount account)
+			throws IllegalArgumentException {
+		if (account == null)
+			throw new IllegalArgumentException("Non effective bank account!");
+		int number = account.getNumber();
+		int hash = hash(number);
+		segmentFor(hash).remove(number, hash, account);
+	}
+
+	/**
+	 * Return the hash of the given number.
+	 *   Bank accounts are often numbered in sequence; the
+	 *   multiplication spreads such numbers over the segments
+	 *   and over the slots of each segment.
+	 */
+	@Model
+	private static int hash(int number) {
+		return number * 0x9E3779B9;
+	}
+
+	/**
+	 * Return the segment in which numbers with the given hash are
+	 * registered.
+	 */
+	@Model
+	private Segment segmentFor(int hash) {
+		return segments[hash >>> (Integer.SIZE - SEGMENT_BITS)];
+	}
+
+	/**
+	 * Variable registering the binary logarithm of the number of
+	 * segments of each registry.
+	 */
+	private static final int SEGMENT_BITS = 6;
+
+	/**
+	 * Variable referencing the segments of this registry.
+	 */
+	private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+	/**
+	 * A class of segments of registries, storing numbers and bank
+	 * accounts in an open addressing hash table with linear probing.
+	 *   A number of 0 marks an empty slot, which is safe because
+	 *   bank accounts only have positive numbers. Removals shift
+	 *   later entries back, so that no removal markers are left
+	 *   behind.
+	 */
+	private static class Segment {
+
+		/**
+		 * Variable referencing the lock guarding this segment.
+		 */
+		private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+		/**
+		 * Variable referencing the numbers registered in this segment,
+		 * indexed by slot.
+		 */
+		private int[] numbers = new int[INITIAL_CAPACITY];
+
+		/**
+		 * Variable referencing the bank accounts registered in this
+		 * segment, indexed by slot.
+		 */
+		private BankAccount[] accounts = new BankAccount[INITIAL_CAPACITY];
+
+		/**
+		 * Variable registering the number of bank accounts registered
+		 * in this segment.
+		 */
+		private int size;
+
+		/**
+		 * Variable registering the number of slots in a new segment.
+		 */
+		private static final int INITIAL_CAPACITY = 16;
+
+		/**
+		 * Return the number of bank accounts in this segment.
+		 */
+		int getSize() {
+			lock.readLock().lock();
+			try {
+				return size;
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		/**
+		 * Return the bank account registered with the given number and
+		 * hash, or null if there is none.
+		 */
+		BankAccount get(int number, int hash) {
+			lock.readLock().lock();
+			try {
+				int slot = slotOf(number, hash);
+				return (slot < 0) ? null : accounts[slot];
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		/**
+		 * Register the given bank account with the given number and
+		 * hash, and return whether it is registered afterwards.
+		 *   False is returned if another bank account is registered
+		 *   with the same number.
+		 */
+		boolean put(int number, int hash, BankAccount account) {
+			lock.writeLock().lock();
+			try {
+				int mask = numbers.length - 1;
+				int slot = hash & mask;
+				while (numbers[slot] != 0) {
+					if (numbers[slot] == number)
+						return accounts[slot] == account;
+					slot = (slot + 1) & mask;
+				}
+				numbers[slot] = number;
+				accounts[slot] = account;
+				if (++size > (numbers.length >> 2) * 3)
+					grow();
+				return true;
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		/**
+		 * Remove the given bank account, if it is registered with the
+		 * given number and hash.
+		 */
+		void remove(int number, int hash, BankAccount account) {
+			lock.writeLock().lock();
+			try {
+				int slot = slotOf(number, hash);
+				if ((slot < 0) || (accounts[slot] != account))
+					return;
+				int mask = numbers.length - 1;
+				// Shift later entries of the same probe run back into the freed slot,
+				// unless their home slot lies cyclically after the freed slot.
+				int next = slot;
+				while (true) {
+					next = (next + 1) & mask;
+					if (numbers[next] == 0)
+						break;
+					int home = hash(numbers[next]) & mask;
+					if (((next - home) & mask) >= ((next - slot) & mask)) {
+						numbers[slot] = numbers[next];
+						accounts[slot] = accounts[next];
+						slot = next;
+					}
+				}
+				numbers[slot] = 0;
+				accounts[slot] = null;
+				size--;
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+
+		/**
+		 * Return the slot of the given number with the given hash, or
+		 * -1 if that number is not registered in this segment.
+		 */
+		private int slotOf(int number, int hash) {
+			int mask = numbers.length - 1;
+			int slot = hash & mask;
+			while (numbers[slot] != 0) {
+				if (numbers[slot] == number)
+					return slot;
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+
+		/**
+		 * Double the number of slots of this segment.
+		 */
+		private void grow() {
+			int[] oldNumbers = numbers;
+			BankAccount[] oldAccounts = accounts;
+			numbers = new int[oldNumbers.length * 2];
+			accounts = new BankAccount[oldNumbers.length * 2];
+			int mask = numbers.length - 1;
+			for (int i = 0; i < oldNumbers.length; i++)
+				if (oldNumbers[i] != 0) {
+					int slot = hash(oldNumbers[i]) & mask;
+					while (numbers[slot] != 0)
+						slot = (slot + 1) & mask;
+					numbers[slot] = oldNumbers[i];
+					accounts[slot] = oldAccounts[i];
+				}
+		}
+
+	}
+
+}
@@ -0,0 +1,150 @@
+package Chapter5.banking;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import Chapter5.state.Person;
+import Chapter5.banking.exceptions.*;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BankAccountRegistryTest {
+
+	private static Person someAdult;
+
+	private BankAccountRegistry registry;
+
+	private BankAccount account1, account2;
+
+	private List<BankAccount> extraAccounts;
+
+	@BeforeAll
+	public static void setUpImmutableFixture() {
+		GregorianCalendar cal = new GregorianCalendar();
+		cal.set(1980, Calendar.MARCH, 4);
+		someAdult = new Person(cal.getTime());
+	}
+
+	@BeforeEach
+	public void setUpMutableFixture() {
+		registry = new BankAccountRegistry();
+		account1 = new BankAccount(7000001, someAdult);
+		account2 = new BankAccount(7000002, someAdult);
+		registry.register(account1);
+		registry.register(account2);
+		extraAccounts = new ArrayList<BankAccount>();
+	}
+
+	@AfterEach
+	public void tearDownMutableFixture() {
+		account1.terminate();
+		account2.terminate();
+		for (BankAccount account : extraAccounts)
+			account.terminate();
+	}
+
+	private BankAccount newAccount(int number) {
+		BankAccount account = new BankAccount(number, someAdult);
+		extraAccounts.add(account);
+		return account;
+	}
+
+	@Test
+	public void register_LegalCase() {
+		assertSame(account1, registry.findByNumber(7000001));
+		assertSame(account2, registry.findByNumber(7000002));
+		assertNull(registry.findByNumber(7000003));
+		assertEquals(2, registry.getNbAccounts());
+		// registering the same account again has no effect
+		registry.register(account1);
+		assertEquals(2, registry.getNbAccounts());
+	}
+
+	@Test
+	public void register_NumberInUse() {
+		BankAccountRegistry other = new BankAccountRegistry();
+		account1.terminate();
+		BankAccount sameNumber = newAccount(7000001);
+		other.register(sameNumber);
+		IllegalNumberException exc = assertThrows(IllegalNumberException.class,
+				() -> other.register(account1));
+		assertSame(account1, exc.getAccount());
+		assertSame(sameNumber, other.findByNumber(7000001));
+	}
+
+	@Test
+	public void register_NonEffectiveAccount() {
+		assertThrows(IllegalArgumentException.class, () -> registry.register(null));
+	}
+
+	@Test
+	public void unregister_LegalCase() {
+		registry.unregister(account1);
+		assertFalse(registry.hasAsNumber(7000001));
+		assertSame(account2, registry.findByNumber(7000002));
+		assertEquals(1, registry.getNbAccounts());
+		registry.unregister(account1);
+		assertEquals(1, registry.getNbAccounts());
+	}
+
+	@Test
+	public void unregister_OtherAccountWithSameNumber() {
+		account1.terminate();
+		BankAccount sameNumber = newAccount(7000001);
+		registry.unregister(sameNumber);
+		assertSame(account1, registry.findByNumber(7000001));
+	}
+
+	@Test
+	public void unregister_ManyAccounts() {
+		for (int number = 7100000; number < 7110000; number++)
+			registry.register(newAccount(number));
+		for (int number = 7100000; number < 7110000; number += 2)
+			registry.unregister(BankAccount.findByNumber(number));
+		assertEquals(5002, registry.getNbAccounts());
+		for (int number = 7100000; number < 7110000; number++)
+			if (number % 2 == 0)
+				assertNull(registry.findByNumber(number));
+			else
+				assertEquals(number, registry.findByNumber(number).getNumber());
+	}
+
+	@Test
+	public void bankAccount_RegisteredByNumber() {
+		assertSame(account1, BankAccount.findByNumber(7000001));
+		assertFalse(account2.canHaveAsNumber(7000001));
+		account1.terminate();
+		assertNull(BankAccount.findByNumber(7000001));
+		assertTrue(account2.canHaveAsNumber(7000001));
+	}
+
+	@Test
+	public void register_ConcurrentThreads() throws Exception {
+		int nbThreads = 4, nbAccounts = 2000;
+		for (int i = 0; i < nbThreads * nbAccounts; i++)
+			newAccount(7200000 + i);
+		ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+		List<Future<?>> workers = new ArrayList<Future<?>>();
+		for (int t = 0; t < nbThreads; t++) {
+			int first = t * nbAccounts;
+			workers.add(executor.submit(() -> {
+				for (int i = first; i < first + nbAccounts; i++) {
+					BankAccount account = extraAccounts.get(i);
+					registry.register(account);
+					assertSame(account, registry.findByNumber(account.getNumber()));
+					if (i % 3 == 0)
+						registry.unregister(account);
+				}
+				return null;
+			}));
+		}
+		for (Future<?> worker : workers)
+			worker.get();
+		executor.shutdown();
+		for (int i = 0; i < nbThreads * nbAccounts; i++)
+			assertEquals(i % 3 != 0, registry.hasAsNumber(7200000 + i));
+	}
+
+}
@@ -4,6 +4,9 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.MathContext;
 import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import be.kuleuven.cs.som.annotate.Basic;
 import be.kuleuven.cs.som.annotate.Immutable;
@@ -22,7 +25,7 @@ import be.kuleuven.cs.som.annotate.Value;
 @Value
 public enum Currency {
 
-  EUR('�'), USD('$'), JPY('\u00a5');
+  EUR('\u20ac'), USD('$'), JPY('\u00a5');
 
   /**
    * Initialize this currency with the given symbol.
@@ -70,12 +73,19 @@ public enum Currency {
    *          | if (this != other)
    *          |   then (result.precision() ==
    *          |             currencyContext.getPrecision())
-   * @return  The resulting exchange rate is the inverse of
-   *          the exchange rate from the other currency to this
-   *          currency.
-   *          |  result.equals
+   * @return  If a rate is quoted in the exchange rate service in
+   *          only one direction between both currencies, the
+   *          resulting exchange rate is the inverse of the exchange
+   *          rate from the other currency to this currency.
+   *          |  if (quoted in one direction only)
+   *          |   then result.equals
    *          |     (BigDecimal.ONE.divide
    *          |       (other.toCurrency(this),currencyContext))
+   * @return  The resulting exchange rate is the exchange rate
+   *          registered by the exchange rate service between the
+   *          codes of both currencies.
+   *          | result.equals(getExchangeRates().getRate
+   *          |     (this.name(),other.name()))
    * @throws  IllegalArgumentException
    *          The given currency is not effective.
    *          | (other == null)
@@ -86,40 +96,26 @@ public enum Currency {
     if (other == null)
       throw new IllegalArgumentException
                     ("Non effective currency!");
-    if (exchangeRates[this.ordinal()][other.ordinal()] == null)
-      exchangeRates[this.ordinal()][other.ordinal()] =
-          BigDecimal.ONE.divide(
-              exchangeRates[other.ordinal()][this.ordinal()],
-              currencyContext);
-    return exchangeRates[this.ordinal()][other.ordinal()];
+    // The currencies are registered in the order of their ordinal
+    // numbers, before any other currency. Quotes are never removed,
+    // so there always is a rate between them.
+    return exchangeRates.getSnapshot().getRate(
+               this.ordinal(),other.ordinal());
   }
 
   /**
-   * Variable referencing a two-dimensional array registering
-   * exchange rates between currencies. The first level is
-   * indexed by the ordinal number of the currency to convert
-   * from; the ordinal number to convert to is used to index
-   * the second level.
+   * Return the exchange rate service registering the exchange
+   * rates between currencies.
+   *   The currencies of this enumeration are registered in that
+   *   service under their name. Other currencies may be registered
+   *   in it as well, and rates may be replaced at any time.
+   *   Rates quoted through that service in both directions between
+   *   two currencies need not be each other's inverse, and neither
+   *   do cross rates between currencies with no quotes between them.
    */
-  private static BigDecimal[][] exchangeRates =
-      new BigDecimal[3][3];
-
-  static {
-    // Initialization of the upper part of the exchange table.
-    // Other rates are computed and registered the first time
-    // they are queried.
-    exchangeRates[EUR.ordinal()][EUR.ordinal()] =
-        BigDecimal.ONE;
-    exchangeRates[EUR.ordinal()][USD.ordinal()] =
-        new BigDecimal(BigInteger.valueOf(141880),5);
-    exchangeRates[EUR.ordinal()][JPY.ordinal()] =
-        new BigDecimal(BigInteger.valueOf(136712),3);
-    exchangeRates[USD.ordinal()][USD.ordinal()] =
-        BigDecimal.ONE;
-    exchangeRates[USD.ordinal()][JPY.ordinal()] =
-        new BigDecimal(BigInteger.valueOf(963577),4);
-    exchangeRates[JPY.ordinal()][JPY.ordinal()] =
-        BigDecimal.ONE;
+  @Basic @Immutable
+  public static ExchangeRateService getExchangeRates() {
+    return exchangeRates;
   }
 
   /**
@@ -136,4 +132,24 @@ public enum Currency {
   public static final MathContext currencyContext =
       new MathContext(6,RoundingMode.HALF_DOWN);
 
+  /**
+   * Variable referencing the exchange rate service registering
+   * the exchange rates between currencies.
+   */
+  private static final ExchangeRateService exchangeRates =
+      new ExchangeRateService(currencyContext);
+
+  static {
+    List<String> codes = new ArrayList<String>();
+    for (Currency currency : values())
+      codes.add(currency.name());
+    exchangeRates.registerCurrencies(codes);
+    // Rates in the opposite direction are the inverses of these.
+    exchangeRates.setRates(EUR.name(), Map.of(
+        USD.name(), new BigDecimal(BigInteger.valueOf(141880),5),
+        JPY.name(), new BigDecimal(BigInteger.valueOf(136712),3)));
+    exchangeRates.setRate(USD.name(), JPY.name(),
+        new BigDecimal(BigInteger.valueOf(963577),4));
+  }
+
 }
\ No newline at end of file
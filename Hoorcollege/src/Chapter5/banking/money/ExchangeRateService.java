@@ -0,0 +1,572 @@
+package Chapter5.banking.money;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import be.kuleuven.cs.som.annotate.Basic;
+import be.kuleuven.cs.som.annotate.Immutable;
+import be.kuleuven.cs.som.annotate.Model;
+
+/**
+ * A class of services registering exchange rates between
+ * currencies identified by their code.
+ *   Currencies can be registered at any time. Each currency gets
+ *   the next free index, starting from 0, and keeps that index
+ *   forever.
+ *   Exchange rates are quoted from one currency to another. The
+ *   rate in the opposite direction of a quote is its inverse,
+ *   unless it is quoted itself. The rate between two currencies
+ *   without quotes in either direction is computed via a chain of
+ *   quotes between them, through the currency with the lowest index
+ *   that is connected to both of them. There is no rate between
+ *   currencies that are not connected by any chain of quotes.
+ *
+ * @invar   The mathematical context of each exchange rate service
+ *          is effective.
+ *          | getContext() != null
+ *
+ * @note    Each change of the exchange rates publishes a new
+ *          immutable snapshot of all quotes. Inverse rates are
+ *          computed when their quote is set. A snapshot only computes
+ *          the value of each currency in the lowest currency it is
+ *          connected to, which takes time linear in the number of
+ *          currencies and quotes. Cross rates are computed the first
+ *          time they are asked from a snapshot, and kept in it.
+ *          They are not computed before the snapshot is published,
+ *          because that takes time quadratic in the number of
+ *          currencies for each change, which is too slow when
+ *          hundreds of currencies are registered one at a time.
+ *          Conversions read the current snapshot without locking,
+ *          and therefore always use rates that were published
+ *          together.
+ *
+ * @version 2.0
+ */
+public class ExchangeRateService {
+
+  /**
+   * Initialize this new exchange rate service with no currencies
+   * and given mathematical context.
+   *
+   * @param   context
+   *          The mathematical context for this new exchange rate
+   *          service.
+   * @post    The mathematical context of this new exchange rate
+   *          service is the same as the given context.
+   *          | new.getContext() == context
+   * @post    No currencies are registered in this new exchange
+   *          rate service.
+   *          | new.getSnapshot().getNbCurrencies() == 0
+   * @throws  IllegalArgumentException
+   *          The given context is not effective.
+   *          | context == null
+   */
+  public ExchangeRateService(MathContext context)
+      throws IllegalArgumentException
+  {
+    if (context == null)
+      throw new IllegalArgumentException("Non-effective context");
+    this.context = context;
+  }
+
+  /**
+   * Return the mathematical context used to compute inverse and
+   * cross rates.
+   */
+  @Basic @Immutable
+  public MathContext getContext() {
+    return this.context;
+  }
+
+  /**
+   * Variable referencing the mathematical context of this exchange
+   * rate service.
+   */
+  private final MathContext context;
+
+  /**
+   * Return the exchange rates currently published by this
+   * exchange rate service.
+   */
+  @Basic
+  public Snapshot getSnapshot() {
+    return this.snapshot;
+  }
+
+  /**
+   * Variable referencing the exchange rates currently published by
+   * this exchange rate service.
+   */
+  private volatile Snapshot snapshot =
+      new Snapshot(new String[0], new HashMap<String,Integer>(),
+                   new HashMap<Long,BigDecimal>(), new int[0],
+                   new BigDecimal[0], null);
+
+  /**
+   * Return the exchange rate from the currency with the first given
+   * code to the currency with the second given code.
+   *
+   * @param   from
+   *          The code of the currency to convert from.
+   * @param   to
+   *          The code of the currency to convert to.
+   * @return  The exchange rate in the current snapshot.
+   *          | result == getSnapshot().getRate(from,to)
+   * @throws  IllegalArgumentException
+   *          The current snapshot has no exchange rate between
+   *          both currencies.
+   *          | (getSnapshot().getIndexOf(from) < 0) ||
+   *          | (getSnapshot().getIndexOf(to) < 0) ||
+   *          | (getSnapshot().getRate(from,to) == null)
+   */
+  public BigDecimal getRate(String from, String to)
+      throws IllegalArgumentException
+  {
+    return getSnapshot().getRate(from,to);
+  }
+
+  /**
+   * Register the currency with the given code in this exchange rate
+   * service, and return its index.
+   *
+   * @param   code
+   *          The code of the currency to register.
+   * @post    The currency with the given code is registered.
+   *          | new.getSnapshot().getIndexOf(code) >= 0
+   * @return  The index of the currency with the given code in the
+   *          new snapshot.
+   *          | result == new.getSnapshot().getIndexOf(code)
+   * @throws  IllegalArgumentException
+   *          The given code is not effective.
+   *          | code == null
+   */
+  public synchronized int registerCurrency(String code)
+      throws IllegalArgumentException
+  {
+    int index = indexFor(code);
+    publish();
+    return index;
+  }
+
+  /**
+   * Register the currencies with the given codes in this exchange
+   * rate service, in a single new snapshot, and return their
+   * indices.
+   *
+   * @param   codes
+   *          The codes of the currencies to register.
+   * @post    The currencies with the given codes are registered.
+   *          | for each code in codes:
+   *          |   new.getSnapshot().getIndexOf(code) >= 0
+   * @return  The indices of the currencies with the given codes in
+   *          the new snapshot, in the order of the given codes.
+   *          | for each i in 0..codes.size()-1:
+   *          |   result[i] == new.getSnapshot().getIndexOf(codes.get(i))
+   * @throws  IllegalArgumentException
+   *          The given codes or some of them are not effective.
+   *          | (codes == null) || codes.contains(null)
+   */
+  public synchronized int[] registerCurrencies(List<String> codes)
+      throws IllegalArgumentException
+  {
+    if (codes == null)
+      throw new IllegalArgumentException("Non-effective codes");
+    // All codes are checked before any of them is registered.
+    for (String code : codes)
+      if (code == null)
+        throw new IllegalArgumentException("Non-effective code");
+    int[] result = new int[codes.size()];
+    for (int i = 0; i < result.length; i++)
+      result[i] = indexFor(codes.get(i));
+    publish();
+    return result;
+  }
+
+  /**
+   * Quote the given exchange rate from the currency with the first
+   * given code to the currency with the second given code.
+   *
+   * @param   from
+   *          The code of the currency to convert from.
+   * @param   to
+   *          The code of the currency to convert to.
+   * @param   rate
+   *          The value of 1 unit of the first currency in the
+   *          second currency.
+   * @effect  The given rate is quoted from the first currency to
+   *          the second one.
+   *          | setRates(from,Map.of(to,rate))
+   */
+  public void setRate(String from, String to, BigDecimal rate)
+      throws IllegalArgumentException
+  {
+    if ((to == null) || (rate == null))
+      throw new IllegalArgumentException("Illegal exchange rate");
+    setRates(from,Map.of(to,rate));
+  }
+
+  /**
+   * Quote the given exchange rates from the currency with the given
+   * code to other currencies, in a single new snapshot.
+   *
+   * @param   from
+   *          The code of the currency to convert from.
+   * @param   rates
+   *          The value of 1 unit of the currency to convert from,
+   *          by code of the currency to convert to.
+   * @post    All currencies involved are registered.
+   * @post    The new snapshot has the given rates from the given
+   *          currency to the currencies with the given codes.
+   *          | for each to in rates.keySet():
+   *          |   new.getRate(from,to).equals(rates.get(to))
+   * @post    Threads reading the exchange rates see either none or
+   *          all of the given rates.
+   * @throws  IllegalArgumentException
+   *          The given code or the given rates are not effective,
+   *          or some code to convert to is not effective or the
+   *          given code itself, or some rate is not positive.
+   *          | (from == null) || (rates == null) ||
+   *          | (for some to in rates.keySet():
+   *          |    (to == null) || to.equals(from) ||
+   *          |    (rates.get(to) == null) ||
+   *          |    (rates.get(to).signum() <= 0))
+   */
+  public synchronized void setRates(String from, Map<String,BigDecimal> rates)
+      throws IllegalArgumentException
+  {
+    if ((from == null) || (rates == null))
+      throw new IllegalArgumentException("Illegal exchange rates");
+    // All rates are checked before any of them is quoted.
+    for (Map.Entry<String,BigDecimal> quote : rates.entrySet())
+      if ((quote.getKey() == null) || quote.getKey().equals(from) ||
+          (quote.getValue() == null) || (quote.getValue().signum() <= 0))
+        throw new IllegalArgumentException("Illegal exchange rate");
+    int fromIndex = indexFor(from);
+    for (Map.Entry<String,BigDecimal> quote : rates.entrySet()) {
+      int toIndex = indexFor(quote.getKey());
+      quotes.put(pairOf(fromIndex,toIndex),quote.getValue());
+      this.rates.put(pairOf(fromIndex,toIndex),quote.getValue());
+      if (!quotes.containsKey(pairOf(toIndex,fromIndex)))
+        this.rates.put(pairOf(toIndex,fromIndex),
+            BigDecimal.ONE.divide(quote.getValue(),context));
+    }
+    publish();
+  }
+
+  /**
+   * Return the index of the currency with the given code, after
+   * registering it in the codes of this exchange rate service if
+   * it is not registered yet.
+   */
+  @Model
+  private int indexFor(String code) throws IllegalArgumentException {
+    if (code == null)
+      throw new IllegalArgumentException("Non-effective code");
+    Integer index = indices.get(code);
+    if (index == null) {
+      index = codes.size();
+      codes.add(code);
+      indices.put(code,index);
+    }
+    return index;
+  }
+
+  /**
+   * Compute the value of each registered currency in the currency
+   * with the lowest index it is connected to, and publish it with
+   * all quotes as the current snapshot.
+   */
+  @Model
+  private void publish() {
+    int nbCurrencies = codes.size();
+    // The quotes from and to each currency, in the order in which
+    // they were first quoted.
+    List<List<Long>> quotesOf = new ArrayList<List<Long>>(nbCurrencies);
+    for (int i = 0; i < nbCurrencies; i++)
+      quotesOf.add(new ArrayList<Long>());
+    for (Long pair : quotes.keySet()) {
+      quotesOf.get(fromOf(pair)).add(pair);
+      quotesOf.get(toOf(pair)).add(pair);
+    }
+    int[] roots = new int[nbCurrencies];
+    Arrays.fill(roots,-1);
+    BigDecimal[] valuesOfRoot = new BigDecimal[nbCurrencies];
+    int[] pending = new int[nbCurrencies];
+    for (int root = 0; root < nbCurrencies; root++) {
+      if (roots[root] >= 0)
+        continue;
+      roots[root] = root;
+      valuesOfRoot[root] = BigDecimal.ONE;
+      int nbPending = 0;
+      pending[nbPending++] = root;
+      while (nbPending > 0) {
+        int current = pending[--nbPending];
+        for (Long pair : quotesOf.get(current)) {
+          int other = (fromOf(pair) == current) ? toOf(pair) : fromOf(pair);
+          if (roots[other] >= 0)
+            continue;
+          roots[other] = root;
+          if (fromOf(pair) == current)
+            // Quotes from the root itself are used as they are.
+            valuesOfRoot[other] = (current == root) ? quotes.get(pair)
+                : valuesOfRoot[current].multiply(quotes.get(pair),context);
+          else
+            valuesOfRoot[other] =
+                valuesOfRoot[current].divide(quotes.get(pair),context);
+          pending[nbPending++] = other;
+        }
+      }
+    }
+    this.snapshot = new Snapshot(codes.toArray(new String[nbCurrencies]),
+        new HashMap<String,Integer>(indices),
+        new HashMap<Long,BigDecimal>(rates), roots, valuesOfRoot,
+        context);
+  }
+
+  /**
+   * Return the key for the pair of currencies with the given
+   * indices.
+   */
+  private static long pairOf(int from, int to) {
+    return ((long) from << Integer.SIZE) | to;
+  }
+
+  /**
+   * Return the index of the currency to convert from in the given
+   * pair of currencies.
+   */
+  private static int fromOf(long pair) {
+    return (int) (pair >>> Integer.SIZE);
+  }
+
+  /**
+   * Return the index of the currency to convert to in the given
+   * pair of currencies.
+   */
+  private static int toOf(long pair) {
+    return (int) pair;
+  }
+
+  /**
+   * Variable referencing the codes of all registered currencies,
+   * by index.
+   */
+  private final List<String> codes = new ArrayList<String>();
+
+  /**
+   * Variable referencing the indices of all registered currencies,
+   * by code.
+   */
+  private final Map<String,Integer> indices = new HashMap<String,Integer>();
+
+  /**
+   * Variable referencing all quoted exchange rates, by pair of
+   * currencies.
+   */
+  private final Map<Long,BigDecimal> quotes = new LinkedHashMap<Long,BigDecimal>();
+
+  /**
+   * Variable referencing all quoted exchange rates and the inverses
+   * of quotes that are not quoted in the opposite direction, by pair
+   * of currencies.
+   */
+  private final Map<Long,BigDecimal> rates = new HashMap<Long,BigDecimal>();
+
+  /**
+   * A class of snapshots of exchange rates between currencies.
+   */
+  public static final class Snapshot {
+
+    /**
+     * Initialize this new snapshot with given codes, indices,
+     * quoted rates, roots, values of the roots and mathematical
+     * context.
+     */
+    private Snapshot(String[] codes, Map<String,Integer> indices,
+                     Map<Long,BigDecimal> quotedRates, int[] roots,
+                     BigDecimal[] valuesOfRoot, MathContext context) {
+      this.codes = codes;
+      this.indices = indices;
+      this.quotedRates = quotedRates;
+      this.roots = roots;
+      this.valuesOfRoot = valuesOfRoot;
+      this.context = context;
+      this.rates =
+          new AtomicReferenceArray<AtomicReferenceArray<BigDecimal>>(
+              codes.length);
+    }
+
+    /**
+     * Return the number of currencies in this snapshot.
+     */
+    @Basic @Immutable
+    public int getNbCurrencies() {
+      return codes.length;
+    }
+
+    /**
+     * Return the code of the currency at the given index.
+     *
+     * @param   index
+     *          The index of the currency.
+     * @throws  IndexOutOfBoundsException
+     *          The given index is negative or not below the number
+     *          of currencies.
+     *          | (index < 0) || (index >= getNbCurrencies())
+     */
+    @Basic @Immutable
+    public String getCodeAt(int index) throws IndexOutOfBoundsException {
+      return codes[index];
+    }
+
+    /**
+     * Return the index of the currency with the given code, or -1
+     * if no such currency is registered.
+     *
+     * @param   code
+     *          The code of the currency.
+     */
+    @Basic @Immutable
+    public int getIndexOf(String code) {
+      Integer index = indices.get(code);
+      return (index == null) ? -1 : index;
+    }
+
+    /**
+     * Return the value of 1 unit of the currency at the first given
+     * index in the currency at the second given index.
+     *   A null reference is returned if there is no exchange rate
+     *   between both currencies.
+     *
+     * @param   from
+     *          The index of the currency to convert from.
+     * @param   to
+     *          The index of the currency to convert to.
+     * @throws  IndexOutOfBoundsException
+     *          One of the given indices is negative or not below
+     *          the number of currencies.
+     *          | (from < 0) || (from >= getNbCurrencies()) ||
+     *          | (to < 0) || (to >= getNbCurrencies())
+     */
+    @Basic @Immutable
+    public BigDecimal getRate(int from, int to)
+        throws IndexOutOfBoundsException
+    {
+      AtomicReferenceArray<BigDecimal> ratesFrom = rates.get(from);
+      if (ratesFrom == null) {
+        rates.compareAndSet(from,null,
+            new AtomicReferenceArray<BigDecimal>(codes.length));
+        ratesFrom = rates.get(from);
+      }
+      BigDecimal rate = ratesFrom.get(to);
+      if (rate == null) {
+        // Threads computing the same rate at once compute equal rates.
+        rate = computeRate(from,to);
+        if (rate != null)
+          ratesFrom.set(to,rate);
+      }
+      return rate;
+    }
+
+    /**
+     * Compute the value of 1 unit of the currency at the first given
+     * index in the currency at the second given index, or return
+     * null if both currencies are not connected by quotes.
+     */
+    @Model
+    private BigDecimal computeRate(int from, int to) {
+      if (from == to)
+        return BigDecimal.ONE;
+      BigDecimal rate = quotedRates.get(pairOf(from,to));
+      if (rate != null)
+        return rate;
+      if (roots[from] != roots[to])
+        return null;
+      return valuesOfRoot[to].divide(valuesOfRoot[from],context);
+    }
+
+    /**
+     * Return the value of 1 unit of the currency with the first
+     * given code in the currency with the second given code.
+     *
+     * @param   from
+     *          The code of the currency to convert from.
+     * @param   to
+     *          The code of the currency to convert to.
+     * @return  The exchange rate between the currencies with the
+     *          given codes.
+     *          | result ==
+     *          |   getRate(getIndexOf(from),getIndexOf(to))
+     * @throws  IllegalArgumentException
+     *          This snapshot has no exchange rate between both
+     *          currencies.
+     *          | (getIndexOf(from) < 0) || (getIndexOf(to) < 0) ||
+     *          | (getRate(getIndexOf(from),getIndexOf(to)) == null)
+     */
+    public BigDecimal getRate(String from, String to)
+        throws IllegalArgumentException
+    {
+      int fromIndex = getIndexOf(from), toIndex = getIndexOf(to);
+      BigDecimal rate = ((fromIndex < 0) || (toIndex < 0)) ? null
+          : getRate(fromIndex,toIndex);
+      if (rate == null)
+        throw new IllegalArgumentException(
+                      "No exchange rate from " + from + " to " + to);
+      return rate;
+    }
+
+    /**
+     * Variable referencing the codes of the currencies in this
+     * snapshot, by index.
+     */
+    private final String[] codes;
+
+    /**
+     * Variable referencing the indices of the currencies in this
+     * snapshot, by code.
+     */
+    private final Map<String,Integer> indices;
+
+    /**
+     * Variable referencing the quoted exchange rates and their
+     * inverses in this snapshot, by pair of currencies.
+     */
+    private final Map<Long,BigDecimal> quotedRates;
+
+    /**
+     * Variable referencing, for each currency in this snapshot, the
+     * index of the currency with the lowest index it is connected to
+     * by quotes.
+     */
+    private final int[] roots;
+
+    /**
+     * Variable referencing, for each currency in this snapshot, the
+     * value of 1 unit of its root in that currency.
+     */
+    private final BigDecimal[] valuesOfRoot;
+
+    /**
+     * Variable referencing the mathematical context used to compute
+     * cross rates in this snapshot.
+     */
+    private final MathContext context;
+
+    /**
+     * Variable referencing the exchange rates computed so far in
+     * this snapshot. The first level is indexed by the currency to
+     * convert from; the second level by the currency to convert to.
+     * Each level is only created when it is first needed.
+     */
+    private final AtomicReferenceArray<AtomicReferenceArray<BigDecimal>> rates;
+
+  }
+
+}
@@ -0,0 +1,179 @@
+package Chapter5.banking.money;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.*;
+
+public class ExchangeRateServiceTest {
+
+	private ExchangeRateService service;
+
+	@BeforeEach
+	public void setUpMutableFixture() {
+		service = new ExchangeRateService(new MathContext(6, RoundingMode.HALF_DOWN));
+		service.setRates("EUR", Map.of("USD", new BigDecimal("2"), "CHF", new BigDecimal("4")));
+	}
+
+	@Test
+	public void registerCurrency_LegalCase() {
+		assertEquals(0, service.getSnapshot().getIndexOf("EUR"));
+		assertEquals(3, service.registerCurrency("GBP"));
+		assertEquals(3, service.registerCurrency("GBP"));
+		assertEquals("GBP", service.getSnapshot().getCodeAt(3));
+		assertEquals(4, service.getSnapshot().getNbCurrencies());
+		assertEquals(-1, service.getSnapshot().getIndexOf("JPY"));
+		assertThrows(IllegalArgumentException.class, () -> service.getRate("EUR", "GBP"));
+	}
+
+	@Test
+	public void setRates_InverseAndCrossRates() {
+		assertSame(BigDecimal.ONE, service.getRate("USD", "USD"));
+		assertEquals(new BigDecimal("2"), service.getRate("EUR", "USD"));
+		assertEquals(new BigDecimal("0.25"), service.getRate("CHF", "EUR"));
+		assertEquals(0, new BigDecimal("2").compareTo(service.getRate("USD", "CHF")));
+		assertEquals(0, new BigDecimal("0.5").compareTo(service.getRate("CHF", "USD")));
+	}
+
+	@Test
+	public void setRate_QuotedInBothDirections() {
+		service.setRate("USD", "EUR", new BigDecimal("0.6"));
+		assertEquals(new BigDecimal("0.6"), service.getRate("USD", "EUR"));
+		assertEquals(new BigDecimal("2"), service.getRate("EUR", "USD"));
+		service.setRate("EUR", "USD", new BigDecimal("1.5"));
+		assertEquals(new BigDecimal("1.5"), service.getRate("EUR", "USD"));
+		// cross rates are computed via the base currency
+		assertEquals(new BigDecimal("2.66667"), service.getRate("USD", "CHF"));
+	}
+
+	@Test
+	public void setRates_IllegalRate() {
+		ExchangeRateService.Snapshot before = service.getSnapshot();
+		Map<String, BigDecimal> rates = new HashMap<String, BigDecimal>();
+		rates.put("GBP", new BigDecimal("0.8"));
+		rates.put("JPY", BigDecimal.ZERO);
+		assertThrows(IllegalArgumentException.class, () -> service.setRates("EUR", rates));
+		assertThrows(IllegalArgumentException.class, () -> service.setRate("EUR", "EUR", BigDecimal.TEN));
+		assertThrows(IllegalArgumentException.class, () -> service.setRate("EUR", "GBP", null));
+		assertSame(before, service.getSnapshot());
+		assertEquals(-1, service.getSnapshot().getIndexOf("GBP"));
+	}
+
+	@Test
+	public void setRates_HundredsOfCurrencies() {
+		Map<String, BigDecimal> rates = new HashMap<String, BigDecimal>();
+		for (int i = 1; i <= 300; i++)
+			rates.put("C" + i, BigDecimal.valueOf(i));
+		service.setRates("EUR", rates);
+		assertEquals(303, service.getSnapshot().getNbCurrencies());
+		assertEquals(0, new BigDecimal("7").compareTo(service.getRate("C3", "C21")));
+		assertEquals(0, new BigDecimal("0.01").compareTo(service.getRate("C100", "C1")));
+	}
+
+	@Test
+	public void registerCurrencies_LegalCase() {
+		List<String> codes = new ArrayList<String>();
+		for (int i = 1; i <= 1000; i++)
+			codes.add("C" + i);
+		codes.add("USD");
+		ExchangeRateService.Snapshot before = service.getSnapshot();
+		int[] indices = service.registerCurrencies(codes);
+		assertNotSame(before, service.getSnapshot());
+		assertEquals(1001, indices.length);
+		assertEquals(3, indices[0]);
+		assertEquals(1002, indices[999]);
+		assertEquals(service.getSnapshot().getIndexOf("USD"), indices[1000]);
+		assertEquals(1003, service.getSnapshot().getNbCurrencies());
+		assertNull(service.getSnapshot().getRate(0, 3));
+	}
+
+	@Test
+	public void registerCurrencies_IllegalCase() {
+		ExchangeRateService.Snapshot before = service.getSnapshot();
+		assertThrows(IllegalArgumentException.class, () -> service.registerCurrencies(null));
+		assertThrows(IllegalArgumentException.class, () -> service.registerCurrencies(Arrays.asList("GBP", null)));
+		assertSame(before, service.getSnapshot());
+		assertEquals(-1, service.getSnapshot().getIndexOf("GBP"));
+	}
+
+	@Test
+	public void setRates_CrossRatesWithoutBaseCurrency() {
+		// Neither GBP, JPY nor SEK is quoted against the base currency.
+		service.setRate("GBP", "JPY", new BigDecimal("200"));
+		service.setRate("SEK", "JPY", new BigDecimal("10"));
+		service.setRate("NOK", "SEK", new BigDecimal("2"));
+		assertEquals(0, new BigDecimal("20").compareTo(service.getRate("GBP", "SEK")));
+		assertEquals(0, new BigDecimal("0.05").compareTo(service.getRate("SEK", "GBP")));
+		assertEquals(0, new BigDecimal("10").compareTo(service.getRate("GBP", "NOK")));
+		assertEquals(0, new BigDecimal("20").compareTo(service.getRate("NOK", "JPY")));
+		// Currencies without a chain of quotes between them have no rate.
+		assertThrows(IllegalArgumentException.class, () -> service.getRate("EUR", "GBP"));
+		assertNull(service.getSnapshot().getRate(service.getSnapshot().getIndexOf("USD"),
+				service.getSnapshot().getIndexOf("NOK")));
+		service.setRate("USD", "NOK", new BigDecimal("5"));
+		assertEquals(0, new BigDecimal("200").compareTo(service.getRate("EUR", "JPY")));
+		assertEquals(0, BigDecimal.ONE.compareTo(service.getRate("GBP", "EUR")));
+	}
+
+	@Test
+	public void setRate_ManyCurrenciesOneAtATime() {
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+			for (int i = 1; i <= 2000; i++)
+				service.setRate("EUR", "C" + i, BigDecimal.valueOf(i));
+		});
+		assertEquals(2003, service.getSnapshot().getNbCurrencies());
+		assertEquals(0, new BigDecimal("0.5").compareTo(service.getRate("C1000", "C500")));
+	}
+
+	@Test
+	public void setRates_ConcurrentReaders() throws Exception {
+		Map<String, BigDecimal> low = new HashMap<String, BigDecimal>();
+		Map<String, BigDecimal> high = new HashMap<String, BigDecimal>();
+		for (String code : List.of("USD", "CHF", "GBP", "JPY")) {
+			low.put(code, new BigDecimal("2"));
+			high.put(code, new BigDecimal("4"));
+		}
+		service.setRates("EUR", low);
+		AtomicBoolean done = new AtomicBoolean();
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		List<Future<?>> readers = new ArrayList<Future<?>>();
+		for (int t = 0; t < 2; t++)
+			readers.add(executor.submit(() -> {
+				while (!done.get()) {
+					// All rates in a snapshot were published together.
+					ExchangeRateService.Snapshot snapshot = service.getSnapshot();
+					BigDecimal rate = snapshot.getRate("EUR", "USD");
+					for (String code : List.of("CHF", "GBP", "JPY"))
+						assertEquals(rate, snapshot.getRate("EUR", code));
+					assertEquals(0, BigDecimal.ONE.compareTo(snapshot.getRate("USD", "JPY")));
+				}
+				return null;
+			}));
+		for (int i = 0; i < 2000; i++)
+			service.setRates("EUR", (i % 2 == 0) ? high : low);
+		done.set(true);
+		for (Future<?> reader : readers)
+			reader.get();
+		executor.shutdown();
+	}
+
+	@Test
+	public void currency_UsesExchangeRateService() {
+		assertEquals(Currency.getExchangeRates().getRate("EUR", "USD"), Currency.EUR.toCurrency(Currency.USD));
+		assertEquals(Currency.getExchangeRates().getRate("JPY", "USD"), Currency.JPY.toCurrency(Currency.USD));
+		for (Currency currency : Currency.values())
+			assertEquals(currency.ordinal(), Currency.getExchangeRates().getSnapshot().getIndexOf(currency.name()));
+	}
+
+}
@@ -1,6 +1,7 @@
 package Chapter5.banking.money;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.math.MathContext;
 import java.math.RoundingMode;
 
@@ -20,6 +21,12 @@ import be.kuleuven.cs.som.annotate.Value;
  *          currency.
  *          | isValidCurrency(getCurrency())
  *
+ * @note    Money amounts store their numeral as a number of cents
+ *          in a long. Only numerals that do not fit in a long of
+ *          cents are stored as a big decimal. Arithmetic on two
+ *          amounts in cents therefore does not create big decimals,
+ *          unless its result overflows.
+ *
  * @version 2.0
  * @author  Eric Steegmans
  */
@@ -37,11 +44,8 @@ public class MoneyAmount implements Comparable<MoneyAmount> {
    * @post    The numeral of this new money amount is equal to
    *          the given numeral rounded (using half down) to a
    *          decimal number with 2 fractional digits.
-   *          | let
-   *          |   roundedNumeral =
-   *          |     numeral.round(getScale2ContextFor(numeral))
-   *          | in
-   *          |   new.getNumeral().equals(roundedNumeral)
+   *          | new.getNumeral().equals(
+   *          |     numeral.setScale(2,RoundingMode.HALF_DOWN))
    * @post    The currency for this new money amount is the
    *          same  as the given currency.
    *          | new.getCurrency() == currency
@@ -62,9 +66,44 @@ public class MoneyAmount implements Comparable<MoneyAmount> {
                     "Non-effective numeral");
     if (! isValidCurrency(currency))
       throw new IllegalArgumentException("Invalid currency");
-    if (numeral.scale() != 2)
-      numeral = numeral.round(getScale2ContextFor(numeral));
-    this.numeral = numeral;
+    numeral = numeral.setScale(2,RoundingMode.HALF_DOWN);
+    BigInteger unscaledNumeral = numeral.unscaledValue();
+    if (unscaledNumeral.bitLength() < Long.SIZE) {
+      this.numeralInCents = unscaledNumeral.longValue();
+      this.largeNumeral = null;
+    }
+    else {
+      this.numeralInCents = 0;
+      this.largeNumeral = numeral;
+    }
+    this.currency = currency;
+  }
+
+  /**
+   * Initialize this new money amount with given numeral in cents
+   * and given currency.
+   *
+   * @param   numeralInCents
+   *          The numeral for this new money amount, expressed in
+   *          cents.
+   * @param   currency
+   *          The currency for this new money amount.
+   * @pre     The given currency must be a valid currency for any
+   *          money amount.
+   *          | isValidCurrency(currency)
+   * @post    The numeral of this new money amount is equal to
+   *          the given number of cents.
+   *          | new.getNumeral().equals(
+   *          |     BigDecimal.valueOf(numeralInCents,2))
+   * @post    The currency for this new money amount is the
+   *          same  as the given currency.
+   *          | new.getCurrency() == currency
+   */
+  @Raw @Model
+  private MoneyAmount(long numeralInCents, Currency currency) {
+    assert isValidCurrency(currency);
+    this.numeralInCents = numeralInCents;
+    this.largeNumeral = null;
     this.currency = currency;
   }
 
@@ -116,7 +155,18 @@ public class MoneyAmount implements Comparable<MoneyAmount> {
    */
   @Basic @Raw @Immutable
   public BigDecimal getNumeral() {
-    return this.numeral;
+    if (largeNumeral != null)
+      return largeNumeral;
+    return BigDecimal.valueOf(numeralInCents,2);
+  }
+
+  /**
+   * Check whether the numeral of this money amount is stored as
+   * a number of cents.
+   */
+  @Model
+  private boolean isInCents() {
+    return largeNumeral == null;
   }
 
   /**
@@ -136,9 +186,17 @@ public class MoneyAmount implements Comparable<MoneyAmount> {
   }
 
   /**
-   * Variable referencing the numeral of this money amount.
+   * Variable registering the numeral of this money amount in
+   * cents, if it fits in a long.
+   */
+  private final long numeralInCents;
+
+  /**
+   * Variable referencing the numeral of this money amount, if it
+   * does not fit in a long of cents. Otherwise, this variable is
+   * null.
    */
-  private final BigDecimal numeral;
+  private final BigDecimal largeNumeral;
 
   /**
    * Return the currency of this money amount.
@@ -185,8 +243,8 @@ public class MoneyAmount implements Comparable<MoneyAmount> {
    *          |     this.getNumeral().multiply(exchangeRate)
    *          | in
    *          |   result.getNumeral().equals
-   *          |     (numeralInCurrency.round(
-   *          |        getScale2ContextFor(numeralInCurrency))
+   *          |     (numeralInCurrency.setScale(
+   *          |        2,RoundingMode.HALF_DOWN))
    * @throws  IllegalArgumentException
    *          The given currency is not effective.
    *          | currency == null
@@ -201,12 +259,149 @@ public class MoneyAmount implements Comparable<MoneyAmount> {
       return this;
     BigDecimal exchangeRate = 
         this.getCurrency().toCurrency(currency);
-    BigDecimal numeralInCurrency = 
-        getNumeral().multiply(exchangeRate);
-    numeralInCurrency =
-      numeralInCurrency.round(
-        getScale2ContextFor(numeralInCurrency));
-    return new MoneyAmount(numeralInCurrency,currency);
+    return new MoneyAmount(getNumeral().multiply(exchangeRate),
+                           currency);
+  }
+
+  /**
+   * Return the numerals of the given amounts expressed in the
+   * given currency.
+   *   The amounts are given in columns: the numeral of each amount
+   *   in cents, and the ordinal number of its currency at the same
+   *   index.
+   *
+   * @param   numeralsInCents
+   *          The numerals of the amounts to convert, in cents.
+   * @param   currencies
+   *          The ordinal numbers of the currencies of the amounts
+   *          to convert.
+   * @param   currency
+   *          The currency to convert to.
+   * @return  The resulting array has the same length as the given
+   *          numerals.
+   *          | result.length == numeralsInCents.length
+   * @return  Each element of the resulting array is the numeral in
+   *          cents of the corresponding amount converted to the
+   *          given currency.
+   *          | for each i in 0..numeralsInCents.length-1:
+   *          |   BigDecimal.valueOf(result[i],2).equals(
+   *          |     new MoneyAmount(
+   *          |       BigDecimal.valueOf(numeralsInCents[i],2),
+   *          |       Currency.values()[currencies[i]])
+   *          |     .toCurrency(currency).getNumeral())
+   * @throws  IllegalArgumentException
+   *          The given numerals, currencies or currency are not
+   *          effective, the numerals and the currencies have a
+   *          different length, or some ordinal number does not
+   *          belong to a currency.
+   *          | (numeralsInCents == null) || (currencies == null) ||
+   *          | (currency == null) ||
+   *          | (numeralsInCents.length != currencies.length) ||
+   *          | (for some ordinal in currencies:
+   *          |    (ordinal < 0) ||
+   *          |    (ordinal >= Currency.values().length))
+   * @throws  ArithmeticException
+   *          Some converted numeral does not fit in a long of cents.
+   * @note    The exchange rate from each currency is looked up and
+   *          split in a long factor and a power of ten once for the
+   *          whole batch, using one snapshot of the exchange rates.
+   *          Each amount is then converted with a multiplication and
+   *          a division of longs, rounding half down in the same way
+   *          as the conversion of a single money amount. Only
+   *          amounts whose product overflows are converted with big
+   *          decimals.
+   */
+  public static long[] toCurrencyInCents(long[] numeralsInCents,
+      int[] currencies, Currency currency)
+      throws IllegalArgumentException, ArithmeticException
+  {
+    if ((numeralsInCents == null) || (currencies == null) ||
+        (currency == null))
+      throw new IllegalArgumentException("Non-effective amounts");
+    if (numeralsInCents.length != currencies.length)
+      throw new IllegalArgumentException("Incomplete amounts");
+    ExchangeRateService.Snapshot exchangeRates =
+        Currency.getExchangeRates().getSnapshot();
+    int nbCurrencies = Currency.values().length;
+    BigDecimal[] rates = new BigDecimal[nbCurrencies];
+    long[] factors = new long[nbCurrencies];
+    long[] divisors = new long[nbCurrencies];
+    for (int from = 0; from < nbCurrencies; from++) {
+      rates[from] = exchangeRates.getRate(from,currency.ordinal());
+      BigInteger factor = rates[from].unscaledValue();
+      int scale = rates[from].scale();
+      if (scale < 0) {
+        factor = factor.multiply(BigInteger.TEN.pow(-scale));
+        scale = 0;
+      }
+      // A divisor of 0 marks rates that are only applied with big
+      // decimals.
+      if ((factor.bitLength() < Long.SIZE) && (scale <= 18)) {
+        factors[from] = factor.longValue();
+        divisors[from] = LONG_POWERS_OF_TEN[scale];
+      }
+    }
+    long[] result = new long[numeralsInCents.length];
+    for (int i = 0; i < numeralsInCents.length; i++) {
+      int from = currencies[i];
+      if ((from < 0) || (from >= nbCurrencies))
+        throw new IllegalArgumentException("Invalid currency");
+      long cents = numeralsInCents[i];
+      if (from == currency.ordinal()) {
+        result[i] = cents;
+        continue;
+      }
+      long divisor = divisors[from];
+      if (divisor != 0) {
+        long product = cents * factors[from];
+        if (Math.multiplyHigh(cents,factors[from]) == (product >> 63)) {
+          result[i] = divideHalfDown(product,divisor);
+          continue;
+        }
+      }
+      result[i] = BigDecimal.valueOf(cents,2).multiply(rates[from])
+          .setScale(2,RoundingMode.HALF_DOWN)
+          .unscaledValue().longValueExact();
+    }
+    return result;
+  }
+
+  /**
+   * Return the quotient of the given dividend and the given divisor,
+   * rounded half down.
+   *
+   * @param   dividend
+   *          The number to divide.
+   * @param   divisor
+   *          The number to divide by.
+   * @pre     The given divisor is a positive power of ten.
+   *          | (divisor > 0) && (divisor <= 1000000000000000000L)
+   * @return  The quotient rounded to the nearest long, and rounded
+   *          towards zero if it lies halfway.
+   *          | result ==
+   *          |   BigDecimal.valueOf(dividend).divide(
+   *          |     BigDecimal.valueOf(divisor),0,RoundingMode.HALF_DOWN)
+   *          |   .longValue()
+   */
+  @Model
+  private static long divideHalfDown(long dividend, long divisor) {
+    long quotient = dividend / divisor;
+    long remainder = dividend % divisor;
+    if (Math.abs(remainder) > divisor - Math.abs(remainder))
+      quotient += Long.signum(dividend);
+    return quotient;
+  }
+
+  /**
+   * Variable referencing the powers of ten that fit in a long, by
+   * exponent.
+   */
+  private static final long[] LONG_POWERS_OF_TEN = new long[19];
+
+  static {
+    LONG_POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < LONG_POWERS_OF_TEN.length; i++)
+      LONG_POWERS_OF_TEN[i] = LONG_POWERS_OF_TEN[i-1] * 10;
   }
 
   /**
@@ -229,6 +424,8 @@ public class MoneyAmount implements Comparable<MoneyAmount> {
    *          |     this.getNumeral().negate())
    */
   public MoneyAmount negate() {
+    if (isInCents() && (numeralInCents != Long.MIN_VALUE))
+      return new MoneyAmount(-numeralInCents,getCurrency());
     return
       new MoneyAmount(this.getNumeral().negate(),
                       getCurrency());
@@ -253,6 +450,11 @@ public class MoneyAmount implements Comparable<MoneyAmount> {
    *          |         new BigDecimal(factor)))
    */
   public MoneyAmount times(long factor) {
+    if (isInCents()) {
+      long product = numeralInCents * factor;
+      if (Math.multiplyHigh(numeralInCents,factor) == (product >> 63))
+        return new MoneyAmount(product,getCurrency());
+    }
     BigDecimal factorDec = new BigDecimal(factor);
     return
       new MoneyAmount(this.getNumeral().multiply(factorDec),
@@ -293,10 +495,18 @@ public class MoneyAmount implements Comparable<MoneyAmount> {
     if (other == null)
       throw new IllegalArgumentException(
                     "Non-effective money amount");
-    if (getCurrency() == other.getCurrency())
+    if (getCurrency() == other.getCurrency()) {
+      if (isInCents() && other.isInCents()) {
+        long sum = numeralInCents + other.numeralInCents;
+        // The sum overflows if and only if its sign differs from
+        // the sign of both operands.
+        if (((numeralInCents ^ sum) & (other.numeralInCents ^ sum)) >= 0)
+          return new MoneyAmount(sum,getCurrency());
+      }
       return
         new MoneyAmount(getNumeral().add(other.getNumeral()),
                         getCurrency());
+    }
     return add(other.toCurrency(getCurrency()));
   }
 
@@ -320,11 +530,20 @@ public class MoneyAmount implements Comparable<MoneyAmount> {
     if (other == null)
       throw new IllegalArgumentException(
                     "Non-effective money amount");
-    if (getCurrency() == other.getCurrency())
+    if (getCurrency() == other.getCurrency()) {
+      if (isInCents() && other.isInCents()) {
+        long difference = numeralInCents - other.numeralInCents;
+        // The difference overflows if and only if the operands have
+        // different signs, and its sign differs from the first one.
+        if (((numeralInCents ^ other.numeralInCents)
+              & (numeralInCents ^ difference)) >= 0)
+          return new MoneyAmount(difference,getCurrency());
+      }
       return
         new MoneyAmount(
                 getNumeral().subtract(other.getNumeral()),
                 getCurrency());
+    }
     return subtract(other.toCurrency(getCurrency()));
   }
 
@@ -355,6 +574,8 @@ public class MoneyAmount implements Comparable<MoneyAmount> {
     if (getCurrency() != other.getCurrency())
       throw new ClassCastException(
                     "Incompatable money amounts");
+    if (isInCents() && other.isInCents())
+      return Long.compare(numeralInCents,other.numeralInCents);
     return getNumeral().compareTo(other.getNumeral());
   }
 
@@ -365,6 +586,8 @@ public class MoneyAmount implements Comparable<MoneyAmount> {
    *          | result == getNumeral().signum()
    */
   public int signum() {
+    if (isInCents())
+      return Long.signum(numeralInCents);
     return getNumeral().signum();
   }
 
@@ -417,8 +640,14 @@ public class MoneyAmount implements Comparable<MoneyAmount> {
     if (this.getClass() != other.getClass())
       return false;
     MoneyAmount otherAmount = (MoneyAmount) other;
+    // Numerals that fit in a long of cents are always stored in
+    // cents, so equal numerals are stored in the same way.
+    if (this.isInCents() != otherAmount.isInCents())
+      return false;
     return
-      this.getNumeral().equals(otherAmount.getNumeral()) &&
+      (this.numeralInCents == otherAmount.numeralInCents) &&
+      (this.isInCents() ||
+          this.largeNumeral.equals(otherAmount.largeNumeral)) &&
       (this.getCurrency() == otherAmount.getCurrency());
   }
 
@@ -428,6 +657,8 @@ public class MoneyAmount implements Comparable<MoneyAmount> {
    */
   @Override
   public int hashCode() {
+    if (isInCents())
+      return Long.hashCode(numeralInCents) + getCurrency().hashCode();
     return getNumeral().hashCode() + getCurrency().hashCode();
   }
 
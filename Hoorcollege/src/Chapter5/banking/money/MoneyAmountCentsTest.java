@@ -0,0 +1,143 @@
+package Chapter5.banking.money;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.*;
+import java.util.Random;
+
+import org.junit.jupiter.api.*;
+
+public class MoneyAmountCentsTest {
+
+	private static MoneyAmount usd234_78;
+
+	@BeforeAll
+	public static void setUpBeforeAll() {
+		usd234_78 = new MoneyAmount(
+				new BigDecimal(BigInteger.valueOf(23478), 2), Currency.USD);
+	}
+
+	@Test
+	public void extendedConstructor_RoundingHalfDown() {
+		assertEquals(new BigDecimal(BigInteger.valueOf(50000), 2),
+				new MoneyAmount(new BigDecimal(500)).getNumeral());
+		assertEquals(new BigDecimal(BigInteger.valueOf(0), 2),
+				new MoneyAmount(new BigDecimal("0.005")).getNumeral());
+		assertEquals(new BigDecimal(BigInteger.valueOf(-1), 2),
+				new MoneyAmount(new BigDecimal("-0.015")).getNumeral());
+		assertEquals(new BigDecimal(BigInteger.valueOf(0), 2),
+				new MoneyAmount(new BigDecimal("0.000456")).getNumeral());
+	}
+
+	@Test
+	public void add_Overflow() {
+		MoneyAmount largest = new MoneyAmount(BigDecimal.valueOf(Long.MAX_VALUE, 2));
+		MoneyAmount sum = largest.add(MoneyAmount.EUR_1);
+		assertEquals(BigDecimal.valueOf(Long.MAX_VALUE, 2).add(BigDecimal.ONE),
+				sum.getNumeral());
+		assertTrue(sum.compareTo(largest) > 0);
+		assertEquals(largest, sum.subtract(MoneyAmount.EUR_1));
+		assertEquals(largest.hashCode(), sum.subtract(MoneyAmount.EUR_1).hashCode());
+	}
+
+	@Test
+	public void subtract_Overflow() {
+		MoneyAmount smallest = new MoneyAmount(BigDecimal.valueOf(Long.MIN_VALUE, 2));
+		MoneyAmount difference = smallest.subtract(MoneyAmount.EUR_1);
+		assertEquals(BigDecimal.valueOf(Long.MIN_VALUE, 2).subtract(BigDecimal.ONE),
+				difference.getNumeral());
+		assertEquals(-1, difference.signum());
+		assertEquals(BigDecimal.valueOf(Long.MIN_VALUE, 2).negate(),
+				smallest.negate().getNumeral());
+	}
+
+	@Test
+	public void times_Overflow() {
+		MoneyAmount product = usd234_78.times(Long.MAX_VALUE);
+		assertSame(Currency.USD, product.getCurrency());
+		assertEquals(new BigDecimal(BigInteger.valueOf(23478), 2).multiply(
+				new BigDecimal(Long.MAX_VALUE)), product.getNumeral());
+		assertEquals(new BigDecimal(BigInteger.valueOf(-23478), 2),
+				usd234_78.times(-1).getNumeral());
+	}
+
+	@Test
+	public void toCurrencyInCents_SameAsScalar() {
+		Random random = new Random(42);
+		long[] numerals = new long[1000];
+		int[] currencies = new int[numerals.length];
+		for (int i = 0; i < numerals.length; i++) {
+			numerals[i] = random.nextLong() % 100000000L;
+			currencies[i] = random.nextInt(Currency.values().length);
+		}
+		for (Currency currency : Currency.values()) {
+			long[] result = MoneyAmount.toCurrencyInCents(numerals, currencies, currency);
+			assertEquals(numerals.length, result.length);
+			for (int i = 0; i < numerals.length; i++)
+				assertEquals(new MoneyAmount(BigDecimal.valueOf(numerals[i], 2),
+						Currency.values()[currencies[i]]).toCurrency(currency).getNumeral(),
+						BigDecimal.valueOf(result[i], 2));
+		}
+	}
+
+	@Test
+	public void toCurrencyInCents_SameAsScalarForAllSmallNumerals() {
+		// Every numeral up to 1000.00 in both directions, so that every
+		// halfway case of each exchange rate in that range is covered.
+		int nbNumerals = 200001;
+		long[] numerals = new long[nbNumerals];
+		int[] currencies = new int[nbNumerals];
+		for (Currency source : Currency.values()) {
+			for (int i = 0; i < nbNumerals; i++) {
+				numerals[i] = i - nbNumerals / 2;
+				currencies[i] = source.ordinal();
+			}
+			for (Currency target : Currency.values()) {
+				long[] result = MoneyAmount.toCurrencyInCents(numerals, currencies, target);
+				for (int i = 0; i < nbNumerals; i++)
+					assertEquals(new MoneyAmount(BigDecimal.valueOf(numerals[i], 2), source)
+							.toCurrency(target), new MoneyAmount(BigDecimal.valueOf(result[i], 2), target));
+			}
+		}
+	}
+
+	@Test
+	public void toCurrencyInCents_HalfwayCases() {
+		// 12.50 EUR is 17.735 USD, 50.00 USD is 4817.885 JPY
+		long[] result = MoneyAmount.toCurrencyInCents(new long[] { 1250, -1250, 5000 },
+				new int[] { Currency.EUR.ordinal(), Currency.EUR.ordinal(), Currency.USD.ordinal() },
+				Currency.USD);
+		assertEquals(1773, result[0]);
+		assertEquals(-1773, result[1]);
+		assertEquals(5000, result[2]);
+		result = MoneyAmount.toCurrencyInCents(new long[] { 5000 },
+				new int[] { Currency.USD.ordinal() }, Currency.JPY);
+		assertEquals(481788, result[0]);
+	}
+
+	@Test
+	public void toCurrencyInCents_LargeNumerals() {
+		long numeral = Long.MAX_VALUE / 1000;
+		long[] result = MoneyAmount.toCurrencyInCents(new long[] { numeral },
+				new int[] { Currency.EUR.ordinal() }, Currency.JPY);
+		assertEquals(new MoneyAmount(BigDecimal.valueOf(numeral, 2)).toCurrency(Currency.JPY)
+				.getNumeral(), BigDecimal.valueOf(result[0], 2));
+		assertThrows(ArithmeticException.class, () -> MoneyAmount.toCurrencyInCents(
+				new long[] { Long.MAX_VALUE }, new int[] { Currency.EUR.ordinal() }, Currency.JPY));
+	}
+
+	@Test
+	public void toCurrencyInCents_IllegalCases() {
+		assertThrows(IllegalArgumentException.class, () -> MoneyAmount.toCurrencyInCents(
+				null, new int[0], Currency.EUR));
+		assertThrows(IllegalArgumentException.class, () -> MoneyAmount.toCurrencyInCents(
+				new long[1], null, Currency.EUR));
+		assertThrows(IllegalArgumentException.class, () -> MoneyAmount.toCurrencyInCents(
+				new long[1], new int[1], null));
+		assertThrows(IllegalArgumentException.class, () -> MoneyAmount.toCurrencyInCents(
+				new long[2], new int[1], Currency.EUR));
+		assertThrows(IllegalArgumentException.class, () -> MoneyAmount.toCurrencyInCents(
+				new long[1], new int[] { Currency.values().length }, Currency.EUR));
+	}
+
+}
@@ -0,0 +1,162 @@
+package model;
+
+import be.kuleuven.cs.som.annotate.*;
+
+import java.util.Date;
+
+/**
+ * A class of files whose size can be changed by several threads at the same time.
+ *
+ * @note	The size is changed in a single compare-and-set of the size registered by the class File,
+ * 			which is repeated if another thread changed the size in the meantime. Concurrent changes
+ * 			are therefore never lost, each thread sees the sizes in one global order, and no change
+ * 			can make the size invalid. No locks are taken.
+ * @note	The time of the last modification only moves forward. A change that happens in the same
+ * 			millisecond as the registered modification time only reads it, so writers that change the
+ * 			size in bursts do not contend on it.
+ * @note	All writers of a single file still share the cache line of its size. Spreading the size
+ * 			over several counters would let writers scale further, but the size would then no longer
+ * 			be read as a single consistent value.
+ *
+ * @version 3.4
+ */
+public class ConcurrentFile extends File {
+
+    /**********************************************************
+     * Constructors
+     **********************************************************/
+
+    /**
+     * Initialize a new concurrent file with given name, size and writability.
+     *
+     * @param  	name
+     *         	The name of the new file.
+     * @param  	size
+     *         	The size of the new file.
+     * @param  	writable
+     *         	The writability of the new file.
+     * @effect	The new file is initialized as a file with the given name, size and writability.
+     * 			| super(name,size,writable)
+     */
+	@Raw
+	public ConcurrentFile(String name, int size, boolean writable) {
+		super(name, size, writable);
+	}
+
+    /**
+     * Initialize a new concurrent file with given name.
+     *
+     * @param   name
+     *          The name of the new file.
+     * @effect  This new file is initialized with the given name, a zero size
+     * 			and true writability
+     *         | this(name,0,true)
+     */
+	@Raw
+	public ConcurrentFile(String name) {
+		this(name, 0, true);
+	}
+
+
+
+    /**********************************************************
+     * size
+     **********************************************************/
+
+    /**
+     * Increases the size of this file with the given delta.
+     *
+     * @param   delta
+     *          The amount of bytes by which the size of this file
+     *          must be increased.
+     * @pre     The given delta must be strictly positive.
+     *          | delta > 0
+     * @effect  The size of this file is increased with the given delta.
+     *          | changeSize(delta)
+     */
+	@Override
+	public void enlarge(int delta) throws FileNotWritableException, IllegalArgumentException {
+		changeSize(delta);
+	}
+
+    /**
+     * Decreases the size of this file with the given delta.
+     *
+     * @param   delta
+     *          The amount of bytes by which the size of this file
+     *          must be decreased.
+     * @pre     The given delta must be strictly positive.
+     *          | delta > 0
+     * @effect  The size of this file is decreased with the given delta.
+     *          | changeSize(-delta)
+     */
+	@Override
+	public void shorten(int delta) throws FileNotWritableException, IllegalArgumentException {
+		changeSize(-delta);
+	}
+
+    /**
+     * Change the size of this file with the given delta.
+     *
+     * @param  delta
+     *         The amount of bytes by which the size of this file
+     *         must be increased or decreased.
+     * @pre    The given delta must not be 0
+     *         | delta != 0
+     * @post   The given delta is added to the size of this file at once.
+     *         | new.getSize() == getSize() + delta
+     * @effect The modification time is updated.
+     *         | setModificationTime()
+     * @throws FileNotWritableException(this)
+     *         This file is not writable.
+     *         | ! isWritable()
+     * @throws IllegalArgumentException
+     *         The size of this file changed with the given delta is not a valid size.
+     *         | ! isValidSize(getSize() + delta)
+     * @note   Other threads may change the size between the moment a caller checks it and the moment
+     *         this method changes it, so the validity of the new size is checked here, against the
+     *         same size it is installed on.
+     */
+	@Model
+	private void changeSize(int delta) throws FileNotWritableException, IllegalArgumentException {
+		if (!isWritable())
+			throw new FileNotWritableException(this);
+		while (true) {
+			int size = getSize();
+			long newSize = (long) size + delta;
+			if ((newSize > getMaximumSize()) || !isValidSize((int) newSize))
+				throw new IllegalArgumentException("Invalid size: " + newSize);
+			if (compareAndSetSize(size, (int) newSize))
+				break;
+		}
+		setModificationTime();
+	}
+
+
+
+    /**********************************************************
+     * modificationTime
+     **********************************************************/
+
+    /**
+     * Set the modification time of this file to the current time.
+     *
+     * @post   The new modification time is effective.
+     *         | new.getModificationTime() != null
+     * @post   The new modification time lies between the system
+     *         time at the beginning of this method execution and
+     *         the system time at the end of method execution.
+     *
+     * @note	A thread that finds the same or a later time already registered leaves it, so the time
+     * 			never goes back.
+     */
+	@Override @Model
+	protected void setModificationTime() {
+		long now = System.currentTimeMillis();
+		Date current = getModificationTime();
+		while ((current == null || current.getTime() < now)
+				&& !compareAndSetModificationTime(current, new Date(now)))
+			current = getModificationTime();
+	}
+
+}
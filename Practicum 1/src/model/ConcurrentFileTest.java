@@ -0,0 +1,179 @@
+package model;
+
+import static org.junit.Assert.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+/**
+ * A JUnit 4 test class for testing the public methods of the ConcurrentFile Class
+ *
+ */
+public class ConcurrentFileTest {
+
+	ConcurrentFile file;
+	ConcurrentFile fileNotWritable;
+	Date timeBeforeConstruction, timeAfterConstruction;
+
+	@Before
+	public void setUpFixture(){
+		timeBeforeConstruction = new Date();
+		file = new ConcurrentFile("bestand.txt",100,true);
+		fileNotWritable = new ConcurrentFile("bestand.txt",100,false);
+		timeAfterConstruction = new Date();
+	}
+
+	@Test
+	public void testConcurrentFileStringIntBoolean_LegalCase() {
+		assertEquals("bestand.txt",file.getName());
+		assertEquals(100,file.getSize());
+		assertTrue(file.isWritable());
+		assertFalse(fileNotWritable.isWritable());
+		assertNull(file.getModificationTime());
+		assertFalse(timeBeforeConstruction.after(file.getCreationTime()));
+		assertFalse(file.getCreationTime().after(timeAfterConstruction));
+	}
+
+	@Test
+	public void testEnlarge_LegalCase() {
+		file.enlarge(1);
+		assertEquals(101,file.getSize());
+		assertNotNull(file.getModificationTime());
+		assertFalse(file.getModificationTime().before(file.getCreationTime()));
+		assertFalse(file.getModificationTime().after(new Date()));
+	}
+
+	@Test
+	public void testShorten_LegalCase() {
+		file.shorten(1);
+		assertEquals(99,file.getSize());
+		assertNotNull(file.getModificationTime());
+	}
+
+	@Test (expected = FileNotWritableException.class)
+	public void testEnlarge_FileNotWritable() {
+		fileNotWritable.enlarge(1);
+	}
+
+	@Test
+	public void testShorten_FileNotWritable() {
+		try {
+			fileNotWritable.shorten(1);
+			fail();
+		} catch (FileNotWritableException e) {
+			assertSame(fileNotWritable, e.getFile());
+		}
+		assertEquals(100,fileNotWritable.getSize());
+		assertNull(fileNotWritable.getModificationTime());
+	}
+
+	@Test
+	public void testChangeName_ModificationTime() {
+		file.enlarge(1);
+		Date sizeChange = file.getModificationTime();
+		file.changeName("other.txt");
+		assertEquals("other.txt",file.getName());
+		assertFalse(file.getModificationTime().before(sizeChange));
+		fileNotWritable.setWritable(true);
+		fileNotWritable.changeName("other.txt");
+		assertEquals("other.txt",fileNotWritable.getName());
+	}
+
+	@Test
+	public void testEnlarge_ConcurrentWriters() throws Exception {
+		int nbThreads = 8, nbChanges = 100000;
+		// the file is large enough for all shortenings to happen before any enlargement
+		ConcurrentFile file = new ConcurrentFile("bestand.txt", 100 + (nbThreads / 2) * nbChanges, true);
+		ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> writers = new ArrayList<Future<?>>();
+		for (int t = 0; t < nbThreads; t++) {
+			boolean enlarging = (t % 2 == 0);
+			writers.add(executor.submit(() -> {
+				start.await();
+				for (int i = 0; i < nbChanges; i++) {
+					if (enlarging)
+						file.enlarge(3);
+					else
+						file.shorten(1);
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> writer : writers)
+			writer.get();
+		executor.shutdown();
+		assertEquals(100 + (nbThreads / 2) * nbChanges * 3, file.getSize());
+	}
+
+	@Test
+	public void testEnlarge_BeyondMaximumSize() {
+		ConcurrentFile largeFile = new ConcurrentFile("groot.txt", File.getMaximumSize() - 1, true);
+		largeFile.enlarge(1);
+		try {
+			largeFile.enlarge(1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals(File.getMaximumSize(), largeFile.getSize());
+		}
+	}
+
+	@Test
+	public void testShorten_BelowZero() {
+		try {
+			file.shorten(101);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals(100, file.getSize());
+			assertNull(file.getModificationTime());
+		}
+	}
+
+	@Test
+	public void testShorten_ConcurrentWriters() throws Exception {
+		int nbThreads = 8;
+		ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Integer>> writers = new ArrayList<Future<Integer>>();
+		for (int t = 0; t < nbThreads; t++)
+			writers.add(executor.submit(() -> {
+				start.await();
+				int nbAccepted = 0;
+				for (int i = 0; i < 1000; i++)
+					try {
+						file.shorten(1);
+						nbAccepted++;
+					} catch (IllegalArgumentException e) {
+						// the size has reached zero
+					}
+				return nbAccepted;
+			}));
+		start.countDown();
+		int nbAccepted = 0;
+		for (Future<Integer> writer : writers)
+			nbAccepted += writer.get();
+		executor.shutdown();
+		assertEquals(100, nbAccepted);
+		assertEquals(0, file.getSize());
+		assertTrue(File.isValidSize(file.getSize()));
+	}
+
+	@Test
+	public void testInheritedState() {
+		File asFile = file;
+		file.enlarge(5);
+		assertEquals(105, asFile.getSize());
+		assertEquals(file.getModificationTime(), asFile.getModificationTime());
+		asFile.setWritable(false);
+		assertFalse(file.isWritable());
+		try {
+			asFile.shorten(1);
+			fail();
+		} catch (FileNotWritableException e) {
+			assertEquals(105, file.getSize());
+		}
+	}
+
+}
@@ -2,6 +2,8 @@ package model;
 
 import be.kuleuven.cs.som.annotate.*;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.Date;
 
 /**
@@ -184,7 +186,7 @@ public class File {
     /**
      * Variable registering the size of this file (in bytes).
      */
-    private int size = 0;
+    private volatile int size = 0;
     
     /**
      * Variable registering the maximum size of any file (in bytes).
@@ -214,6 +216,28 @@ public class File {
     private void setSize(int size) {
         this.size = size;
     }
+
+    /**
+     * Set the size of this file to the given size, if its size is still
+     * the given expected size.
+     *
+     * @param  expected
+     *         The size this file must have.
+     * @param  size
+     *         The new size for this file.
+     * @pre    The given size must be legal.
+     *         | isValidSize(size)
+     * @return True if and only if this file had the expected size.
+     *         | result == (getSize() == expected)
+     * @post   If this file had the expected size, the given size is
+     *         registered as the size of this file, in a single atomic step.
+     *         | if (getSize() == expected)
+     *         |   then new.getSize() == size
+     */
+    @Raw @Model
+    protected final boolean compareAndSetSize(int expected, int size) {
+        return SIZE.compareAndSet(this, expected, size);
+    }
    
     /**
      * Return the maximum file size.
@@ -337,7 +361,7 @@ public class File {
      * Variable referencing the time of the last modification,
      * possibly null.
      */
-    private Date modificationTime = null;
+    private volatile Date modificationTime = null;
    
     /**
      * Return the time at which this file was last modified, that is
@@ -382,10 +406,32 @@ public class File {
      *         |                    (new System).currentTimeMillis())
      */
     @Model 
-    private void setModificationTime() {
+    protected void setModificationTime() {
         modificationTime = new Date();
     }
 
+    /**
+     * Set the modification time of this file to the given time, if its
+     * modification time is still the given expected time.
+     *
+     * @param  expected
+     *         The modification time this file must have.
+     * @param  time
+     *         The new modification time for this file.
+     * @pre    This file can have the given time as its modification time.
+     *         | canHaveAsModificationTime(time)
+     * @return True if and only if this file had the expected modification time.
+     *         | result == (getModificationTime() == expected)
+     * @post   If this file had the expected modification time, the given time
+     *         is registered as its modification time, in a single atomic step.
+     *         | if (getModificationTime() == expected)
+     *         |   then new.getModificationTime() == time
+     */
+    @Model
+    protected final boolean compareAndSetModificationTime(Date expected, Date time) {
+        return MODIFICATION_TIME.compareAndSet(this, expected, time);
+    }
+
     /**
      * Return whether this file and the given other file have an
      * overlapping use period.
@@ -426,7 +472,7 @@ public class File {
     /**
      * Variable registering whether or not this file is writable.
      */
-    private boolean isWritable = true;
+    private volatile boolean isWritable = true;
     
     /**
      * Check whether this file is writable.
@@ -449,5 +495,31 @@ public class File {
     public void setWritable(boolean isWritable) {
         this.isWritable = isWritable;
     }
+
+
+
+    /**********************************************************
+     * atomic updates
+     **********************************************************/
+
+    /**
+     * Variable referencing the handle on the size of files.
+     */
+    private static final VarHandle SIZE;
+
+    /**
+     * Variable referencing the handle on the modification time of files.
+     */
+    private static final VarHandle MODIFICATION_TIME;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            SIZE = lookup.findVarHandle(File.class, "size", int.class);
+            MODIFICATION_TIME = lookup.findVarHandle(File.class, "modificationTime", Date.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
     
 }
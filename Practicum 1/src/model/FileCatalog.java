@@ -0,0 +1,569 @@
+package model;
+
+import be.kuleuven.cs.som.annotate.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A class of catalogs of files, indexed by name, size and creation time.
+ *
+ * @invar	The number of shards of each catalog is a power of two.
+ * 			| isValidNbShards(getNbShards())
+ *
+ * @note	Several files may have the same name. The files are spread by the hash of their name
+ * 			over shards, each guarded by its own lock, so lookups and changes of files with
+ * 			different names rarely wait for each other.
+ * @note	Files have no way of telling the catalog that they have changed. While a file is
+ * 			registered in a catalog, its name, size and writability must therefore be changed
+ * 			through the catalog, which keeps its indices and counters up to date incrementally.
+ * @note	All methods can be invoked by several threads at the same time. Changes of the same
+ * 			file are applied one at a time.
+ *
+ * @version 3.4
+ */
+public class FileCatalog {
+
+    /**********************************************************
+     * Constructors
+     **********************************************************/
+
+	/**
+	 * Initialize a new empty catalog with the given number of shards.
+	 *
+	 * @param	nbShards
+	 * 			The number of shards of the new catalog.
+	 * @post	The new catalog has the given number of shards.
+	 * 			| new.getNbShards() == nbShards
+	 * @post	The new catalog is empty.
+	 * 			| new.getNbFiles() == 0
+	 * @throws	IllegalArgumentException
+	 * 			The given number of shards is not valid.
+	 * 			| !isValidNbShards(nbShards)
+	 */
+	public FileCatalog(int nbShards) throws IllegalArgumentException {
+		if (!isValidNbShards(nbShards))
+			throw new IllegalArgumentException("The number of shards must be a positive power of two.");
+		shards = new Shard[nbShards];
+		for (int i = 0; i < nbShards; i++)
+			shards[i] = new Shard();
+	}
+
+	/**
+	 * Initialize a new empty catalog with 64 shards.
+	 *
+	 * @effect	| this(64)
+	 */
+	public FileCatalog() {
+		this(64);
+	}
+
+
+
+    /**********************************************************
+     * shards
+     **********************************************************/
+
+	/**
+	 * A class of shards, registering the files with the names that hash to them.
+	 */
+	private static final class Shard {
+
+		private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+		private final Map<String, List<File>> filesByName = new HashMap<String, List<File>>();
+
+		private void add(String name, File file) {
+			filesByName.computeIfAbsent(name, key -> new ArrayList<File>(1)).add(file);
+		}
+
+		private void remove(String name, File file) {
+			List<File> files = filesByName.get(name);
+			files.remove(file);
+			if (files.isEmpty())
+				filesByName.remove(name);
+		}
+
+	}
+
+	/**
+	 * Variable referencing the shards of this catalog.
+	 */
+	private final Shard[] shards;
+
+	/**
+	 * Return the number of shards of this catalog.
+	 */
+	@Basic @Immutable
+	public int getNbShards() {
+		return shards.length;
+	}
+
+	/**
+	 * Check whether the given number of shards is valid for a catalog.
+	 *
+	 * @param	nbShards
+	 * 			The number of shards to check.
+	 * @return	True if and only if the given number is a positive power of two.
+	 * 			| result == (nbShards > 0 && Integer.bitCount(nbShards) == 1)
+	 */
+	public static boolean isValidNbShards(int nbShards) {
+		return nbShards > 0 && Integer.bitCount(nbShards) == 1;
+	}
+
+	/**
+	 * Return the index of the shard of files with the given name.
+	 */
+	@Model
+	private int getShardIndex(String name) {
+		int hash = (name == null) ? 0 : name.hashCode();
+		return (hash ^ (hash >>> 16)) & (shards.length - 1);
+	}
+
+
+
+    /**********************************************************
+     * entries
+     **********************************************************/
+
+	/**
+	 * A class of entries registering a file of this catalog under a sequence number,
+	 * which orders files with the same size or creation time.
+	 *
+	 * @note	An entry registers the size and creation time under which its file is indexed,
+	 * 			so the file is always unregistered under the keys it was registered with.
+	 */
+	private static final class Entry {
+
+		private Entry(File file, long id) {
+			this.file = file;
+			this.id = id;
+			this.indexedSize = file.getSize();
+			this.indexedCreationTime = file.getCreationTime().getTime();
+		}
+
+		private final File file;
+
+		private final long id;
+
+		/**
+		 * The size under which the file of this entry is indexed. Guarded by this entry.
+		 */
+		private int indexedSize;
+
+		/**
+		 * The creation time under which the file of this entry is indexed.
+		 */
+		private final long indexedCreationTime;
+
+		/**
+		 * Whether the file of this entry is still registered. Guarded by this entry.
+		 */
+		private boolean isRegistered = true;
+
+	}
+
+	/**
+	 * A class of keys in the indices of a catalog, ordered by value and then by sequence number.
+	 */
+	private record Key(long value, long id) implements Comparable<Key> {
+
+		@Override
+		public int compareTo(Key other) {
+			int result = Long.compare(value, other.value);
+			return (result != 0) ? result : Long.compare(id, other.id);
+		}
+
+	}
+
+	/**
+	 * Variable referencing the entries of the files in this catalog.
+	 *
+	 * @note	Files do not redefine equals, so they are looked up by identity.
+	 */
+	private final ConcurrentMap<File, Entry> entries = new ConcurrentHashMap<File, Entry>();
+
+	/**
+	 * Variable registering the sequence number of the next file added to this catalog.
+	 */
+	private final AtomicLong nextId = new AtomicLong();
+
+	/**
+	 * Variable referencing the files in this catalog by size.
+	 */
+	private final ConcurrentNavigableMap<Key, File> filesBySize = new ConcurrentSkipListMap<Key, File>();
+
+	/**
+	 * Variable referencing the files in this catalog by creation time.
+	 */
+	private final ConcurrentNavigableMap<Key, File> filesByCreationTime = new ConcurrentSkipListMap<Key, File>();
+
+	/**
+	 * Return the entry of the given file in this catalog.
+	 *
+	 * @throws	IllegalArgumentException
+	 * 			The given file is not registered in this catalog.
+	 * 			| !hasAsFile(file)
+	 */
+	@Model
+	private Entry getEntry(File file) throws IllegalArgumentException {
+		Entry entry = (file == null) ? null : entries.get(file);
+		if (entry == null)
+			throw new IllegalArgumentException("The file is not registered in this catalog.");
+		return entry;
+	}
+
+
+
+    /**********************************************************
+     * files
+     **********************************************************/
+
+	/**
+	 * Return the number of files registered in this catalog.
+	 */
+	@Basic
+	public int getNbFiles() {
+		return entries.size();
+	}
+
+	/**
+	 * Check whether the given file is registered in this catalog.
+	 *
+	 * @param	file
+	 * 			The file to check.
+	 */
+	@Basic
+	public boolean hasAsFile(File file) {
+		return file != null && entries.containsKey(file);
+	}
+
+	/**
+	 * Register the given file in this catalog.
+	 *
+	 * @param	file
+	 * 			The file to register.
+	 * @post	The given file is registered in this catalog.
+	 * 			| new.hasAsFile(file)
+	 * @post	The size and writability of the given file are counted.
+	 * 			| new.getTotalSize() == getTotalSize() + file.getSize() &&
+	 * 			| new.getNbWritableFiles() == getNbWritableFiles() + (file.isWritable() ? 1 : 0)
+	 * @throws	IllegalArgumentException
+	 * 			The given file is not effective or is already registered in this catalog.
+	 * 			| file == null || hasAsFile(file)
+	 */
+	public void addFile(File file) throws IllegalArgumentException {
+		if (file == null)
+			throw new IllegalArgumentException("The file must be effective.");
+		Entry entry = new Entry(file, nextId.getAndIncrement());
+		synchronized (entry) {
+			if (entries.putIfAbsent(file, entry) != null)
+				throw new IllegalArgumentException("The file is already registered in this catalog.");
+			Shard shard = shards[getShardIndex(file.getName())];
+			shard.lock.writeLock().lock();
+			try {
+				shard.add(file.getName(), file);
+			} finally {
+				shard.lock.writeLock().unlock();
+			}
+			filesBySize.put(new Key(entry.indexedSize, entry.id), file);
+			filesByCreationTime.put(new Key(entry.indexedCreationTime, entry.id), file);
+			totalSize.add(entry.indexedSize);
+			if (file.isWritable())
+				nbWritableFiles.increment();
+		}
+	}
+
+	/**
+	 * Unregister the given file from this catalog.
+	 *
+	 * @param	file
+	 * 			The file to unregister.
+	 * @post	The given file is no longer registered in this catalog.
+	 * 			| !new.hasAsFile(file)
+	 * @post	The size and writability of the given file are no longer counted.
+	 * 			| new.getTotalSize() == getTotalSize() - file.getSize() &&
+	 * 			| new.getNbWritableFiles() == getNbWritableFiles() - (file.isWritable() ? 1 : 0)
+	 * @throws	IllegalArgumentException
+	 * 			The given file is not registered in this catalog.
+	 * 			| !hasAsFile(file)
+	 */
+	public void removeFile(File file) throws IllegalArgumentException {
+		Entry entry = getEntry(file);
+		synchronized (entry) {
+			if (!entry.isRegistered)
+				throw new IllegalArgumentException("The file is not registered in this catalog.");
+			entry.isRegistered = false;
+			Shard shard = shards[getShardIndex(file.getName())];
+			shard.lock.writeLock().lock();
+			try {
+				shard.remove(file.getName(), file);
+			} finally {
+				shard.lock.writeLock().unlock();
+			}
+			filesBySize.remove(new Key(entry.indexedSize, entry.id));
+			filesByCreationTime.remove(new Key(entry.indexedCreationTime, entry.id));
+			totalSize.add(-entry.indexedSize);
+			if (file.isWritable())
+				nbWritableFiles.decrement();
+			entries.remove(file);
+		}
+	}
+
+
+
+    /**********************************************************
+     * lookups
+     **********************************************************/
+
+	/**
+	 * Return the files in this catalog with the given name.
+	 *
+	 * @param	name
+	 * 			The name to look up.
+	 * @return	The files registered in this catalog with the given name.
+	 * 			| for each file in File:
+	 * 			|	result.contains(file) == (hasAsFile(file) && file.getName().equals(name))
+	 */
+	public List<File> getFiles(String name) {
+		Shard shard = shards[getShardIndex(name)];
+		shard.lock.readLock().lock();
+		try {
+			List<File> files = shard.filesByName.get(name);
+			return (files == null) ? new ArrayList<File>() : new ArrayList<File>(files);
+		} finally {
+			shard.lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Return the files in this catalog with a size in the given range, by ascending size.
+	 *
+	 * @param	minimum
+	 * 			The smallest size of the range.
+	 * @param	maximum
+	 * 			The largest size of the range.
+	 * @return	The files registered in this catalog of which the size is at least the given
+	 * 			minimum and at most the given maximum.
+	 * 			| for each file in File:
+	 * 			|	result.contains(file) == (hasAsFile(file) &&
+	 * 			|		minimum <= file.getSize() && file.getSize() <= maximum)
+	 */
+	public List<File> getFilesWithSizeBetween(int minimum, int maximum) {
+		if (minimum > maximum)
+			return new ArrayList<File>();
+		return new ArrayList<File>(filesBySize.subMap(new Key(minimum, Long.MIN_VALUE), true,
+				new Key(maximum, Long.MAX_VALUE), true).values());
+	}
+
+	/**
+	 * Return the files in this catalog created in the given period, by ascending creation time.
+	 *
+	 * @param	from
+	 * 			The start of the period.
+	 * @param	to
+	 * 			The end of the period.
+	 * @return	The files registered in this catalog that are created at or after the given start
+	 * 			and at or before the given end.
+	 * 			| for each file in File:
+	 * 			|	result.contains(file) == (hasAsFile(file) &&
+	 * 			|		!file.getCreationTime().before(from) && !file.getCreationTime().after(to))
+	 * @throws	IllegalArgumentException
+	 * 			The start or end of the period is not effective.
+	 * 			| from == null || to == null
+	 */
+	public List<File> getFilesCreatedBetween(Date from, Date to) throws IllegalArgumentException {
+		if (from == null || to == null)
+			throw new IllegalArgumentException("The period must be effective.");
+		if (from.after(to))
+			return new ArrayList<File>();
+		return new ArrayList<File>(filesByCreationTime.subMap(new Key(from.getTime(), Long.MIN_VALUE), true,
+				new Key(to.getTime(), Long.MAX_VALUE), true).values());
+	}
+
+
+
+    /**********************************************************
+     * changes
+     **********************************************************/
+
+	/**
+	 * Change the name of the given file to the given name, and register it under its new name.
+	 *
+	 * @param	file
+	 * 			The file to rename.
+	 * @param	name
+	 * 			The new name of the file.
+	 * @effect	The name of the given file is changed.
+	 * 			| file.changeName(name)
+	 * @post	The given file is looked up by its new name, and no longer by its old name.
+	 * @throws	IllegalArgumentException
+	 * 			The given file is not registered in this catalog.
+	 * 			| !hasAsFile(file)
+	 *
+	 * @note	The shards of the old and the new name are locked together, in the order of their index.
+	 * 			No lookup can find the file under both names, or under neither of them.
+	 */
+	public void changeName(File file, String name) throws IllegalArgumentException, FileNotWritableException {
+		Entry entry = getEntry(file);
+		synchronized (entry) {
+			if (!entry.isRegistered)
+				throw new IllegalArgumentException("The file is not registered in this catalog.");
+			String oldName = file.getName();
+			int from = getShardIndex(oldName), to = getShardIndex(name);
+			Shard first = shards[Math.min(from, to)], second = shards[Math.max(from, to)];
+			first.lock.writeLock().lock();
+			second.lock.writeLock().lock();
+			try {
+				file.changeName(name);
+				if (!file.getName().equals(oldName)) {
+					shards[from].remove(oldName, file);
+					shards[to].add(file.getName(), file);
+				}
+			} finally {
+				second.lock.writeLock().unlock();
+				first.lock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Increase the size of the given file with the given delta.
+	 *
+	 * @param	file
+	 * 			The file to enlarge.
+	 * @param	delta
+	 * 			The amount of bytes by which the size of the file must be increased.
+	 * @pre		The given delta must be strictly positive.
+	 * 			| delta > 0
+	 * @effect	The size of the given file is increased with the given delta.
+	 * 			| resize(file, delta)
+	 */
+	public void enlarge(File file, int delta) throws IllegalArgumentException, FileNotWritableException {
+		resize(file, delta);
+	}
+
+	/**
+	 * Decrease the size of the given file with the given delta.
+	 *
+	 * @param	file
+	 * 			The file to shorten.
+	 * @param	delta
+	 * 			The amount of bytes by which the size of the file must be decreased.
+	 * @pre		The given delta must be strictly positive.
+	 * 			| delta > 0
+	 * @effect	The size of the given file is decreased with the given delta.
+	 * 			| resize(file, -delta)
+	 */
+	public void shorten(File file, int delta) throws IllegalArgumentException, FileNotWritableException {
+		resize(file, -delta);
+	}
+
+	/**
+	 * Change the size of the given file with the given delta.
+	 *
+	 * @param	file
+	 * 			The file to resize.
+	 * @param	delta
+	 * 			The amount of bytes by which the size of the file must be increased or decreased.
+	 * @effect	If the given delta is not zero, the size of the given file is changed with the given delta.
+	 * 			| if (delta > 0) then file.enlarge(delta) 
+	 * 			| else if (delta < 0) then file.shorten(-delta)
+	 * @post	The total size of this catalog is changed with the given delta.
+	 * 			| new.getTotalSize() == getTotalSize() + delta
+	 * @throws	IllegalArgumentException
+	 * 			The given file is not registered in this catalog.
+	 * 			| !hasAsFile(file)
+	 *
+	 * @note	A delta of zero leaves the file and this catalog untouched. In particular, it does not
+	 * 			change the modification time of the file.
+	 */
+	@Model
+	private void resize(File file, int delta) throws IllegalArgumentException, FileNotWritableException {
+		Entry entry = getEntry(file);
+		synchronized (entry) {
+			if (!entry.isRegistered)
+				throw new IllegalArgumentException("The file is not registered in this catalog.");
+			if (delta == 0)
+				return;
+			if (delta > 0)
+				file.enlarge(delta);
+			else
+				file.shorten(-delta);
+			int newSize = file.getSize();
+			filesBySize.remove(new Key(entry.indexedSize, entry.id));
+			filesBySize.put(new Key(newSize, entry.id), file);
+			totalSize.add((long) newSize - entry.indexedSize);
+			entry.indexedSize = newSize;
+		}
+	}
+
+	/**
+	 * Set the writability of the given file to the given writability.
+	 *
+	 * @param	file
+	 * 			The file to change.
+	 * @param	isWritable
+	 * 			The new writability.
+	 * @effect	The writability of the given file is set to the given writability.
+	 * 			| file.setWritable(isWritable)
+	 * @throws	IllegalArgumentException
+	 * 			The given file is not registered in this catalog.
+	 * 			| !hasAsFile(file)
+	 */
+	public void setWritable(File file, boolean isWritable) throws IllegalArgumentException {
+		Entry entry = getEntry(file);
+		synchronized (entry) {
+			if (!entry.isRegistered)
+				throw new IllegalArgumentException("The file is not registered in this catalog.");
+			if (file.isWritable() != isWritable) {
+				file.setWritable(isWritable);
+				if (isWritable)
+					nbWritableFiles.increment();
+				else
+					nbWritableFiles.decrement();
+			}
+		}
+	}
+
+
+
+    /**********************************************************
+     * aggregates
+     **********************************************************/
+
+	/**
+	 * Variable registering the sum of the sizes of the files in this catalog.
+	 */
+	private final LongAdder totalSize = new LongAdder();
+
+	/**
+	 * Variable registering the number of writable files in this catalog.
+	 */
+	private final LongAdder nbWritableFiles = new LongAdder();
+
+	/**
+	 * Return the sum of the sizes of the files in this catalog.
+	 *
+	 * @return	| result == sum({file in File | hasAsFile(file) : file.getSize()})
+	 *
+	 * @note	While files are changed, the result may combine the sizes before and after these changes.
+	 */
+	public long getTotalSize() {
+		return totalSize.sum();
+	}
+
+	/**
+	 * Return the number of writable files in this catalog.
+	 *
+	 * @return	| result == card({file in File | hasAsFile(file) && file.isWritable()})
+	 */
+	public long getNbWritableFiles() {
+		return nbWritableFiles.sum();
+	}
+
+}
@@ -0,0 +1,184 @@
+package model;
+
+import static org.junit.Assert.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.*;
+
+/**
+ * A JUnit 4 test class for testing the public methods of the FileCatalog Class
+ *
+ */
+public class FileCatalogTest {
+
+	FileCatalog catalog;
+	File fileSmall, fileMedium, fileLarge, fileNotWritable;
+	Date timeBetween;
+
+	@Before
+	public void setUpFixture() throws InterruptedException {
+		catalog = new FileCatalog(4);
+		fileSmall = new File("bestand.txt",10,true);
+		fileMedium = new File("bestand.txt",100,true);
+		Thread.sleep(5);
+		timeBetween = new Date();
+		Thread.sleep(5);
+		fileLarge = new File("groot.txt",1000,true);
+		fileNotWritable = new File("vast.txt",100,false);
+		for (File file : List.of(fileSmall, fileMedium, fileLarge, fileNotWritable))
+			catalog.addFile(file);
+	}
+
+	@Test
+	public void testAddFile_LegalCase() {
+		assertEquals(4,catalog.getNbFiles());
+		assertTrue(catalog.hasAsFile(fileLarge));
+		assertFalse(catalog.hasAsFile(new File("groot.txt")));
+		assertEquals(1210,catalog.getTotalSize());
+		assertEquals(3,catalog.getNbWritableFiles());
+	}
+
+	@Test
+	public void testGetFiles_SameName() {
+		assertEquals(Set.of(fileSmall, fileMedium), new HashSet<File>(catalog.getFiles("bestand.txt")));
+		assertEquals(List.of(fileLarge), catalog.getFiles("groot.txt"));
+		assertTrue(catalog.getFiles("onbekend.txt").isEmpty());
+		assertTrue(catalog.getFiles(null).isEmpty());
+	}
+
+	@Test
+	public void testChangeName_LegalCase() {
+		catalog.changeName(fileSmall,"klein.txt");
+		assertEquals("klein.txt",fileSmall.getName());
+		assertEquals(List.of(fileSmall), catalog.getFiles("klein.txt"));
+		assertEquals(List.of(fileMedium), catalog.getFiles("bestand.txt"));
+		// invalid names are ignored, as by the file itself
+		catalog.changeName(fileSmall,"$ongeldig$");
+		assertEquals(List.of(fileSmall), catalog.getFiles("klein.txt"));
+	}
+
+	@Test
+	public void testChangeName_FileNotWritable() {
+		try {
+			catalog.changeName(fileNotWritable,"ander.txt");
+			fail();
+		} catch (FileNotWritableException e) {
+			assertSame(fileNotWritable,e.getFile());
+		}
+		assertEquals(List.of(fileNotWritable), catalog.getFiles("vast.txt"));
+		assertTrue(catalog.getFiles("ander.txt").isEmpty());
+	}
+
+	@Test
+	public void testGetFilesWithSizeBetween() {
+		assertEquals(List.of(fileSmall), catalog.getFilesWithSizeBetween(0,99));
+		assertEquals(Set.of(fileMedium, fileNotWritable), new HashSet<File>(catalog.getFilesWithSizeBetween(100,100)));
+		assertEquals(4, catalog.getFilesWithSizeBetween(0,File.getMaximumSize()).size());
+		assertTrue(catalog.getFilesWithSizeBetween(100,10).isEmpty());
+		catalog.enlarge(fileSmall,990);
+		catalog.shorten(fileLarge,1);
+		assertEquals(List.of(fileLarge, fileSmall), catalog.getFilesWithSizeBetween(500,1000));
+		assertEquals(2199,catalog.getTotalSize());
+	}
+
+	@Test
+	public void testGetFilesCreatedBetween() {
+		assertEquals(Set.of(fileSmall, fileMedium), new HashSet<File>(catalog.getFilesCreatedBetween(new Date(0),timeBetween)));
+		assertEquals(Set.of(fileLarge, fileNotWritable), new HashSet<File>(catalog.getFilesCreatedBetween(timeBetween,new Date())));
+		assertTrue(catalog.getFilesCreatedBetween(new Date(),timeBetween).isEmpty());
+	}
+
+	@Test
+	public void testSetWritable_Counted() {
+		catalog.setWritable(fileNotWritable,true);
+		catalog.setWritable(fileNotWritable,true);
+		assertTrue(fileNotWritable.isWritable());
+		assertEquals(4,catalog.getNbWritableFiles());
+		catalog.setWritable(fileSmall,false);
+		assertEquals(3,catalog.getNbWritableFiles());
+	}
+
+	@Test (expected = FileNotWritableException.class)
+	public void testEnlarge_FileNotWritable() {
+		catalog.enlarge(fileNotWritable,1);
+	}
+
+	@Test
+	public void testRemoveFile_LegalCase() {
+		catalog.removeFile(fileMedium);
+		assertFalse(catalog.hasAsFile(fileMedium));
+		assertEquals(List.of(fileSmall), catalog.getFiles("bestand.txt"));
+		assertEquals(List.of(fileNotWritable), catalog.getFilesWithSizeBetween(100,100));
+		assertEquals(1110,catalog.getTotalSize());
+		assertEquals(2,catalog.getNbWritableFiles());
+		assertEquals(3,catalog.getNbFiles());
+	}
+
+	@Test
+	public void testRemoveFile_ResizedOutsideCatalog() {
+		fileMedium.enlarge(50);
+		catalog.removeFile(fileMedium);
+		assertFalse(catalog.getFilesWithSizeBetween(0,File.getMaximumSize()).contains(fileMedium));
+		assertEquals(List.of(fileNotWritable), catalog.getFilesWithSizeBetween(100,150));
+		assertEquals(1110,catalog.getTotalSize());
+	}
+
+	@Test
+	public void testEnlarge_ZeroDelta() {
+		Date modificationTime = fileSmall.getModificationTime();
+		catalog.enlarge(fileSmall,0);
+		assertEquals(10,fileSmall.getSize());
+		assertEquals(modificationTime,fileSmall.getModificationTime());
+		assertEquals(List.of(fileSmall), catalog.getFilesWithSizeBetween(0,99));
+		assertEquals(1210,catalog.getTotalSize());
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testAddFile_AlreadyRegistered() {
+		catalog.addFile(fileSmall);
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testRemoveFile_NotRegistered() {
+		catalog.removeFile(new File("bestand.txt"));
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testConstructor_IllegalNbShards() {
+		new FileCatalog(3);
+	}
+
+	@Test
+	public void testConcurrentChanges() throws Exception {
+		int nbThreads = 4, nbChanges = 2000;
+		List<File> files = new ArrayList<File>();
+		for (int i = 0; i < nbThreads; i++) {
+			files.add(new File("file" + i + ".txt"));
+			catalog.addFile(files.get(i));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(nbThreads);
+		List<Future<?>> workers = new ArrayList<Future<?>>();
+		for (int t = 0; t < nbThreads; t++) {
+			int thread = t;
+			workers.add(executor.submit(() -> {
+				for (int i = 0; i < nbChanges; i++) {
+					// every thread renames its own file and enlarges all files
+					catalog.changeName(files.get(thread), "file" + thread + "_" + (i % 7) + ".txt");
+					catalog.enlarge(files.get(i % nbThreads), 1);
+				}
+				return null;
+			}));
+		}
+		for (Future<?> worker : workers)
+			worker.get();
+		executor.shutdown();
+		assertEquals(1210 + nbThreads * nbChanges, catalog.getTotalSize());
+		for (File file : files) {
+			assertEquals(List.of(file), catalog.getFiles(file.getName()));
+			assertEquals(nbChanges, file.getSize());
+		}
+		assertEquals(nbThreads, catalog.getFilesWithSizeBetween(nbChanges, nbChanges).size());
+	}
+
+}
@@ -0,0 +1,284 @@
+package model;
+
+import be.kuleuven.cs.som.annotate.*;
+
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * A class of sweeps over the use periods of collections of files.
+ *
+ * The use period of a file ranges from its creation time to its modification time.
+ * Two files have an overlapping use period if and only if both of them have been
+ * modified and each of them was created at or before the modification time of the other.
+ * This is the overlap checked by hasOverlappingUsePeriod(File) of the class File.
+ *
+ * @note	The files are sorted once by creation time. For each file, the files created
+ * 			after it that overlap with it are then exactly the files created up to its
+ * 			modification time, a consecutive range that is found by a binary search.
+ * 			All overlapping pairs are found in O(n log n + k) time, with k the number of pairs,
+ * 			instead of comparing each pair of files.
+ * @note	The times of the files are read at the start of each sweep. Files that are
+ * 			changed while they are swept are reported with their times at that moment.
+ *
+ * @version 3.4
+ */
+public final class UsePeriods {
+
+	/**
+	 * This class has no instances.
+	 */
+	private UsePeriods() {
+	}
+
+
+
+	/**********************************************************
+	 * overlapping pairs
+	 **********************************************************/
+
+	/**
+	 * A class of pairs of files with an overlapping use period.
+	 *
+	 * @param	first
+	 * 			The file of the pair that was created first.
+	 * @param	second
+	 * 			The other file of the pair.
+	 */
+	public record Overlap(File first, File second) {}
+
+	/**
+	 * Return all pairs of the given files that have an overlapping use period.
+	 *
+	 * @param	files
+	 * 			The files to sweep.
+	 * @return	Each pair of files in the given collection that have an overlapping use period,
+	 * 			exactly once, with the file that was created first as the first file of the pair.
+	 * 			| for each first, second in files:
+	 * 			|	first.hasOverlappingUsePeriod(second) ==
+	 * 			|		result.contains(new Overlap(first, second)) || result.contains(new Overlap(second, first))
+	 * @return	The pairs are ordered by the creation time of their first file,
+	 * 			and then by the creation time of their second file.
+	 * @throws	IllegalArgumentException
+	 * 			The given collection is not effective or contains a non-effective file.
+	 * 			| files == null || files.contains(null)
+	 */
+	public static List<Overlap> getOverlappingPairs(Collection<File> files) throws IllegalArgumentException {
+		Sweep sweep = new Sweep(files, false);
+		List<Overlap> result = new ArrayList<Overlap>();
+		for (int i = 0; i < sweep.getNbFiles(); i++)
+			sweep.addOverlapsOf(i, result);
+		return result;
+	}
+
+	/**
+	 * Return all pairs of the given files that have an overlapping use period,
+	 * sweeping the files in parallel.
+	 *
+	 * @param	files
+	 * 			The files to sweep.
+	 * @return	The same pairs as getOverlappingPairs(files), in the same order.
+	 * 			| result.equals(getOverlappingPairs(files))
+	 * @throws	IllegalArgumentException
+	 * 			The given collection is not effective or contains a non-effective file.
+	 * 			| files == null || files.contains(null)
+	 *
+	 * @note	The files are sorted in parallel and then split in consecutive chunks,
+	 * 			of which the overlapping pairs are collected independently in the common pool.
+	 * 			This only pays off for large collections of files.
+	 */
+	public static List<Overlap> getOverlappingPairsInParallel(Collection<File> files) throws IllegalArgumentException {
+		Sweep sweep = new Sweep(files, true);
+		int nbChunks = (sweep.getNbFiles() + getChunkSize() - 1) / getChunkSize();
+		return IntStream.range(0, nbChunks).parallel()
+				.mapToObj(chunk -> {
+					List<Overlap> overlaps = new ArrayList<Overlap>();
+					int end = Math.min(sweep.getNbFiles(), (chunk + 1) * getChunkSize());
+					for (int i = chunk * getChunkSize(); i < end; i++)
+						sweep.addOverlapsOf(i, overlaps);
+					return overlaps;
+				})
+				.flatMap(List::stream)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Return the number of consecutive files that are swept by a single task of a parallel sweep.
+	 */
+	@Basic @Immutable
+	private static int getChunkSize() {
+		return 4096;
+	}
+
+
+
+	/**********************************************************
+	 * overlap counts
+	 **********************************************************/
+
+	/**
+	 * Return the number of other files among the given files with which each of the given files
+	 * has an overlapping use period.
+	 *
+	 * @param	files
+	 * 			The files to sweep.
+	 * @return	An array with the number of overlaps of each given file, in the iteration order
+	 * 			of the given collection.
+	 * 			| for each I in 0..files.size()-1:
+	 * 			|	result[I] == card({other in files | other != files.get(I) &&
+	 * 			|							files.get(I).hasOverlappingUsePeriod(other)})
+	 * @throws	IllegalArgumentException
+	 * 			The given collection is not effective or contains a non-effective file.
+	 * 			| files == null || files.contains(null)
+	 *
+	 * @note	The overlaps are counted without enumerating them, in O(n log n) time: a file does
+	 * 			not overlap with the files created after its modification time, nor with the files
+	 * 			modified before its creation time, and no file is both.
+	 */
+	public static int[] getNbOverlaps(Collection<File> files) throws IllegalArgumentException {
+		return getNbOverlaps(files, false);
+	}
+
+	/**
+	 * Return the number of other files among the given files with which each of the given files
+	 * has an overlapping use period, sweeping the files in parallel.
+	 *
+	 * @param	files
+	 * 			The files to sweep.
+	 * @return	The same numbers as getNbOverlaps(files).
+	 * 			| Arrays.equals(result, getNbOverlaps(files))
+	 * @throws	IllegalArgumentException
+	 * 			The given collection is not effective or contains a non-effective file.
+	 * 			| files == null || files.contains(null)
+	 */
+	public static int[] getNbOverlapsInParallel(Collection<File> files) throws IllegalArgumentException {
+		return getNbOverlaps(files, true);
+	}
+
+	/**
+	 * Return the number of overlaps of each of the given files, sweeping them in parallel if requested.
+	 */
+	@Model
+	private static int[] getNbOverlaps(Collection<File> files, boolean parallel) throws IllegalArgumentException {
+		Sweep sweep = new Sweep(files, parallel);
+		long[] modificationTimes = sweep.getSortedModificationTimes(parallel);
+		long[][] periods = new long[files.size()][];
+		int index = 0;
+		for (File file : files)
+			periods[index++] = getUsePeriod(file);
+		IntStream indices = IntStream.range(0, periods.length);
+		if (parallel)
+			indices = indices.parallel();
+		return indices.map(i -> {
+			if (periods[i] == null)
+				return 0;
+			int nbCreatedLater = sweep.getNbFiles() - countAtMost(sweep.creationTimes, periods[i][1]);
+			int nbModifiedEarlier = countAtMost(modificationTimes, periods[i][0] - 1);
+			// the file itself is one of the swept files
+			return sweep.getNbFiles() - nbCreatedLater - nbModifiedEarlier - 1;
+		}).toArray();
+	}
+
+
+
+	/**********************************************************
+	 * sweeps
+	 **********************************************************/
+
+	/**
+	 * Return the use period of the given file as its creation and modification time,
+	 * or null if it has not been modified.
+	 */
+	@Model
+	private static long[] getUsePeriod(File file) throws IllegalArgumentException {
+		if (file == null)
+			throw new IllegalArgumentException("The files must be effective.");
+		Date modificationTime = file.getModificationTime();
+		if (modificationTime == null)
+			return null;
+		return new long[] {file.getCreationTime().getTime(), modificationTime.getTime()};
+	}
+
+	/**
+	 * Return the number of the given sorted times that are at most the given time.
+	 */
+	@Model
+	private static int countAtMost(long[] sortedTimes, long time) {
+		int low = 0, high = sortedTimes.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (sortedTimes[middle] <= time)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * A class registering the modified files of a collection, sorted by creation time.
+	 * Files that have not been modified do not overlap with any file and are left out.
+	 */
+	private static final class Sweep {
+
+		private Sweep(Collection<File> files, boolean parallel) throws IllegalArgumentException {
+			if (files == null)
+				throw new IllegalArgumentException("The collection of files must be effective.");
+			List<File> modified = new ArrayList<File>(files.size());
+			for (File file : files)
+				if (getUsePeriod(file) != null)
+					modified.add(file);
+			this.files = modified.toArray(new File[modified.size()]);
+			// creation times never change, so they can be read while sorting
+			Comparator<File> byCreationTime = Comparator.comparingLong(file -> file.getCreationTime().getTime());
+			if (parallel)
+				Arrays.parallelSort(this.files, byCreationTime);
+			else
+				Arrays.sort(this.files, byCreationTime);
+			this.creationTimes = new long[this.files.length];
+			this.modificationTimes = new long[this.files.length];
+			for (int i = 0; i < this.files.length; i++) {
+				this.creationTimes[i] = this.files[i].getCreationTime().getTime();
+				this.modificationTimes[i] = this.files[i].getModificationTime().getTime();
+			}
+		}
+
+		/**
+		 * The modified files, by creation time, with their creation and modification times.
+		 */
+		private final File[] files;
+		private final long[] creationTimes;
+		private final long[] modificationTimes;
+
+		private int getNbFiles() {
+			return files.length;
+		}
+
+		/**
+		 * Add the overlaps of the file at the given index with the files created after it to the given list.
+		 *
+		 * @note	A file created after the file at the given index overlaps with it if and only if
+		 * 			it was created at or before its modification time: its own modification time
+		 * 			is then at or after the creation time of the file at the given index.
+		 */
+		private void addOverlapsOf(int index, List<Overlap> result) {
+			int end = countAtMost(creationTimes, modificationTimes[index]);
+			for (int other = index + 1; other < end; other++)
+				result.add(new Overlap(files[index], files[other]));
+		}
+
+		/**
+		 * Return the modification times of the swept files, sorted.
+		 */
+		private long[] getSortedModificationTimes(boolean parallel) {
+			long[] result = modificationTimes.clone();
+			if (parallel)
+				Arrays.parallelSort(result);
+			else
+				Arrays.sort(result);
+			return result;
+		}
+
+	}
+
+}
@@ -0,0 +1,111 @@
+package model;
+
+import static org.junit.Assert.*;
+import java.util.*;
+
+import org.junit.*;
+
+/**
+ * A JUnit 4 test class for testing the public methods of the UsePeriods Class
+ *
+ */
+public class UsePeriodsTest {
+
+	/*
+	 * time:   0    1    2    3    4    5    6    7
+	 * fileA   [---------]
+	 * fileB        [--------------]
+	 * fileC                  [---------]
+	 * fileD                                 [----]
+	 * fileE                            (never modified)
+	 */
+	File fileA, fileB, fileC, fileD, fileE;
+	List<File> files;
+
+	private static void sleep() {
+		try {
+			Thread.sleep(5);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Before
+	public void setUpFixture(){
+		fileA = new File("a.txt");
+		sleep();
+		fileB = new File("b.txt");
+		sleep();
+		fileA.enlarge(1);
+		sleep();
+		fileC = new File("c.txt");
+		sleep();
+		fileB.enlarge(1);
+		fileE = new File("e.txt");
+		sleep();
+		fileC.enlarge(1);
+		sleep();
+		fileD = new File("d.txt");
+		sleep();
+		fileD.enlarge(1);
+		files = List.of(fileD, fileC, fileE, fileB, fileA);
+	}
+
+	@Test
+	public void testGetOverlappingPairs_LegalCase() {
+		assertEquals(List.of(new UsePeriods.Overlap(fileA, fileB), new UsePeriods.Overlap(fileB, fileC)),
+				UsePeriods.getOverlappingPairs(files));
+		assertEquals(UsePeriods.getOverlappingPairs(files), UsePeriods.getOverlappingPairsInParallel(files));
+	}
+
+	@Test
+	public void testGetNbOverlaps_LegalCase() {
+		assertArrayEquals(new int[] {0, 1, 0, 2, 1}, UsePeriods.getNbOverlaps(files));
+		assertArrayEquals(new int[] {0, 1, 0, 2, 1}, UsePeriods.getNbOverlapsInParallel(files));
+	}
+
+	@Test
+	public void testSweep_SameAsPairwiseCheck() {
+		List<File> many = new ArrayList<File>();
+		Random random = new Random(42);
+		for (int i = 0; i < 40; i++) {
+			many.add(new File("file" + i + ".txt"));
+			for (File file : many)
+				if (random.nextInt(8) == 0)
+					file.enlarge(1);
+			if (i % 4 == 0)
+				sleep();
+		}
+		Set<UsePeriods.Overlap> expected = new HashSet<UsePeriods.Overlap>();
+		int[] expectedCounts = new int[many.size()];
+		for (int i = 0; i < many.size(); i++)
+			for (int j = 0; j < many.size(); j++)
+				if (i != j && many.get(i).hasOverlappingUsePeriod(many.get(j))) {
+					expectedCounts[i]++;
+					if (i < j)
+						expected.add(new UsePeriods.Overlap(many.get(i), many.get(j)));
+				}
+		List<UsePeriods.Overlap> pairs = UsePeriods.getOverlappingPairsInParallel(many);
+		assertEquals(expected.size(), pairs.size());
+		for (UsePeriods.Overlap pair : pairs)
+			assertTrue(expected.contains(pair) || expected.contains(new UsePeriods.Overlap(pair.second(), pair.first())));
+		assertArrayEquals(expectedCounts, UsePeriods.getNbOverlaps(many));
+	}
+
+	@Test
+	public void testGetOverlappingPairs_NoModifiedFiles() {
+		assertTrue(UsePeriods.getOverlappingPairs(List.of(fileE, new File("f.txt"))).isEmpty());
+		assertTrue(UsePeriods.getOverlappingPairs(List.of()).isEmpty());
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testGetOverlappingPairs_IllegalCase() {
+		UsePeriods.getOverlappingPairs(null);
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testGetNbOverlaps_IllegalCase() {
+		UsePeriods.getNbOverlaps(Arrays.asList(fileA, null));
+	}
+
+}
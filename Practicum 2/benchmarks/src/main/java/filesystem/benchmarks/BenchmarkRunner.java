@@ -0,0 +1,36 @@
+package filesystem.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The entry point of the benchmark jar.
+ *
+ * It accepts the same options as the JMH runner, and always adds the gc profiler,
+ * so the allocation rate is reported next to the score of every benchmark.
+ *
+ * @version	6.0
+ */
+public final class BenchmarkRunner {
+
+	/**
+	 * Prevent the instantiation of this entry point.
+	 */
+	private BenchmarkRunner() {
+	}
+
+	/**
+	 * Run the benchmarks selected by the given JMH options.
+	 */
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+		new Runner(new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+
+}
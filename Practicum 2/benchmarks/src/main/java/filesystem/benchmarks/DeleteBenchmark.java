@@ -0,0 +1,61 @@
+package filesystem.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import filesystem.*;
+
+/**
+ * A class of benchmarks of the recursive deletion of large directories.
+ *
+ * @note	A deletion destroys its fixture, so every measurement deletes a single directory
+ * 			that is built before the iteration. The score is the time of one deletion; the
+ * 			allocation of the deletion is reported per operation by the gc profiler.
+ * @note	At the validation level FULL, every removal scans the directory, so the largest sizes
+ * 			only finish in reasonable time at the validation level TRUSTED.
+ *
+ * @version	6.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx16g"})
+public class DeleteBenchmark {
+
+	@Param({"1000", "100000", "1000000", "10000000"})
+	public int entries;
+
+	@Param({"TRUSTED"})
+	public ValidationLevel validation;
+
+	private Directory root, directory;
+
+	@Setup(Level.Trial)
+	public void setUpRoot() {
+		root = new Directory("root");
+	}
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		Directory.setValidationLevel(ValidationLevel.TRUSTED);
+		directory = new Directory(root, "directory");
+		Fixtures.addFiles(directory, "f", entries);
+		Directory.setValidationLevel(validation);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Directory.setValidationLevel(ValidationLevel.FULL);
+	}
+
+	/**
+	 * Delete a directory with the given number of files recursively.
+	 */
+	@Benchmark
+	public Directory deleteRecursive() {
+		directory.deleteRecursive();
+		return directory;
+	}
+
+}
@@ -0,0 +1,130 @@
+package filesystem.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import filesystem.*;
+
+/**
+ * A class of benchmarks of the operations on large directories.
+ *
+ * The source directory holds the given number of files, f00000000 to fNNNNNNNN.
+ * The target directory holds as many files, g00000000 to gNNNNNNNN.
+ * Every benchmark leaves both directories as it found them.
+ *
+ * @note	The directories are built at the validation level TRUSTED. The benchmarks run at
+ * 			the given validation level. The largest sizes need a large heap, see the fork options.
+ * @note	Run with -p metrics=true,false to measure the cost of recording the file system metrics.
+ *
+ * @version	6.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx16g"})
+public class DirectoryBenchmark {
+
+	@Param({"1000", "100000", "1000000", "10000000"})
+	public int entries;
+
+	@Param({"TRUSTED", "FULL"})
+	public ValidationLevel validation;
+
+	@Param({"false"})
+	public boolean metrics;
+
+	private Directory source, target;
+
+	private File first, middle;
+
+	private String probe;
+
+	private String[] lookups;
+
+	private int nextLookup;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Directory root = new Directory("root");
+		source = new Directory(root, "source");
+		target = new Directory(root, "target");
+		Fixtures.addFiles(source, "f", entries);
+		Fixtures.addFiles(target, "g", entries);
+		first = (File) source.getItemAt(1);
+		middle = (File) source.getItem(Fixtures.getName("f", entries / 2));
+		// the probe is ordered right after the middle file
+		probe = Fixtures.getName("f", entries / 2) + "a";
+		Random random = new Random(42);
+		lookups = new String[1024];
+		for (int i = 0; i < lookups.length; i++)
+			lookups[i] = Fixtures.getName("f", random.nextInt(entries));
+		Directory.setValidationLevel(validation);
+		FileSystemMetrics.getInstance().setEnabled(metrics);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Directory.setValidationLevel(ValidationLevel.FULL);
+		FileSystemMetrics.getInstance().setEnabled(false);
+	}
+
+	/**
+	 * Create a file in the middle of the source directory, and terminate it again.
+	 */
+	@Benchmark
+	public File createFile() {
+		File file = new File(source, probe, Type.TEXT);
+		file.terminate();
+		return file;
+	}
+
+	/**
+	 * Create a directory in the middle of the source directory, and terminate it again.
+	 */
+	@Benchmark
+	public Directory createDirectory() {
+		Directory directory = new Directory(source, probe);
+		directory.terminate();
+		return directory;
+	}
+
+	/**
+	 * Look up a random file of the source directory by its name.
+	 */
+	@Benchmark
+	public DiskItem getItem() {
+		return source.getItem(lookups[nextLookup++ & (lookups.length - 1)]);
+	}
+
+	/**
+	 * Rename the first file of the source directory, which moves it to the end, and rename it back.
+	 */
+	@Benchmark
+	public File changeName() {
+		String name = first.getName();
+		first.changeName("z");
+		first.changeName(name);
+		return first;
+	}
+
+	/**
+	 * Move the middle file of the source directory to the start of the target directory, and back.
+	 */
+	@Benchmark
+	public File move() {
+		middle.move(target);
+		middle.move(source);
+		return middle;
+	}
+
+	/**
+	 * Compute the total disk usage of the source directory.
+	 */
+	@Benchmark
+	public long getTotalDiskUsage() {
+		return source.getTotalDiskUsage();
+	}
+
+}
@@ -0,0 +1,45 @@
+package filesystem.benchmarks;
+
+import filesystem.*;
+
+/**
+ * A class of auxiliary methods that build the file systems on which the benchmarks run.
+ *
+ * @version	6.0
+ */
+final class Fixtures {
+
+	/**
+	 * Prevent the instantiation of this class of auxiliary methods.
+	 */
+	private Fixtures() {
+	}
+
+	/**
+	 * Return the name of the item with the given number and the given prefix.
+	 *
+	 * @note	The numbers are padded with zeros, so the names are ordered like the numbers.
+	 */
+	static String getName(String prefix, int number) {
+		return String.format("%s%08d", prefix, number);
+	}
+
+	/**
+	 * Add the given number of files with the given prefix to the given directory.
+	 *
+	 * @note	The files are added in the order of their names, at the validation level TRUSTED,
+	 * 			so every file is appended at the end of the directory.
+	 * 			The validation level is restored afterwards.
+	 */
+	static void addFiles(Directory directory, String prefix, int nbFiles) {
+		ValidationLevel level = Directory.getValidationLevel();
+		Directory.setValidationLevel(ValidationLevel.TRUSTED);
+		try {
+			for (int i = 0; i < nbFiles; i++)
+				new File(directory, getName(prefix, i), Type.TEXT, i % 1000, true);
+		} finally {
+			Directory.setValidationLevel(level);
+		}
+	}
+
+}
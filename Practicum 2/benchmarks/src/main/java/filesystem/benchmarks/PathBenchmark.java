@@ -0,0 +1,41 @@
+package filesystem.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import filesystem.*;
+
+/**
+ * A class of benchmarks of the absolute paths of deeply nested disk items.
+ *
+ * @version	6.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathBenchmark {
+
+	@Param({"1000"})
+	public int depth;
+
+	private File leaf;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Directory directory = new Directory("root");
+		for (int i = 1; i < depth; i++)
+			directory = new Directory(directory, "d" + i);
+		leaf = new File(directory, "leaf", Type.TEXT);
+	}
+
+	/**
+	 * Return the absolute path of a file at the given depth.
+	 */
+	@Benchmark
+	public String getAbsolutePath() {
+		return leaf.getAbsolutePath();
+	}
+
+}
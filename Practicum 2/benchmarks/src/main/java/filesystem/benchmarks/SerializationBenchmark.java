@@ -0,0 +1,80 @@
+package filesystem.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import filesystem.*;
+
+/**
+ * A class of benchmarks of the serialization of forests with links.
+ *
+ * The forest is a root with directories of 1000 files each. One in ten files is accompanied
+ * by a link to a file in the next directory, so half of the links are forward references.
+ * Divide the number of entries by the score to get the number of items per second.
+ *
+ * @version	6.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx8g"})
+public class SerializationBenchmark {
+
+	@Param({"100000", "1000000"})
+	public int entries;
+
+	private Directory root;
+
+	private byte[] bytes;
+
+	private final ForestSerializer serializer = new ForestSerializer();
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		Directory.setValidationLevel(ValidationLevel.TRUSTED);
+		root = new Directory("root");
+		int nbDirectories = Math.max(1, entries / 1100);
+		Directory[] directories = new Directory[nbDirectories];
+		for (int i = 0; i < nbDirectories; i++) {
+			directories[i] = new Directory(root, Fixtures.getName("d", i));
+			Fixtures.addFiles(directories[i], "f", 1000);
+		}
+		for (int i = 0; i < nbDirectories; i++) {
+			Directory next = directories[(i + 1) % nbDirectories];
+			for (int j = 0; j < 100; j++)
+				new Link(directories[i], Fixtures.getName("l", j), (File) next.getItemAt(10 * j + 1));
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.write(List.of(root), out);
+		bytes = out.toByteArray();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Directory.setValidationLevel(ValidationLevel.FULL);
+	}
+
+	/**
+	 * Write the forest to memory.
+	 */
+	@Benchmark
+	public int write() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+		serializer.write(List.of(root), out);
+		return out.size();
+	}
+
+	/**
+	 * Read the forest from memory.
+	 */
+	@Benchmark
+	public List<Directory> read() throws IOException {
+		return serializer.read(new ByteArrayInputStream(bytes));
+	}
+
+}
@@ -1,5 +1,6 @@
 package filesystem;
 
+import java.util.Date;
 import be.kuleuven.cs.som.annotate.*;
 import filesystem.exception.*;
 
@@ -36,16 +37,50 @@ public abstract class ActualItem extends DiskItem {
 	 * 			(parent, name, creation time, modification time and termination status are set)
 	 * 			| super(parent, name)
 	 * 
-	 * @effect	The writability is set to the given flag
-	 * 			| setWritable(writable)
+	 * @post	The writability is set to the given flag
+	 * 			| new.isWritable() == writable
 	 *
+	 * @note	The writability is registered directly instead of through setWritable(.),
+	 * 			so no listener is notified of a change of writability of an item under construction.
+	 * @note	The superconstructor registers this item in its parent directory before its writability
+	 * 			is initialized. At that point, the field isWritable still has its default value false,
+	 * 			so the parent directory counts this item as read-only until it is corrected here.
 	 */
 	@Model @Raw
 	protected ActualItem(Directory parent, String name, boolean writable) 
 			throws IllegalArgumentException, DiskItemNotWritableException {
 		// the call of a superconstructor is ALWAYS the first operation in a constructor.
 		super(parent, name);		
-		setWritable(writable);
+		this.isWritable = writable;
+		if (writable && !isRoot())
+			getParentDirectory().addToNbReadOnlyItems(-1);
+	}
+
+	/**
+	 * Initialize a new root actual disk item with given name, writability, creation time 
+	 * and modification time.
+	 * 
+	 * @param	name
+	 * 			The name of the new actual disk item.
+	 * @param	writable
+	 * 			The writability of the new actual disk item.
+	 * @param	creationTime
+	 * 			The creation time of the new actual disk item.
+	 * @param	modificationTime
+	 * 			The modification time of the new actual disk item, possibly null.
+	 * @effect	The actual disk item is initialized as a root disk item with the given name,
+	 * 			creation time and modification time.
+	 * 			| super(name, creationTime, modificationTime)
+	 * @post	The writability is set to the given flag
+	 * 			| new.isWritable() == writable
+	 * 
+	 * @note	This constructor is only meant for reloading disk items that have been spilled
+	 * 			to a paged store.
+	 */
+	@Raw
+	ActualItem(String name, boolean writable, Date creationTime, Date modificationTime) {
+		super(name, creationTime, modificationTime);
+		this.isWritable = writable;
 	}
 
 	
@@ -112,13 +147,65 @@ public abstract class ActualItem extends DiskItem {
 	 * @post  The given writability is registered as the new writability
 	 *        for this disk item.
 	 *        | new.isWritable() == isWritable
+	 * @effect The registered listeners are notified of the change.
+	 * @effect If the writability changes and this item is not a root item, the number of read-only
+	 *         items of its parent directory and of all directories it directly or indirectly
+	 *         belongs to is updated.
+	 *         | if (isWritable != isWritable() && !isRoot())
+	 *         | then getParentDirectory().addToNbReadOnlyItems(isWritable ? -1 : 1)
 	 */
 	@Raw 
 	public void setWritable(boolean isWritable) {
+		if (isWritable != this.isWritable && !isRoot())
+			getParentDirectory().addToNbReadOnlyItems(isWritable ? -1 : 1);
 		this.isWritable = isWritable;
+		notifyListeners(listener -> listener.writabilityChanged(this));
 	}
 
-		
+
+	/**********************************************************
+	 * referring links
+	 **********************************************************/
+
+	/**
+	 * Variable registering the number of non-terminated links that refer to this item. (Default = 0)
+	 */
+	private int nbReferringLinks = 0;
+
+	/**
+	 * Return the number of non-terminated links that refer to this item.
+	 * 
+	 * @note	A paged store cannot spill items that are referred to by links:
+	 * 			these links would keep referring to the spilled objects.
+	 */
+	@Basic @Raw
+	int getNbReferringLinks() {
+		return nbReferringLinks;
+	}
+
+	/**
+	 * Register a new link that refers to this item.
+	 * 
+	 * @post	The number of referring links is incremented by 1.
+	 * 			| new.getNbReferringLinks() == getNbReferringLinks() + 1
+	 */
+	@Raw
+	void addReferringLink() {
+		nbReferringLinks++;
+	}
+
+	/**
+	 * Unregister a link that referred to this item and that has been terminated.
+	 * 
+	 * @post	The number of referring links is decremented by 1.
+	 * 			| new.getNbReferringLinks() == getNbReferringLinks() - 1
+	 */
+	@Raw
+	void removeReferringLink() {
+		nbReferringLinks--;
+	}
+
+				
 	/**********************************************************
 	 * name
 	 **********************************************************/
@@ -137,7 +224,7 @@ public abstract class ActualItem extends DiskItem {
 	@Override
 	public void changeName(String name) throws DiskItemNotWritableException, IllegalStateException {
 		if(!isWritable())
-			throw new DiskItemNotWritableException(this);
+			throw FileSystemMetrics.rejected(new DiskItemNotWritableException(this));
 		super.changeName(name);
 	}
 	
@@ -162,7 +249,7 @@ public abstract class ActualItem extends DiskItem {
 			throws IllegalArgumentException, DiskItemNotWritableException, IllegalStateException {
 		
 		if (!isWritable()) 
-			throw new DiskItemNotWritableException(this);
+			throw FileSystemMetrics.rejected(new DiskItemNotWritableException(this));
 		// move using the superclass method
 		super.move(target);
 	}
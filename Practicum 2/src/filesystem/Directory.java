@@ -1,6 +1,12 @@
 package filesystem;
 
+import java.lang.ref.WeakReference;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
 import be.kuleuven.cs.som.annotate.*;
 import filesystem.exception.*;
 
@@ -43,11 +49,13 @@ public class Directory extends ActualItem {
 	 *         | super(parent,name,writable)        
 	 * @post   The new directory has no items.
 	 *         | new.getNbItems() == 0
+	 * @effect The registered listeners are notified of the creation of the new directory.
 	 */
 	@Raw
 	public Directory(Directory parent, String name, boolean writable) 
 			throws IllegalArgumentException, DiskItemNotWritableException {
 		super(parent,name,writable);    
+		notifyListeners(listener -> listener.itemCreated(this));
 	}
 
 	/**
@@ -103,6 +111,31 @@ public class Directory extends ActualItem {
 		this(name,true); 
 	}
 
+	/**
+	 * Initialize a new root directory with given name, writability, creation time and 
+	 * modification time, without notifying the listeners.
+	 * 
+	 * @param	name
+	 * 			The name of the new directory.
+	 * @param	writable
+	 * 			The writability of the new directory.
+	 * @param	creationTime
+	 * 			The creation time of the new directory.
+	 * @param	modificationTime
+	 * 			The modification time of the new directory, possibly null.
+	 * @effect	The new directory is an actual disk item with the given name, writability, 
+	 * 			creation time and modification time.
+	 * 			| super(name,writable,creationTime,modificationTime)
+	 * @post	The new directory has no items.
+	 * 			| new.getNbItems() == 0
+	 * 
+	 * @note	This constructor is only meant for paged stores and shared templates that restore directories.
+	 */
+	@Raw
+	Directory(String name, boolean writable, Date creationTime, Date modificationTime) {
+		super(name,writable,creationTime,modificationTime);
+	}
+
 
 	/**********************************************************
 	 * Destructors: delete/termination
@@ -136,16 +169,14 @@ public class Directory extends ActualItem {
 	 * 			|				getItemAt(I).canBeRecursivelyDeleted() )
 	 * 
      * @note	This is a fully conclusive specification of the result.
+	 * @note	The items of a writable directory are recursively deletable if and only if none of
+	 * 			the actual items it directly or indirectly contains is read-only. The number of these
+	 * 			items is maintained incrementally, so the result is computed in constant time,
+	 * 			without accessing the items of this directory.
      */
 	@Override
     public boolean canBeRecursivelyDeleted(){
-    	// We use the basic inspectors in a simple for-loop
-		boolean contentCanBeDeleted = true;
-		for (int i = 1; i <= this.getNbItems(); i++) {
-			if(!this.getItemAt(i).canBeRecursivelyDeleted()) contentCanBeDeleted = false;
-		}
-		return contentCanBeDeleted && super.canBeRecursivelyDeleted();
-	
+		return getNbReadOnlyItems() == 0 && super.canBeRecursivelyDeleted();
     }
 
 	/**
@@ -180,7 +211,7 @@ public class Directory extends ActualItem {
 	public void deleteRecursive() throws IllegalStateException{
     	// first check if this is allowed
     	if (!canBeRecursivelyDeleted()) 
-    		throw new IllegalStateException("This directory cannot be recursively deleted");
+    		throw FileSystemMetrics.rejected(new IllegalStateException("This directory cannot be recursively deleted"));
 		// then delete the content (it is allowed)
     	for (int i = this.getNbItems(); i >= 1; i--) {
 			this.getItemAt(i).deleteRecursive();
@@ -191,9 +222,249 @@ public class Directory extends ActualItem {
 		}
     	// finally, call the supermethod (breaks down relation to the parent and sets terminated status.)
     	super.deleteRecursive();
-    	
-	
+
+
     }
+
+	/**
+	 * Delete this directory recursively, and terminate its content in the background.
+	 *
+	 * @param	reclaimer
+	 * 			The executor that terminates the items of this directory.
+	 * @return	A future that is completed when all items this directory directly or indirectly
+	 * 			contained are terminated.
+	 * @post	This directory is empty.
+	 * 			| new.getNbItems() == 0
+	 * @effect	This directory is recursively deleted as a disk item.
+	 * 			| super.deleteRecursive()
+	 * @post	Until the resulting future is completed, the items who were a direct child of this directory
+	 * 			are the items of a new root directory with the same name, that is not terminated and that
+	 * 			is not part of the file system. All items who were a direct or indirect child of this
+	 * 			directory, and that new root directory, are terminated when the resulting future is completed.
+	 * @throws	IllegalArgumentException
+	 * 			The given executor is not effective.
+	 * 			| reclaimer == null
+	 * @throws	IllegalStateException
+	 * 			This directory cannot be recursively deleted.
+	 * 			| !canBeRecursivelyDeleted()
+	 *
+	 * @note	This directory is detached from its parent directory at once: its items are not
+	 * 			removed from their directories one by one, and get no new modification time.
+	 * @note	This method does not take constant time. Before it returns, the items this directory
+	 * 			directly or indirectly contains are removed from the modification time indices of its
+	 * 			indexed ancestors, because these indices stay in use. The cost is therefore linear in the
+	 * 			number of items of this directory times the number of its indexed ancestors, and
+	 * 			logarithmic in the size of their indices. Without indexed ancestors, the items are not
+	 * 			visited at all. The largest files indices of the ancestors hold a bounded number of files,
+	 * 			so removing from them is cheap. Only the termination of the detached items is left to
+	 * 			the reclaimer.
+	 * @note	The listeners are only notified of the termination of this directory, not of the
+	 * 			termination of the items it contained.
+	 * @note	The detached items are no longer reachable from the file system. Until they are
+	 * 			reclaimed, they are consistent items of a detached subtree, that must not be changed
+	 * 			anymore. Moving their content to a new root directory only sets the parent directory
+	 * 			of the direct items of this directory, so it takes time linear in their number.
+	 * @note	The detached items are terminated on a thread of the reclaimer. The completion of
+	 * 			the resulting future happens-before the actions of threads that wait for it (e.g. with
+	 * 			join) or that run a stage depending on it, so these threads see the items terminated.
+	 * 			Other threads may still see them as not terminated.
+	 * @note	The links this directory directly or indirectly contains are unregistered from the
+	 * 			items they refer to before this method returns, so items outside this directory do
+	 * 			not count them any longer, and the reclaimer never changes items that are still
+	 * 			part of the file system. Only the directories that contain links are visited.
+	 * @note	If this directory is managed by a paged store, it is released from that store before
+	 * 			this method returns, so its spilled items are never reloaded. The managed directories
+	 * 			it contains are released by the reclaimer.
+	 */
+	public CompletableFuture<Void> deleteRecursiveInBackground(Executor reclaimer)
+			throws IllegalArgumentException, IllegalStateException {
+		if (reclaimer == null)
+			throw new IllegalArgumentException("The reclaimer must be effective.");
+		// also checks whether this is allowed
+		super.deleteRecursive();
+		if (getNbLinks() > 0)
+			unregisterLinksIn(this);
+		if (pagedStore != null)
+			pagedStore.release(this);
+		List<DiskItem> detached = (items != null) ? items : getReleasedItemsInMemory();
+		Directory holder = (detached.isEmpty()) ? null : detach(detached);
+		items = new ArrayList<DiskItem>();
+		releasedItems = null;
+		template = null;
+		templateTimes = null;
+		largestFiles = null;
+		modificationTimes = null;
+		nbReadOnlyItems = 0;
+		nbLinks = 0;
+		if (holder == null)
+			return CompletableFuture.completedFuture(null);
+		// the items are marked as released all at once, so they are not removed from their
+		// directories one by one, and their links have already been unregistered
+		return CompletableFuture.runAsync(holder::markReleased, reclaimer);
+	}
+
+	/**
+	 * Return a new root directory with the name, writability and times of this directory,
+	 * to which the given items are moved, without notifying the listeners.
+	 *
+	 * @param	detached
+	 * 			The items of this directory that are still in memory, ordered by name.
+	 * @post	The given items are the items of the resulting directory.
+	 * 			| for each I in 1..detached.size():
+	 * 			|	result.getItemAt(I) == detached.get(I-1) && 
+	 * 			|	(new detached.get(I-1)).getParentDirectory() == result
+	 *
+	 * @note	The resulting directory is not indexed by modification time. Its largest files index
+	 * 			is rebuilt from its content if it is ever inspected.
+	 */
+	@Model
+	private Directory detach(List<DiskItem> detached) {
+		Directory holder = new Directory(getName(), isWritable(), getCreationTime(), getModificationTime());
+		holder.items = detached;
+		for (DiskItem item : detached) {
+			item.setParentDirectoryReference(holder);
+			holder.nbReadOnlyItems += getNbReadOnlyItemsIn(item);
+			holder.nbLinks += getNbLinksIn(item);
+		}
+		holder.largestFiles = new LargestFilesIndex();
+		holder.largestFiles.invalidate();
+		return holder;
+	}
+
+	/**
+	 * Unregister the links that the given directory directly or indirectly contains from the
+	 * items they refer to.
+	 *
+	 * @param	directory
+	 * 			The directory whose links must be unregistered.
+	 *
+	 * @note	Subdirectories without links are skipped. Spilled and collapsed subdirectories
+	 * 			never contain links, so their items need not be reloaded.
+	 */
+	@Model
+	private static void unregisterLinksIn(Directory directory) {
+		for (DiskItem item : directory.items) {
+			if (item instanceof Link)
+				((Link) item).getLinkedItem().removeReferringLink();
+			else if (item instanceof Directory && ((Directory) item).getNbLinks() > 0)
+				unregisterLinksIn((Directory) item);
+		}
+	}
+
+
+	/**********************************************************
+	 * read-only items
+	 **********************************************************/
+
+	/**
+	 * Variable registering the number of read-only actual items that this directory directly
+	 * or indirectly contains. (Default = 0)
+	 *
+	 * @note	Like the indices of this directory, this number covers the items of this directory
+	 * 			while they are spilled to a paged store or collapsed into a template.
+	 */
+	private int nbReadOnlyItems = 0;
+
+	/**
+	 * Return the number of actual items that this directory directly or indirectly contains
+	 * and that are not writable.
+	 *
+	 * @return	| result == card({item in DiskItem | item.isDirectOrIndirectChildOf(this) &&
+	 * 			|	item instanceof ActualItem && !((ActualItem) item).isWritable()})
+	 */
+	@Basic @Raw
+	int getNbReadOnlyItems() {
+		return nbReadOnlyItems;
+	}
+
+	/**
+	 * Return the number of read-only actual items that the given item is or directly or indirectly contains.
+	 *
+	 * @param	item
+	 * 			The item to count.
+	 */
+	@Model
+	private static int getNbReadOnlyItemsIn(@Raw DiskItem item) {
+		int result = (item instanceof Directory) ? ((Directory) item).getNbReadOnlyItems() : 0;
+		if (item instanceof ActualItem && !((ActualItem) item).isWritable())
+			result++;
+		return result;
+	}
+
+	/**
+	 * Add the given number to the number of read-only items of this directory and of all
+	 * directories it directly or indirectly belongs to.
+	 *
+	 * @param	delta
+	 * 			The number to add, possibly negative.
+	 * @effect	If the given number is not zero, the items of this directory and of its ancestors
+	 * 			are reloaded if they are released.
+	 * 			| if (delta != 0) then prepareChange()
+	 */
+	@Model
+	void addToNbReadOnlyItems(int delta) {
+		if (delta == 0)
+			return;
+		prepareChange();
+		for (Directory dir = this; dir != null; dir = dir.getParentDirectory())
+			dir.nbReadOnlyItems += delta;
+	}
+
+
+	/**********************************************************
+	 * links
+	 **********************************************************/
+
+	/**
+	 * Variable registering the number of links that this directory directly or indirectly
+	 * contains. (Default = 0)
+	 *
+	 * @note	Spilled and collapsed subtrees never contain links.
+	 */
+	private int nbLinks = 0;
+
+	/**
+	 * Return the number of links that this directory directly or indirectly contains.
+	 *
+	 * @return	| result == card({item in DiskItem | item.isDirectOrIndirectChildOf(this) &&
+	 * 			|	item instanceof Link})
+	 */
+	@Basic @Raw
+	int getNbLinks() {
+		return nbLinks;
+	}
+
+	/**
+	 * Return the number of links that the given item is or directly or indirectly contains.
+	 *
+	 * @param	item
+	 * 			The item to count.
+	 */
+	@Model
+	private static int getNbLinksIn(@Raw DiskItem item) {
+		if (item instanceof Link)
+			return 1;
+		return (item instanceof Directory) ? ((Directory) item).getNbLinks() : 0;
+	}
+
+	/**
+	 * Add the given number to the number of links of this directory and of all
+	 * directories it directly or indirectly belongs to.
+	 *
+	 * @param	delta
+	 * 			The number to add, possibly negative.
+	 * @effect	If the given number is not zero, the items of this directory and of its ancestors
+	 * 			are reloaded if they are released.
+	 * 			| if (delta != 0) then prepareChange()
+	 */
+	@Model
+	private void addToNbLinks(int delta) {
+		if (delta == 0)
+			return;
+		prepareChange();
+		for (Directory dir = this; dir != null; dir = dir.getParentDirectory())
+			dir.nbLinks += delta;
+	}
 	
 
 	/**********************************************************
@@ -215,8 +486,13 @@ public class Directory extends ActualItem {
 	@Override
 	@Raw
 	public boolean canHaveAsName(String name) {
-		return (name != null && name.matches("[a-zA-Z_0-9-]+"));
+		return (name != null && NAME_PATTERN.matcher(name).matches());
 	}
+
+	/**
+	 * Variable referencing the pattern of valid names of directories.
+	 */
+	private static final Pattern NAME_PATTERN = Pattern.compile("[a-zA-Z_0-9-]+");
 	
 	/**
 	 * Returns the absolute path of this directory.
@@ -235,6 +511,52 @@ public class Directory extends ActualItem {
 	}
 	
 	
+	/**********************************************************
+	 * validation level
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the level at which all directories validate their content.
+	 * (Default = FULL)
+	 */
+	private static volatile ValidationLevel validationLevel = ValidationLevel.FULL;
+
+	/**
+	 * Return the level at which all directories validate their content.
+	 */
+	@Basic
+	public static ValidationLevel getValidationLevel() {
+		return validationLevel;
+	}
+
+	/**
+	 * Set the level at which all directories validate their content to the given level.
+	 * 
+	 * @param	level
+	 * 			The new validation level.
+	 * @post	The given level is registered as the new validation level.
+	 * 			| new.getValidationLevel() == level
+	 * @throws	IllegalArgumentException
+	 * 			The given level is not effective.
+	 * 			| level == null
+	 */
+	public static void setValidationLevel(ValidationLevel level) throws IllegalArgumentException {
+		if (level == null)
+			throw new IllegalArgumentException("The validation level is non-effective.");
+		validationLevel = level;
+	}
+
+	/**
+	 * Check whether directories trust their class invariants when validating their content.
+	 * 
+	 * @return	| result == (getValidationLevel() == ValidationLevel.TRUSTED)
+	 */
+	@Model
+	private static boolean isTrusted() {
+		return validationLevel == ValidationLevel.TRUSTED;
+	}
+
+
 	/**********************************************************
 	 * Contents
 	 **********************************************************/
@@ -267,8 +589,55 @@ public class Directory extends ActualItem {
 	 *        |   item.getParentDirectory() == this
 	 * 
 	 * @note  This class is the non-controlling class in this relationship.
+	 * @note  The list is null while the items of this directory are spilled to its paged store,
+	 *        or collapsed into a shared template. It is only accessed through getItemList(),
+	 *        which reloads them first, and through getMutableItemList(), which also materializes them.
 	 */	
-	private final List<DiskItem> items = new ArrayList<DiskItem>();  
+	private List<DiskItem> items = new ArrayList<DiskItem>();  
+
+	/**
+	 * Return the list collecting all items contained by this directory, for inspection.
+	 * 
+	 * @note	If this directory is collapsed, an unmodifiable list is returned that serves
+	 * 			its items from its template, without materializing them.
+	 * @note	If this directory is managed by a paged store, the store is notified of the access,
+	 * 			and its items are reloaded if they are spilled.
+	 */
+	@Model @Raw
+	private List<DiskItem> getItemList() {
+		SubtreeTemplate collapsed = template;
+		if (collapsed != null) {
+			return new AbstractList<DiskItem>() {
+				@Override
+				public DiskItem get(int index) {
+					return getCollapsedItemAt(index + 1);
+				}
+				@Override
+				public int size() {
+					return collapsed.getNbDirectItems();
+				}
+			};
+		}
+		if (pagedStore != null)
+			pagedStore.access(this);
+		return items;
+	}
+
+	/**
+	 * Return the list collecting all items contained by this directory, for a change.
+	 * 
+	 * @note	If this directory is collapsed, its items are first materialized from its template.
+	 * @note	If this directory is managed by a paged store, the store is notified of the access,
+	 * 			and its items are reloaded if they are spilled.
+	 */
+	@Model @Raw
+	private List<DiskItem> getMutableItemList() {
+		if (template != null)
+			materialize();
+		if (pagedStore != null)
+			pagedStore.access(this);
+		return items;
+	}
 
 	
 	/**
@@ -285,9 +654,23 @@ public class Directory extends ActualItem {
 	 * @note	Verify that the getItemAt(I) can never return a null value. As a consequence,
 	 * 			we do not need to specify this before inspecting the parent of this item above.
 	 * 			(The canHaveAsItem(.) (called by canHaveAsItemAt()) ensures this.)
+	 * @note	At the validation level TRUSTED, all items are checked in a single pass.
+	 * 			An item that is strictly ordered after its predecessor cannot have the same name
+	 * 			as any other item, so the names need not be compared with all other items.
 	 */
 	@Raw 
 	public boolean hasProperItems() {
+		if (isTrusted()) {
+			DiskItem previous = null;
+			for (DiskItem item : getItemList()) {
+				if (item == null || item.isTerminated() || this.isTerminated() || item.getParentDirectory() != this)
+					return false;
+				if (previous != null && !item.isOrderedAfter(previous))
+					return false;
+				previous = item;
+			}
+			return true;
+		}
 		for (int i=1; i <= getNbItems(); i++) {
 			if (!canHaveAsItemAt(getItemAt(i), i) || getItemAt(i).getParentDirectory() != this){
 				return false;
@@ -359,11 +742,15 @@ public class Directory extends ActualItem {
 	 * 			nor the ordering in this directory.
 	 * @note	This checker can be used to verify existing items in this directory, as well as to verify whether
 	 * 			a new item can be added to this directory. 
+	 * @note	At the validation level TRUSTED, the ordering of the items guarantees that an item 
+	 * 			of this directory has a unique name, so the names are not counted.
 	 */
 	@Raw
 	public boolean canHaveAsItem(@Raw DiskItem item) {
 		if (item == null || item.isTerminated() || this.isTerminated()) return false;
 		if (this.hasAsItem(item)) {
+			if (isTrusted())
+				return true;
 			int count = 0;
 			for (int position=1;position<=getNbItems();position++){
 				 if (item.getName().equalsIgnoreCase(getItemAt(position).getName())) count++;
@@ -380,7 +767,7 @@ public class Directory extends ActualItem {
 	 */
 	@Basic @Raw 
 	public int getNbItems() {
-		return items.size();
+		return getItemList().size();
 	}
 
 	/**
@@ -400,7 +787,7 @@ public class Directory extends ActualItem {
 	@Basic @Raw
 	public DiskItem getItemAt(int index) throws IndexOutOfBoundsException {
 		try{
-			return items.get(index - 1);
+			return getItemList().get(index - 1);
 		} catch (IndexOutOfBoundsException e) {
 			//The exception e contains a message indicating that 'index-1' is out of bounds
 			//Here, we throw a new Exception with the right information
@@ -419,9 +806,13 @@ public class Directory extends ActualItem {
 	 *         	| result == 
 	 *         	|    for some I in 1..getNbItems() :
 	 *         	| 	      (getItemAt(I) == item)
+	 *         
+	 * @note	At the validation level TRUSTED, the item is looked up by its name in O(log(n)) time.
 	 */
 	@Raw
 	public boolean hasAsItem(@Raw DiskItem item) { 							
+		if (isTrusted())
+			return item != null && findItem(item.getName()) == item;
 		for (int i=1; i<=getNbItems(); i++) {
 			if (getItemAt(i) == item)
 				return true;
@@ -445,6 +836,8 @@ public class Directory extends ActualItem {
 	 * @throws	IllegalArgumentException
 	 * 			The given item is already present in this directory
 	 * 			| hasAsItem(item)
+	 * 
+	 * @note	At the validation level TRUSTED, the index is determined by binary search.
 	 */
 	@Raw
 	public int getInsertionIndexOf(@Raw DiskItem item) throws IllegalArgumentException {												
@@ -453,6 +846,8 @@ public class Directory extends ActualItem {
 		if (this.hasAsItem(item))
 			throw new IllegalArgumentException("The item is already present in this directory.");
 		// Determine the index:
+		if (isTrusted())
+			return getIndexOfFirstItemOrderedAfter(item.getName(), false);
 		int index = 1;
 		while(index <= getNbItems() && getItemAt(index).isOrderedBefore(item)){		
 			index++;
@@ -468,6 +863,18 @@ public class Directory extends ActualItem {
 	 *          
 	 * @effect	The item is added at the right position.
 	 * 			| addItemAt(item,getInsertionIndexOf(item))
+	 * @effect	The files of the given item are registered as largest files of this directory 
+	 * 			and all the directories it directly or indirectly belongs to.
+	 * 			| addToLargestFiles(item)
+	 * @effect	The given item and the items it directly or indirectly contains are registered in the
+	 * 			modification time index of this directory and all the directories it directly or indirectly belongs to.
+	 * 			| addToModificationTimes(item)
+	 * @effect	The read-only items of the given item are counted in this directory
+	 * 			and all the directories it directly or indirectly belongs to.
+	 * 			| addToNbReadOnlyItems(getNbReadOnlyItemsIn(item))
+	 * @effect	The links of the given item are counted in this directory
+	 * 			and all the directories it directly or indirectly belongs to.
+	 * 			| addToNbLinks(getNbLinksIn(item))
 	 * @effect 	The modification time of this directory is updated.
 	 *         	| setModificationTime()
 	 *                
@@ -487,23 +894,82 @@ public class Directory extends ActualItem {
 	 * 			the given item is thus in a raw state.
 	 * 			All methods called with this raw item thus require a raw annotation of their parameter.
 	 * @note	The throws clauses of the effects are cancelled by the throws clauses of this method.
+	 * @note	At the validation level TRUSTED, the item is inserted without checking the conditions
+	 * 			of getInsertionIndexOf(.) and addItemAt(.) again.
 	 */ 
 	@Model
 	protected void addAsItem(@Raw DiskItem item) throws IllegalArgumentException, IllegalStateException {	
+		long start = FileSystemMetrics.start();
 		if(hasAsItem(item))
-			throw new IllegalArgumentException("The given item already exists in this directory.");
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("The given item already exists in this directory."));
 		if(!canHaveAsItem(item))
-			throw new IllegalArgumentException("The given item is not allowed in this directory.");
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("The given item is not allowed in this directory."));
 		if((item != null) && item.getParentDirectory() != this)
-			throw new IllegalStateException("The given item does not yet reference this directory as its parent."); 
+			throw FileSystemMetrics.rejected(new IllegalStateException("The given item does not yet reference this directory as its parent.")); 
 		
 		try {
-			addItemAt(item, getInsertionIndexOf(item));			
+			int index;
+			if (isTrusted()) {
+				// the conditions are checked above, they need not be checked again
+				index = getIndexOfFirstItemOrderedAfter(item.getName(), false);
+				getMutableItemList().add(index-1, item);
+			} else {
+				index = getInsertionIndexOf(item);
+				addItemAt(item, index);
+			}
+			if (FileSystemMetrics.isRecording())
+				recordInsert(item, index);
 		}catch(IllegalArgumentException e) {
 			// Should not occur!
 			assert false;
 		}
+		addToLargestFiles(item);
+		addToModificationTimes(item);
+		addToNbReadOnlyItems(getNbReadOnlyItemsIn(item));
+		addToNbLinks(getNbLinksIn(item));
 		setModificationTime();
+		FileSystemMetrics.record(FileSystemMetrics.Operation.ADD, start);
+	}
+
+	/**
+	 * Register the insertion of the given item at the given index in the metrics of the file system.
+	 * 
+	 * @param	item
+	 * 			The inserted item.
+	 * @param	index
+	 * 			The index at which the item has been inserted.
+	 * 
+	 * @note	The number of comparisons is the number of names the search for the index actually
+	 * 			compared: a binary search at the validation level TRUSTED, a linear search from the
+	 * 			start otherwise. The binary search is replayed on the resulting index, because each
+	 * 			of its steps only depends on whether the middle item is ordered before that index.
+	 */
+	@Model
+	private void recordInsert(DiskItem item, int index) {
+		int nbOthers = getNbItems() - 1;
+		int nbComparisons = 0;
+		if (isTrusted()) {
+			// the same steps as getIndexOfFirstItemOrderedAfter, without comparing names
+			int low = 1;
+			int high = nbOthers + 1;
+			while (low < high) {
+				int middle = (low+high)/2;
+				if (middle >= index)
+					high = middle;
+				else
+					low = middle+1;
+				nbComparisons++;
+			}
+		} else {
+			nbComparisons = Math.min(index, nbOthers);
+		}
+		FileSystemMetrics.recordInsert(nbComparisons, getNbItems());
+		if (item instanceof Directory) {
+			int depth = 1;
+			for (Directory ancestor = this; !ancestor.isRoot(); ancestor = ancestor.getParentDirectory())
+				depth++;
+			FileSystemMetrics.recordDepth(depth);
+		}
 	}
 	
 	/**
@@ -528,10 +994,11 @@ public class Directory extends ActualItem {
 	 */
 	@Model
 	private void addItemAt(@Raw DiskItem item, int index) throws IllegalArgumentException {
-		if (hasAsItem(item) || !canHaveAsItemAt(item,index))
+		// At the validation level TRUSTED, the callers have already checked the conditions.
+		if (!isTrusted() && (hasAsItem(item) || !canHaveAsItemAt(item,index)))
 			throw new IllegalArgumentException("Cannot add the given item at the given index to this directory.");
 		try{
-			items.add(index-1,item);
+			getMutableItemList().add(index-1,item);
 		}catch(IndexOutOfBoundsException e) {
 			// Should not happen.
 			assert false;
@@ -547,6 +1014,18 @@ public class Directory extends ActualItem {
 	 *        
 	 * @effect 	The given item is removed from the position it was registered at.
 	 *         	| removeItemAt(getIndexOf(item))
+	 * @effect	The files of the given item are no longer registered as largest files of this 
+	 * 			directory and all the directories it directly or indirectly belongs to.
+	 * 			| removeFromLargestFiles(item)
+	 * @effect	The given item and the items it directly or indirectly contains are no longer registered in the
+	 * 			modification time index of this directory and all the directories it directly or indirectly belongs to.
+	 * 			| removeFromModificationTimes(item)
+	 * @effect	The read-only items of the given item are no longer counted in this directory
+	 * 			and all the directories it directly or indirectly belongs to.
+	 * 			| addToNbReadOnlyItems(-getNbReadOnlyItemsIn(item))
+	 * @effect	The links of the given item are no longer counted in this directory
+	 * 			and all the directories it directly or indirectly belongs to.
+	 * 			| addToNbLinks(-getNbLinksIn(item))
 	 * @effect 	The new modification time of this directory is updated.
 	 *         	| setModificationTime()
 	 *         
@@ -573,10 +1052,11 @@ public class Directory extends ActualItem {
 	@Model
 	@Raw
 	protected void removeAsItem(@Raw DiskItem item) throws IllegalArgumentException, IllegalStateException {	
+		long start = FileSystemMetrics.start();
 		if(!hasAsItem(item))
-			throw new IllegalArgumentException("This item is not present in this directory.");
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("This item is not present in this directory."));
 		if((item != null) && item.getParentDirectory() == this)
-			throw new IllegalStateException("The given item still references this directory as its parent.");
+			throw FileSystemMetrics.rejected(new IllegalStateException("The given item still references this directory as its parent."));
 		
 		try{
 			removeItemAt(getIndexOf(item));
@@ -584,7 +1064,12 @@ public class Directory extends ActualItem {
 			// Should not happen!
 			assert false;
 		}
+		removeFromLargestFiles(item);
+		removeFromModificationTimes(item);
+		addToNbReadOnlyItems(-getNbReadOnlyItemsIn(item));
+		addToNbLinks(-getNbLinksIn(item));
 		setModificationTime();
+		FileSystemMetrics.record(FileSystemMetrics.Operation.REMOVE, start);
 	}
 
 	/**
@@ -613,7 +1098,7 @@ public class Directory extends ActualItem {
 		if(index < 1 || index > getNbItems())
 			throw new IndexOutOfBoundsException("Index out of bounds: "+index);
 		try{
-			items.remove(index-1);
+			getMutableItemList().remove(index-1);
 		}catch(IndexOutOfBoundsException e) {
 			// Should not happen.
 			assert false;
@@ -632,8 +1117,12 @@ public class Directory extends ActualItem {
 	 *        | result ==
 	 *        |   (for some I in 1..getNbItems():
 	 *        |      getItemAt(I).getName().equalsIgnoreCase(name))
+	 *        
+	 * @note	At the validation level TRUSTED, the name is looked up in O(log(n)) time.
 	 */
 	public boolean containsDiskItemWithName(String name){
+		if (isTrusted())
+			return findItem(name) != null;
 		for (int i=1;i<=getNbItems();i++) {
 			if (getItemAt(i).getName().equalsIgnoreCase(name)){
 				return true;
@@ -657,13 +1146,30 @@ public class Directory extends ActualItem {
 	 * @note	This operation completes in O(log(n)) time.
 	 */
 	public DiskItem getItem(String name) {
+		long start = FileSystemMetrics.start();
+		DiskItem result = findItem(name);
+		FileSystemMetrics.record(FileSystemMetrics.Operation.LOOKUP, start);
+		return result;
+	}
+
+	/**
+	 * Return the item in this directory with the given name, without registering a lookup
+	 * in the metrics of the file system.
+	 *
+	 * @return	| result == getItem(name)
+	 *
+	 * @note	Only the lookups requested through getItem(String) are counted. The lookups by which
+	 * 			checkers like hasAsItem and containsDiskItemWithName are answered are not.
+	 */
+	@Model
+	private DiskItem findItem(String name) {
 		//do a binary search!
 		int low = 1;
 		int high = getNbItems();
 		while (low <= high) {
 			int middle = (low+high)/2; //integer division in Java when both operand are ints!
 			DiskItem middleItem = getItemAt(middle);
-			if(middleItem.getName().equalsIgnoreCase(name)) 
+			if(middleItem.getName().equalsIgnoreCase(name))
 				return middleItem;
 			if (middleItem.isOrderedAfter(name)) {
 				high = middle-1;
@@ -675,6 +1181,103 @@ public class Directory extends ActualItem {
 		return null;
 	}
 	
+	/**
+	 * Return the items in this directory with a name that comes after the given name,
+	 * limited to the given number of items.
+	 * 
+	 * @param	name
+	 * 			The name after which the items must be returned, or null to start at the first item.
+	 * @param	nb
+	 * 			The maximum number of items to return.
+	 * @return	The resulting list contains the first items of this directory that are ordered 
+	 * 			after the given name, in the order in which they are registered in this directory.
+	 * 			| let first = (name == null ? 1 : 
+	 * 			|		min({I in 1..getNbItems()+1 : I == getNbItems()+1 || getItemAt(I).isOrderedAfter(name)}))
+	 * 			| in result.size() == min(nb, getNbItems() - first + 1) &&
+	 * 			|	for each I in 0..result.size()-1 :
+	 * 			|		result.get(I) == getItemAt(first + I)
+	 * @throws	IllegalArgumentException
+	 * 			The given number of items is negative.
+	 * 			| nb < 0
+	 * 
+	 * @note	This method allows to list the items of a directory page by page. The name of the last 
+	 * 			item of a page is the cursor for the next page. Unlike an index, such a cursor remains valid 
+	 * 			when items are added to or removed from this directory in between.
+	 * @note	The first item is looked up in O(log(n)) time.
+	 */
+	public List<DiskItem> getItemsAfter(String name, int nb) throws IllegalArgumentException {
+		if (nb < 0)
+			throw new IllegalArgumentException("Invalid number of items: "+nb);
+		int first = (name == null) ? 1 : getIndexOfFirstItemOrderedAfter(name, false);
+		List<DiskItem> result = new ArrayList<DiskItem>(Math.min(nb, getNbItems() - first + 1));
+		for (int i = first; i <= getNbItems() && result.size() < nb; i++)
+			result.add(getItemAt(i));
+		return result;
+	}
+
+	/**
+	 * Return the items in this directory with a name that starts with the given prefix, ignoring case.
+	 * 
+	 * @param	prefix
+	 * 			The prefix of the names of the items to return.
+	 * @return	The resulting list contains all items of this directory with a name that starts with the
+	 * 			given prefix (ignoring case), in the order in which they are registered in this directory.
+	 * 			| for each I in 1..getNbItems() :
+	 * 			|	result.contains(getItemAt(I)) == getItemAt(I).getName().regionMatches(true, 0, prefix, 0, prefix.length())
+	 * 			| for each I in 1..result.size()-1 :
+	 * 			|	result.get(I).isOrderedAfter(result.get(I-1))
+	 * @throws	IllegalArgumentException
+	 * 			The given prefix is not effective.
+	 * 			| prefix == null
+	 * 
+	 * @note	The items with a given prefix are registered at consecutive positions. The first of them 
+	 * 			is looked up in O(log(n)) time, so this method completes in O(log(n)+k) time.
+	 */
+	public List<DiskItem> getItemsWithPrefix(String prefix) throws IllegalArgumentException {
+		if (prefix == null)
+			throw new IllegalArgumentException("The prefix is non-effective.");
+		List<DiskItem> result = new ArrayList<DiskItem>();
+		for (int i = getIndexOfFirstItemOrderedAfter(prefix, true); i <= getNbItems(); i++) {
+			DiskItem item = getItemAt(i);
+			if (!item.getName().regionMatches(true, 0, prefix, 0, prefix.length()))
+				break;
+			result.add(item);
+		}
+		return result;
+	}
+
+	/**
+	 * Return the index of the first item in this directory that is ordered after the given name,
+	 * or that has the given name if requested.
+	 * 
+	 * @param	name
+	 * 			The name to look up.
+	 * @param	inclusive
+	 * 			Whether an item with the given name (ignoring case) must be included.
+	 * @return	The index of the first item that is ordered after the given name (or that has that name,
+	 * 			if inclusive), or getNbItems()+1 if there is no such item.
+	 * 			| for each I in 1..result-1 :
+	 * 			|	!getItemAt(I).isOrderedAfter(name) && (!inclusive || getItemAt(I).isOrderedBefore(name))
+	 * 			| for each I in result..getNbItems() :
+	 * 			|	getItemAt(I).isOrderedAfter(name) || (inclusive && !getItemAt(I).isOrderedBefore(name))
+	 * 
+	 * @note	This is a binary search, like the one in getItem(String).
+	 */
+	@Model
+	private int getIndexOfFirstItemOrderedAfter(String name, boolean inclusive) {
+		int low = 1;
+		int high = getNbItems() + 1;
+		while (low < high) {
+			int middle = (low+high)/2;
+			DiskItem middleItem = getItemAt(middle);
+			if (middleItem.isOrderedAfter(name) || (inclusive && !middleItem.isOrderedBefore(name)))
+				high = middle;
+			else
+				low = middle+1;
+		}
+		return low;
+	}
+	
 	/**
 	 * Return the position at which the given item is registered.
 	 *
@@ -686,11 +1289,15 @@ public class Directory extends ActualItem {
 	 * @throws  IllegalArgumentException
 	 *          The given item is not in the directory
 	 *          | !hasAsItem(item)
+	 *          
+	 * @note	At the validation level TRUSTED, the index is determined by binary search.
 	 */
 	@Raw
 	public int getIndexOf(DiskItem item) throws IllegalArgumentException {
 		if(!hasAsItem(item))
 			throw new IllegalArgumentException("This item is not present in this directory");
+		else if (isTrusted())
+			return getIndexOfFirstItemOrderedAfter(item.getName(), true);
 		else{
 			for(int i=1; i<=getNbItems(); i++){
 				if(getItemAt(i) == item) return i;
@@ -733,6 +1340,96 @@ public class Directory extends ActualItem {
 			assert false;
 		}
 	}
+
+	/**
+	 * Change the names of the given items of this directory all at once.
+	 *
+	 * @param	names
+	 * 			The items of this directory that must be renamed, mapped to their new names.
+	 *
+	 * @post	Each given item has the given name, or its default name if the given name is not valid.
+	 * 			| for each item in names.keySet() :
+	 * 			|	(new item).getName().equals(item.getResultingName(names.get(item)))
+	 * @post	The items of this directory remain ordered.
+	 * 			| new.hasProperItems()
+	 * @post	All renamed items and this directory get the same, new modification time.
+	 * 			| for each item in names.keySet() :
+	 * 			|	(new item).getModificationTime().equals(new.getModificationTime())
+	 * @effect	The registrations of the renamed items and of this directory in the modification
+	 * 			time indices of the directories they belong to are updated.
+	 * @effect	The registered listeners are notified of all changes of name at once.
+	 *
+	 * @throws	IllegalStateException
+	 * 			This directory is terminated.
+	 * 			| isTerminated()
+	 * @throws	DiskItemNotWritableException(this)
+	 * 			This directory is not writable.
+	 * 			| !isWritable()
+	 * @throws	IllegalArgumentException
+	 * 			The given map is not effective, or one of the given items is not an item of this directory.
+	 * 			| names == null ||
+	 * 			| (for some item in names.keySet() : item == null || item.getParentDirectory() != this)
+	 * @throws	DiskItemNotWritableException(item)
+	 * 			One of the given items is an actual item that is not writable.
+	 * 			| for some item in names.keySet() :
+	 * 			|	item instanceof ActualItem && !((ActualItem) item).isWritable()
+	 * @throws	IllegalArgumentException
+	 * 			After the change, two items of this directory would have the same name, according to
+	 * 			the case-insensitive ordering of the items in this directory.
+	 * 			| for some I,J in 1..getNbItems() :
+	 * 			|	I != J && (new getItemAt(I)).getName().compareToIgnoreCase((new getItemAt(J)).getName()) == 0
+	 *
+	 * @note	Only the final names are validated, so items may take each other's names. Changing
+	 * 			the names one by one with changeName would fail on the clashing intermediate state.
+	 * @note	Either all items are renamed, or none of them. The final names of all items are
+	 * 			checked in a single pass, with the same comparison that orders the items, after which
+	 * 			the items are sorted once. This completes in O(n log(n)) time, instead of O(k log(n))
+	 * 			lookups and O(k n) shifts for renaming k items one by one.
+	 * @note	This directory gets a new modification time as well, because its items are listed
+	 * 			under other names and in another order.
+	 */
+	public void renameAll(Map<DiskItem, String> names)
+			throws IllegalArgumentException, DiskItemNotWritableException, IllegalStateException {
+		if (isTerminated())
+			throw FileSystemMetrics.rejected(new IllegalStateException("This directory is terminated!"));
+		if (!isWritable())
+			throw FileSystemMetrics.rejected(new DiskItemNotWritableException(this));
+		if (names == null)
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("The names are non-effective."));
+		for (DiskItem item : names.keySet()) {
+			if (item == null || item.getParentDirectory() != this)
+				throw FileSystemMetrics.rejected(new IllegalArgumentException("One of the items is not an item of this directory."));
+			if (item instanceof ActualItem && !((ActualItem) item).isWritable())
+				throw FileSystemMetrics.rejected(new DiskItemNotWritableException((ActualItem) item));
+		}
+		if (names.isEmpty())
+			return;
+
+		// check the final names of all items in a single pass
+		List<DiskItem> items = getMutableItemList();
+		Set<String> finalNames = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
+		for (DiskItem item : items) {
+			String name = names.containsKey(item) ? item.getResultingName(names.get(item)) : item.getName();
+			if (!finalNames.add(name))
+				throw FileSystemMetrics.rejected(new IllegalArgumentException("More than one item would be named "+name));
+		}
+
+		// everything is checked, now rename!
+		Map<DiskItem, String> oldNames = new LinkedHashMap<DiskItem, String>();
+		for (Map.Entry<DiskItem, String> entry : names.entrySet()) {
+			oldNames.put(entry.getKey(), entry.getKey().getName());
+			entry.getKey().setNameInBatch(entry.getValue());
+		}
+		items.sort((first, second) -> first.getName().compareToIgnoreCase(second.getName()));
+		long time = System.currentTimeMillis();
+		for (DiskItem item : oldNames.keySet()) {
+			item.setModificationTime(time);
+			FileSystemMetrics.record(FileSystemMetrics.Operation.RENAME, FileSystemMetrics.NOT_TIMED);
+		}
+		setModificationTime(time);
+		Map<DiskItem, String> notified = Collections.unmodifiableMap(oldNames);
+		notifyListeners(listener -> listener.itemsRenamed(this, notified));
+	}
 	
 		
 	/**********************************************************
@@ -780,6 +1477,7 @@ public class Directory extends ActualItem {
 	 * @effect  If this directory is not a root, its modification time changed
 	 * 			| if (!isRoot())
 	 *          | then setModificationTime()    
+	 * @effect	If this directory is not a root, the registered listeners are notified of the move.
 	 * 
 	 * @throws 	IllegalStateException
 	 * 			This directory is terminated
@@ -794,22 +1492,168 @@ public class Directory extends ActualItem {
 	 */ 
 	public void makeRoot() throws DiskItemNotWritableException, IllegalStateException {
 		if (isTerminated()) 
-			throw new IllegalStateException("Diskitem is terminated!");
+			throw FileSystemMetrics.rejected(new IllegalStateException("Diskitem is terminated!"));
 		if (!isRoot()) {
 			if (!isWritable()) 
-				throw new DiskItemNotWritableException(this);
+				throw FileSystemMetrics.rejected(new DiskItemNotWritableException(this));
 			if(!getParentDirectory().isWritable())
-				throw new DiskItemNotWritableException(getParentDirectory());
+				throw FileSystemMetrics.rejected(new DiskItemNotWritableException(getParentDirectory()));
 																			
+			Directory oldParent = getParentDirectory();
 			setParentDirectory(null); 
 			setModificationTime();
+			notifyListeners(listener -> listener.itemMoved(this, oldParent));
 		} 
 		// If the item was already a root item, nothing changes.
 		// This does not contradict the specification, the effect of 
-		// setParentDirectory has no effect if the parameter is null 
+		// setParentDirectory has no effect if the parameter is null
 		// and if the item was already a root item. The postcondition is still valid.
 	}
-		
+
+	/**
+	 * Move all items of this directory to the given target directory.
+	 *
+	 * @param	target
+	 * 			The target directory.
+	 *
+	 * @effect	All items of this directory are moved to the target directory.
+	 * 			| moveAllInto(target, item -> true)
+	 */
+	public void moveAllInto(Directory target)
+			throws IllegalArgumentException, DiskItemNotWritableException, IllegalStateException {
+		moveAllInto(target, item -> true);
+	}
+
+	/**
+	 * Move all items of this directory that satisfy the given filter to the given target directory.
+	 *
+	 * @param	target
+	 * 			The target directory.
+	 * @param	filter
+	 * 			The filter selecting the items to be moved.
+	 *
+	 * @post	Each item of this directory that satisfies the filter is registered in the target directory,
+	 * 			all other items remain registered in this directory.
+	 * 			| for each I in 1..getNbItems() :
+	 * 			|	if (filter.test(getItemAt(I)))
+	 * 			|	then (new getItemAt(I)).getParentDirectory() == target && (new target).hasAsItem(getItemAt(I))
+	 * 			|	else (new getItemAt(I)).getParentDirectory() == this && new.hasAsItem(getItemAt(I))
+	 * @post	The items of both this directory and the target directory remain ordered.
+	 * 			| new.hasProperItems() && (new target).hasProperItems()
+	 * @effect	If at least one item is moved, the modification time of each moved item,
+	 * 			of this directory and of the target directory is set.
+	 * 			| if (for some I in 1..getNbItems() : filter.test(getItemAt(I)))
+	 * 			| then setModificationTime() && target.setModificationTime() &&
+	 * 			|	for each I in 1..getNbItems() :
+	 * 			|		if (filter.test(getItemAt(I))) then getItemAt(I).setModificationTime()
+	 * @effect	The registered listeners are notified of the move of each moved item.
+	 *
+	 * @throws	IllegalStateException
+	 * 			This directory is terminated.
+	 * 			| isTerminated()
+	 * @throws	DiskItemNotWritableException(this)
+	 * 			This directory is not writable.
+	 * 			| !isWritable()
+	 * @throws	IllegalArgumentException
+	 * 			The given filter or target directory is not effective, or the target directory is this directory.
+	 * 			| filter == null || target == null || target == this
+	 * @throws	DiskItemNotWritableException(target)
+	 * 			The target directory is not writable.
+	 * 			| !target.isWritable()
+	 * @throws	DiskItemNotWritableException(getItemAt(I))
+	 * 			An actual item that satisfies the filter is not writable.
+	 * 			| for some I in 1..getNbItems() :
+	 * 			|	filter.test(getItemAt(I)) && getItemAt(I) instanceof ActualItem &&
+	 * 			|	!((ActualItem) getItemAt(I)).isWritable()
+	 * @throws	IllegalArgumentException
+	 * 			An item that satisfies the filter cannot have the target directory as its parent directory,
+	 * 			or the target directory already contains an item with the same name.
+	 * 			| for some I in 1..getNbItems() :
+	 * 			|	filter.test(getItemAt(I)) &&
+	 * 			|	( !getItemAt(I).canHaveAsParentDirectory(target) ||
+	 * 			|	  target.containsDiskItemWithName(getItemAt(I).getName()) )
+	 *
+	 * @note	This method has the same effect as moving each selected item with the move method,
+	 * 			but it is either applied to all selected items, or to none of them.
+	 * @note	Because the items of both directories are already sorted, the selected items are merged
+	 * 			into the target directory in a single pass. The name clashes are detected during that
+	 * 			same pass, so this method completes in O(n+m) time, instead of O(n*m) time for
+	 * 			moving all items one by one.
+	 */
+	public void moveAllInto(Directory target, Predicate<DiskItem> filter)
+			throws IllegalArgumentException, DiskItemNotWritableException, IllegalStateException {
+		// is this directory ok?
+		if (isTerminated())
+			throw FileSystemMetrics.rejected(new IllegalStateException("This directory is terminated!"));
+		if (!isWritable())
+			throw FileSystemMetrics.rejected(new DiskItemNotWritableException(this));
+		// is the target ok?
+		if (filter == null)
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("The filter is non-effective."));
+		if (target == null)
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("The target directory is non-effective."));
+		if (target == this)
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("The target directory is this directory."));
+		if (!target.isWritable())
+			throw FileSystemMetrics.rejected(new DiskItemNotWritableException(target));
+
+		// select the items to move, both selections remain sorted
+		List<DiskItem> moved = new ArrayList<DiskItem>();
+		List<DiskItem> kept = new ArrayList<DiskItem>();
+		for (DiskItem item : getItemList()) {
+			if (filter.test(item)) {
+				if (item instanceof ActualItem && !((ActualItem) item).isWritable())
+					throw FileSystemMetrics.rejected(new DiskItemNotWritableException((ActualItem) item));
+				if (!item.canHaveAsParentDirectory(target))
+					throw FileSystemMetrics.rejected(new IllegalArgumentException("The target directory is not allowed for one of the items."));
+				moved.add(item);
+			} else {
+				kept.add(item);
+			}
+		}
+		if (moved.isEmpty())
+			return;
+
+		// merge the selected items with the items of the target, detecting name clashes on the way
+		List<DiskItem> targetItems = target.getItemList();
+		List<DiskItem> merged = new ArrayList<DiskItem>(targetItems.size() + moved.size());
+		int i = 0, j = 0;
+		while (i < moved.size() && j < targetItems.size()) {
+			int comparison = moved.get(i).getName().compareToIgnoreCase(targetItems.get(j).getName());
+			if (comparison == 0)
+				throw FileSystemMetrics.rejected(new IllegalArgumentException("The target directory already contains an item with the name "+moved.get(i).getName()));
+			merged.add(comparison < 0 ? moved.get(i++) : targetItems.get(j++));
+		}
+		merged.addAll(moved.subList(i, moved.size()));
+		merged.addAll(targetItems.subList(j, targetItems.size()));
+
+		// everything is checked, now move!
+		// each list is changed right after it is looked up, since looking up the other one may evict it
+		List<DiskItem> items = getMutableItemList();
+		items.clear();
+		items.addAll(kept);
+		targetItems = target.getMutableItemList();
+		targetItems.clear();
+		targetItems.addAll(merged);
+		for (DiskItem item : moved) {
+			item.setParentDirectoryReference(target);
+			removeFromLargestFiles(item);
+			target.addToLargestFiles(item);
+			removeFromModificationTimes(item);
+			target.addToModificationTimes(item);
+			addToNbReadOnlyItems(-getNbReadOnlyItemsIn(item));
+			target.addToNbReadOnlyItems(getNbReadOnlyItemsIn(item));
+			addToNbLinks(-getNbLinksIn(item));
+			target.addToNbLinks(getNbLinksIn(item));
+			item.setModificationTime();
+			FileSystemMetrics.record(FileSystemMetrics.Operation.MOVE, FileSystemMetrics.NOT_TIMED);
+		}
+		setModificationTime();
+		target.setModificationTime();
+		for (DiskItem item : moved)
+			notifyListeners(listener -> listener.itemMoved(item, this));
+	}
+
 	
 	/**********************************************************
 	 * disk usage
@@ -822,9 +1666,14 @@ public class Directory extends ActualItem {
 	 * 			| result == sum ({i in 1..getNbItems() : getItemAt(i).getTotalDiskUsage()})
 	 * 
 	 * @note	Please note the formal specification involving set notation.
+	 * @note	The total disk usage of a collapsed directory is taken from its template,
+	 * 			without materializing its items.
      */
 	@Override
 	public long getTotalDiskUsage(){
+		SubtreeTemplate collapsed = template;
+		if (collapsed != null)
+			return collapsed.getTotalDiskUsage();
 		long size = 0;
 		// Use the basic inspectors to iterate over the items of this directory
 		for (int i = 1; i <= this.getNbItems(); i++) {
@@ -832,5 +1681,849 @@ public class Directory extends ActualItem {
 		}
 		return size;
 	}
-	
+
+
+	/**********************************************************
+	 * largest files
+	 **********************************************************/
+
+	/**
+	 * Variable registering the maximum number of largest files that can be looked up in a directory.
+	 */
+	private static final int maximumNbLargestFiles = 100;
+
+	/**
+	 * Return the maximum number of largest files that can be looked up in a directory.
+	 */
+	@Basic @Immutable
+	public static int getMaximumNbLargestFiles() {
+		return maximumNbLargestFiles;
+	}
+
+	/**
+	 * Variable referencing the index of the largest files that this directory directly 
+	 * or indirectly contains, possibly null. (Default = null)
+	 * 
+	 * @note	The index is only created when a first file is registered in it, so directories
+	 * 			without any files in their subtree do not pay for it.
+	 * @note	The index is maintained incrementally by the mutators that change the content of
+	 * 			a subtree: adding and removing items (which covers creation, moving and termination)
+	 * 			and changing the size of files. It can then be inspected without traversing the subtree.
+	 */
+	private LargestFilesIndex largestFiles = null;
+
+	/**
+	 * Return the given number of largest files that this directory directly or indirectly contains.
+	 * 
+	 * @param	nb
+	 * 			The number of files to return.
+	 * @return	The resulting list contains the given number of files, or all files this directory 
+	 * 			directly or indirectly contains if there are less.
+	 * 			| result.size() == min(nb, 
+	 * 			|	card({file in File : file.isDirectOrIndirectChildOf(this)}))
+	 * @return	All files in the resulting list are direct or indirect children of this directory.
+	 * 			| for each file in result :
+	 * 			|	file.isDirectOrIndirectChildOf(this)
+	 * @return	The files in the resulting list are ordered by descending size.
+	 * 			| for each I in 1..result.size()-1 :
+	 * 			|	result.get(I-1).getSize() >= result.get(I).getSize()
+	 * @return	No file in this directory that is not in the resulting list is larger than 
+	 * 			a file in the resulting list.
+	 * 			| for each file in File :
+	 * 			|	if (file.isDirectOrIndirectChildOf(this) && !result.contains(file))
+	 * 			|	then for each other in result : other.getSize() >= file.getSize()
+	 * @throws	IllegalArgumentException
+	 * 			The given number is negative or exceeds the maximum number of largest files.
+	 * 			| nb < 0 || nb > getMaximumNbLargestFiles()
+	 * 
+	 * @note	The result is taken from an index that is maintained incrementally. Only if this
+	 * 			index has become stale, it is rebuilt from the indices of the subdirectories.
+	 */
+	public List<File> getLargestFiles(int nb) throws IllegalArgumentException {
+		if (nb < 0 || nb > getMaximumNbLargestFiles())
+			throw new IllegalArgumentException("Invalid number of largest files: "+nb);
+		LargestFilesIndex index = getLargestFilesIndex();
+		if (index == null)
+			return new ArrayList<File>();
+		return index.getFiles(nb);
+	}
+
+	/**
+	 * Return the index of the largest files of this directory, after rebuilding it if it is stale.
+	 * 
+	 * @note	A stale index is rebuilt from the files in this directory and the largest files
+	 * 			of its subdirectories. The largest files of a subtree are always among those.
+	 */
+	@Model
+	private LargestFilesIndex getLargestFilesIndex() {
+		if (largestFiles != null && largestFiles.isStale()) {
+			List<File> candidates = new ArrayList<File>();
+			for (int i = 1; i <= getNbItems(); i++) {
+				DiskItem item = getItemAt(i);
+				if (item instanceof File)
+					candidates.add((File) item);
+				else if (item instanceof Directory)
+					candidates.addAll(((Directory) item).getLargestFiles(getMaximumNbLargestFiles()));
+			}
+			largestFiles.rebuild(candidates);
+		}
+		return largestFiles;
+	}
+
+	/**
+	 * Register the files of the given item as largest files of this directory and of all 
+	 * directories it directly or indirectly belongs to.
+	 * 
+	 * @param	item
+	 * 			The item whose files must be registered.
+	 * 
+	 * @note	For a directory, only its own largest files have to be registered: 
+	 * 			the largest files of the union of two subtrees are among the largest files of each of them.
+	 * @note	The index of a directory that is still under construction is not yet initialized.
+	 * 			Such a directory does not contain any files yet.
+	 */
+	@Model
+	private void addToLargestFiles(@Raw DiskItem item) {
+		if (item instanceof File) {
+			for (Directory dir = this; dir != null; dir = dir.getParentDirectory()) {
+				if (dir.largestFiles == null)
+					dir.largestFiles = new LargestFilesIndex();
+				dir.largestFiles.add((File) item);
+			}
+		} else if (item instanceof Directory) {
+			LargestFilesIndex index = ((Directory) item).getLargestFilesIndex();
+			if (index == null || index.getNbFiles() == 0)
+				return;
+			for (Directory dir = this; dir != null; dir = dir.getParentDirectory()) {
+				if (dir.largestFiles == null)
+					dir.largestFiles = new LargestFilesIndex();
+				dir.largestFiles.addAll(index);
+			}
+		}
+	}
+
+	/**
+	 * Unregister the files of the given item as largest files of this directory and of all
+	 * directories it directly or indirectly belongs to.
+	 * 
+	 * @param	item
+	 * 			The item whose files must be unregistered.
+	 * 
+	 * @note	For a directory, only its own largest files have to be unregistered: 
+	 * 			other files of that directory cannot be registered in the indices of its ancestors.
+	 */
+	@Model
+	private void removeFromLargestFiles(@Raw DiskItem item) {
+		if (item instanceof File) {
+			for (Directory dir = this; dir != null; dir = dir.getParentDirectory())
+				if (dir.largestFiles != null)
+					dir.largestFiles.remove((File) item, ((File) item).getSize());
+		} else if (item instanceof Directory) {
+			LargestFilesIndex index = ((Directory) item).getLargestFilesIndex();
+			if (index == null || index.getNbFiles() == 0)
+				return;
+			for (Directory dir = this; dir != null; dir = dir.getParentDirectory())
+				if (dir.largestFiles != null)
+					dir.largestFiles.removeAll(index);
+		}
+	}
+
+	/**
+	 * Update the registration of the given file in this directory and in all directories
+	 * it directly or indirectly belongs to, after a change of its size.
+	 * 
+	 * @param	file
+	 * 			The file whose size has changed.
+	 * @param	oldSize
+	 * 			The size of the file before the change.
+	 * @effect	The items of this directory and of its ancestors are reloaded if they are released.
+	 * 			| prepareChange()
+	 */
+	@Model
+	void resizeInLargestFiles(File file, int oldSize) {
+		prepareChange();
+		for (Directory dir = this; dir != null; dir = dir.getParentDirectory())
+			if (dir.largestFiles != null)
+				dir.largestFiles.resize(file, oldSize);
+	}
+
+
+	/**********************************************************
+	 * modification times
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the index of the items that this directory directly or indirectly
+	 * contains, ordered by the time of their last change, possibly null. (Default = null)
+	 * 
+	 * @note	Only directories that are indexed by modification time have an index. Other directories
+	 * 			do not pay for it: neither in memory, nor when items are added, moved or changed.
+	 * @note	The index is maintained incrementally by the mutators that change the content of
+	 * 			a subtree: adding and removing items (which covers creation, moving and termination)
+	 * 			and changing the modification time of items. It can then be inspected without 
+	 * 			traversing the subtree.
+	 * @note	Each item is registered in the index of every indexed directory it directly or
+	 * 			indirectly belongs to. Changing an item costs time proportional to its depth, plus
+	 * 			a logarithmic time per indexed ancestor. Moving an item costs time proportional to the
+	 * 			size of its subtree times the number of indexed directories it leaves or enters.
+	 */
+	private ModificationTimeIndex modificationTimes = null;
+
+	/**
+	 * Check whether this directory keeps an index of the items it directly or indirectly contains,
+	 * ordered by the time of their last change.
+	 */
+	@Basic @Raw
+	public boolean isIndexedByModificationTime() {
+		return modificationTimes != null;
+	}
+
+	/**
+	 * Set whether this directory keeps an index of the items it directly or indirectly contains,
+	 * ordered by the time of their last change.
+	 * 
+	 * @param	indexed
+	 * 			Whether this directory must be indexed.
+	 * @post	| new.isIndexedByModificationTime() == indexed
+	 * @effect	If this changes whether this directory is indexed, the items of this directory and
+	 * 			of its ancestors are reloaded or materialized if they are released.
+	 * 			| if (indexed != isIndexedByModificationTime()) then prepareChange()
+	 * @throws	IllegalStateException
+	 * 			This directory is terminated.
+	 * 			| isTerminated()
+	 * 
+	 * @note	Indexing a directory visits its subtree once, and reuses the indices of the indexed
+	 * 			directories it contains. The index does not change the results of getItemsModifiedSince
+	 * 			and getItemsModifiedBetween, only their cost.
+	 */
+	public void setIndexedByModificationTime(boolean indexed) throws IllegalStateException {
+		if (isTerminated())
+			throw new IllegalStateException("This directory is terminated!");
+		if (indexed != isIndexedByModificationTime())
+			prepareChange();
+		if (!indexed) {
+			modificationTimes = null;
+		} else if (modificationTimes == null) {
+			List<DiskItem> subtree = new ArrayList<DiskItem>();
+			collectItemsModifiedBetween(this, Long.MIN_VALUE, Long.MAX_VALUE, subtree);
+			ModificationTimeIndex index = new ModificationTimeIndex();
+			for (DiskItem item : subtree)
+				index.add(item);
+			modificationTimes = index;
+		}
+	}
+
+	/**
+	 * Return the items that this directory directly or indirectly contains, that have been
+	 * modified at or after the given time.
+	 * 
+	 * @param	time
+	 * 			The time from which modified items must be returned.
+	 * @return	| result.equals(getItemsModifiedBetween(time, Instant.MAX))
+	 * @throws	IllegalArgumentException
+	 * 			The given time is not effective.
+	 * 			| time == null
+	 */
+	public List<DiskItem> getItemsModifiedSince(Instant time) throws IllegalArgumentException {
+		if (time == null)
+			throw new IllegalArgumentException("The time is non-effective.");
+		return getItemsModifiedBetween(time, Instant.MAX);
+	}
+
+	/**
+	 * Return the items that this directory directly or indirectly contains, that have been
+	 * modified at or after the given start time and before the given end time.
+	 * Items that have not been modified are considered to be modified at their creation time.
+	 * 
+	 * @param	from
+	 * 			The time from which modified items must be returned (inclusive).
+	 * @param	to
+	 * 			The time until which modified items must be returned (exclusive).
+	 * @return	The resulting list contains exactly those items that this directory directly or indirectly 
+	 * 			contains, and whose last change lies in the given range.
+	 * 			| for each item in DiskItem :
+	 * 			|	result.contains(item) == item.isDirectOrIndirectChildOf(this) &&
+	 * 			|		(if (item.getModificationTime() == null)
+	 * 			|		 then !item.getCreationTime().toInstant().isBefore(from) && item.getCreationTime().toInstant().isBefore(to)
+	 * 			|		 else !item.getModificationTime().toInstant().isBefore(from) && item.getModificationTime().toInstant().isBefore(to))
+	 * @return	The items in the resulting list are ordered by ascending time of their last change.
+	 * @throws	IllegalArgumentException
+	 * 			One of the given times is not effective.
+	 * 			| from == null || to == null
+	 * 
+	 * @note	If this directory is indexed by modification time, the cost is logarithmic in the size
+	 * 			of its subtree, and linear in the size of the result. Otherwise, its subtree is traversed,
+	 * 			except for the subtrees of indexed directories, which are looked up in their indices.
+	 */
+	public List<DiskItem> getItemsModifiedBetween(Instant from, Instant to) throws IllegalArgumentException {
+		if (from == null || to == null)
+			throw new IllegalArgumentException("The time range is non-effective.");
+		long start = toEpochMilli(from), end = toEpochMilli(to);
+		if (modificationTimes != null)
+			return modificationTimes.getItems(start, end);
+		List<DiskItem> result = new ArrayList<DiskItem>();
+		if (start < end) {
+			collectItemsModifiedBetween(this, start, end, result);
+			result.sort(Comparator.comparingLong(DiskItem::getChangeTime).thenComparingLong(DiskItem::getSequenceNumber));
+		}
+		return result;
+	}
+
+	/**
+	 * Add the items that the given directory directly or indirectly contains, and whose last change
+	 * lies in the given range, to the given list.
+	 * 
+	 * @param	directory
+	 * 			The directory whose subtree must be searched.
+	 * @param	from
+	 * 			The first time of the range, in milliseconds since the epoch (inclusive).
+	 * @param	to
+	 * 			The last time of the range, in milliseconds since the epoch (exclusive).
+	 * @param	result
+	 * 			The list to which the items are added, in no particular order.
+	 */
+	@Model
+	private static void collectItemsModifiedBetween(Directory directory, long from, long to, List<DiskItem> result) {
+		for (int i = 1; i <= directory.getNbItems(); i++) {
+			DiskItem item = directory.getItemAt(i);
+			long time = item.getChangeTime();
+			if (from <= time && time < to)
+				result.add(item);
+			if (item instanceof Directory) {
+				Directory subdirectory = (Directory) item;
+				if (subdirectory.modificationTimes != null)
+					result.addAll(subdirectory.modificationTimes.getItems(from, to));
+				else
+					collectItemsModifiedBetween(subdirectory, from, to, result);
+			}
+		}
+	}
+
+	/**
+	 * Return the given instant in milliseconds since the epoch, saturated to the range of long values.
+	 * 
+	 * @param	instant
+	 * 			The instant to convert.
+	 */
+	@Model
+	private static long toEpochMilli(Instant instant) {
+		try {
+			return instant.toEpochMilli();
+		} catch (ArithmeticException e) {
+			return instant.isBefore(Instant.EPOCH) ? Long.MIN_VALUE : Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Return the given item and the items it directly or indirectly contains.
+	 * 
+	 * @param	item
+	 * 			The item whose subtree must be returned.
+	 * 
+	 * @note	The subtrees of indexed directories are taken from their indices.
+	 */
+	@Model
+	private static List<DiskItem> getSubtreeOf(@Raw DiskItem item) {
+		List<DiskItem> result = new ArrayList<DiskItem>();
+		result.add(item);
+		if (item instanceof Directory) {
+			Directory directory = (Directory) item;
+			if (directory.modificationTimes != null)
+				result.addAll(directory.modificationTimes.getItems(Long.MIN_VALUE, Long.MAX_VALUE));
+			else
+				collectItemsModifiedBetween(directory, Long.MIN_VALUE, Long.MAX_VALUE, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Register the given item and the items it directly or indirectly contains in the modification
+	 * time index of this directory and of all indexed directories it directly or indirectly belongs to.
+	 * 
+	 * @param	item
+	 * 			The item that must be registered.
+	 * 
+	 * @note	The subtree of the given item is only collected if some of these directories is indexed.
+	 */
+	@Model
+	private void addToModificationTimes(@Raw DiskItem item) {
+		List<DiskItem> subtree = null;
+		for (Directory dir = this; dir != null; dir = dir.getParentDirectory()) {
+			if (dir.modificationTimes != null) {
+				if (subtree == null)
+					subtree = getSubtreeOf(item);
+				for (DiskItem registered : subtree)
+					dir.modificationTimes.add(registered);
+			}
+		}
+	}
+
+	/**
+	 * Unregister the given item and the items it directly or indirectly contains from the modification
+	 * time index of this directory and of all indexed directories it directly or indirectly belongs to.
+	 * 
+	 * @param	item
+	 * 			The item that must be unregistered.
+	 * 
+	 * @note	The subtree of the given item is only collected if some of these directories is indexed.
+	 */
+	@Model
+	private void removeFromModificationTimes(@Raw DiskItem item) {
+		List<DiskItem> subtree = null;
+		for (Directory dir = this; dir != null; dir = dir.getParentDirectory()) {
+			if (dir.modificationTimes != null) {
+				if (subtree == null)
+					subtree = getSubtreeOf(item);
+				for (DiskItem registered : subtree)
+					dir.modificationTimes.remove(registered, registered.getChangeTime());
+			}
+		}
+	}
+
+	/**
+	 * Update the registration of the given item in the modification time index of this directory
+	 * and of all indexed directories it directly or indirectly belongs to, after a change of its
+	 * modification time.
+	 * 
+	 * @param	item
+	 * 			The item whose modification time has changed.
+	 * @param	oldTime
+	 * 			The time of the last change of the item before the change.
+	 * @effect	The items of this directory and of its ancestors are reloaded if they are released.
+	 * 			| prepareChange()
+	 */
+	@Model
+	void updateInModificationTimes(@Raw DiskItem item, long oldTime) {
+		prepareChange();
+		for (Directory dir = this; dir != null; dir = dir.getParentDirectory())
+			if (dir.modificationTimes != null)
+				dir.modificationTimes.update(item, oldTime);
+	}
+
+
+	/**********************************************************
+	 * paged store
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the paged store that manages this directory, possibly null. (Default = null)
+	 */
+	private PagedStore pagedStore = null;
+
+	/**
+	 * Return the paged store that manages this directory, possibly null.
+	 */
+	@Basic @Raw
+	PagedStore getPagedStore() {
+		return pagedStore;
+	}
+
+	/**
+	 * Register the given paged store as the store that manages this directory.
+	 * 
+	 * @param	store
+	 * 			The new paged store, possibly null.
+	 * @post	The given store manages this directory.
+	 * 			| new.getPagedStore() == store
+	 */
+	@Raw
+	void setPagedStore(PagedStore store) {
+		this.pagedStore = store;
+	}
+
+	/**
+	 * Check whether the items of this directory are spilled to its paged store.
+	 */
+	@Raw
+	boolean isSpilled() {
+		return items == null && template == null;
+	}
+
+	/**
+	 * Variable referencing weak references to the items of this directory while they are released,
+	 * in the order in which they were registered in this directory, possibly null. (Default = null)
+	 * 
+	 * @note	Released items that are still referenced elsewhere, e.g. by a caller, by a link or by
+	 * 			an index, stay in memory. They are reused when the items are reloaded or materialized,
+	 * 			so items keep their identity. The other released items are reclaimed by the garbage
+	 * 			collector, together with the items they contain: an item references its parent
+	 * 			directory, so no item of a reclaimed directory can still be in memory.
+	 */
+	private List<WeakReference<DiskItem>> releasedItems = null;
+
+	/**
+	 * Return the released item at the given index in this directory, if it is still in memory.
+	 * 
+	 * @param	index
+	 * 			The index of the released item.
+	 * @return	The item that was registered at the given index when the items of this directory
+	 * 			were released, or null if that item has been reclaimed or if the items of this
+	 * 			directory are not released.
+	 */
+	@Model @Raw
+	DiskItem getReleasedItem(int index) {
+		List<WeakReference<DiskItem>> released = releasedItems;
+		if (items != null || released == null || index < 1 || index > released.size())
+			return null;
+		return released.get(index - 1).get();
+	}
+
+	/**
+	 * Return the released items of this directory that are still in memory.
+	 */
+	@Model @Raw
+	private List<DiskItem> getReleasedItemsInMemory() {
+		List<DiskItem> result = new ArrayList<DiskItem>();
+		for (int i = 1; releasedItems != null && i <= releasedItems.size(); i++) {
+			DiskItem item = getReleasedItem(i);
+			if (item != null)
+				result.add(item);
+		}
+		return result;
+	}
+
+	/**
+	 * Release the items of this directory, after they have been spilled to its paged store
+	 * or collapsed into a template.
+	 * 
+	 * @post	The items of this directory are released: they are only weakly referenced by this
+	 * 			directory.
+	 * 			| for each I in 1..getNbItems(): new.getReleasedItem(I) == getItemAt(I) || 
+	 * 			|	new.getReleasedItem(I) == null
+	 * 
+	 * @note	The released items are not terminated, and they still reference this directory as
+	 * 			their parent directory. The largest files and modification time indices and the numbers
+	 * 			of read-only items and links of this directory and of the directories it directly or
+	 * 			indirectly belongs to are not changed: they keep covering the released items.
+	 * @note	No listeners are notified.
+	 */
+	@Model
+	void releaseItems() {
+		List<WeakReference<DiskItem>> released = new ArrayList<WeakReference<DiskItem>>(items.size());
+		for (DiskItem item : items)
+			released.add(new WeakReference<DiskItem>(item));
+		releasedItems = released;
+		items = null;
+	}
+
+	/**
+	 * Reinstate the given items as the items of this directory, after its released items have
+	 * been reloaded from its paged store or materialized from its template.
+	 * 
+	 * @param	reloaded
+	 * 			The items of this directory, ordered by name.
+	 * @pre		The items of this directory are released.
+	 * 			| isSpilled() || isCollapsed()
+	 * @pre		Each given item is the released item at its position if that item is still in memory,
+	 * 			and a new root item with the same content otherwise.
+	 * @post	The given items are the items of this directory, in the given order.
+	 * 			| for each I in 1..reloaded.size(): new.getItemAt(I) == reloaded.get(I-1) &&
+	 * 			|	(new reloaded.get(I-1)).getParentDirectory() == this
+	 * 
+	 * @note	The indices and counters of this directory and of its ancestors still cover the released
+	 * 			items, so they are not changed. An item that is registered in one of these indices
+	 * 			is referenced by that index, so it is still in memory and it is reused: new items
+	 * 			never belong in these indices.
+	 */
+	@Model
+	void reloadItems(List<DiskItem> reloaded) {
+		List<DiskItem> restored = new ArrayList<DiskItem>(reloaded);
+		for (DiskItem item : restored)
+			if (item.getParentDirectory() != this)
+				item.setParentDirectoryReference(this);
+		items = restored;
+		releasedItems = null;
+	}
+
+	/**
+	 * Restore the given items as the items of this new directory, after they have been read
+	 * from a page file or a serialized forest.
+	 * 
+	 * @param	restored
+	 * 			The new root items, ordered by name.
+	 * @pre		This directory is a root directory without items.
+	 * 			| isRoot() && getNbItems() == 0
+	 * @post	The given items are the items of this directory, in the given order.
+	 * 			| for each I in 1..restored.size(): new.getItemAt(I) == restored.get(I-1)
+	 * @effect	The given items, and the items they directly or indirectly contain, are registered 
+	 * 			in the largest files index of this directory.
+	 * @post	The read-only items and links of this directory are the read-only items and links
+	 * 			of the given items.
+	 * 
+	 * @note	Subdirectories must be restored before their parent directory, so their own
+	 * 			indices are complete when they are registered in the index of this directory.
+	 */
+	@Model
+	void restoreItems(List<DiskItem> restored) {
+		items = new ArrayList<DiskItem>(restored);
+		for (DiskItem item : items) {
+			item.setParentDirectoryReference(this);
+			addToLargestFiles(item);
+			addToModificationTimes(item);
+			addToNbReadOnlyItems(getNbReadOnlyItemsIn(item));
+			addToNbLinks(getNbLinksIn(item));
+		}
+	}
+
+	/**
+	 * Restore the given root item as an item of this directory.
+	 * 
+	 * @param	item
+	 * 			The item to restore.
+	 * @pre		This directory does not contain an item with the name of the given item.
+	 * 			| !containsDiskItemWithName(item.getName())
+	 * @post	The given item is registered in this directory, at its position by name.
+	 * 			| new.hasAsItem(item) && (new item).getParentDirectory() == this
+	 * @effect	The given item is registered in the largest files and modification time indices
+	 * 			of this directory and of the directories it directly or indirectly belongs to.
+	 * @effect	The read-only items of the given item are counted in this directory and in the
+	 * 			directories it directly or indirectly belongs to.
+	 * 			| addToNbReadOnlyItems(getNbReadOnlyItemsIn(item))
+	 * @effect	The links of the given item are counted in this directory and in the
+	 * 			directories it directly or indirectly belongs to.
+	 * 			| addToNbLinks(getNbLinksIn(item))
+	 * 
+	 * @note	Unlike addAsItem, this does not change the modification time of this directory.
+	 */
+	@Model
+	void restoreItem(@Raw DiskItem item) {
+		getMutableItemList().add(getIndexOfFirstItemOrderedAfter(item.getName(), false) - 1, item);
+		item.setParentDirectoryReference(this);
+		addToLargestFiles(item);
+		addToModificationTimes(item);
+		addToNbReadOnlyItems(getNbReadOnlyItemsIn(item));
+		addToNbLinks(getNbLinksIn(item));
+	}
+
+	/**
+	 * Reload or materialize the items of this directory and of all directories it directly or
+	 * indirectly belongs to, if they are released, before an item in the subtree of this directory changes.
+	 * 
+	 * @post	The items of this directory and of its ancestors are not released.
+	 * 
+	 * @note	Only items that are still in memory can change. Once such an item has changed, the
+	 * 			page files and templates of its released ancestors no longer represent it, and it would
+	 * 			be lost if it were reclaimed. Its ancestors therefore reference it strongly again, until
+	 * 			they are evicted or collapsed with their new content.
+	 */
+	@Model
+	private void prepareChange() {
+		for (Directory dir = this; dir != null; dir = dir.getParentDirectory())
+			if (dir.items == null)
+				dir.getMutableItemList();
+	}
+
+	/**
+	 * Mark this directory and all items it directly or indirectly contains as released.
+	 * 
+	 * @effect	All items of this directory, including released items that are still in memory,
+	 * 			are marked as released.
+	 * 			| for each I in 1..getNbItems(): getItemAt(I).markReleased()
+	 * @effect	If this directory is managed by a paged store, it is released from that store.
+	 * 			| if (getPagedStore() != null)
+	 * 			| then getPagedStore().release(this)
+	 * @effect	This directory is marked as released as a disk item.
+	 * 			| super.markReleased()
+	 * @post	This directory has no items and no indices.
+	 * 			| new.getNbItems() == 0
+	 *
+	 * @note	The directory is released from its paged store first, so the store no longer evicts
+	 * 			or counts its items while they are being released.
+	 */
+	@Override @Model
+	void markReleased() {
+		if (pagedStore != null)
+			pagedStore.release(this);
+		List<DiskItem> current = (items != null) ? items : getReleasedItemsInMemory();
+		for (DiskItem item : current)
+			item.markReleased();
+		items = new ArrayList<DiskItem>();
+		releasedItems = null;
+		template = null;
+		templateTimes = null;
+		largestFiles = null;
+		modificationTimes = null;
+		super.markReleased();
+	}
+
+
+	/**********************************************************
+	 * shared templates
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the template shared by the items of this directory while they are
+	 * collapsed, possibly null. (Default = null)
+	 */
+	private volatile SubtreeTemplate template = null;
+
+	/**
+	 * Variable referencing the creation and modification times of the items of this directory
+	 * while they are collapsed, in the preorder of its template, possibly null. (Default = null)
+	 * 
+	 * @note	The items of a collapsed directory that are served from its template share its times:
+	 * 			the times of their own items start at an offset in the same array.
+	 */
+	private long[] templateTimes = null;
+
+	/**
+	 * Variable registering the position of the times of the items of this directory in its
+	 * template times. (Default = 0)
+	 */
+	private int templateOffset = 0;
+
+	/**
+	 * Check whether the items of this directory are collapsed into a shared template.
+	 */
+	@Raw
+	public boolean isCollapsed() {
+		return template != null;
+	}
+
+	/**
+	 * Return the number of items this directory directly or indirectly contains while they
+	 * are collapsed, without materializing them.
+	 *
+	 * @return	The number of items of the template of this directory, or 0 if this directory
+	 * 			is not collapsed.
+	 */
+	@Raw
+	public int getNbCollapsedItems() {
+		SubtreeTemplate collapsed = template;
+		return (collapsed == null) ? 0 : collapsed.getNbItems();
+	}
+
+	/**
+	 * Return the template shared by the items of this directory, possibly null.
+	 */
+	@Basic @Raw
+	SubtreeTemplate getTemplate() {
+		return template;
+	}
+
+	/**
+	 * Return the times of the items of this directory while they are collapsed, possibly null.
+	 */
+	@Basic @Raw
+	long[] getTemplateTimes() {
+		return templateTimes;
+	}
+
+	/**
+	 * Return the position of the times of the items of this directory in its template times.
+	 */
+	@Basic @Raw
+	int getTemplateOffset() {
+		return templateOffset;
+	}
+
+	/**
+	 * Replace the items of this directory by the given template and times.
+	 * 
+	 * @param	template
+	 * 			The template of the items of this directory.
+	 * @param	times
+	 * 			The times of the items this directory directly or indirectly contains.
+	 * @pre		The given template and times represent the items of this directory.
+	 * @post	| new.isCollapsed() && new.getTemplate() == template
+	 * @effect	The items of this directory are released.
+	 * 			| releaseItems()
+	 */
+	@Model
+	void collapse(SubtreeTemplate template, long[] times) {
+		releaseItems();
+		this.templateTimes = times;
+		this.templateOffset = 0;
+		this.template = template;
+	}
+
+	/**
+	 * Collapse this new directory on the given template, with the times at the given offset
+	 * in the given times.
+	 * 
+	 * @param	template
+	 * 			The template of the items of this directory.
+	 * @param	times
+	 * 			The times in which the times of the items of this directory are registered.
+	 * @param	offset
+	 * 			The position of the times of the items of this directory in the given times.
+	 * @pre		This directory is a root directory without items.
+	 * 			| isRoot() && getNbItems() == 0
+	 * @post	| new.isCollapsed() && new.getTemplate() == template
+	 * @post	All items of the given template are counted as read-only items of this directory.
+	 * 			| new.getNbReadOnlyItems() == template.getNbItems()
+	 * 
+	 * @note	The largest files index of this directory is stale from the start, so it is only
+	 * 			filled with the files of the template when it is inspected.
+	 */
+	@Model
+	void restoreCollapsed(SubtreeTemplate template, long[] times, int offset) {
+		List<WeakReference<DiskItem>> released = new ArrayList<WeakReference<DiskItem>>(template.getNbDirectItems());
+		for (int i = 0; i < template.getNbDirectItems(); i++)
+			released.add(new WeakReference<DiskItem>(null));
+		releasedItems = released;
+		items = null;
+		nbReadOnlyItems = template.getNbItems();
+		if (template.hasFiles()) {
+			largestFiles = new LargestFilesIndex();
+			largestFiles.invalidate();
+		}
+		this.templateTimes = times;
+		this.templateOffset = offset;
+		this.template = template;
+	}
+
+	/**
+	 * Return the item at the given index in this directory while it is collapsed.
+	 * 
+	 * @param	index
+	 * 			The index of the item to return.
+	 * @return	The released item at the given index if it is still in memory, and a new item
+	 * 			created from the template of this directory otherwise. This directory keeps
+	 * 			referencing the new item weakly, so it is returned again while it is in memory.
+	 * @throws	IndexOutOfBoundsException
+	 * 			| index < 1 || index > getNbItems()
+	 * 
+	 * @note	The items served from a template are not registered in the indices of the ancestors
+	 * 			of this directory. An item that is registered in one of these indices is referenced
+	 * 			by that index, so it is still in memory and it is returned itself.
+	 * @note	Items are served under the lock of this directory, so several threads can inspect
+	 * 			a collapsed directory at once and they see the same items.
+	 */
+	@Model
+	private synchronized DiskItem getCollapsedItemAt(int index) throws IndexOutOfBoundsException {
+		SubtreeTemplate collapsed = template;
+		if (collapsed == null)
+			return items.get(index - 1);
+		DiskItem item = getReleasedItem(index);
+		if (item == null) {
+			item = collapsed.createItemAt(index, templateTimes, templateOffset);
+			item.setParentDirectoryReference(this);
+			releasedItems.set(index - 1, new WeakReference<DiskItem>(item));
+		}
+		return item;
+	}
+
+	/**
+	 * Restore the items of this directory from its template, before they are changed.
+	 * 
+	 * @note	Only the items of this directory itself are restored. Its subdirectories that are
+	 * 			not yet in memory are created collapsed on the templates of their content.
+	 * @note	The items are restored before the template is cleared, so other threads that
+	 * 			see this directory as not collapsed also see its items.
+	 */
+	@Model
+	private synchronized void materialize() {
+		SubtreeTemplate collapsed = template;
+		if (collapsed == null)
+			return;
+		List<DiskItem> materialized = new ArrayList<DiskItem>(collapsed.getNbDirectItems());
+		for (int i = 1; i <= collapsed.getNbDirectItems(); i++)
+			materialized.add(getCollapsedItemAt(i));
+		reloadItems(materialized);
+		templateTimes = null;
+		templateOffset = 0;
+		template = null;
+	}
+
 }
@@ -3,7 +3,9 @@ package filesystem;
 import static org.junit.Assert.*;
 import static org.junit.jupiter.api.Assertions.assertSame;
 
-import java.util.Date;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import org.junit.*;
 import filesystem.exception.*;
 
@@ -461,9 +463,95 @@ public class DirectoryTest {
 		// 5.3 empty
 		assertEquals(dirA_X.getNbItems(),0);
 		assertEquals(dirA_X_1.getNbItems(),0);
-		assertEquals(dirA_Y.getNbItems(),0);	
+		assertEquals(dirA_Y.getNbItems(),0);
 	}
-	
+	@Test
+	public void testCanBeRecursivelyDeleted_nestedReadOnlyItems() {
+		File deep = new File(dirA_X_1,"deep",Type.TEXT,0,false);
+		assertEquals(2, rootDirA.getNbReadOnlyItems());
+		assertFalse(dirA_X.canBeRecursivelyDeleted());
+		assertFalse(dirA_X_1.canBeRecursivelyDeleted());
+		// moving the read-only file moves its count
+		deep.setWritable(true);
+		deep.move(dirA_Y);
+		deep.setWritable(false);
+		assertTrue(dirA_X.canBeRecursivelyDeleted());
+		assertFalse(dirA_Y.canBeRecursivelyDeleted());
+		assertEquals(2, rootDirA.getNbReadOnlyItems());
+		// read-only directories count as well
+		dirA_X_1.setWritable(false);
+		assertFalse(dirA_X.canBeRecursivelyDeleted());
+		assertEquals(3, rootDirA.getNbReadOnlyItems());
+		// the counts of the fixture, built with read-only items under construction
+		assertEquals(6, rootDirB.getNbReadOnlyItems());
+		assertEquals(3, dirB_X.getNbReadOnlyItems());
+	}
+	@Test
+	public void testDeleteRecursiveInBackground_LegalCase() {
+		List<Runnable> reclaims = new ArrayList<Runnable>();
+		int nbReferringLinks = fileA_Z_terminated.getNbReferringLinks();
+		CompletableFuture<Void> result = dirA_Y.deleteRecursiveInBackground(reclaims::add);
+		// the deleted directory is detached at once
+		assertTrue(dirA_Y.isTerminated());
+		assertTrue(dirA_Y.isRoot());
+		assertEquals(0, dirA_Y.getNbItems());
+		assertEquals(4, rootDirA.getNbItems());
+		assertFalse(rootDirA.hasAsItem(dirA_Y));
+		assertTrue(rootDirA.getItemsModifiedSince(Instant.EPOCH).stream().noneMatch(item -> item == fileA_Y_1));
+		// its links no longer count for the items they refer to
+		assertEquals(nbReferringLinks - 1, fileA_Z_terminated.getNbReferringLinks());
+		assertEquals(0, dirA_Y.getNbLinks());
+		// its content is only terminated by the reclaimer
+		assertFalse(result.isDone());
+		assertFalse(fileA_Y_1.isTerminated());
+		// until then, it belongs to a detached root directory
+		Directory detached = fileA_Y_1.getParentDirectory();
+		assertNotSame(dirA_Y, detached);
+		assertTrue(detached.isRoot());
+		assertFalse(detached.isTerminated());
+		assertEquals(dirA_Y.getName(), detached.getName());
+		assertTrue(fileA_Y_1.hasProperParentDirectory());
+		assertTrue(detached.hasProperItems());
+		assertEquals(1, reclaims.size());
+		reclaims.get(0).run();
+		assertTrue(result.isDone());
+		assertTrue(fileA_Y_1.isTerminated() && fileA_Y_1.isRoot());
+		assertTrue(fileA_Y_2.isTerminated() && fileA_Y_2.isRoot());
+		assertTrue(linkA_Y_1.isTerminated() && linkA_Y_1.isRoot());
+		assertTrue(detached.isTerminated());
+		assertEquals(nbReferringLinks - 1, fileA_Z_terminated.getNbReferringLinks());
+	}
+	@Test
+	public void testGetNbLinks() {
+		assertEquals(2, rootDirA.getNbLinks());
+		assertEquals(1, dirA_Y.getNbLinks());
+		assertEquals(0, dirA_X.getNbLinks());
+		new Link(dirA_X_1,"linkA_X_1",fileA_Y_1);
+		assertEquals(1, dirA_X.getNbLinks());
+		assertEquals(3, rootDirA.getNbLinks());
+		// moving a directory moves the links it contains
+		dirA_X.move(dirA_Y);
+		assertEquals(2, dirA_Y.getNbLinks());
+		assertEquals(3, rootDirA.getNbLinks());
+		linkA_Y_1.deleteRecursive();
+		assertEquals(1, dirA_Y.getNbLinks());
+		assertEquals(2, rootDirA.getNbLinks());
+	}
+	@Test
+	public void testDeleteRecursiveInBackground_emptyDir() {
+		assertTrue(dirA_X_1.deleteRecursiveInBackground(task -> fail()).isDone());
+		assertTrue(dirA_X_1.isTerminated());
+		assertEquals(2, dirA_X.getNbItems());
+	}
+	@Test (expected = IllegalStateException.class)
+	public void testDeleteRecursiveInBackground_IllegalCase() {
+		dirB_X.deleteRecursiveInBackground(Runnable::run);
+	}
+	@Test (expected = IllegalArgumentException.class)
+	public void testDeleteRecursiveInBackground_noReclaimer() {
+		dirA_X.deleteRecursiveInBackground(null);
+	}
+
 	
 	/**
 	 * NAME METHODS
@@ -659,6 +747,45 @@ public class DirectoryTest {
 	}
 	
 	
+	@Test
+	public void testGetItemsAfter_allCases() {
+		// 1. first page
+		assertEquals(List.of(dirA_X, dirA_Y), rootDirA.getItemsAfter(null, 2));
+		// 2. next pages, using the name of the last item as a cursor (ignoring case)
+		assertEquals(List.of(fileA_X, fileA_Y), rootDirA.getItemsAfter("dirA_Y", 2));
+		assertEquals(List.of(fileA_X, fileA_Y), rootDirA.getItemsAfter("DIRA_Y", 2));
+		assertEquals(List.of(linkA_X), rootDirA.getItemsAfter("fileA_Y", 2));
+		assertTrue(rootDirA.getItemsAfter("linkA_X", 2).isEmpty());
+		// 3. cursors that are no names of items
+		assertEquals(List.of(fileA_X), rootDirA.getItemsAfter("e", 1));
+		assertTrue(rootDirA.getItemsAfter("zzz", 2).isEmpty());
+		assertTrue(rootDirA.getItemsAfter(null, 0).isEmpty());
+		// 4. cursors remain valid when items are inserted before them
+		Directory inserted = new Directory(rootDirA, "dirA_Xa");
+		assertEquals(List.of(fileA_X, fileA_Y), rootDirA.getItemsAfter("dirA_Y", 2));
+		assertEquals(List.of(inserted, dirA_Y), rootDirA.getItemsAfter("dirA_X", 2));
+		// 5. empty directory
+		assertTrue(rootDirC.getItemsAfter(null, 5).isEmpty());
+	}
+	@Test (expected = IllegalArgumentException.class)
+	public void testGetItemsAfter_illegalCase() {
+		rootDirA.getItemsAfter(null, -1);
+	}
+	@Test
+	public void testGetItemsWithPrefix_allCases() {
+		assertEquals(List.of(fileA_X, fileA_Y), rootDirA.getItemsWithPrefix("file"));
+		assertEquals(List.of(dirA_X, dirA_Y), rootDirA.getItemsWithPrefix("DIRA"));
+		assertEquals(List.of(dirA_Y), rootDirA.getItemsWithPrefix("dira_y"));
+		assertEquals(5, rootDirA.getItemsWithPrefix("").size());
+		assertTrue(rootDirA.getItemsWithPrefix("q").isEmpty());
+		assertTrue(rootDirA.getItemsWithPrefix("zzz").isEmpty());
+		assertTrue(rootDirC.getItemsWithPrefix("a").isEmpty());
+	}
+	@Test (expected = IllegalArgumentException.class)
+	public void testGetItemsWithPrefix_illegalCase() {
+		rootDirA.getItemsWithPrefix(null);
+	}
+	
 	@Test
 	public void testGetIndexOf_legalCases() {
 		
@@ -804,6 +931,375 @@ public class DirectoryTest {
 	 */
 	
 	
+	/**
+	 * LARGEST FILES METHODS
+	 */
+	
+	@Test
+	public void testGetLargestFiles_steadyState() {
+		// 1. directories without files
+		assertTrue(rootDirC.getLargestFiles(10).isEmpty());
+		assertTrue(dirA_X_1.getLargestFiles(10).isEmpty());
+		// 2. files in the subtree are ordered by descending size
+		assertEquals(List.of(fileA_X_1, fileA_X_2, fileA_X), rootDirA.getLargestFiles(3));
+		assertEquals(6, rootDirA.getLargestFiles(10).size());
+		assertSame(fileA_Y, rootDirA.getLargestFiles(10).get(5));
+		assertEquals(List.of(fileA_Y_1, fileA_Y_2), dirA_Y.getLargestFiles(10));
+		assertTrue(rootDirA.getLargestFiles(0).isEmpty());
+	}
+	@Test
+	public void testGetLargestFiles_afterResize() {
+		fileA_Y_1.enlarge(5000);
+		assertSame(fileA_Y_1, rootDirA.getLargestFiles(1).get(0));
+		assertSame(fileA_Y_1, dirA_Y.getLargestFiles(1).get(0));
+		fileA_X_1.shorten(1000);
+		assertEquals(List.of(fileA_Y_1, fileA_X_2, fileA_X), rootDirA.getLargestFiles(3));
+		assertSame(fileA_X_1, dirA_X.getLargestFiles(2).get(1));
+	}
+	@Test
+	public void testGetLargestFiles_afterMoveAndTermination() {
+		fileA_X_1.move(dirA_Y);
+		assertEquals(List.of(fileA_X_2), dirA_X.getLargestFiles(10));
+		assertSame(fileA_X_1, dirA_Y.getLargestFiles(1).get(0));
+		assertEquals(6, rootDirA.getLargestFiles(10).size());
+		fileA_X.terminate();
+		assertFalse(rootDirA.getLargestFiles(10).contains(fileA_X));
+		dirA_Y.move(dirA_X);
+		assertEquals(List.of(fileA_X_1, fileA_X_2, fileA_Y_1, fileA_Y_2), dirA_X.getLargestFiles(10));
+		dirA_X.deleteRecursive();
+		assertEquals(List.of(fileA_Y), rootDirA.getLargestFiles(10));
+	}
+	@Test
+	public void testGetLargestFiles_beyondMaximum() {
+		Directory dir = new Directory(rootDirA, "many");
+		int nb = Directory.getMaximumNbLargestFiles() + 1;
+		File[] files = new File[nb + 1];
+		for (int i = 1; i <= nb; i++)
+			files[i] = new File(dir, "file"+i, Type.TEXT, i, true);
+		// 1. shrinking the largest file
+		files[nb].shorten(nb);
+		List<File> largest = dir.getLargestFiles(Directory.getMaximumNbLargestFiles());
+		assertEquals(Directory.getMaximumNbLargestFiles(), largest.size());
+		assertSame(files[nb-1], largest.get(0));
+		assertSame(files[1], largest.get(largest.size()-1));
+		// 2. removing the largest file
+		files[nb-1].terminate();
+		largest = rootDirA.getLargestFiles(Directory.getMaximumNbLargestFiles());
+		assertSame(fileA_X_1, largest.get(0));
+		assertTrue(largest.contains(files[nb-2]));
+		assertFalse(largest.contains(files[nb-1]));
+	}
+	@Test (expected = IllegalArgumentException.class)
+	public void testGetLargestFiles_illegalCaseNegative() {
+		rootDirA.getLargestFiles(-1);
+	}
+	@Test (expected = IllegalArgumentException.class)
+	public void testGetLargestFiles_illegalCaseTooMany() {
+		rootDirA.getLargestFiles(Directory.getMaximumNbLargestFiles()+1);
+	}
+	
+	
+	@Test
+	public void testMoveAllInto_legalCase() {
+		timeBefore = new Date();
+		sleep();
+		dirA_Y.moveAllInto(dirA_X);
+		sleep();
+		timeAfter = new Date();
+		// 1. all items are registered in the target, in the right order
+		assertEquals(0, dirA_Y.getNbItems());
+		assertEquals(6, dirA_X.getNbItems());
+		assertSame(dirA_X_1, dirA_X.getItemAt(1));
+		assertSame(fileA_X_1, dirA_X.getItemAt(2));
+		assertSame(fileA_X_2, dirA_X.getItemAt(3));
+		assertSame(fileA_Y_1, dirA_X.getItemAt(4));
+		assertSame(fileA_Y_2, dirA_X.getItemAt(5));
+		assertSame(linkA_Y_1, dirA_X.getItemAt(6));
+		assertTrue(dirA_X.hasProperItems());
+		assertTrue(dirA_Y.hasProperItems());
+		// 2. the moved items reference the target
+		assertSame(dirA_X, fileA_Y_1.getParentDirectory());
+		assertSame(dirA_X, linkA_Y_1.getParentDirectory());
+		assertTrue(fileA_Y_2.hasProperParentDirectory());
+		// 3. the modification times are set
+		assertTrue(dirA_X.getModificationTime().after(timeBefore));
+		assertTrue(dirA_Y.getModificationTime().before(timeAfter));
+		assertTrue(fileA_Y_1.getModificationTime().after(timeBefore));
+		// 4. the largest files are updated
+		assertTrue(dirA_Y.getLargestFiles(10).isEmpty());
+		assertEquals(4, dirA_X.getLargestFiles(10).size());
+	}
+	@Test
+	public void testMoveAllInto_legalCaseFilter() {
+		rootDirA.moveAllInto(dirA_Y, item -> item instanceof File && ((File) item).isWritable());
+		assertEquals(4, rootDirA.getNbItems());
+		assertSame(dirA_Y, rootDirA.getItemAt(2));
+		assertSame(fileA_Y, rootDirA.getItemAt(3));
+		assertEquals(4, dirA_Y.getNbItems());
+		assertSame(fileA_X, dirA_Y.getItemAt(1));
+		assertSame(fileA_Y_1, dirA_Y.getItemAt(2));
+		assertSame(dirA_Y, fileA_X.getParentDirectory());
+		assertTrue(rootDirA.hasProperItems());
+		assertTrue(dirA_Y.hasProperItems());
+		// nothing selected: nothing changes
+		rootDirA.moveAllInto(dirA_Y, item -> false);
+		assertEquals(4, rootDirA.getNbItems());
+	}
+	@Test
+	public void testMoveAllInto_illegalCaseClash() {
+		Directory target = new Directory("target");
+		new File(target, "fileA_Y_2", Type.PDF);
+		try {
+			dirA_Y.moveAllInto(target);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// nothing has changed
+			assertEquals(3, dirA_Y.getNbItems());
+			assertEquals(1, target.getNbItems());
+			assertSame(dirA_Y, fileA_Y_1.getParentDirectory());
+		}
+	}
+	@Test (expected = DiskItemNotWritableException.class)
+	public void testMoveAllInto_illegalCaseItemNotWritable() {
+		rootDirA.moveAllInto(new Directory("target"));
+	}
+	@Test (expected = DiskItemNotWritableException.class)
+	public void testMoveAllInto_illegalCaseTargetNotWritable() {
+		dirA_Y.moveAllInto(rootDirC);
+	}
+	@Test (expected = DiskItemNotWritableException.class)
+	public void testMoveAllInto_illegalCaseNotWritable() {
+		dirB_X.moveAllInto(rootDirA);
+	}
+	@Test (expected = IllegalArgumentException.class)
+	public void testMoveAllInto_illegalCaseCycle() {
+		rootDirA.moveAllInto(dirA_X_1, item -> item instanceof Directory);
+	}
+	@Test (expected = IllegalArgumentException.class)
+	public void testMoveAllInto_illegalCaseSelf() {
+		dirA_Y.moveAllInto(dirA_Y);
+	}
+	@Test (expected = IllegalArgumentException.class)
+	public void testMoveAllInto_illegalCaseNull() {
+		dirA_Y.moveAllInto(null);
+	}
+	@Test (expected = IllegalStateException.class)
+	public void testMoveAllInto_illegalCaseTerminated() {
+		rootDirD_terminated.moveAllInto(rootDirA);
+	}
+	
+	
+	@Test
+	public void testRenameAll_legalCaseSwap() {
+		sleep();
+		timeBefore = new Date();
+		Map<DiskItem, String> names = new HashMap<DiskItem, String>();
+		names.put(fileA_Y_1, "fileA_Y_2");
+		names.put(fileA_Y_2, "FILEA_Y_1");
+		names.put(linkA_Y_1, "aLink");
+		List<Map<DiskItem, String>> notifications = new ArrayList<Map<DiskItem, String>>();
+		DiskItemListener listener = new DiskItemListener() {
+			@Override
+			public void itemsRenamed(Directory directory, Map<DiskItem, String> oldNames) {
+				notifications.add(oldNames);
+			}
+		};
+		DiskItem.addListener(listener);
+		try {
+			dirA_Y.renameAll(names);
+		} finally {
+			DiskItem.removeListener(listener);
+		}
+		// 1. the items have their new names, in the right order
+		assertEquals("fileA_Y_2", fileA_Y_1.getName());
+		assertEquals("FILEA_Y_1", fileA_Y_2.getName());
+		assertSame(linkA_Y_1, dirA_Y.getItemAt(1));
+		assertSame(fileA_Y_2, dirA_Y.getItemAt(2));
+		assertSame(fileA_Y_1, dirA_Y.getItemAt(3));
+		assertTrue(dirA_Y.hasProperItems());
+		assertSame(fileA_Y_2, dirA_Y.getItem("fileA_Y_1"));
+		// 2. all renamed items and the directory have the same, new modification time
+		assertNotNull(fileA_Y_1.getModificationTime());
+		assertFalse(fileA_Y_1.getModificationTime().before(timeBefore));
+		assertEquals(fileA_Y_1.getModificationTime(), fileA_Y_2.getModificationTime());
+		assertEquals(fileA_Y_1.getModificationTime(), linkA_Y_1.getModificationTime());
+		assertEquals(fileA_Y_1.getModificationTime(), dirA_Y.getModificationTime());
+		List<DiskItem> modified = rootDirA.getItemsModifiedSince(timeBefore.toInstant());
+		assertTrue(modified.containsAll(List.of(fileA_Y_1, fileA_Y_2, linkA_Y_1, dirA_Y)));
+		assertFalse(modified.contains(fileA_X));
+		// 3. the listeners are notified once, with the old names
+		assertEquals(1, notifications.size());
+		assertEquals("linkA_Y_1", notifications.get(0).get(linkA_Y_1));
+		assertEquals("fileA_Y_1", notifications.get(0).get(fileA_Y_1));
+	}
+	@Test
+	public void testRenameAll_legalCaseInvalidName() {
+		dirA_Y.renameAll(Map.of(fileA_Y_1, "?"));
+		assertEquals(fileA_Y_1.getDefaultName(), fileA_Y_1.getName());
+		assertTrue(dirA_Y.hasProperItems());
+	}
+	@Test
+	public void testRenameAll_illegalCaseClash() {
+		Map<DiskItem, String> names = new HashMap<DiskItem, String>();
+		names.put(fileA_Y_1, "aFile");
+		names.put(linkA_Y_1, "FILEA_Y_2");
+		try {
+			dirA_Y.renameAll(names);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// nothing has changed
+			assertEquals("fileA_Y_1", fileA_Y_1.getName());
+			assertEquals("linkA_Y_1", linkA_Y_1.getName());
+			assertSame(fileA_Y_1, dirA_Y.getItemAt(1));
+		}
+	}
+	@Test
+	public void testRenameAll_illegalCaseClashWithUnrenamedItem() {
+		// the clash is detected with the comparison that orders the directory
+		Date modificationTime = dirA_Y.getModificationTime();
+		try {
+			dirA_Y.renameAll(Map.of(linkA_Y_1, "FileA_y_2"));
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("linkA_Y_1", linkA_Y_1.getName());
+			assertEquals(modificationTime, dirA_Y.getModificationTime());
+			assertTrue(dirA_Y.hasProperItems());
+		}
+	}
+	@Test (expected = IllegalArgumentException.class)
+	public void testRenameAll_illegalCaseNotAnItem() {
+		dirA_Y.renameAll(Map.of(fileA_X, "other"));
+	}
+	@Test (expected = IllegalArgumentException.class)
+	public void testRenameAll_illegalCaseNull() {
+		dirA_Y.renameAll(null);
+	}
+	@Test (expected = DiskItemNotWritableException.class)
+	public void testRenameAll_illegalCaseItemNotWritable() {
+		rootDirA.renameAll(Map.of(fileA_Y, "other"));
+	}
+	@Test (expected = DiskItemNotWritableException.class)
+	public void testRenameAll_illegalCaseNotWritable() {
+		rootDirB.renameAll(Map.of(linkB_X, "other"));
+	}
+	@Test (expected = IllegalStateException.class)
+	public void testRenameAll_illegalCaseTerminated() {
+		rootDirD_terminated.renameAll(Map.of());
+	}
+
+
+	/**
+	 * MODIFICATION TIMES METHODS
+	 */
+
+	@Test
+	public void testGetItemsModifiedSince_steadyState() {
+		// 1. all items in the subtree, but not the directory itself
+		List<DiskItem> items = rootDirA.getItemsModifiedSince(Instant.EPOCH);
+		assertEquals(11, items.size());
+		assertFalse(items.contains(rootDirA));
+		assertTrue(items.contains(fileA_X_1));
+		assertTrue(items.contains(linkA_Y_1));
+		// 2. ordered by the time of their last change
+		for (int i = 1; i < items.size(); i++)
+			assertFalse(lastChange(items.get(i)).before(lastChange(items.get(i-1))));
+		// 3. empty directories and the future
+		assertTrue(rootDirC.getItemsModifiedSince(Instant.EPOCH).isEmpty());
+		assertTrue(rootDirA.getItemsModifiedSince(Instant.now().plusSeconds(60)).isEmpty());
+	}
+	private static Date lastChange(DiskItem item) {
+		return item.getModificationTime() == null ? item.getCreationTime() : item.getModificationTime();
+	}
+	@Test
+	public void testGetItemsModifiedSince_afterChanges() {
+		sleep();
+		Instant checkpoint = Instant.now();
+		sleep();
+		fileA_X_1.enlarge(5);
+		sleep();
+		File file = new File(dirA_Y, "fileA_Y_3", Type.TEXT);
+		List<DiskItem> items = rootDirA.getItemsModifiedSince(checkpoint);
+		assertEquals(3, items.size());
+		assertSame(fileA_X_1, items.get(0));
+		assertTrue(items.containsAll(List.of(file, dirA_Y)));
+		assertEquals(List.of(fileA_X_1), dirA_X.getItemsModifiedSince(checkpoint));
+		assertEquals(List.of(file), dirA_Y.getItemsModifiedSince(checkpoint));
+	}
+	@Test
+	public void testGetItemsModifiedBetween_legalCase() {
+		sleep();
+		Instant first = Instant.now();
+		sleep();
+		fileA_X_1.enlarge(5);
+		sleep();
+		Instant second = Instant.now();
+		sleep();
+		fileA_X_2.changeName("renamed");
+		assertEquals(List.of(fileA_X_1), rootDirA.getItemsModifiedBetween(first, second));
+		assertEquals(List.of(fileA_X_2), rootDirA.getItemsModifiedBetween(second, Instant.MAX));
+		assertTrue(rootDirA.getItemsModifiedBetween(second, first).isEmpty());
+	}
+	@Test
+	public void testGetItemsModifiedSince_afterMoveAndTermination() {
+		checkItemsModifiedAfterMoveAndTermination();
+	}
+	@Test
+	public void testGetItemsModifiedSince_indexed() {
+		rootDirA.setIndexedByModificationTime(true);
+		dirA_X.setIndexedByModificationTime(true);
+		checkItemsModifiedAfterMoveAndTermination();
+	}
+	private void checkItemsModifiedAfterMoveAndTermination() {
+		sleep();
+		Instant checkpoint = Instant.now();
+		sleep();
+		fileA_X_1.move(dirA_Y);
+		assertTrue(dirA_X.getItemsModifiedSince(checkpoint).isEmpty());
+		assertEquals(List.of(fileA_X_1), dirA_Y.getItemsModifiedSince(checkpoint));
+		assertEquals(3, rootDirA.getItemsModifiedSince(checkpoint).size());
+		dirA_Y.move(dirA_X_1);
+		// dirA_Y, fileA_Y_1, fileA_Y_2, linkA_Y_1, fileA_X_1
+		assertEquals(5, dirA_X_1.getItemsModifiedSince(Instant.EPOCH).size());
+		assertEquals(7, dirA_X.getItemsModifiedSince(Instant.EPOCH).size());
+		fileA_X.terminate();
+		assertFalse(rootDirA.getItemsModifiedSince(Instant.EPOCH).contains(fileA_X));
+		dirA_Y.moveAllInto(dirA_X);
+		assertTrue(dirA_Y.getItemsModifiedSince(Instant.EPOCH).isEmpty());
+		assertEquals(List.of(dirA_Y), dirA_X_1.getItemsModifiedSince(Instant.EPOCH));
+		assertEquals(7, dirA_X.getItemsModifiedSince(Instant.EPOCH).size());
+		dirA_X.deleteRecursive();
+		List<DiskItem> items = rootDirA.getItemsModifiedSince(Instant.EPOCH);
+		assertEquals(2, items.size());
+		assertTrue(items.containsAll(List.of(fileA_Y, linkA_X)));
+	}
+	@Test
+	public void testSetIndexedByModificationTime_legalCase() {
+		assertFalse(rootDirA.isIndexedByModificationTime());
+		List<DiskItem> items = rootDirA.getItemsModifiedSince(Instant.EPOCH);
+		dirA_X.setIndexedByModificationTime(true);
+		rootDirA.setIndexedByModificationTime(true);
+		assertTrue(rootDirA.isIndexedByModificationTime());
+		assertTrue(dirA_X.isIndexedByModificationTime());
+		assertFalse(dirA_Y.isIndexedByModificationTime());
+		assertEquals(items, rootDirA.getItemsModifiedSince(Instant.EPOCH));
+		rootDirA.setIndexedByModificationTime(false);
+		assertFalse(rootDirA.isIndexedByModificationTime());
+		assertEquals(items, rootDirA.getItemsModifiedSince(Instant.EPOCH));
+	}
+	@Test (expected = IllegalStateException.class)
+	public void testSetIndexedByModificationTime_illegalCaseTerminated() {
+		rootDirD_terminated.setIndexedByModificationTime(true);
+	}
+	@Test (expected = IllegalArgumentException.class)
+	public void testGetItemsModifiedSince_illegalCase() {
+		rootDirA.getItemsModifiedSince(null);
+	}
+	@Test (expected = IllegalArgumentException.class)
+	public void testGetItemsModifiedBetween_illegalCase() {
+		rootDirA.getItemsModifiedBetween(Instant.EPOCH, null);
+	}
+
+
 	/**
 	 * DISK USAGE METHODS
 	 */
@@ -1,6 +1,11 @@
 package filesystem;
 
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 import be.kuleuven.cs.som.annotate.*;
 import filesystem.exception.*;
 
@@ -90,14 +95,15 @@ public abstract class DiskItem {
 	protected DiskItem(Directory parent, String name) 
 			throws IllegalArgumentException, DiskItemNotWritableException {									
 		if (!canHaveAsParentDirectory(parent))
-			throw new IllegalArgumentException("The given parent directory is not allowed.");
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("The given parent directory is not allowed."));
 		if (parent != null && !parent.isWritable())
-			throw new DiskItemNotWritableException(parent);
+			throw FileSystemMetrics.rejected(new DiskItemNotWritableException(parent));
 		if (parent != null && canHaveAsName(name) && parent.containsDiskItemWithName(name))
-			throw new IllegalArgumentException("The given parent directory already contains an item with the given (valid) name.");
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("The given parent directory already contains an item with the given (valid) name."));
 		if (parent != null && !canHaveAsName(name) && parent.containsDiskItemWithName(getDefaultName()))
-			throw new IllegalArgumentException("The given name is invalid and the given parent directory already contains an item with the default (valid) name.");
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("The given name is invalid and the given parent directory already contains an item with the default (valid) name."));
 		
+		this.creationTime = System.currentTimeMillis();
 		setName(name);
 		// Please note that the name must be set before calling the setParentDirectory()!
 		// Otherwise, we may end up in the wrong place within the (sorted collection within the) parent directory.
@@ -150,6 +156,40 @@ public abstract class DiskItem {
 	 */
 	@Raw
 	protected DiskItem(String name) {
+		this.creationTime = System.currentTimeMillis();
+		setName(name);
+	}
+
+	/**
+	 * Auxiliary constructor that initializes a root disk item with given name, creation time
+	 * and modification time.
+	 * 
+	 * @param	name
+	 * 			The name of the new disk item.
+	 * @param	creationTime
+	 * 			The creation time of the new disk item.
+	 * @param	modificationTime
+	 * 			The modification time of the new disk item, possibly null.
+	 * @pre		The given creation time is a valid creation time.
+	 * 			| isValidCreationTime(creationTime)
+	 * @post	The new disk item has the given creation time.
+	 * 			| new.getCreationTime().equals(creationTime)
+	 * @post	The new disk item has the given modification time.
+	 * 			| new.getModificationTime() == null ? modificationTime == null :
+	 * 			|	new.getModificationTime().equals(modificationTime)
+	 * @post    The new disk item is not terminated.
+	 *          | !new.isTerminated()
+	 * @effect  The name of the disk item is set to the given name.
+	 *          | setName(name) 
+	 * 
+	 * @note	This constructor is only meant for reloading disk items that have been spilled
+	 * 			to a paged store. Like the constructor above, it leaves the parent directory null.
+	 */
+	@Raw
+	DiskItem(String name, Date creationTime, Date modificationTime) {
+		this.creationTime = creationTime.getTime();
+		if (modificationTime != null)
+			this.modificationTime = modificationTime.getTime();
 		setName(name);
 	}
 	
@@ -214,6 +254,7 @@ public abstract class DiskItem {
 	 * 			this item is removed from the current parent directory.
 	 * 			| if !isRoot()
 	 * 			| then getParentDirectory().removeAsItem(this)
+	 * @effect	The registered listeners are notified of the termination.
 	 *          
 	 * @throws 	IllegalStateException
 	 * 		   	This disk item can not be terminated.
@@ -230,8 +271,9 @@ public abstract class DiskItem {
 	 */
 	public void terminate() throws IllegalStateException {
 		if (!canBeTerminated()) {
-			throw new IllegalStateException("This item cannot be terminated");
+			throw FileSystemMetrics.rejected(new IllegalStateException("This item cannot be terminated"));
 		}
+		Directory oldParent = getParentDirectory();
 		this.isTerminated = true;	
 		// Please note that the termination status must be set before calling the setParentDirectory()!
 		// Otherwise, we may end up with an exception because the null parent may not be allowed for certain subclasses.
@@ -244,6 +286,7 @@ public abstract class DiskItem {
 			// Will not happen!
 			assert false;
 		}
+		notifyListeners(listener -> listener.itemTerminated(this, oldParent));
 	}	
 	
 	/**
@@ -257,6 +300,7 @@ public abstract class DiskItem {
 	 * 			this item is removed from the current parent directory.
 	 * 			| if !isRoot()
 	 * 			| then getParentDirectory().removeAsItem(this)
+	 * @effect	The registered listeners are notified of the termination.
 	 *          
 	 * @throws 	IllegalStateException
 	 * 		   	This disk item can not be recursively deleted.
@@ -279,9 +323,10 @@ public abstract class DiskItem {
      */    
     public void deleteRecursive() throws IllegalStateException {
     	if (!canBeRecursivelyDeleted()) {
-			throw new IllegalStateException("This item cannot be recursively deleted");
+			throw FileSystemMetrics.rejected(new IllegalStateException("This item cannot be recursively deleted"));
 		}
     	// take care here of everything that is common to all disk items.
+    	Directory oldParent = getParentDirectory();
     	this.isTerminated = true;	
     	try{
 			setParentDirectory(null);
@@ -292,6 +337,7 @@ public abstract class DiskItem {
 			// Will not happen!
 			assert false;
 		}
+    	notifyListeners(listener -> listener.itemTerminated(this, oldParent));
     }
     
     
@@ -341,9 +387,17 @@ public abstract class DiskItem {
 	 */
 	@Raw
 	public boolean canHaveAsName(String name) {
-		return (name != null && name.matches("[a-zA-Z_0-9.-]+"));
+		return (name != null && NAME_PATTERN.matcher(name).matches());
 	}
 
+	/**
+	 * Variable referencing the pattern of valid names of disk items.
+	 * 
+	 * @note	String.matches compiles its pattern on every call, which dominates the
+	 * 			construction of disk items in bulk.
+	 */
+	private static final Pattern NAME_PATTERN = Pattern.compile("[a-zA-Z_0-9.-]+");
+
 	/**
 	 * Set the name of this disk item to the given name.
 	 *
@@ -367,6 +421,36 @@ public abstract class DiskItem {
 		}
 	}
 
+	/**
+	 * Set the name of this disk item to the given name, as one of several items that are
+	 * renamed at once by their parent directory.
+	 *
+	 * @param	name
+	 * 			The new name for this disk item.
+	 * @effect	| setName(name)
+	 * @note	The order of the parent directory is not restored, the modification time is not
+	 * 			set and the listeners are not notified. The parent directory does all of that
+	 * 			once for all renamed items.
+	 */
+	@Raw @Model
+	void setNameInBatch(String name) {
+		setName(name);
+	}
+
+	/**
+	 * Return the name this disk item gets if its name is changed to the given name.
+	 *
+	 * @param	name
+	 * 			The requested name.
+	 * @return	| if (canHaveAsName(name))
+	 * 			| then result.equals(name)
+	 * 			| else result.equals(getDefaultName())
+	 */
+	@Raw @Model
+	String getResultingName(String name) {
+		return canHaveAsName(name) ? name : getDefaultName();
+	}
+
 	/**
 	 * Return the name for a new disk item which is to be used when the
 	 * given name is not valid.
@@ -403,6 +487,7 @@ public abstract class DiskItem {
 	 * 			In its turn, this also sets the modification time of the parent directory.
 	 * 			| if (!isRoot())  
 	 * 			| then getParentDirectory().restoreOrderAfterNameChangeAt(getParentDirectory().getIndexOf(this))
+	 * @effect	The registered listeners are notified of the change of name.
 	 *          
 	 * @throws 	IllegalStateException
 	 * 			This disk item is already terminated
@@ -427,19 +512,23 @@ public abstract class DiskItem {
 	 * 			Please note the [can] and the '?' in the clause above!
 	 */
 	public void changeName(String name) throws DiskItemNotWritableException, IllegalStateException, IllegalArgumentException {
+		long start = FileSystemMetrics.start();
 		if (isTerminated()) 
-			throw new IllegalStateException("Disk item terminated!");
+			throw FileSystemMetrics.rejected(new IllegalStateException("Disk item terminated!"));
 		if (!isRoot() && !getParentDirectory().isWritable()) 
-			throw new DiskItemNotWritableException(getParentDirectory());
+			throw FileSystemMetrics.rejected(new DiskItemNotWritableException(getParentDirectory()));
 		if (!isRoot() && canHaveAsName(name) && getParentDirectory().containsDiskItemWithName(name))
-			throw new IllegalArgumentException("Parent directory already contains this name.");
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("Parent directory already contains this name."));
 		if (!isRoot() && !canHaveAsName(name) && getParentDirectory().containsDiskItemWithName(getDefaultName()))
-			throw new IllegalArgumentException("Invalid name and parent directory already contains the default name.");
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("Invalid name and parent directory already contains the default name."));
 		
+		// Please note that the current index must be looked up before the name changes!
+		// Directories may look up their items by name, assuming they are still ordered.
+		int currentIndexInParent = isRoot() ? 0 : getParentDirectory().getIndexOf(this);
+		String oldName = getName();
 		// setName will take any name and still change the name of this item to a valid name. (TOTAL PROGRAMMING)
 		setName(name);
 		if(!isRoot()){
-			int currentIndexInParent = getParentDirectory().getIndexOf(this);
 			try {
 				getParentDirectory().restoreOrderAfterNameChangeAt(currentIndexInParent);
 			}catch(IndexOutOfBoundsException e) {
@@ -449,6 +538,8 @@ public abstract class DiskItem {
 			
 		}
 		setModificationTime();
+		FileSystemMetrics.record(FileSystemMetrics.Operation.RENAME, start);
+		notifyListeners(listener -> listener.itemRenamed(this, oldName));
 	}
 
 	
@@ -536,17 +627,22 @@ public abstract class DiskItem {
 	 **********************************************************/
 
 	/**
-	 * Variable referencing the time of creation. 
-	 * (Default and final value = time of construction)
+	 * Variable registering the time of creation, in milliseconds since the epoch. 
+	 * (Final value = time of construction)
+	 * 
+	 * @note	Times are registered as primitive values instead of Date objects.
+	 * 			This saves two objects per disk item, which matters for very large
+	 * 			file systems. The inspectors still return (fresh) Date objects.
+	 * @note	The value is assigned by the constructors, so reloaded disk items keep their creation time.
 	 */
-	private final Date creationTime = new Date();
+	private final long creationTime;
 
 	/**
 	 * Return the time at which this disk item was created.
 	 */
 	@Raw @Basic @Immutable 
 	public Date getCreationTime() {
-		return creationTime;
+		return new Date(creationTime);
 	}
 
 	/**
@@ -567,17 +663,50 @@ public abstract class DiskItem {
 		return 	(date!=null) &&
 				(date.getTime()<=System.currentTimeMillis());
 	}
-	
+
+
+	/**********************************************************
+	 * sequence number
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the sequence number that will be given to the next disk item.
+	 */
+	private static final AtomicLong nextSequenceNumber = new AtomicLong();
+
+	/**
+	 * Variable registering the sequence number of this disk item.
+	 * (Default and final value = number of disk items created before this one)
+	 *
+	 * @note	Sequence numbers are unique, and reflect the order in which disk items are created.
+	 * 			They are used to break ties when disk items are ordered on a property that is
+	 * 			not unique, such as the size of files.
+	 */
+	private final long sequenceNumber = nextSequenceNumber.getAndIncrement();
+
+	/**
+	 * Return the sequence number of this disk item.
+	 */
+	@Raw @Basic @Immutable @Model
+	long getSequenceNumber() {
+		return sequenceNumber;
+	}
+
 
 	/**********************************************************
 	 * modificationTime
 	 **********************************************************/
 
 	/**
-	 * Variable referencing the time of the last modification,
-	 * possibly null. (Default = null)
+	 * Variable registering the time of the last modification, in milliseconds since the epoch,
+	 * or NO_MODIFICATION_TIME if this disk item has not been modified. (Default = NO_MODIFICATION_TIME)
 	 */
-	private Date modificationTime = null;
+	private long modificationTime = NO_MODIFICATION_TIME;
+
+	/**
+	 * Variable registering the value of the modification time of disk items that have not been modified.
+	 */
+	private static final long NO_MODIFICATION_TIME = Long.MIN_VALUE;
 
 	/**
 	 * Return the time at which this disk item was last modified, that is
@@ -586,7 +715,9 @@ public abstract class DiskItem {
 	 */
 	@Raw @Basic
 	public Date getModificationTime() {
-		return modificationTime;
+		if (modificationTime == NO_MODIFICATION_TIME)
+			return null;
+		return new Date(modificationTime);
 	}
 
 	/**
@@ -622,10 +753,50 @@ public abstract class DiskItem {
 	 *         |                    System.currentTimeMillis()) &&
 	 *         | (new.getModificationTime().getTime() <=
 	 *         |                    (new System).currentTimeMillis())
+	 * @effect If this disk item is not a root item, its registration in the modification time
+	 *         index of the directories it belongs to is updated.
+	 *         | if (!isRoot())
+	 *         | then getParentDirectory().updateInModificationTimes(this, getChangeTime())
 	 */
 	@Model @Raw
 	protected void setModificationTime() {
-		modificationTime = new Date();
+		setModificationTime(System.currentTimeMillis());
+	}
+
+	/**
+	 * Set the modification time of this disk item to the given time.
+	 *
+	 * @param	time
+	 * 			The new modification time, in milliseconds since the epoch.
+	 * @pre		The given time is a valid modification time.
+	 * 			| canHaveAsModificationTime(new Date(time))
+	 * @post	| new.getModificationTime().getTime() == time
+	 * @effect	If this disk item is not a root item, its registration in the modification time
+	 * 			index of the directories it belongs to is updated.
+	 * 			| if (!isRoot())
+	 * 			| then getParentDirectory().updateInModificationTimes(this, getChangeTime())
+	 * @note	This allows a directory to stamp all items it changes at once with the same time.
+	 */
+	@Model @Raw
+	void setModificationTime(long time) {
+		long oldChangeTime = getChangeTime();
+		modificationTime = time;
+		if (!isRoot())
+			getParentDirectory().updateInModificationTimes(this, oldChangeTime);
+	}
+
+	/**
+	 * Return the time of the last change of this disk item, in milliseconds since the epoch.
+	 * 
+	 * @return	The time of the last modification of this disk item, or its creation time
+	 * 			if it has not been modified.
+	 * 			| if (getModificationTime() == null)
+	 * 			| then result == getCreationTime().getTime()
+	 * 			| else result == getModificationTime().getTime()
+	 */
+	@Raw @Model
+	long getChangeTime() {
+		return modificationTime == NO_MODIFICATION_TIME ? creationTime : modificationTime;
 	}
 
 	/**
@@ -650,8 +821,9 @@ public abstract class DiskItem {
 	 */
 	public boolean hasOverlappingUsePeriod(DiskItem other) {
 		if (other == null) return false;
-		if(getModificationTime() == null || other.getModificationTime() == null) return false;
-		return ! (this.getCreationTime().after(other.getModificationTime()) || this.getModificationTime().before(other.getCreationTime()));
+		if (this.modificationTime == NO_MODIFICATION_TIME || other.modificationTime == NO_MODIFICATION_TIME) return false;
+		// compare the registered times directly, instead of creating Date objects for them
+		return ! (this.creationTime > other.modificationTime || this.modificationTime < other.creationTime);
 	}
 
 
@@ -830,6 +1002,43 @@ public abstract class DiskItem {
 			}
 		}
 	}
+
+	/**
+	 * Register the given directory as the parent directory of this item,
+	 * without updating the items registered in any directory.
+	 *
+	 * @param	directory
+	 * 			The new parent directory for this item.
+	 * @post	The parent directory of this item is set to the given directory.
+	 * 			| new.getParentDirectory() == directory
+	 *
+	 * @note	This auxiliary method only sets up one direction of the bidirectional relationship.
+	 * 			It may only be used by directories that move many items at once, and that
+	 * 			maintain their own registrations of these items themselves. The items are thus
+	 * 			left in a raw state until that directory has done so.
+	 */
+	@Raw @Model
+	void setParentDirectoryReference(Directory directory) {
+		this.parentDirectory = directory;
+	}
+
+	/**
+	 * Mark this disk item as released, after it has been spilled to a paged store.
+	 *
+	 * @post	This disk item is terminated.
+	 * 			| new.isTerminated()
+	 * @post	This disk item is a root item.
+	 * 			| new.isRoot()
+	 *
+	 * @note	This auxiliary method does not update the items registered in the parent directory,
+	 * 			nor notify the listeners. It may only be used by directories that release all their
+	 * 			items at once, and that no longer reference them afterwards.
+	 */
+	@Model
+	void markReleased() {
+		this.isTerminated = true;
+		this.parentDirectory = null;
+	}
 	
 	/**
 	 * Return the root item to which this item directly or indirectly
@@ -875,6 +1084,7 @@ public abstract class DiskItem {
 	 * 			| setParentDirectory(target)
 	 * @effect	The modification time of this item is set.
 	 * 			| setModificationTime()
+	 * @effect	The registered listeners are notified of the move.
 	 * 
 	 * @throws 	IllegalStateException
 	 * 			This disk item is terminated.
@@ -903,23 +1113,31 @@ public abstract class DiskItem {
 	public void move(Directory target) 
 			throws IllegalArgumentException, DiskItemNotWritableException, IllegalStateException {
 		
+		long start = FileSystemMetrics.start();
 		// is this item ok?
 		if (isTerminated()) 
-			throw new IllegalStateException("This disk item is terminated!");
+			throw FileSystemMetrics.rejected(new IllegalStateException("This disk item is terminated!"));
 		if (!isRoot() && !getParentDirectory().isWritable())
-			throw new DiskItemNotWritableException(this.getParentDirectory());
+			throw FileSystemMetrics.rejected(new DiskItemNotWritableException(this.getParentDirectory()));
 		// is the target ok?
 		if (target == null)
-			throw new IllegalArgumentException("The target directory is non-effective.");
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("The target directory is non-effective."));
 		if (!target.isWritable())
-			throw new DiskItemNotWritableException(target);
+			throw FileSystemMetrics.rejected(new DiskItemNotWritableException(target));
 		if (target == this.getParentDirectory())
-			throw new IllegalArgumentException("The target directory is already the parent directory.");
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("The target directory is already the parent directory."));
 		
 		// then move!
-		setParentDirectory(target);
+		Directory oldParent = getParentDirectory();
+		try {
+			setParentDirectory(target);
+		} catch (RuntimeException e) {
+			throw FileSystemMetrics.rejected(e);
+		}
 		// setParent may have thrown other exceptions if e.g. !canHaveAsParentDirectory(target) or !target.canHaveAsItem(this).
 		setModificationTime();
+		FileSystemMetrics.record(FileSystemMetrics.Operation.MOVE, start);
+		notifyListeners(listener -> listener.itemMoved(this, oldParent));
 
 	}
 
@@ -969,4 +1187,69 @@ public abstract class DiskItem {
 	public abstract long getTotalDiskUsage();
 
 
+	/**********************************************************
+	 * listeners
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the listeners that are notified of the changes of all disk items.
+	 * 
+	 * @note	A copy-on-write list is used, because listeners are registered rarely,
+	 * 			but the list is traversed on every change of a disk item.
+	 */
+	private static final List<DiskItemListener> listeners = new CopyOnWriteArrayList<DiskItemListener>();
+
+	/**
+	 * Check whether the given listener is notified of the changes of disk items.
+	 * 
+	 * @param	listener
+	 * 			The listener to check.
+	 */
+	@Basic
+	public static boolean hasAsListener(DiskItemListener listener) {
+		return listeners.contains(listener);
+	}
+
+	/**
+	 * Register the given listener to be notified of the changes of all disk items.
+	 * 
+	 * @param	listener
+	 * 			The listener to register.
+	 * @post	The given listener is registered.
+	 * 			| hasAsListener(listener)
+	 * @throws	IllegalArgumentException
+	 * 			The given listener is not effective or already registered.
+	 * 			| listener == null || hasAsListener(listener)
+	 */
+	public static void addListener(DiskItemListener listener) throws IllegalArgumentException {
+		if (listener == null || hasAsListener(listener))
+			throw new IllegalArgumentException("The listener is non-effective or already registered.");
+		listeners.add(listener);
+	}
+
+	/**
+	 * Unregister the given listener.
+	 * 
+	 * @param	listener
+	 * 			The listener to unregister.
+	 * @post	The given listener is no longer registered.
+	 * 			| !hasAsListener(listener)
+	 */
+	public static void removeListener(DiskItemListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Notify all registered listeners of a change.
+	 * 
+	 * @param	notification
+	 * 			The notification to send to each listener.
+	 */
+	@Model
+	static void notifyListeners(Consumer<DiskItemListener> notification) {
+		for (DiskItemListener listener : listeners)
+			notification.accept(listener);
+	}
+
+
 }
@@ -0,0 +1,90 @@
+package filesystem;
+
+import java.util.Map;
+
+/**
+ * An interface of listeners that are notified of the changes of disk items.
+ *
+ * All methods have an empty default implementation, so listeners only have to
+ * override the notifications they are interested in.
+ *
+ * @note	Listeners are notified by the thread that changes the disk item, after the change
+ * 			has been made successfully. They should not change disk items themselves.
+ * @note	Changes of modification times are not notified: they always accompany another change.
+ *
+ * @version	6.0
+ */
+public interface DiskItemListener {
+
+	/**
+	 * Notify this listener that the given disk item has been created.
+	 *
+	 * @param	item
+	 * 			The new disk item, with its initial name, parent directory, size and writability.
+	 */
+	default void itemCreated(DiskItem item) {}
+
+	/**
+	 * Notify this listener that the given disk item has changed its name.
+	 *
+	 * @param	item
+	 * 			The disk item that has changed its name.
+	 * @param	oldName
+	 * 			The name of the disk item before the change.
+	 */
+	default void itemRenamed(DiskItem item, String oldName) {}
+
+	/**
+	 * Notify this listener that the given items of the given directory have changed their
+	 * names all at once.
+	 *
+	 * @param	directory
+	 * 			The directory whose items have been renamed.
+	 * @param	oldNames
+	 * 			The renamed items, mapped to their names before the change.
+	 * @note	Intermediate states are not notified: an item may have taken the old name of
+	 * 			another renamed item. By default, each renamed item is notified separately.
+	 */
+	default void itemsRenamed(Directory directory, Map<DiskItem, String> oldNames) {
+		oldNames.forEach(this::itemRenamed);
+	}
+
+	/**
+	 * Notify this listener that the given disk item has changed its parent directory.
+	 *
+	 * @param	item
+	 * 			The disk item that has moved.
+	 * @param	oldParent
+	 * 			The parent directory of the disk item before the move, possibly null.
+	 */
+	default void itemMoved(DiskItem item, Directory oldParent) {}
+
+	/**
+	 * Notify this listener that the given file has changed its size.
+	 *
+	 * @param	file
+	 * 			The file that has changed its size.
+	 * @param	oldSize
+	 * 			The size of the file before the change.
+	 */
+	default void fileResized(File file, int oldSize) {}
+
+	/**
+	 * Notify this listener that the given actual item has changed its writability.
+	 *
+	 * @param	item
+	 * 			The actual item whose writability has been set.
+	 */
+	default void writabilityChanged(ActualItem item) {}
+
+	/**
+	 * Notify this listener that the given disk item has been terminated.
+	 *
+	 * @param	item
+	 * 			The terminated disk item.
+	 * @param	oldParent
+	 * 			The parent directory of the disk item before its termination, possibly null.
+	 */
+	default void itemTerminated(DiskItem item, Directory oldParent) {}
+
+}
@@ -1,5 +1,6 @@
 package filesystem;
 
+import java.util.Date;
 import filesystem.exception.*;
 import be.kuleuven.cs.som.annotate.*;
 
@@ -48,6 +49,7 @@ public class File extends ActualItem{
      *         	| setSize(size)
      * @post   	The type of this new file is set to the given type.
      *         	| new.getType() == type        
+     * @effect	The registered listeners are notified of the creation of the new file.
      */
 	@Raw
     public File(Directory parent, String name, Type type, int size, boolean writable)
@@ -55,6 +57,7 @@ public class File extends ActualItem{
     	super(parent,name,writable);
     	setSize(size);
     	this.type=type;
+    	notifyListeners(listener -> listener.itemCreated(this));
     	
     	// Note how we can simply call the superconstructor here.
     	// Invalid types or sizes are impossible through the preconditions.
@@ -85,6 +88,43 @@ public class File extends ActualItem{
     		throws IllegalArgumentException, DiskItemNotWritableException {
     	this(parent,name,type,0,true);
     }    
+
+    /**
+     * Initialize a new root file with given name, type, size, writability, creation time 
+     * and modification time, without notifying the listeners.
+     * 
+     * @param  	name
+     *         	The name of the new file.
+     * @param  	type
+     *         	The type of the new file. 
+     * @param  	size
+     *         	The size of the new file.
+     * @param  	writable
+     *         	The writability of the new file.
+     * @param	creationTime
+     * 			The creation time of the new file.
+     * @param	modificationTime
+     * 			The modification time of the new file, possibly null.
+     * @pre		type is a valid type.
+     * 			| isValidType(type)
+     * @pre		size is a valid size.
+     * 			| isValidSize(size)
+     * @effect	The new file is a root actual disk item with the given name, writability, 
+     * 			creation time and modification time.
+     * 			| super(name,writable,creationTime,modificationTime)
+     * @effect 	The new file has the given size
+     *         	| setSize(size)
+     * @post   	The type of this new file is set to the given type.
+     *         	| new.getType() == type
+     * 
+     * @note	This constructor is only meant for paged stores and shared templates that restore files.
+     */
+	@Raw
+    File(String name, Type type, int size, boolean writable, Date creationTime, Date modificationTime) {
+    	super(name,writable,creationTime,modificationTime);
+    	setSize(size);
+    	this.type=type;
+    }
     
 	
 	/**********************************************************
@@ -245,10 +285,17 @@ public class File extends ActualItem{
      *         | isValidSize(size)
      * @post   The given size is registered as the size of this file.
      *         | new.getSize() == size
+     * @effect If this file is not a root item, its registration as one of the largest
+     *         files of the directories it belongs to is updated.
+     *         | if (!isRoot())
+     *         | then getParentDirectory().resizeInLargestFiles(this, getSize())
      */
-    @Raw @Model 
+    @Raw @Model
     private void setSize(int size) {
+        int oldSize = this.size;
         this.size = size;
+        if (!isRoot())
+        	getParentDirectory().resizeInLargestFiles(this, oldSize);
     }
    
     /**
@@ -284,6 +331,7 @@ public class File extends ActualItem{
 	 *         | setSize(getSize()+delta)
 	 * @effect The modification time is updated.
 	 *         | setModificationTime()
+	 * @effect The registered listeners are notified of the change of size.
 	 * @throws DiskItemNotWritableException(this)
 	 *         This file is not writable.
 	 *         | !isWritable()
@@ -291,10 +339,12 @@ public class File extends ActualItem{
 	@Model 
 	private void changeSize(int delta) throws DiskItemNotWritableException{
 	    if (isWritable()) {
+	        int oldSize = getSize();
 	        setSize(getSize()+delta);
 	        setModificationTime();            
+	        notifyListeners(listener -> listener.fileResized(this, oldSize));
 	    }else{
-	    	throw new DiskItemNotWritableException(this);
+	    	throw FileSystemMetrics.rejected(new DiskItemNotWritableException(this));
 	    }
 	}
 
@@ -0,0 +1,387 @@
+package filesystem;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.*;
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class collecting metrics of the operations on the file system.
+ *
+ * For each operation, the number of executions is counted and a sample of the latencies is
+ * registered in a histogram. Furthermore, histograms are kept of the number of name comparisons
+ * needed to find the position of a new item, of the number of items of a directory after an item
+ * is added to it (its fan-out), and of the depth of directories added to a parent directory.
+ * Finally, the number of rejected changes is counted by type of exception.
+ *
+ * There is a single collection of metrics, which can be pulled through getInstance(), or through
+ * JMX after registerMBean() has been invoked.
+ *
+ * @note	Metrics are only recorded while they are enabled. While they are disabled, an operation
+ * 			pays a single read of a volatile variable.
+ * @note	All counters are lock-free (LongAdder). Reading the clock twice costs more than all
+ * 			counters together, so only one in every sampling interval executions is timed, at random.
+ * 			The latency histograms thus hold a sample, the operation counts are exact.
+ * @note	The depth of an added directory is its number of ancestors. It is only computed for
+ * 			directories, so adding a file never walks up the tree.
+ *
+ * @version	6.0
+ */
+public final class FileSystemMetrics implements FileSystemMetricsMXBean {
+
+	/**
+	 * An enumeration of the operations whose executions and latencies are registered.
+	 *
+	 * @note	ADD and REMOVE register every (un)registration of an item in a directory,
+	 * 			so moving an item also counts as a REMOVE and an ADD.
+	 */
+	public enum Operation {
+		ADD, REMOVE, RENAME, MOVE, LOOKUP
+	}
+
+
+	/**********************************************************
+	 * instance
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the only collection of metrics.
+	 */
+	private static final FileSystemMetrics instance = new FileSystemMetrics();
+
+	/**
+	 * Initialize the only collection of metrics.
+	 */
+	private FileSystemMetrics() {
+		for (Operation operation : Operation.values()) {
+			counts.put(operation, new LongAdder());
+			latencies.put(operation, new Log2Histogram());
+		}
+	}
+
+	/**
+	 * Return the only collection of metrics.
+	 */
+	@Basic @Immutable
+	public static FileSystemMetrics getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Return the name under which the metrics are registered over JMX.
+	 */
+	@Immutable
+	public static ObjectName getObjectName() {
+		try {
+			return new ObjectName("filesystem:type=FileSystemMetrics");
+		} catch (MalformedObjectNameException e) {
+			// the name is a constant
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Register the metrics in the platform MBean server, if they are not yet registered.
+	 *
+	 * @return	The name under which the metrics are registered.
+	 * 			| result.equals(getObjectName())
+	 * @throws	IllegalStateException
+	 * 			The metrics could not be registered.
+	 */
+	public static ObjectName registerMBean() throws IllegalStateException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			if (!server.isRegistered(getObjectName()))
+				server.registerMBean(instance, getObjectName());
+		} catch (InstanceAlreadyExistsException e) {
+			// registered concurrently
+		} catch (JMException e) {
+			throw new IllegalStateException("The metrics could not be registered.", e);
+		}
+		return getObjectName();
+	}
+
+
+	/**********************************************************
+	 * enabled
+	 **********************************************************/
+
+	/**
+	 * Variable registering whether metrics are recorded. (Default = false)
+	 */
+	private static volatile boolean isEnabled = false;
+
+	/**
+	 * Check whether metrics are recorded.
+	 */
+	@Basic @Override
+	public boolean isEnabled() {
+		return isEnabled;
+	}
+
+	/**
+	 * Set whether metrics are recorded.
+	 *
+	 * @param	enabled
+	 * 			True if metrics must be recorded, false otherwise.
+	 * @post	| new.isEnabled() == enabled
+	 */
+	@Override
+	public void setEnabled(boolean enabled) {
+		isEnabled = enabled;
+	}
+
+
+	/**********************************************************
+	 * sampling interval
+	 **********************************************************/
+
+	/**
+	 * Variable registering the average number of executions of an operation per timed execution.
+	 * (Default = 16)
+	 */
+	private static volatile int samplingInterval = 16;
+
+	/**
+	 * Return the average number of executions of an operation per timed execution.
+	 */
+	@Basic @Override
+	public int getSamplingInterval() {
+		return samplingInterval;
+	}
+
+	/**
+	 * Check whether the given interval is a valid sampling interval.
+	 *
+	 * @param	interval
+	 * 			The interval to check.
+	 * @return	| result == (interval >= 1)
+	 */
+	public static boolean isValidSamplingInterval(int interval) {
+		return interval >= 1;
+	}
+
+	/**
+	 * Set the average number of executions of an operation per timed execution.
+	 *
+	 * @param	interval
+	 * 			The new sampling interval. An interval of 1 times all executions.
+	 * @post	| new.getSamplingInterval() == interval
+	 * @throws	IllegalArgumentException
+	 * 			| !isValidSamplingInterval(interval)
+	 */
+	@Override
+	public void setSamplingInterval(int interval) throws IllegalArgumentException {
+		if (!isValidSamplingInterval(interval))
+			throw new IllegalArgumentException("Invalid sampling interval: "+interval);
+		samplingInterval = interval;
+	}
+
+
+	/**********************************************************
+	 * recording
+	 **********************************************************/
+
+	/**
+	 * Variable registering the start time of executions that are not timed.
+	 */
+	static final long NOT_TIMED = Long.MIN_VALUE;
+
+	/**
+	 * Variables referencing the counters and histograms of the metrics.
+	 */
+	private final Map<Operation, LongAdder> counts = new EnumMap<Operation, LongAdder>(Operation.class);
+	private final Map<Operation, Log2Histogram> latencies = new EnumMap<Operation, Log2Histogram>(Operation.class);
+	private final Log2Histogram comparisonsPerInsert = new Log2Histogram();
+	private final Log2Histogram fanOuts = new Log2Histogram();
+	private final Log2Histogram depths = new Log2Histogram();
+	private final Map<String, LongAdder> rejections = new ConcurrentHashMap<String, LongAdder>();
+
+	/**
+	 * Check whether metrics are recorded, for hooks that must compute their values first.
+	 */
+	static boolean isRecording() {
+		return isEnabled;
+	}
+
+	/**
+	 * Return the start time of an execution of an operation, or NOT_TIMED if the execution
+	 * is not timed.
+	 */
+	static long start() {
+		if (!isEnabled)
+			return NOT_TIMED;
+		int interval = samplingInterval;
+		if (interval > 1 && ThreadLocalRandom.current().nextInt(interval) != 0)
+			return NOT_TIMED;
+		return System.nanoTime();
+	}
+
+	/**
+	 * Register a successful execution of the given operation, started at the given time.
+	 *
+	 * @param	operation
+	 * 			The executed operation.
+	 * @param	start
+	 * 			The start time returned by start(), or NOT_TIMED.
+	 */
+	static void record(Operation operation, long start) {
+		if (!isEnabled)
+			return;
+		instance.counts.get(operation).increment();
+		if (start != NOT_TIMED)
+			instance.latencies.get(operation).record(System.nanoTime() - start);
+	}
+
+	/**
+	 * Register the addition of an item to a directory.
+	 *
+	 * @param	nbComparisons
+	 * 			The number of names compared to find the position of the item.
+	 * @param	fanOut
+	 * 			The number of items of the directory after the addition.
+	 */
+	static void recordInsert(int nbComparisons, int fanOut) {
+		if (!isEnabled)
+			return;
+		instance.comparisonsPerInsert.record(nbComparisons);
+		instance.fanOuts.record(fanOut);
+	}
+
+	/**
+	 * Register the addition of a directory with the given depth to a parent directory.
+	 */
+	static void recordDepth(int depth) {
+		if (isEnabled)
+			instance.depths.record(depth);
+	}
+
+	/**
+	 * Register the rejection of a change with the given exception.
+	 *
+	 * @param	exception
+	 * 			The exception with which the change is rejected.
+	 * @return	The given exception, so it can be thrown directly.
+	 * 			| result == exception
+	 */
+	static <E extends RuntimeException> E rejected(E exception) {
+		if (isEnabled)
+			instance.rejections.computeIfAbsent(exception.getClass().getSimpleName(), type -> new LongAdder()).increment();
+		return exception;
+	}
+
+
+	/**********************************************************
+	 * inspection
+	 **********************************************************/
+
+	/**
+	 * Return the number of successful executions of the given operation.
+	 */
+	public long getCount(Operation operation) {
+		return counts.get(operation).sum();
+	}
+
+	/**
+	 * Return the histogram of the sampled latencies of the given operation, in nanoseconds.
+	 */
+	public Log2Histogram getLatencies(Operation operation) {
+		return latencies.get(operation);
+	}
+
+	/**
+	 * Return the histogram of the number of names compared to find the position of a new item.
+	 */
+	@Basic
+	public Log2Histogram getComparisonsPerInsertHistogram() {
+		return comparisonsPerInsert;
+	}
+
+	/**
+	 * Return the histogram of the number of items of directories after an item was added to them.
+	 */
+	@Basic
+	public Log2Histogram getFanOutHistogram() {
+		return fanOuts;
+	}
+
+	/**
+	 * Return the histogram of the depths of directories added to a parent directory.
+	 */
+	@Basic
+	public Log2Histogram getDepthHistogram() {
+		return depths;
+	}
+
+	/**
+	 * Return the number of rejected changes, by the simple name of the type of exception.
+	 */
+	@Override
+	public Map<String, Long> getRejections() {
+		Map<String, Long> result = new TreeMap<String, Long>();
+		rejections.forEach((type, count) -> result.put(type, count.sum()));
+		return result;
+	}
+
+	@Override
+	public Map<String, Long> getOperationCounts() {
+		Map<String, Long> result = new LinkedHashMap<String, Long>();
+		for (Operation operation : Operation.values())
+			result.put(operation.name(), getCount(operation));
+		return result;
+	}
+
+	@Override
+	public Map<String, Long> getMedianLatencies() {
+		return getLatencyPercentiles(50);
+	}
+
+	@Override
+	public Map<String, Long> getP99Latencies() {
+		return getLatencyPercentiles(99);
+	}
+
+	private Map<String, Long> getLatencyPercentiles(double percentile) {
+		Map<String, Long> result = new LinkedHashMap<String, Long>();
+		for (Operation operation : Operation.values())
+			result.put(operation.name(), getLatencies(operation).getPercentile(percentile));
+		return result;
+	}
+
+	@Override
+	public long[] getComparisonsPerInsert() {
+		return comparisonsPerInsert.getCounts();
+	}
+
+	@Override
+	public long[] getFanOuts() {
+		return fanOuts.getCounts();
+	}
+
+	@Override
+	public long[] getDepths() {
+		return depths.getCounts();
+	}
+
+	/**
+	 * Remove all recorded metrics.
+	 *
+	 * @post	| for each operation in Operation: new.getCount(operation) == 0
+	 * @post	| new.getRejections().isEmpty()
+	 */
+	@Override
+	public void reset() {
+		for (Operation operation : Operation.values()) {
+			counts.get(operation).reset();
+			latencies.get(operation).reset();
+		}
+		comparisonsPerInsert.reset();
+		fanOuts.reset();
+		depths.reset();
+		rejections.clear();
+	}
+
+}
@@ -0,0 +1,39 @@
+package filesystem;
+
+import java.util.Map;
+
+/**
+ * The management interface through which the metrics of the file system are exposed over JMX.
+ *
+ * Latencies are in nanoseconds, and are upper bounds taken from power of two histograms.
+ * Histograms are exposed as the counts of their buckets, see Log2Histogram.
+ *
+ * @version	6.0
+ */
+public interface FileSystemMetricsMXBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	int getSamplingInterval();
+
+	void setSamplingInterval(int interval);
+
+	Map<String, Long> getOperationCounts();
+
+	Map<String, Long> getMedianLatencies();
+
+	Map<String, Long> getP99Latencies();
+
+	long[] getComparisonsPerInsert();
+
+	long[] getFanOuts();
+
+	long[] getDepths();
+
+	Map<String, Long> getRejections();
+
+	void reset();
+
+}
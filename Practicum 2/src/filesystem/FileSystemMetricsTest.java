@@ -0,0 +1,232 @@
+package filesystem;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.*;
+import org.junit.*;
+import filesystem.FileSystemMetrics.Operation;
+import filesystem.exception.*;
+
+/**
+ * A JUnit (4) test class for testing the metrics of the file system.
+ *
+ * @version 6.0
+ */
+public class FileSystemMetricsTest {
+
+	private static final FileSystemMetrics metrics = FileSystemMetrics.getInstance();
+
+	private Directory root, dir, other;
+
+	private File file;
+
+	@Before
+	public void setUpFileSystem() {
+		root = new Directory("root");
+		dir = new Directory(root, "dir");
+		other = new Directory(root, "other");
+		file = new File(dir, "file", Type.TEXT);
+		metrics.reset();
+		metrics.setSamplingInterval(1);
+		metrics.setEnabled(true);
+	}
+
+	@After
+	public void disableMetrics() {
+		metrics.setEnabled(false);
+		metrics.setSamplingInterval(16);
+		metrics.reset();
+	}
+
+
+	/**********************************************************
+	 * RECORDING
+	 **********************************************************/
+
+	@Test
+	public void testOperations_counted() {
+		new File(dir, "a", Type.TEXT);
+		file.changeName("z");
+		file.move(other);
+		dir.getItem("a");
+		dir.getItem("missing");
+		assertEquals(2, metrics.getCount(Operation.ADD));
+		assertEquals(1, metrics.getCount(Operation.REMOVE));
+		assertEquals(1, metrics.getCount(Operation.RENAME));
+		assertEquals(1, metrics.getCount(Operation.MOVE));
+		assertEquals(2, metrics.getCount(Operation.LOOKUP));
+		assertEquals(2, metrics.getLatencies(Operation.LOOKUP).getCount());
+		assertEquals(2, metrics.getFanOutHistogram().getCount());
+		assertEquals(2, metrics.getComparisonsPerInsertHistogram().getCount());
+	}
+
+	@Test
+	public void testDepths_onlyDirectories() {
+		Directory sub = new Directory(dir, "sub");
+		new Directory(sub, "subsub");
+		new File(sub, "file", Type.TEXT);
+		// sub has two ancestors, subsub three: both are counted in the bucket of 2 to 3
+		assertEquals(2, metrics.getDepthHistogram().getCount());
+		assertEquals(2, metrics.getDepthHistogram().getCount(Log2Histogram.getBucketOf(2)));
+		assertEquals(3, Log2Histogram.getUpperBoundOf(Log2Histogram.getBucketOf(2)));
+	}
+
+	@Test
+	public void testRejections_countedByType() {
+		try {
+			new File(dir, "file", Type.TEXT);
+			fail();
+		} catch (IllegalArgumentException e) {}
+		file.setWritable(false);
+		try {
+			file.move(other);
+			fail();
+		} catch (DiskItemNotWritableException e) {}
+		try {
+			file.changeName("other");
+			fail();
+		} catch (DiskItemNotWritableException e) {}
+		try {
+			dir.move(dir);
+			fail();
+		} catch (IllegalArgumentException e) {}
+		Map<String, Long> rejections = metrics.getRejections();
+		assertEquals(Long.valueOf(2), rejections.get("IllegalArgumentException"));
+		assertEquals(Long.valueOf(2), rejections.get("DiskItemNotWritableException"));
+		assertEquals(0, metrics.getCount(Operation.MOVE));
+	}
+
+	@Test
+	public void testRejections_batchAndLifecycleChanges() {
+		file.setWritable(false);
+		try {
+			dir.moveAllInto(other);
+			fail();
+		} catch (DiskItemNotWritableException e) {}
+		try {
+			file.enlarge(1);
+			fail();
+		} catch (DiskItemNotWritableException e) {}
+		dir.setWritable(false);
+		try {
+			dir.makeRoot();
+			fail();
+		} catch (DiskItemNotWritableException e) {}
+		try {
+			root.terminate();
+			fail();
+		} catch (IllegalStateException e) {}
+		try {
+			dir.deleteRecursive();
+			fail();
+		} catch (IllegalStateException e) {}
+		Map<String, Long> rejections = metrics.getRejections();
+		assertEquals(Long.valueOf(3), rejections.get("DiskItemNotWritableException"));
+		assertEquals(Long.valueOf(2), rejections.get("IllegalStateException"));
+	}
+
+	@Test
+	public void testMoveAllInto_recordedAsMoves() {
+		new File(dir, "a", Type.TEXT);
+		dir.moveAllInto(other);
+		assertEquals(2, metrics.getCount(Operation.MOVE));
+	}
+
+	@Test
+	public void testLookups_onlyPublicLookupsCounted() {
+		ValidationLevel level = Directory.getValidationLevel();
+		Directory.setValidationLevel(ValidationLevel.TRUSTED);
+		try {
+			new File(dir, "a", Type.TEXT);
+			assertTrue(dir.containsDiskItemWithName("a"));
+			assertTrue(dir.hasAsItem(file));
+			assertEquals(0, metrics.getCount(Operation.LOOKUP));
+			dir.getItem("a");
+			assertEquals(1, metrics.getCount(Operation.LOOKUP));
+		} finally {
+			Directory.setValidationLevel(level);
+		}
+	}
+
+	@Test
+	public void testComparisonsPerInsert_counted() {
+		ValidationLevel level = Directory.getValidationLevel();
+		Directory.setValidationLevel(ValidationLevel.TRUSTED);
+		try {
+			new File(other, "b", Type.TEXT);
+			new File(other, "d", Type.TEXT);
+			metrics.reset();
+			// the binary search over the 2 items of other only compares the name of d
+			new File(other, "f", Type.TEXT);
+			assertEquals(1, metrics.getComparisonsPerInsertHistogram().getCount(Log2Histogram.getBucketOf(1)));
+		} finally {
+			Directory.setValidationLevel(level);
+		}
+	}
+
+	@Test
+	public void testDisabled_nothingRecorded() {
+		metrics.setEnabled(false);
+		new File(dir, "a", Type.TEXT);
+		dir.getItem("a");
+		assertEquals(0, metrics.getCount(Operation.ADD));
+		assertEquals(0, metrics.getCount(Operation.LOOKUP));
+		assertEquals(0, metrics.getFanOutHistogram().getCount());
+	}
+
+	@Test
+	public void testReset() {
+		new File(dir, "a", Type.TEXT);
+		metrics.reset();
+		assertEquals(0, metrics.getCount(Operation.ADD));
+		assertEquals(0, metrics.getLatencies(Operation.ADD).getCount());
+		assertTrue(metrics.getRejections().isEmpty());
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testSetSamplingInterval_illegalCase() {
+		metrics.setSamplingInterval(0);
+	}
+
+
+	/**********************************************************
+	 * JMX
+	 **********************************************************/
+
+	@Test
+	public void testRegisterMBean() throws JMException {
+		ObjectName name = FileSystemMetrics.registerMBean();
+		assertEquals(name, FileSystemMetrics.registerMBean());
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		new File(dir, "a", Type.TEXT);
+		assertEquals(Boolean.TRUE, server.getAttribute(name, "Enabled"));
+		assertNotNull(server.getAttribute(name, "OperationCounts"));
+		assertEquals(Log2Histogram.NB_BUCKETS, ((long[]) server.getAttribute(name, "FanOuts")).length);
+		server.invoke(name, "reset", new Object[0], new String[0]);
+		assertEquals(0, metrics.getCount(Operation.ADD));
+	}
+
+
+	/**********************************************************
+	 * HISTOGRAMS
+	 **********************************************************/
+
+	@Test
+	public void testLog2Histogram() {
+		Log2Histogram histogram = new Log2Histogram();
+		assertEquals(0, histogram.getPercentile(50));
+		histogram.record(0);
+		histogram.record(1);
+		histogram.record(5);
+		histogram.record(1000);
+		assertEquals(4, histogram.getCount());
+		assertEquals(1, histogram.getCount(3));
+		assertEquals(1, histogram.getPercentile(50));
+		assertEquals(1023, histogram.getPercentile(100));
+		assertEquals(0, Log2Histogram.getBucketOf(-1));
+		assertEquals(Log2Histogram.NB_BUCKETS - 1, Log2Histogram.getBucketOf(Long.MAX_VALUE));
+	}
+
+}
@@ -0,0 +1,370 @@
+package filesystem;
+
+import java.io.*;
+import java.util.*;
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of serializers that write forests of directory trees, including their links,
+ * to byte streams, and read them back.
+ *
+ * Each actual item gets a dense integer id, in the order in which the item is first written
+ * or referred to. Links are written as references to the id of their linked item. The items
+ * are written in preorder, one tree after the other, so a stream can be written and read
+ * without holding more than the items themselves in memory.
+ *
+ * @note	A link may refer to an item that is only written later in the stream. While reading,
+ * 			such links are kept aside and resolved in a single pass at the end of the stream.
+ * 			All other items are resolved directly by their id, in an array: no lookup by name
+ * 			or hash map is needed per link.
+ * @note	Links that refer to an item outside the written forest are written nevertheless,
+ * 			and skipped when the stream is read.
+ * @note	The items that are read are new objects, with the names, writability, types, sizes
+ * 			and times of the written items. The trees are restored without validating them again,
+ * 			so only streams written by a serializer should be read. No listeners are notified.
+ *
+ * @version	6.0
+ */
+public class ForestSerializer {
+
+	/**
+	 * Variable registering the first bytes of each stream.
+	 */
+	private static final int MAGIC = 0x46535431;
+
+	/**
+	 * Variables registering the kinds of records in a stream.
+	 */
+	private static final byte DIRECTORY = 0, FILE = 1, LINK = 2, END_OF_DIRECTORY = 3, END_OF_FOREST = 4;
+
+	/**
+	 * Variables registering the flags of a record.
+	 */
+	private static final int WRITABLE = 1, MODIFIED = 2;
+
+
+	/**********************************************************
+	 * statistics of the last operation
+	 **********************************************************/
+
+	/**
+	 * Variable registering the number of items written or read by the last operation.
+	 */
+	private long nbItems = 0;
+
+	/**
+	 * Variable registering the number of links skipped by the last read.
+	 */
+	private long nbSkippedLinks = 0;
+
+	/**
+	 * Return the number of items written or read by the last operation of this serializer,
+	 * including the root directories and skipped links.
+	 */
+	@Basic
+	public long getNbItems() {
+		return nbItems;
+	}
+
+	/**
+	 * Return the number of links skipped by the last read of this serializer,
+	 * because they refer to an item outside the written forest.
+	 */
+	@Basic
+	public long getNbSkippedLinks() {
+		return nbSkippedLinks;
+	}
+
+
+	/**********************************************************
+	 * writing
+	 **********************************************************/
+
+	/**
+	 * Write the given directories, and all items they directly or indirectly contain, to the given stream.
+	 *
+	 * @param	roots
+	 * 			The directories to write.
+	 * @param	out
+	 * 			The stream to write to. It is flushed, but not closed.
+	 * @throws	IllegalArgumentException
+	 * 			The given stream or collection of directories is not effective, or one of the
+	 * 			given directories is not effective or terminated.
+	 * @throws	IOException
+	 * 			The stream could not be written.
+	 */
+	public void write(Collection<Directory> roots, OutputStream out) throws IllegalArgumentException, IOException {
+		if (roots == null || out == null)
+			throw new IllegalArgumentException("The directories and the stream must be effective.");
+		for (Directory root : roots)
+			if (root == null || root.isTerminated())
+				throw new IllegalArgumentException("The directories must be effective and not terminated.");
+		Writer writer = new Writer(new DataOutputStream(new BufferedOutputStream(out, 1 << 16)));
+		writer.out.writeInt(MAGIC);
+		for (Directory root : roots)
+			writer.write(root);
+		writer.out.writeByte(END_OF_FOREST);
+		writer.out.flush();
+		nbItems = writer.nbItems;
+		nbSkippedLinks = 0;
+	}
+
+	/**
+	 * A class registering the state of a single write.
+	 */
+	private static class Writer {
+
+		private Writer(DataOutputStream out) {
+			this.out = out;
+		}
+
+		private final DataOutputStream out;
+
+		/**
+		 * The ids of the actual items that have been written or referred to.
+		 */
+		private final Map<ActualItem, Integer> ids = new IdentityHashMap<ActualItem, Integer>();
+
+		private long nbItems = 0;
+
+		/**
+		 * Return the id of the given actual item, giving it the next id if it has none yet.
+		 */
+		private int getId(ActualItem item) {
+			Integer id = ids.get(item);
+			if (id == null) {
+				id = ids.size();
+				ids.put(item, id);
+			}
+			return id;
+		}
+
+		private void write(DiskItem item) throws IOException {
+			nbItems++;
+			if (item instanceof Link) {
+				out.writeByte(LINK);
+				writeCommon(item, false);
+				writeVarInt(out, getId(((Link) item).getLinkedItem()));
+			} else if (item instanceof File) {
+				File file = (File) item;
+				out.writeByte(FILE);
+				writeVarInt(out, getId(file));
+				writeCommon(file, file.isWritable());
+				out.writeByte(file.getType().ordinal());
+				writeVarInt(out, file.getSize());
+			} else {
+				Directory directory = (Directory) item;
+				out.writeByte(DIRECTORY);
+				writeVarInt(out, getId(directory));
+				writeCommon(directory, directory.isWritable());
+				for (int i = 1; i <= directory.getNbItems(); i++)
+					write(directory.getItemAt(i));
+				out.writeByte(END_OF_DIRECTORY);
+			}
+		}
+
+		private void writeCommon(DiskItem item, boolean writable) throws IOException {
+			Date modificationTime = item.getModificationTime();
+			out.writeByte((writable ? WRITABLE : 0) | (modificationTime != null ? MODIFIED : 0));
+			out.writeUTF(item.getName());
+			out.writeLong(item.getCreationTime().getTime());
+			if (modificationTime != null)
+				out.writeLong(modificationTime.getTime());
+		}
+
+	}
+
+
+	/**********************************************************
+	 * reading
+	 **********************************************************/
+
+	/**
+	 * Read the forest written to the given stream.
+	 *
+	 * @param	in
+	 * 			The stream to read from. It is not closed.
+	 * @return	New root directories, with the names, writability, times and items of the written
+	 * 			directories, in the order in which they were written.
+	 * @throws	IllegalArgumentException
+	 * 			The given stream is not effective.
+	 * @throws	StreamCorruptedException
+	 * 			The given stream does not contain a written forest.
+	 * @throws	IOException
+	 * 			The stream could not be read.
+	 */
+	public List<Directory> read(InputStream in) throws IllegalArgumentException, IOException {
+		if (in == null)
+			throw new IllegalArgumentException("The stream must be effective.");
+		Reader reader = new Reader(new DataInputStream(new BufferedInputStream(in, 1 << 16)));
+		if (reader.in.readInt() != MAGIC)
+			throw new StreamCorruptedException("The stream does not contain a forest.");
+		List<Directory> roots = new ArrayList<Directory>();
+		byte kind;
+		while ((kind = reader.in.readByte()) != END_OF_FOREST) {
+			if (kind != DIRECTORY)
+				throw new StreamCorruptedException("Unexpected record: " + kind);
+			roots.add(reader.readDirectory());
+		}
+		reader.resolvePendingLinks();
+		nbItems = reader.nbItems;
+		nbSkippedLinks = reader.nbSkippedLinks;
+		return roots;
+	}
+
+	/**
+	 * A class of links whose linked item has not been read yet.
+	 */
+	private record PendingLink(Directory parent, String name, Date creationTime, Date modificationTime, int target) {}
+
+	/**
+	 * A class registering the state of a single read.
+	 */
+	private static class Reader {
+
+		private Reader(DataInputStream in) {
+			this.in = in;
+		}
+
+		private final DataInputStream in;
+
+		/**
+		 * The actual items that have been read, by id.
+		 */
+		private ActualItem[] items = new ActualItem[1024];
+
+		private final List<PendingLink> pendingLinks = new ArrayList<PendingLink>();
+
+		private long nbItems = 0;
+
+		private long nbSkippedLinks = 0;
+
+		/**
+		 * Return the actual item with the given id, or null if it has not been read yet.
+		 */
+		private ActualItem getItem(int id) {
+			return id < items.length ? items[id] : null;
+		}
+
+		private void register(int id, ActualItem item) {
+			if (id >= items.length)
+				items = Arrays.copyOf(items, Math.max(2 * items.length, id + 1));
+			items[id] = item;
+		}
+
+		/**
+		 * Read a directory whose kind has already been read, with its items.
+		 *
+		 * @note	Subdirectories are restored before they are returned to their parent.
+		 */
+		private Directory readDirectory() throws IOException {
+			nbItems++;
+			int id = readVarInt(in);
+			int flags = in.readUnsignedByte();
+			String name = in.readUTF();
+			Date creationTime = new Date(in.readLong());
+			Date modificationTime = readModificationTime(flags);
+			Directory directory = new Directory(name, (flags & WRITABLE) != 0, creationTime, modificationTime);
+			register(id, directory);
+			List<DiskItem> content = new ArrayList<DiskItem>();
+			byte kind;
+			while ((kind = in.readByte()) != END_OF_DIRECTORY) {
+				if (kind == DIRECTORY) {
+					content.add(readDirectory());
+				} else if (kind == FILE) {
+					content.add(readFile());
+				} else if (kind == LINK) {
+					Link link = readLink(directory);
+					if (link != null)
+						content.add(link);
+				} else {
+					throw new StreamCorruptedException("Unexpected record: " + kind);
+				}
+			}
+			directory.restoreItems(content);
+			return directory;
+		}
+
+		private File readFile() throws IOException {
+			nbItems++;
+			int id = readVarInt(in);
+			int flags = in.readUnsignedByte();
+			String name = in.readUTF();
+			Date creationTime = new Date(in.readLong());
+			Date modificationTime = readModificationTime(flags);
+			Type type = Type.values()[in.readUnsignedByte()];
+			File file = new File(name, type, readVarInt(in), (flags & WRITABLE) != 0, creationTime, modificationTime);
+			register(id, file);
+			return file;
+		}
+
+		/**
+		 * Read a link in the given directory, or register it as pending and return null
+		 * if its linked item has not been read yet.
+		 */
+		private Link readLink(Directory parent) throws IOException {
+			nbItems++;
+			int flags = in.readUnsignedByte();
+			String name = in.readUTF();
+			Date creationTime = new Date(in.readLong());
+			Date modificationTime = readModificationTime(flags);
+			int target = readVarInt(in);
+			ActualItem linkedItem = getItem(target);
+			if (linkedItem == null) {
+				pendingLinks.add(new PendingLink(parent, name, creationTime, modificationTime, target));
+				return null;
+			}
+			return new Link(name, linkedItem, creationTime, modificationTime);
+		}
+
+		private Date readModificationTime(int flags) throws IOException {
+			return (flags & MODIFIED) != 0 ? new Date(in.readLong()) : null;
+		}
+
+		/**
+		 * Restore the links whose linked item was read after them, and skip those whose linked item
+		 * was never read.
+		 */
+		private void resolvePendingLinks() {
+			for (PendingLink pending : pendingLinks) {
+				ActualItem linkedItem = getItem(pending.target());
+				if (linkedItem == null)
+					nbSkippedLinks++;
+				else
+					pending.parent().restoreItem(new Link(pending.name(), linkedItem, pending.creationTime(), pending.modificationTime()));
+			}
+		}
+
+	}
+
+
+	/**********************************************************
+	 * variable-length integers
+	 **********************************************************/
+
+	/**
+	 * Write the given non-negative integer in 7-bit groups, least significant group first.
+	 */
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * Read an integer written by writeVarInt.
+	 */
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int result = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int group = in.readUnsignedByte();
+			result |= (group & 0x7F) << shift;
+			if ((group & 0x80) == 0)
+				return result;
+		}
+		throw new StreamCorruptedException("Invalid variable-length integer.");
+	}
+
+}
@@ -0,0 +1,157 @@
+package filesystem;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.List;
+import org.junit.*;
+
+/**
+ * A JUnit (4) test class for testing the serialization of forests.
+ *
+ * @version 6.0
+ */
+public class ForestSerializerTest {
+
+	// FILE SYSTEM STRUCTURE FOR TESTING:
+
+	/*
+	 * first
+	 * |-- dirA
+	 * |   |-- aLink          (to fileB, forward)
+	 * |   |-- fileA.txt      (100 bytes, modified)
+	 * |-- dirB             (not writable)
+	 * |   |-- fileB.pdf      (200 bytes, not writable)
+	 * |   |-- linkA          (to fileA, backward)
+	 * |-- linkToSecond     (to second/fileC, other tree)
+	 *
+	 * second
+	 * |-- fileC.java
+	 * |-- linkOut          (to outside, not written)
+	 *
+	 * outside
+	 */
+
+	private static Directory first, dirA, dirB, second, outside;
+	private static File fileA, fileB, fileC;
+
+	private ForestSerializer serializer;
+
+	@Before
+	public void setUpFileSystem() {
+		first = new Directory("first");
+		dirA = new Directory(first, "dirA");
+		dirB = new Directory(first, "dirB");
+		fileA = new File(dirA, "fileA", Type.TEXT, 100, true);
+		fileB = new File(dirB, "fileB", Type.PDF, 200, false);
+		new Link(dirA, "aLink", fileB);
+		new Link(dirB, "linkA", fileA);
+		second = new Directory("second");
+		fileC = new File(second, "fileC", Type.JAVA);
+		new Link(first, "linkToSecond", fileC);
+		outside = new Directory("outside");
+		new Link(second, "linkOut", outside);
+		fileA.enlarge(1);
+		dirB.setWritable(false);
+		serializer = new ForestSerializer();
+	}
+
+	private List<Directory> writeAndRead(List<Directory> roots) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.write(roots, out);
+		return serializer.read(new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	/**
+	 * Return a description of the given item and all items it directly or indirectly contains.
+	 */
+	private static String describe(DiskItem item) {
+		StringBuilder result = new StringBuilder(item.getName());
+		result.append(' ').append(item.getCreationTime()).append(' ').append(item.getModificationTime());
+		if (item instanceof ActualItem)
+			result.append(((ActualItem) item).isWritable() ? " w" : " r");
+		if (item instanceof File)
+			result.append(' ').append(((File) item).getType()).append(' ').append(((File) item).getSize());
+		if (item instanceof Link)
+			result.append(" -> ").append(((Link) item).getLinkedItem().getAbsolutePath());
+		if (item instanceof Directory)
+			for (int i = 1; i <= ((Directory) item).getNbItems(); i++)
+				result.append(" (").append(describe(((Directory) item).getItemAt(i))).append(')');
+		return result.toString();
+	}
+
+
+	/**********************************************************
+	 * ROUND TRIP
+	 **********************************************************/
+
+	@Test
+	public void testRoundTrip_forest() throws IOException {
+		List<Directory> roots = writeAndRead(List.of(first, second));
+		assertEquals(2, roots.size());
+		Directory first2 = roots.get(0), second2 = roots.get(1);
+		assertNotSame(first, first2);
+		assertEquals(describe(first), describe(first2));
+		// the link to an item outside the forest is skipped
+		assertEquals(1, second2.getNbItems());
+		assertEquals(describe(fileC), describe(second2.getItemAt(1)));
+		assertTrue(first2.isRoot());
+		assertTrue(first2.hasProperItems());
+		assertEquals(11, serializer.getNbItems());
+		assertEquals(1, serializer.getNbSkippedLinks());
+	}
+
+	@Test
+	public void testRoundTrip_linkedItemsResolved() throws IOException {
+		List<Directory> roots = writeAndRead(List.of(first, second));
+		Directory dirA2 = (Directory) roots.get(0).getItem("dirA");
+		Directory dirB2 = (Directory) roots.get(0).getItem("dirB");
+		// forward reference, restored after the whole stream is read
+		Link aLink = (Link) dirA2.getItem("aLink");
+		assertSame(dirB2.getItem("fileB"), aLink.getLinkedItem());
+		assertSame(dirA2, aLink.getParentDirectory());
+		assertSame(aLink, dirA2.getItemAt(1));
+		assertTrue(dirA2.hasProperItems());
+		// backward reference
+		assertSame(dirA2.getItem("fileA"), ((Link) dirB2.getItem("linkA")).getLinkedItem());
+		// reference to another tree of the forest
+		assertSame(roots.get(1).getItem("fileC"), ((Link) roots.get(0).getItem("linkToSecond")).getLinkedItem());
+		// the linked items know they are referred to
+		assertFalse(((ActualItem) dirB2.getItem("fileB")).getNbReferringLinks() == 0);
+	}
+
+	@Test
+	public void testRoundTrip_emptyForest() throws IOException {
+		assertTrue(writeAndRead(List.of()).isEmpty());
+		assertEquals(0, serializer.getNbItems());
+	}
+
+
+	/**********************************************************
+	 * ILLEGAL CASES
+	 **********************************************************/
+
+	@Test (expected = StreamCorruptedException.class)
+	public void testRead_notAForest() throws IOException {
+		serializer.read(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5}));
+	}
+
+	@Test (expected = EOFException.class)
+	public void testRead_truncated() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		serializer.write(List.of(first), out);
+		byte[] bytes = out.toByteArray();
+		serializer.read(new ByteArrayInputStream(bytes, 0, bytes.length / 2));
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testWrite_illegalCase() throws IOException {
+		serializer.write(List.of(first), null);
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testRead_illegalCase() throws IOException {
+		serializer.read(null);
+	}
+
+}
@@ -0,0 +1,194 @@
+package filesystem;
+
+import java.util.*;
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of bounded indices registering the largest files in the subtree of a directory.
+ *
+ * @invar	The number of registered files never exceeds the capacity.
+ * 			| getNbFiles() <= Directory.getMaximumNbLargestFiles()
+ *
+ * @note	This is an auxiliary class for the class Directory. It is not meant to be used
+ * 			outside of this package, hence the package visibility.
+ * @note	The files are registered together with the size they had at the time of registration.
+ * 			The ordering of the index can then never be corrupted by a file that changes its size
+ * 			before it is updated in this index.
+ * @note	An index becomes stale when a file leaves it while it was filled to its capacity:
+ * 			the next largest file of the subtree is then unknown. A stale index is not updated
+ * 			anymore, until the directory owning it rebuilds it from its own content.
+ *
+ * @version	6.0
+ */
+class LargestFilesIndex {
+
+	/**
+	 * A class of entries registering a file together with its size at the time of registration.
+	 */
+	private record Entry(File file, int size) {}
+
+	/**
+	 * Variable referencing the ordering of the entries in this index:
+	 * by descending size, and by ascending sequence number for files of the same size.
+	 */
+	private static final Comparator<Entry> ORDER = (first, second) -> {
+		if (first.size() != second.size())
+			return Integer.compare(second.size(), first.size());
+		return Long.compare(first.file().getSequenceNumber(), second.file().getSequenceNumber());
+	};
+
+	/**
+	 * Variable referencing the sorted set of entries of this index.
+	 */
+	private final NavigableSet<Entry> entries = new TreeSet<Entry>(ORDER);
+
+	/**
+	 * Variable registering whether this index is stale. (Default = false)
+	 */
+	private boolean isStale = false;
+
+	/**
+	 * Check whether this index is stale.
+	 */
+	@Basic
+	boolean isStale() {
+		return isStale;
+	}
+
+	/**
+	 * Mark this index as stale, so that it is rebuilt before it is inspected.
+	 *
+	 * @post	| new.isStale()
+	 */
+	void invalidate() {
+		entries.clear();
+		isStale = true;
+	}
+
+	/**
+	 * Return the number of files registered in this index.
+	 */
+	@Basic
+	int getNbFiles() {
+		return entries.size();
+	}
+
+	/**
+	 * Check whether this index is filled to its capacity.
+	 *
+	 * @return	| result == (getNbFiles() == Directory.getMaximumNbLargestFiles())
+	 */
+	private boolean isFull() {
+		return getNbFiles() == Directory.getMaximumNbLargestFiles();
+	}
+
+	/**
+	 * Register the given file with its current size in this index.
+	 *
+	 * @param	file
+	 * 			The file to register.
+	 * @effect	If this index is not stale, the given file is registered with its current size
+	 * 			and the smallest file is dropped if the capacity is exceeded.
+	 */
+	void add(File file) {
+		if (isStale())
+			return;
+		Entry entry = new Entry(file, file.getSize());
+		// a file that would be dropped right away is not inserted at all
+		if (isFull() && ORDER.compare(entry, entries.last()) > 0)
+			return;
+		entries.add(entry);
+		if (entries.size() > Directory.getMaximumNbLargestFiles())
+			entries.pollLast();
+	}
+
+	/**
+	 * Register all files of the given index in this index.
+	 *
+	 * @param	other
+	 * 			The index of which all files must be registered.
+	 * @effect	Each file registered in the other index is added to this index.
+	 */
+	void addAll(LargestFilesIndex other) {
+		for (Entry entry : other.entries)
+			add(entry.file());
+	}
+
+	/**
+	 * Unregister the given file, registered with the given size, from this index.
+	 *
+	 * @param	file
+	 * 			The file to unregister.
+	 * @param	size
+	 * 			The size with which the file was registered.
+	 * @post	If this index was full and registered the given file, it becomes stale.
+	 */
+	void remove(File file, int size) {
+		if (isStale())
+			return;
+		boolean wasFull = isFull();
+		if (entries.remove(new Entry(file, size)) && wasFull)
+			isStale = true;
+	}
+
+	/**
+	 * Unregister all files of the given index from this index.
+	 *
+	 * @param	other
+	 * 			The index of which all files must be unregistered.
+	 * @effect	Each file registered in the other index is removed from this index.
+	 */
+	void removeAll(LargestFilesIndex other) {
+		for (Entry entry : other.entries)
+			remove(entry.file(), entry.size());
+	}
+
+	/**
+	 * Update the registration of the given file, registered with the given old size.
+	 *
+	 * @param	file
+	 * 			The file that has been resized.
+	 * @param	oldSize
+	 * 			The size with which the file was registered.
+	 * @post	If this index was full and the file has shrunk to become the smallest registered
+	 * 			file, this index becomes stale. Another file of the subtree may now be larger.
+	 */
+	void resize(File file, int oldSize) {
+		if (isStale())
+			return;
+		boolean wasRegistered = entries.remove(new Entry(file, oldSize));
+		add(file);
+		if (wasRegistered && file.getSize() < oldSize && isFull() && entries.last().file() == file)
+			isStale = true;
+	}
+
+	/**
+	 * Replace the content of this index by the given files.
+	 *
+	 * @param	files
+	 * 			The files from which the largest ones must be registered.
+	 * @post	This index is no longer stale.
+	 * 			| !new.isStale()
+	 */
+	void rebuild(Collection<File> files) {
+		entries.clear();
+		isStale = false;
+		for (File file : files)
+			add(file);
+	}
+
+	/**
+	 * Return the given number of largest files registered in this index, in descending order of size.
+	 *
+	 * @param	nb
+	 * 			The number of files to return.
+	 */
+	List<File> getFiles(int nb) {
+		List<File> result = new ArrayList<File>(Math.min(nb, entries.size()));
+		Iterator<Entry> iterator = entries.iterator();
+		while (result.size() < nb && iterator.hasNext())
+			result.add(iterator.next().file());
+		return result;
+	}
+
+}
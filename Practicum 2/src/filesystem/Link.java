@@ -1,5 +1,6 @@
 package filesystem;
 
+import java.util.Date;
 import be.kuleuven.cs.som.annotate.*;
 import filesystem.exception.*;
 
@@ -37,6 +38,7 @@ public class Link extends DiskItem {
 	 * 			| new.getLinkedItem() == linkedItem
 	 * @post	The new link is valid after construction
 	 * 			| new.isValidLink()
+	 * @effect	The registered listeners are notified of the creation of the new link.
 	 * 
 	 * @throws 	IllegalArgumentException
 	 * 			The linkedItem is null or terminated
@@ -77,17 +79,17 @@ public class Link extends DiskItem {
 		 */
 			
 		if (linkedItem == null) 
-			throw new IllegalArgumentException("null is not allowed as a linked item.");		
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("null is not allowed as a linked item."));		
 		if (linkedItem.isTerminated())			
-			throw new IllegalArgumentException("A terminated item may not be linked.");
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("A terminated item may not be linked."));
 		if (!canHaveAsParentDirectory(parent))
-			throw new IllegalArgumentException("The given parent directory is not allowed.");
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("The given parent directory is not allowed."));
 		if (parent != null && !parent.isWritable())
-			throw new DiskItemNotWritableException(parent);
+			throw FileSystemMetrics.rejected(new DiskItemNotWritableException(parent));
 		if (parent != null && canHaveAsName(name) && parent.containsDiskItemWithName(name))
-			throw new IllegalArgumentException("The given parent directory already contains an item with the given (valid) name.");
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("The given parent directory already contains an item with the given (valid) name."));
 		if (parent != null && !canHaveAsName(name) && parent.containsDiskItemWithName(getDefaultName()))
-			throw new IllegalArgumentException("The given name is invalid and the given parent directory already contains an item with the default (valid) name.");
+			throw FileSystemMetrics.rejected(new IllegalArgumentException("The given name is invalid and the given parent directory already contains an item with the default (valid) name."));
 		
 		this.linkedItem = linkedItem; 
 		try{
@@ -96,6 +98,36 @@ public class Link extends DiskItem {
 			//should not occur
 			assert false;
 		}
+		linkedItem.addReferringLink();
+		notifyListeners(listener -> listener.itemCreated(this));
+	}
+	
+	
+	/**
+	 * Initialize a new root link with the given name, linked item, creation time and modification time.
+	 * 
+	 * @param	name
+	 * 			The name of the new link.
+	 * @param	linkedItem
+	 * 			The actual item which the new link refers to.
+	 * @param	creationTime
+	 * 			The creation time of the new link.
+	 * @param	modificationTime
+	 * 			The modification time of the new link, possibly null.
+	 * @pre		The given linked item is effective and not terminated.
+	 * 			| linkedItem != null && !linkedItem.isTerminated()
+	 * @effect	The new link is a root disk item with the given name, creation time and modification time.
+	 * 			| super(name,creationTime,modificationTime)
+	 * @post	The given item is registered as the linked item.
+	 * 			| new.getLinkedItem() == linkedItem
+	 * 
+	 * @note	This constructor is only meant for restoring serialized links. No listeners are notified.
+	 */
+	@Raw
+	Link(String name, ActualItem linkedItem, Date creationTime, Date modificationTime) {
+		super(name, creationTime, modificationTime);
+		this.linkedItem = linkedItem;
+		linkedItem.addReferringLink();
 	}
 	
 	
@@ -124,16 +156,38 @@ public class Link extends DiskItem {
 	}
     
     
-    /*
-     * Please note that we might want to provide an overridden 
-     * implementation for the terminate method too. It makes sense
-     * to break down the uni-directional relationship to the linkeditem.
-     * However, the variable is denoted final, so we can't overwrite
-     * its value with a null-reference.
+    /**
+     * Terminate this link.
      * 
-     * In case of a uni-directional relationship, this is not a big problem.
-     * There can be no inconsistencies with such relationships.
+     * @effect	This link is terminated as a disk item.
+     * 			| super.terminate()
+     * @effect	This link is no longer registered as a link referring to its linked item.
+     * 			| getLinkedItem().removeReferringLink()
+     * 
+     * @note	The relationship to the linked item itself is not broken down: the variable is 
+     * 			denoted final, so we can't overwrite its value with a null-reference.
+     * 			In case of a uni-directional relationship, this is not a big problem.
+     * 			The count of referring links only serves paged stores.
      */
+    @Override
+    public void terminate() throws IllegalStateException {
+    	super.terminate();
+    	getLinkedItem().removeReferringLink();
+    }
+
+    /**
+     * Delete this link recursively.
+     * 
+     * @effect	This link is recursively deleted as a disk item.
+     * 			| super.deleteRecursive()
+     * @effect	This link is no longer registered as a link referring to its linked item.
+     * 			| getLinkedItem().removeReferringLink()
+     */
+    @Override
+    public void deleteRecursive() throws IllegalStateException {
+    	super.deleteRecursive();
+    	getLinkedItem().removeReferringLink();
+    }
 	
     /**
      * Check whether this link can be recursively deleted. 
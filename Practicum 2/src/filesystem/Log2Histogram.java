@@ -0,0 +1,160 @@
+package filesystem;
+
+import java.util.concurrent.atomic.LongAdder;
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of histograms of non-negative values, with one bucket for each power of two.
+ *
+ * Bucket 0 counts the value 0, and bucket I (I > 0) counts the values from 2^(I-1) up to 2^I - 1.
+ *
+ * @note	Values are recorded without locks, so histograms can be shared by all threads.
+ * 			Inspections are weakly consistent: values recorded during an inspection may
+ * 			or may not be taken into account.
+ *
+ * @version	6.0
+ */
+public final class Log2Histogram {
+
+	/**
+	 * Variable registering the number of buckets of all histograms.
+	 */
+	public static final int NB_BUCKETS = 64;
+
+	/**
+	 * Variable referencing the counters of the buckets of this histogram.
+	 */
+	private final LongAdder[] buckets = new LongAdder[NB_BUCKETS];
+
+	/**
+	 * Initialize a new, empty histogram.
+	 *
+	 * @post	The new histogram is empty.
+	 * 			| new.getCount() == 0
+	 */
+	public Log2Histogram() {
+		for (int i = 0; i < NB_BUCKETS; i++)
+			buckets[i] = new LongAdder();
+	}
+
+	/**
+	 * Return the bucket in which the given value is counted.
+	 *
+	 * @param	value
+	 * 			The value to count.
+	 * @return	0 if the given value is not positive, otherwise the number of bits of the value.
+	 * 			| result == (value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value))
+	 * @note	The last bucket also counts the values that do not fit in the other buckets.
+	 */
+	public static int getBucketOf(long value) {
+		if (value <= 0)
+			return 0;
+		return Math.min(NB_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+	}
+
+	/**
+	 * Return the largest value counted in the given bucket.
+	 *
+	 * @param	bucket
+	 * 			The bucket whose largest value is returned.
+	 * @return	| result == (bucket == 0 ? 0 : (1L << bucket) - 1)
+	 */
+	public static long getUpperBoundOf(int bucket) {
+		if (bucket <= 0)
+			return 0;
+		if (bucket >= NB_BUCKETS - 1)
+			return Long.MAX_VALUE;
+		return (1L << bucket) - 1;
+	}
+
+	/**
+	 * Count the given value in this histogram.
+	 *
+	 * @param	value
+	 * 			The value to count.
+	 * @post	The count of the bucket of the given value is incremented by 1.
+	 * 			| new.getCount(getBucketOf(value)) == getCount(getBucketOf(value)) + 1
+	 */
+	public void record(long value) {
+		buckets[getBucketOf(value)].increment();
+	}
+
+	/**
+	 * Return the number of values counted in the given bucket.
+	 *
+	 * @param	bucket
+	 * 			The bucket to inspect.
+	 * @throws	IndexOutOfBoundsException
+	 * 			The given bucket does not exist.
+	 * 			| bucket < 0 || bucket >= NB_BUCKETS
+	 */
+	@Basic
+	public long getCount(int bucket) throws IndexOutOfBoundsException {
+		return buckets[bucket].sum();
+	}
+
+	/**
+	 * Return the number of values counted in this histogram.
+	 *
+	 * @return	| result == sum({I in 0..NB_BUCKETS-1 : getCount(I)})
+	 */
+	public long getCount() {
+		long result = 0;
+		for (LongAdder bucket : buckets)
+			result += bucket.sum();
+		return result;
+	}
+
+	/**
+	 * Return the counts of all buckets of this histogram.
+	 *
+	 * @return	| for each I in 0..NB_BUCKETS-1 : result[I] == getCount(I)
+	 */
+	public long[] getCounts() {
+		long[] result = new long[NB_BUCKETS];
+		for (int i = 0; i < NB_BUCKETS; i++)
+			result[i] = buckets[i].sum();
+		return result;
+	}
+
+	/**
+	 * Return an upper bound on the given percentile of the values counted in this histogram.
+	 *
+	 * @param	percentile
+	 * 			The percentile to return, between 0 and 100.
+	 * @return	0 if this histogram is empty, otherwise the upper bound of the first bucket
+	 * 			up to which at least the given percentage of the values is counted.
+	 * @throws	IllegalArgumentException
+	 * 			The given percentile is not between 0 and 100.
+	 * 			| !(percentile >= 0 && percentile <= 100)
+	 */
+	public long getPercentile(double percentile) throws IllegalArgumentException {
+		if (!(percentile >= 0 && percentile <= 100))
+			throw new IllegalArgumentException("Invalid percentile: "+percentile);
+		long[] counts = getCounts();
+		long total = 0;
+		for (long count : counts)
+			total += count;
+		if (total == 0)
+			return 0;
+		long threshold = (long) Math.ceil(total * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < NB_BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= threshold && seen > 0)
+				return getUpperBoundOf(i);
+		}
+		return getUpperBoundOf(NB_BUCKETS - 1);
+	}
+
+	/**
+	 * Remove all values from this histogram.
+	 *
+	 * @post	| new.getCount() == 0
+	 */
+	public void reset() {
+		for (LongAdder bucket : buckets)
+			bucket.reset();
+	}
+
+}
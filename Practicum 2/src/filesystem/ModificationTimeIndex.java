@@ -0,0 +1,114 @@
+package filesystem;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListSet;
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of indices registering the disk items in the subtree of an indexed directory,
+ * ordered by the time of their last change.
+ *
+ * @note	This is an auxiliary class for the class Directory. It is not meant to be used
+ * 			outside of this package, hence the package visibility.
+ * @note	The time of the last change of a disk item is its modification time, or its creation time
+ * 			if it has not been modified. The items are registered together with that time, so the
+ * 			ordering of the index can never be corrupted by an item that changes before it is updated
+ * 			in this index.
+ * @note	The entries are kept in a concurrent skip list, so the index can be inspected by other
+ * 			threads (e.g. for a backup) while the file system changes. Such inspections are weakly
+ * 			consistent: they reflect the index at some point during the inspection.
+ *
+ * @version	6.0
+ */
+class ModificationTimeIndex {
+
+	/**
+	 * A class of entries registering a disk item together with the time of its last change
+	 * at the time of registration, and with its sequence number.
+	 */
+	private record Entry(long time, long sequenceNumber, DiskItem item) {
+
+		private Entry(long time, DiskItem item) {
+			this(time, item.getSequenceNumber(), item);
+		}
+	}
+
+	/**
+	 * Variable referencing the ordering of the entries in this index:
+	 * by ascending time, and by ascending sequence number for items changed at the same time.
+	 */
+	private static final Comparator<Entry> ORDER = (first, second) -> {
+		if (first.time() != second.time())
+			return Long.compare(first.time(), second.time());
+		return Long.compare(first.sequenceNumber(), second.sequenceNumber());
+	};
+
+	/**
+	 * Variable referencing the sorted set of entries of this index.
+	 */
+	private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<Entry>(ORDER);
+
+	/**
+	 * Return the number of disk items registered in this index.
+	 */
+	@Basic
+	int getNbItems() {
+		return entries.size();
+	}
+
+	/**
+	 * Register the given disk item with the time of its last change in this index.
+	 *
+	 * @param	item
+	 * 			The disk item to register.
+	 */
+	void add(@Raw DiskItem item) {
+		entries.add(new Entry(item.getChangeTime(), item));
+	}
+
+	/**
+	 * Unregister the given disk item, registered with the given time, from this index.
+	 *
+	 * @param	item
+	 * 			The disk item to unregister.
+	 * @param	time
+	 * 			The time with which the disk item was registered.
+	 */
+	void remove(@Raw DiskItem item, long time) {
+		entries.remove(new Entry(time, item));
+	}
+
+	/**
+	 * Update the registration of the given disk item, registered with the given old time.
+	 *
+	 * @param	item
+	 * 			The disk item that has changed.
+	 * @param	oldTime
+	 * 			The time with which the disk item was registered.
+	 */
+	void update(@Raw DiskItem item, long oldTime) {
+		remove(item, oldTime);
+		add(item);
+	}
+
+	/**
+	 * Return the disk items registered with a time in the given range, in ascending order of time.
+	 *
+	 * @param	from
+	 * 			The first time of the range, in milliseconds since the epoch (inclusive).
+	 * @param	to
+	 * 			The last time of the range, in milliseconds since the epoch (exclusive).
+	 * @note	The cost is logarithmic in the number of registered items, and linear in the size of the result.
+	 */
+	List<DiskItem> getItems(long from, long to) {
+		List<DiskItem> result = new ArrayList<DiskItem>();
+		if (from >= to)
+			return result;
+		// the bounds have no disk item, and a sequence number before that of any disk item
+		Entry lower = new Entry(from, Long.MIN_VALUE, null), upper = new Entry(to, Long.MIN_VALUE, null);
+		for (Entry entry : entries.subSet(lower, true, upper, false))
+			result.add(entry.item());
+		return result;
+	}
+
+}
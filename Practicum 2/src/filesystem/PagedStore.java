@@ -0,0 +1,569 @@
+package filesystem;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of paged stores that spill the items of directories to page files on the host,
+ * and reload them when they are accessed again.
+ *
+ * A directory that is managed by a paged store keeps only a stub in memory while its items
+ * are spilled: its name, writability, times and parent directory. Its items, and all items
+ * they directly or indirectly contain, are written to a page file and released. The first
+ * access to the items of the directory (e.g. getItem, getItemAt or getNbItems) reloads them.
+ *
+ * @invar	The directory of each paged store must be effective.
+ * 			| getDirectory() != null
+ * @invar	The budget of each paged store must be valid.
+ * 			| isValidBudget(getBudget())
+ *
+ * @note	Spilled items are not terminated. A spilled directory only references its items weakly:
+ * 			items that are still referenced elsewhere, e.g. by a caller, by a link or by an index, stay
+ * 			in memory and are reused when the directory is reloaded. Only the items that are no longer
+ * 			referenced are reclaimed, and created anew from the page file. Items thus keep their identity
+ * 			across evictions, and references to items of a managed directory may be kept.
+ * @note	Evictions and reloads are transparent. Besides the points where a directory is managed,
+ * 			where trim() is invoked and where a directory is evicted explicitly, the budget is enforced
+ * 			each time a reload exceeds it, by evicting the least recently accessed other directories.
+ * @note	Changing an item of a spilled directory, through a reference kept to it, reloads that
+ * 			directory first, so the change is never lost with the page file.
+ * @note	Only subtrees without links, without items referred to by links, and without other
+ * 			managed directories can be spilled. Links are not written to page files.
+ * @note	The budget is expressed as a number of items, not as a number of bytes. The items that
+ * 			are not managed by this store, e.g. the ancestors of managed directories, do not count,
+ * 			and neither do spilled items that are still referenced elsewhere.
+ * @note	The largest files and modification time indices and the numbers of read-only items of
+ * 			the ancestors of a managed directory keep covering its items while they are spilled.
+ * 			The items registered in these indices therefore stay in memory. No listeners are notified
+ * 			of spills and reloads.
+ * @note	Like the rest of the file system, paged stores are not thread-safe. Only the accesses to
+ * 			managed directories are synchronized, so several threads can inspect the file system at once
+ * 			(e.g. in asynchronous subtree jobs), as long as no thread changes it. The registration of the
+ * 			managed directories is synchronized as well, because the directories deleted in the background
+ * 			are released by a reclaimer thread.
+ * @note	A managed directory that is terminated is no longer managed, and its page file is deleted.
+ *
+ * @version	6.0
+ */
+public class PagedStore {
+
+	/**********************************************************
+	 * Constructors
+	 **********************************************************/
+
+	/**
+	 * Initialize a new paged store that writes its page files in the given directory,
+	 * and that keeps at most the given number of managed items in memory.
+	 *
+	 * @param	directory
+	 * 			The directory on the host in which the page files are written.
+	 * @param	budget
+	 * 			The maximum number of managed items that may be kept in memory.
+	 * @post	The given directory is the directory of this store.
+	 * 			| new.getDirectory() == directory
+	 * @post	The given budget is the budget of this store.
+	 * 			| new.getBudget() == budget
+	 * @throws	IllegalArgumentException
+	 * 			The given directory is not an effective directory on the host,
+	 * 			or the given budget is not valid.
+	 * 			| directory == null || !Files.isDirectory(directory) || !isValidBudget(budget)
+	 */
+	public PagedStore(Path directory, int budget) throws IllegalArgumentException {
+		if (directory == null || !Files.isDirectory(directory))
+			throw new IllegalArgumentException("The page files must be written in an existing directory.");
+		if (!isValidBudget(budget))
+			throw new IllegalArgumentException("Invalid budget: "+budget);
+		this.directory = directory;
+		this.budget = budget;
+	}
+
+
+	/**********************************************************
+	 * directory
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the directory on the host in which the page files are written.
+	 */
+	private final Path directory;
+
+	/**
+	 * Return the directory on the host in which the page files are written.
+	 */
+	@Basic @Immutable
+	public Path getDirectory() {
+		return directory;
+	}
+
+
+	/**********************************************************
+	 * budget
+	 **********************************************************/
+
+	/**
+	 * Variable registering the maximum number of managed items that may be kept in memory.
+	 */
+	private final int budget;
+
+	/**
+	 * Return the maximum number of managed items that may be kept in memory.
+	 */
+	@Basic @Immutable
+	public int getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Check whether the given budget is a valid budget for a paged store.
+	 *
+	 * @param	budget
+	 * 			The budget to check.
+	 * @return	True if and only if the given budget is not negative.
+	 * 			| result == (budget >= 0)
+	 */
+	public static boolean isValidBudget(int budget) {
+		return budget >= 0;
+	}
+
+
+	/**********************************************************
+	 * managed directories
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the page files of the managed directories, in the order in which
+	 * these directories were last accessed (least recently accessed first).
+	 */
+	private final LinkedHashMap<Directory, Path> pages = new LinkedHashMap<Directory, Path>(16, 0.75f, true);
+
+	/**
+	 * Variable registering the number of page files created by this store.
+	 */
+	private int nbPages = 0;
+
+	/**
+	 * Variable registering whether this store is spilling or reloading items.
+	 * Accesses made by the store itself are not registered.
+	 */
+	private boolean isMaintaining = false;
+
+	/**
+	 * Variable referencing the managed directory that was accessed last, possibly null.
+	 */
+	private Directory lastAccessed = null;
+
+	/**
+	 * Check whether this store manages the given directory.
+	 *
+	 * @param	directory
+	 * 			The directory to check.
+	 */
+	@Basic
+	public boolean isManaged(Directory directory) {
+		return directory != null && directory.getPagedStore() == this;
+	}
+
+	/**
+	 * Manage the given directory by this store.
+	 *
+	 * @param	directory
+	 * 			The directory to manage.
+	 * @post	This store manages the given directory.
+	 * 			| new.isManaged(directory)
+	 * @effect	The budget of this store is enforced.
+	 * 			| trim()
+	 * @throws	IllegalArgumentException
+	 * 			The given directory is not effective, is terminated,
+	 * 			or is already managed by a paged store.
+	 * 			| directory == null || directory.isTerminated() || directory.getPagedStore() != null
+	 * @throws	UncheckedIOException
+	 * 			The page file of an evicted directory could not be written.
+	 */
+	public synchronized void manage(Directory directory) throws IllegalArgumentException, UncheckedIOException {
+		if (directory == null || directory.isTerminated())
+			throw new IllegalArgumentException("Only effective, non-terminated directories can be managed.");
+		if (directory.getPagedStore() != null)
+			throw new IllegalArgumentException("The directory is already managed by a paged store.");
+		directory.setPagedStore(this);
+		pages.put(directory, getDirectory().resolve("page-" + (nbPages++) + ".bin"));
+		trim();
+	}
+
+	/**
+	 * Check whether the items of the given directory are spilled.
+	 *
+	 * @param	directory
+	 * 			The directory to check.
+	 * @return	True if and only if this store manages the given directory and its items
+	 * 			are not in memory.
+	 */
+	public boolean isSpilled(Directory directory) {
+		return isManaged(directory) && directory.isSpilled();
+	}
+
+	/**
+	 * Check whether the items of the given directory can be spilled.
+	 *
+	 * @param	directory
+	 * 			The directory to check.
+	 * @return	False if this store does not manage the given directory, if that directory is
+	 * 			terminated, or if its items are already spilled.
+	 * 			| if (!isManaged(directory) || directory.isTerminated() || isSpilled(directory))
+	 * 			| then result == false
+	 * @return	Otherwise, true if and only if no item that the given directory directly or indirectly
+	 * 			contains is a link, is referred to by a link, or is managed by a paged store.
+	 */
+	public synchronized boolean canEvict(Directory directory) {
+		if (!isManaged(directory) || directory.isTerminated() || directory.isSpilled())
+			return false;
+		boolean wasMaintaining = isMaintaining;
+		isMaintaining = true;
+		try {
+			return canRelease(directory);
+		} finally {
+			isMaintaining = wasMaintaining;
+		}
+	}
+
+	/**
+	 * Check whether the items the given directory directly or indirectly contains can be released.
+	 */
+	private static boolean canRelease(Directory directory) {
+		for (int i = 1; i <= directory.getNbItems(); i++) {
+			DiskItem item = directory.getItemAt(i);
+			if (item instanceof Link || ((ActualItem) item).getNbReferringLinks() > 0)
+				return false;
+			if (item instanceof Directory) {
+				Directory subdirectory = (Directory) item;
+				if (subdirectory.getPagedStore() != null || !canRelease(subdirectory))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Spill the items of the given directory to its page file.
+	 *
+	 * @param	directory
+	 * 			The directory to evict.
+	 * @post	The items of the given directory are spilled.
+	 * 			| new.isSpilled(directory)
+	 * @effect	The items of the given directory are released.
+	 * 			| directory.releaseItems()
+	 * @throws	IllegalStateException
+	 * 			The items of the given directory cannot be spilled.
+	 * 			| !canEvict(directory)
+	 * @throws	UncheckedIOException
+	 * 			The page file could not be written. The items are then not released.
+	 */
+	public synchronized void evict(Directory directory) throws IllegalStateException, UncheckedIOException {
+		if (!canEvict(directory))
+			throw new IllegalStateException("The items of the directory cannot be spilled.");
+		isMaintaining = true;
+		try {
+			Path page = pages.get(directory);
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(page)))) {
+				writeItems(directory, out);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			directory.releaseItems();
+			nbEvictions++;
+		} finally {
+			isMaintaining = false;
+		}
+	}
+
+	/**
+	 * Spill the items of the least recently accessed directories, until the number of
+	 * managed items in memory no longer exceeds the budget of this store, or until
+	 * no more directories can be evicted.
+	 *
+	 * @effect	Directories that have been terminated are released.
+	 * 			| for each directory in Directory:
+	 * 			|	if (isManaged(directory) && directory.isTerminated())
+	 * 			|	then release(directory)
+	 * @effect	The managed directories that can be evicted are evicted in the order in which
+	 * 			they were last accessed, as long as the number of resident items exceeds the budget.
+	 * @throws	UncheckedIOException
+	 * 			The page file of an evicted directory could not be written.
+	 *
+	 * @note	The cost is linear in the number of managed items in memory.
+	 */
+	public synchronized void trim() throws UncheckedIOException {
+		trim(null);
+	}
+
+	/**
+	 * Spill the items of the least recently accessed directories other than the given directory,
+	 * until the number of managed items in memory no longer exceeds the budget of this store,
+	 * or until no more directories can be evicted.
+	 *
+	 * @param	excluded
+	 * 			The directory that must not be evicted, possibly null.
+	 */
+	private void trim(Directory excluded) throws UncheckedIOException {
+		for (Directory terminated : new ArrayList<Directory>(pages.keySet()))
+			if (terminated.isTerminated())
+				release(terminated);
+		int nbResident = getNbResidentItems();
+		for (Directory candidate : new ArrayList<Directory>(pages.keySet())) {
+			if (nbResident <= getBudget())
+				return;
+			if (candidate != excluded && canEvict(candidate)) {
+				int nbItems = countItems(candidate);
+				evict(candidate);
+				nbResident -= nbItems;
+			}
+		}
+	}
+
+	/**
+	 * Register an access to the items of the given directory, and reload them if they are spilled.
+	 *
+	 * @param	directory
+	 * 			The managed directory whose items are accessed.
+	 * @effect	If the items of the given directory are reloaded, the budget of this store is enforced
+	 * 			without evicting the given directory.
+	 * @throws	UncheckedIOException
+	 * 			The page file could not be read, or the page file of an evicted directory could not
+	 * 			be written.
+	 *
+	 * @note	Consecutive accesses to the same directory are registered as a single access, so an
+	 * 			operation that inspects the items of a directory several times, like the binary search
+	 * 			of getItem, counts as a single hit.
+	 */
+	@Model
+	synchronized void access(@Raw Directory directory) throws UncheckedIOException {
+		if (isMaintaining)
+			return;
+		// looking up the page file also marks the directory as the most recently accessed one
+		Path page = pages.get(directory);
+		boolean isRepeated = (directory == lastAccessed);
+		lastAccessed = directory;
+		if (!directory.isSpilled()) {
+			if (!isRepeated)
+				nbHits++;
+			return;
+		}
+		isMaintaining = true;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(page)))) {
+			directory.reloadItems(readItems(in, directory));
+			nbMisses++;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			isMaintaining = false;
+		}
+		trim(directory);
+	}
+
+	/**
+	 * Stop managing the given directory, and delete its page file.
+	 *
+	 * @param	directory
+	 * 			The directory to release.
+	 * @post	This store no longer manages the given directory.
+	 * 			| !new.isManaged(directory)
+	 * @throws	UncheckedIOException
+	 * 			The page file could not be deleted. The directory is then no longer managed anyway.
+	 *
+	 * @note	This is invoked when the given directory is terminated, possibly by a reclaimer thread.
+	 * 			If its items are spilled, they are never reloaded.
+	 */
+	@Model
+	synchronized void release(@Raw Directory directory) throws UncheckedIOException {
+		Path page = pages.remove(directory);
+		if (lastAccessed == directory)
+			lastAccessed = null;
+		if (directory.getPagedStore() == this)
+			directory.setPagedStore(null);
+		if (page != null) {
+			try {
+				Files.deleteIfExists(page);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+
+	/**********************************************************
+	 * page files
+	 **********************************************************/
+
+	/**
+	 * Variables registering the kinds of disk items in the page files.
+	 */
+	private static final byte DIRECTORY = 0, FILE = 1;
+
+	/**
+	 * Write the items of the given directory, and the items they directly or indirectly contain,
+	 * to the given stream.
+	 */
+	private static void writeItems(Directory directory, DataOutputStream out) throws IOException {
+		out.writeInt(directory.getNbItems());
+		for (int i = 1; i <= directory.getNbItems(); i++) {
+			ActualItem item = (ActualItem) directory.getItemAt(i);
+			out.writeByte(item instanceof Directory ? DIRECTORY : FILE);
+			out.writeUTF(item.getName());
+			out.writeLong(item.getCreationTime().getTime());
+			Date modificationTime = item.getModificationTime();
+			out.writeBoolean(modificationTime != null);
+			if (modificationTime != null)
+				out.writeLong(modificationTime.getTime());
+			out.writeBoolean(item.isWritable());
+			if (item instanceof File) {
+				out.writeByte(((File) item).getType().ordinal());
+				out.writeInt(((File) item).getSize());
+			} else {
+				out.writeBoolean(((Directory) item).isIndexedByModificationTime());
+				writeItems((Directory) item, out);
+			}
+		}
+	}
+
+	/**
+	 * Read the items written by writeItems from the given stream, ordered by name.
+	 *
+	 * @param	in
+	 * 			The stream to read from.
+	 * @param	directory
+	 * 			The directory whose released items must be reused, possibly null.
+	 * @return	The released items of the given directory that are still in memory, at their positions,
+	 * 			and new root items for all other items.
+	 *
+	 * @note	The released items that are still in memory contain all their items, so their part
+	 * 			of the page file is skipped. Subdirectories are restored before they are returned
+	 * 			to their parent.
+	 */
+	private static List<DiskItem> readItems(DataInputStream in, Directory directory) throws IOException {
+		int nbItems = in.readInt();
+		List<DiskItem> result = new ArrayList<DiskItem>(nbItems);
+		for (int i = 0; i < nbItems; i++) {
+			DiskItem released = (directory == null) ? null : directory.getReleasedItem(i + 1);
+			byte kind = in.readByte();
+			String name = in.readUTF();
+			Date creationTime = new Date(in.readLong());
+			Date modificationTime = in.readBoolean() ? new Date(in.readLong()) : null;
+			boolean writable = in.readBoolean();
+			if (kind == FILE) {
+				Type type = Type.values()[in.readByte()];
+				int size = in.readInt();
+				result.add(released != null ? released : new File(name, type, size, writable, creationTime, modificationTime));
+			} else if (released != null) {
+				in.readBoolean();
+				skipItems(in);
+				result.add(released);
+			} else {
+				boolean indexed = in.readBoolean();
+				Directory subdirectory = new Directory(name, writable, creationTime, modificationTime);
+				subdirectory.restoreItems(readItems(in, null));
+				subdirectory.setIndexedByModificationTime(indexed);
+				result.add(subdirectory);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Skip the items written by writeItems in the given stream.
+	 */
+	private static void skipItems(DataInputStream in) throws IOException {
+		int nbItems = in.readInt();
+		for (int i = 0; i < nbItems; i++) {
+			byte kind = in.readByte();
+			in.readUTF();
+			in.readLong();
+			if (in.readBoolean())
+				in.readLong();
+			in.readBoolean();
+			if (kind == FILE) {
+				in.readByte();
+				in.readInt();
+			} else {
+				in.readBoolean();
+				skipItems(in);
+			}
+		}
+	}
+
+
+	/**********************************************************
+	 * counters
+	 **********************************************************/
+
+	/**
+	 * Variables registering the number of accesses to items in memory, the number of reloads
+	 * and the number of evictions.
+	 */
+	private long nbHits = 0, nbMisses = 0, nbEvictions = 0;
+
+	/**
+	 * Return the number of accesses to the items of managed directories that were in memory.
+	 * Consecutive accesses to the same directory count as one.
+	 */
+	@Basic
+	public long getNbHits() {
+		return nbHits;
+	}
+
+	/**
+	 * Return the number of accesses to the items of managed directories that had to be reloaded.
+	 */
+	@Basic
+	public long getNbMisses() {
+		return nbMisses;
+	}
+
+	/**
+	 * Return the number of times that the items of a managed directory have been spilled.
+	 */
+	@Basic
+	public long getNbEvictions() {
+		return nbEvictions;
+	}
+
+	/**
+	 * Return the number of items in memory that are directly or indirectly contained
+	 * by the directories managed by this store.
+	 *
+	 * @note	Items of managed directories that are contained by other managed directories are
+	 * 			counted once. The cost is linear in the result.
+	 */
+	public synchronized int getNbResidentItems() {
+		int result = 0;
+		for (Directory directory : pages.keySet())
+			if (!directory.isTerminated() && !directory.isSpilled())
+				result += countItems(directory);
+		return result;
+	}
+
+	/**
+	 * Return the number of items in memory that the given managed directory directly or indirectly
+	 * contains, not counting the items of other managed directories.
+	 */
+	private int countItems(Directory directory) {
+		boolean wasMaintaining = isMaintaining;
+		isMaintaining = true;
+		try {
+			return countItemsIn(directory);
+		} finally {
+			isMaintaining = wasMaintaining;
+		}
+	}
+
+	private static int countItemsIn(Directory directory) {
+		int result = directory.getNbItems();
+		for (int i = 1; i <= directory.getNbItems(); i++) {
+			DiskItem item = directory.getItemAt(i);
+			if (item instanceof Directory && ((Directory) item).getPagedStore() == null)
+				result += countItemsIn((Directory) item);
+		}
+		return result;
+	}
+
+}
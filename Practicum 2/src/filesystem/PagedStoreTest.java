@@ -0,0 +1,270 @@
+package filesystem;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * A JUnit (4) test class for testing the paged stores of directories.
+ *
+ * @version 6.0
+ */
+public class PagedStoreTest {
+
+	// FILE SYSTEM STRUCTURE FOR TESTING:
+
+	/*
+	 * root
+	 * |-- cold             (managed)
+	 * |   |-- sub
+	 * |   |   |-- deep.java  (30 bytes)
+	 * |   |-- a.txt          (10 bytes)
+	 * |   |-- b.pdf          (20 bytes, not writable)
+	 * |-- warm             (managed)
+	 * |   |-- c.txt
+	 * |-- linked           (managed)
+	 * |   |-- target.txt
+	 * |-- link             (to target.txt)
+	 */
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Directory root, cold, warm, linked;
+	private static File fileA;
+
+	private PagedStore store;
+
+	@Before
+	public void setUpFileSystem() throws IOException {
+		root = new Directory("root");
+		cold = new Directory(root, "cold");
+		new File(new Directory(cold, "sub"), "deep", Type.JAVA, 30, true);
+		fileA = new File(cold, "a", Type.TEXT, 10, true);
+		new File(cold, "b", Type.PDF, 20, false);
+		warm = new Directory(root, "warm");
+		new File(warm, "c", Type.TEXT);
+		linked = new Directory(root, "linked");
+		new Link(root, "link", new File(linked, "target", Type.TEXT));
+		fileA.enlarge(1);
+		store = new PagedStore(folder.getRoot().toPath(), 100);
+	}
+
+
+	/**********************************************************
+	 * EVICTION AND RELOAD
+	 **********************************************************/
+
+	@Test
+	public void testEvict_transparentReload() {
+		Date creationTime = fileA.getCreationTime();
+		Date modificationTime = fileA.getModificationTime();
+		store.manage(cold);
+		store.evict(cold);
+		assertTrue(store.isSpilled(cold));
+		assertFalse(fileA.isTerminated());
+		assertSame(cold, fileA.getParentDirectory());
+		assertEquals(1, store.getNbEvictions());
+
+		assertEquals(3, cold.getNbItems());
+		assertFalse(store.isSpilled(cold));
+		assertEquals(1, store.getNbMisses());
+		// the item is still referenced, so it keeps its identity
+		File a = (File) cold.getItem("a");
+		assertSame(fileA, a);
+		assertSame(cold, a.getParentDirectory());
+		assertEquals(11, a.getSize());
+		assertEquals(Type.TEXT, a.getType());
+		assertEquals(creationTime, a.getCreationTime());
+		assertEquals(modificationTime, a.getModificationTime());
+		assertFalse(((File) cold.getItemAt(2)).isWritable());
+		File deep = (File) ((Directory) cold.getItem("sub")).getItem("deep");
+		assertEquals(30, deep.getSize());
+		assertEquals("/root/cold/sub/deep.java", deep.getAbsolutePath());
+		assertTrue(cold.hasProperItems());
+		assertEquals(1, store.getNbMisses());
+		// the accesses following the miss belong to the same run
+		assertEquals(0, store.getNbHits());
+	}
+
+	@Test
+	public void testAccess_hitsCountedOncePerAccess() {
+		store.manage(cold);
+		store.manage(warm);
+		long hits = store.getNbHits();
+		cold.getItem("b");
+		assertEquals(hits + 1, store.getNbHits());
+		warm.getItem("c");
+		cold.getItem("a");
+		assertEquals(hits + 3, store.getNbHits());
+	}
+
+	@Test
+	public void testEvict_indicesKept() {
+		root.setIndexedByModificationTime(true);
+		List<File> largest = root.getLargestFiles(10);
+		List<DiskItem> modified = root.getItemsModifiedSince(Instant.EPOCH);
+		store.manage(cold);
+		store.evict(cold);
+		assertEquals(largest, root.getLargestFiles(10));
+		assertEquals(modified, root.getItemsModifiedSince(Instant.EPOCH));
+		assertTrue(store.isSpilled(cold));
+		// the reloaded items are not registered twice
+		cold.getNbItems();
+		assertEquals(largest, root.getLargestFiles(10));
+		assertEquals(modified, root.getItemsModifiedSince(Instant.EPOCH));
+		assertEquals("deep", cold.getLargestFiles(1).get(0).getName());
+	}
+
+	@Test
+	public void testEvict_spilledItemChanged() {
+		store.manage(cold);
+		store.evict(cold);
+		fileA.enlarge(1);
+		assertFalse(store.isSpilled(cold));
+		assertSame(fileA, cold.getItem("a"));
+		store.evict(cold);
+		cold.getNbItems();
+		assertEquals(12, ((File) cold.getItem("a")).getSize());
+	}
+
+	@Test
+	public void testEvict_reloadedItemsChangeable() {
+		store.manage(cold);
+		store.evict(cold);
+		File a = (File) cold.getItem("a");
+		a.changeName("z");
+		new File(cold, "new", Type.TEXT);
+		store.evict(cold);
+		assertEquals(4, cold.getNbItems());
+		assertEquals("z", cold.getItemAt(4).getName());
+		assertEquals(2, store.getNbEvictions());
+	}
+
+	@Test (expected = IllegalStateException.class)
+	public void testEvict_illegalCaseLinkedItem() {
+		store.manage(linked);
+		assertFalse(store.canEvict(linked));
+		store.evict(linked);
+	}
+
+	@Test (expected = IllegalStateException.class)
+	public void testEvict_illegalCaseNotManaged() {
+		store.evict(cold);
+	}
+
+	@Test
+	public void testCanEvict_linkTerminated() {
+		store.manage(linked);
+		root.getItem("link").terminate();
+		assertTrue(store.canEvict(linked));
+	}
+
+
+	/**********************************************************
+	 * BUDGET
+	 **********************************************************/
+
+	@Test
+	public void testTrim_leastRecentlyUsedFirst() {
+		PagedStore small = new PagedStore(folder.getRoot().toPath(), 4);
+		small.manage(cold);
+		assertFalse(small.isSpilled(cold));
+		assertEquals(4, small.getNbResidentItems());
+		small.manage(warm);
+		assertTrue(small.isSpilled(cold));
+		assertFalse(small.isSpilled(warm));
+		assertEquals(1, small.getNbResidentItems());
+
+		// the reload enforces the budget
+		cold.getNbItems();
+		assertFalse(small.isSpilled(cold));
+		assertTrue(small.isSpilled(warm));
+		assertEquals(4, small.getNbResidentItems());
+
+		warm.getNbItems();
+		assertTrue(small.isSpilled(cold));
+		assertFalse(small.isSpilled(warm));
+		assertEquals(3, small.getNbEvictions());
+		assertEquals(2, small.getNbMisses());
+	}
+
+	@Test
+	public void testTrim_terminatedDirectory() {
+		PagedStore none = new PagedStore(folder.getRoot().toPath(), 0);
+		none.manage(warm);
+		warm.deleteRecursive();
+		none.trim();
+		assertFalse(none.isSpilled(warm));
+		assertFalse(none.isManaged(warm));
+		assertEquals(0, none.getNbResidentItems());
+		assertEquals(0, folder.getRoot().list().length);
+	}
+
+
+	/**********************************************************
+	 * DELETION IN THE BACKGROUND
+	 **********************************************************/
+
+	@Test
+	public void testDeleteRecursiveInBackground_spilledDirectory() {
+		File c = (File) warm.getItem("c");
+		store.manage(warm);
+		store.evict(warm);
+		List<Runnable> reclaims = new ArrayList<Runnable>();
+		warm.deleteRecursiveInBackground(reclaims::add);
+		assertFalse(store.isManaged(warm));
+		assertEquals(0, warm.getNbItems());
+		assertEquals(0, store.getNbMisses());
+		assertEquals(0, folder.getRoot().list().length);
+		// the spilled item that is still referenced is terminated as well
+		reclaims.forEach(Runnable::run);
+		assertTrue(c.isTerminated());
+	}
+
+	@Test
+	public void testDeleteRecursiveInBackground_spilledSubdirectory() {
+		Directory sub = (Directory) cold.getItem("sub");
+		((File) cold.getItem("b")).setWritable(true);
+		store.manage(sub);
+		store.evict(sub);
+		List<Runnable> reclaims = new ArrayList<Runnable>();
+		cold.deleteRecursiveInBackground(reclaims::add);
+		// the reclaimer releases the spilled subdirectory without reloading it
+		assertTrue(store.isManaged(sub));
+		reclaims.get(0).run();
+		assertTrue(sub.isTerminated());
+		assertFalse(store.isManaged(sub));
+		assertEquals(0, store.getNbMisses());
+		assertEquals(0, store.getNbResidentItems());
+		assertEquals(0, folder.getRoot().list().length);
+	}
+
+
+	/**********************************************************
+	 * ILLEGAL CASES
+	 **********************************************************/
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testManage_illegalCaseManagedTwice() {
+		store.manage(cold);
+		new PagedStore(folder.getRoot().toPath(), 100).manage(cold);
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testManage_illegalCaseNull() {
+		store.manage(null);
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testConstructor_illegalCaseBudget() {
+		new PagedStore(folder.getRoot().toPath(), -1);
+	}
+
+}
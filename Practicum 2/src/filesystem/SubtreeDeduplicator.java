@@ -0,0 +1,259 @@
+package filesystem;
+
+import java.lang.ref.WeakReference;
+import java.util.*;
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of deduplicators that share a single immutable representation between
+ * structurally identical, read-only subtrees.
+ *
+ * Collapsing a read-only directory replaces all items it directly or indirectly contains by
+ * a template of their names, types and sizes, and an array with their times. Templates are
+ * canonical: directories with the same content share the same template, and so do identical
+ * subdirectories within different templates. The items of a collapsed directory are inspected
+ * (e.g. with getItem, getItemAt or getNbItems) without leaving the template: an item that is
+ * no longer in memory is served from the template, and a subdirectory served that way is itself
+ * collapsed on the template of its content. Only a change in the subtree of a collapsed directory
+ * materializes it, and only the directories on the path to the change, so the other copies keep
+ * sharing the template.
+ *
+ * @note	Deduplication is opt-in: directories are only collapsed by collapse and collapseAll.
+ * @note	The total disk usage of a collapsed directory is taken from its template, so it is
+ * 			reported without materializing its items.
+ * @note	Only subtrees of which all items are read-only actual items can be collapsed, without
+ * 			links, without items referred to by links, and without directories managed by a paged store
+ * 			or indexed by modification time. Templates register neither links nor indices.
+ * 			Like the items spilled by a paged store, collapsed items that are still referenced keep their
+ * 			identity, the largest files and modification time indices of the ancestors of a collapsed
+ * 			directory keep covering its items, and no listeners are notified of collapses and materializations.
+ * @note	Each directory that shares a template keeps 16 bytes per item for the times of its items.
+ * 			The other memory of its items is released as soon as they are no longer referenced
+ * 			elsewhere, e.g. by the indices of their ancestors.
+ * @note	A deduplicator only references its templates weakly. The templates that are no longer
+ * 			shared by any collapsed directory are dropped.
+ *
+ * @version	6.0
+ */
+public class SubtreeDeduplicator {
+
+	/**********************************************************
+	 * templates
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the canonical templates of this deduplicator.
+	 *
+	 * @note	Both the keys and the values are weak, so a template is dropped from this map once
+	 * 			no collapsed directory and no other template references it anymore.
+	 */
+	private final Map<SubtreeTemplate, WeakReference<SubtreeTemplate>> templates =
+			new WeakHashMap<SubtreeTemplate, WeakReference<SubtreeTemplate>>();
+
+	/**
+	 * Return the number of distinct templates of directory contents created by this deduplicator
+	 * that are still shared.
+	 */
+	public int getNbTemplates() {
+		return templates.size();
+	}
+
+	/**
+	 * Return the canonical template that is structurally equal to the given template.
+	 */
+	@Model
+	private SubtreeTemplate intern(SubtreeTemplate template) {
+		WeakReference<SubtreeTemplate> reference = templates.get(template);
+		SubtreeTemplate canonical = (reference == null) ? null : reference.get();
+		if (canonical != null)
+			return canonical;
+		templates.put(template, new WeakReference<SubtreeTemplate>(template));
+		return template;
+	}
+
+
+	/**********************************************************
+	 * collapsing
+	 **********************************************************/
+
+	/**
+	 * Check whether the given directory is collapsed.
+	 *
+	 * @param	directory
+	 * 			The directory to check.
+	 * @return	True if and only if the given directory is effective and its items are
+	 * 			represented by a shared template.
+	 */
+	public boolean isCollapsed(Directory directory) {
+		return directory != null && directory.isCollapsed();
+	}
+
+	/**
+	 * Check whether the given directory can be collapsed.
+	 *
+	 * @param	directory
+	 * 			The directory to check.
+	 * @return	False if the given directory is not effective, is terminated, is writable,
+	 * 			is managed by a paged store, is indexed by modification time or is already collapsed.
+	 * 			| if (directory == null || directory.isTerminated() || directory.isWritable() ||
+	 * 			|		isCollapsed(directory) || directory.getPagedStore() != null ||
+	 * 			|		directory.isIndexedByModificationTime())
+	 * 			| then result == false
+	 * @return	Otherwise, true if and only if each item that the given directory directly or indirectly
+	 * 			contains is an actual item that is not writable, is not referred to by a link, and is not
+	 * 			a directory managed by a paged store or indexed by modification time.
+	 */
+	public boolean canCollapse(Directory directory) {
+		return directory != null && !directory.isCollapsed() && canHaveCollapsedContent(directory);
+	}
+
+	/**
+	 * Check whether the content of the given directory can be represented by a template.
+	 */
+	private static boolean canHaveCollapsedContent(Directory directory) {
+		if (directory.isTerminated() || directory.isWritable() || directory.getPagedStore() != null ||
+				directory.isIndexedByModificationTime())
+			return false;
+		if (directory.isCollapsed())
+			return true;
+		for (int i = 1; i <= directory.getNbItems(); i++) {
+			DiskItem item = directory.getItemAt(i);
+			if (!canBeShared(item))
+				return false;
+			if (item instanceof Directory && !canHaveCollapsedContent((Directory) item))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Check whether the given item can be replaced by an entry in a template.
+	 */
+	private static boolean canBeShared(DiskItem item) {
+		return item instanceof ActualItem && !((ActualItem) item).isWritable() &&
+				((ActualItem) item).getNbReferringLinks() == 0;
+	}
+
+	/**
+	 * Collapse the given directory.
+	 *
+	 * @param	directory
+	 * 			The directory to collapse.
+	 * @post	The given directory is collapsed, with the same total disk usage.
+	 * 			| isCollapsed(directory) && directory.getTotalDiskUsage() == old directory.getTotalDiskUsage()
+	 * @effect	The items of the given directory are released.
+	 * @throws	IllegalArgumentException
+	 * 			The given directory cannot be collapsed.
+	 * 			| !canCollapse(directory)
+	 */
+	public void collapse(Directory directory) throws IllegalArgumentException {
+		if (!canCollapse(directory))
+			throw new IllegalArgumentException("This directory cannot be collapsed.");
+		SubtreeTemplate template = templateOf(directory);
+		long[] times = new long[2 * template.getNbItems()];
+		collectTimes(directory, times, 0);
+		directory.collapse(template, times);
+	}
+
+	/**
+	 * Collapse all maximal collapsible subtrees in the subtree of the given directory.
+	 *
+	 * @param	directory
+	 * 			The directory whose subtree must be deduplicated.
+	 * @return	The number of directories that have been collapsed.
+	 * @post	The given directory and each directory it directly or indirectly contains that could
+	 * 			be collapsed, and that is not contained in another collapsed directory, is collapsed.
+	 * @throws	IllegalArgumentException
+	 * 			The given directory is not effective.
+	 * 			| directory == null
+	 *
+	 * @note	The collapsible subtrees are collected in a single pass over the subtree.
+	 */
+	public int collapseAll(Directory directory) throws IllegalArgumentException {
+		if (directory == null)
+			throw new IllegalArgumentException("The directory is non-effective.");
+		List<Directory> collapsible = new ArrayList<Directory>();
+		if (collectCollapsible(directory, collapsible) && !directory.isCollapsed())
+			collapsible.add(directory);
+		for (Directory subdirectory : collapsible)
+			collapse(subdirectory);
+		return collapsible.size();
+	}
+
+	/**
+	 * Return whether the content of the given directory can be represented by a template, and collect
+	 * the maximal directories in its subtree that can be collapsed if the given directory cannot.
+	 */
+	private static boolean collectCollapsible(Directory directory, List<Directory> result) {
+		if (directory.isCollapsed())
+			return canHaveCollapsedContent(directory);
+		boolean collapsible = !directory.isTerminated() && !directory.isWritable() && directory.getPagedStore() == null &&
+				!directory.isIndexedByModificationTime();
+		List<Directory> candidates = new ArrayList<Directory>();
+		for (int i = 1; i <= directory.getNbItems(); i++) {
+			DiskItem item = directory.getItemAt(i);
+			if (!canBeShared(item))
+				collapsible = false;
+			if (item instanceof Directory) {
+				Directory subdirectory = (Directory) item;
+				if (!collectCollapsible(subdirectory, result))
+					collapsible = false;
+				else if (!subdirectory.isCollapsed())
+					candidates.add(subdirectory);
+			}
+		}
+		if (!collapsible)
+			result.addAll(candidates);
+		return collapsible;
+	}
+
+	/**
+	 * Return the canonical template of the content of the given directory.
+	 *
+	 * @note	The template of a collapsed subdirectory is reused without materializing it.
+	 */
+	private SubtreeTemplate templateOf(Directory directory) {
+		if (directory.isCollapsed())
+			return directory.getTemplate();
+		int nbItems = directory.getNbItems();
+		String[] names = new String[nbItems];
+		Type[] types = new Type[nbItems];
+		int[] sizes = new int[nbItems];
+		SubtreeTemplate[] contents = new SubtreeTemplate[nbItems];
+		for (int i = 0; i < nbItems; i++) {
+			DiskItem item = directory.getItemAt(i + 1);
+			names[i] = item.getName();
+			if (item instanceof File) {
+				types[i] = ((File) item).getType();
+				sizes[i] = ((File) item).getSize();
+			} else {
+				contents[i] = templateOf((Directory) item);
+			}
+		}
+		return intern(new SubtreeTemplate(names, types, sizes, contents));
+	}
+
+	/**
+	 * Register the times of the items the given directory directly or indirectly contains in the given
+	 * array, in preorder and from the given position on.
+	 *
+	 * @return	The position after the times of the last item.
+	 */
+	private static int collectTimes(Directory directory, long[] times, int next) {
+		if (directory.isCollapsed()) {
+			int length = 2 * directory.getTemplate().getNbItems();
+			System.arraycopy(directory.getTemplateTimes(), directory.getTemplateOffset(), times, next, length);
+			return next + length;
+		}
+		for (int i = 1; i <= directory.getNbItems(); i++) {
+			DiskItem item = directory.getItemAt(i);
+			times[next++] = item.getCreationTime().getTime();
+			Date modificationTime = item.getModificationTime();
+			times[next++] = (modificationTime == null) ? SubtreeTemplate.NO_MODIFICATION_TIME : modificationTime.getTime();
+			if (item instanceof Directory)
+				next = collectTimes((Directory) item, times, next);
+		}
+		return next;
+	}
+
+}
@@ -0,0 +1,202 @@
+package filesystem;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.util.Date;
+import org.junit.*;
+
+/**
+ * A JUnit (4) test class for testing the deduplication of read-only subtrees.
+ *
+ * @version 6.0
+ */
+public class SubtreeDeduplicatorTest {
+
+	// FILE SYSTEM STRUCTURE FOR TESTING:
+
+	/*
+	 * root
+	 * |-- copy1            (not writable)
+	 * |   |-- src          (not writable)
+	 * |   |   |-- main.java  (30 bytes, not writable)
+	 * |   |-- readme.txt     (10 bytes, not writable)
+	 * |-- copy2            (same as copy1)
+	 * |-- copy3            (same as copy1)
+	 * |-- other            (not writable)
+	 * |   |-- src          (same as src in copy1)
+	 * |   |-- notes.txt      (writable)
+	 */
+
+	private static Directory root, copy1, copy2, copy3, other;
+
+	private SubtreeDeduplicator deduplicator;
+
+	@Before
+	public void setUpFileSystem() {
+		root = new Directory("root");
+		copy1 = createSkeleton(root, "copy1");
+		copy2 = createSkeleton(root, "copy2");
+		copy3 = createSkeleton(root, "copy3");
+		other = new Directory(root, "other");
+		createSource(other);
+		new File(other, "notes", Type.TEXT);
+		other.setWritable(false);
+		deduplicator = new SubtreeDeduplicator();
+	}
+
+	private static Directory createSkeleton(Directory parent, String name) {
+		Directory skeleton = new Directory(parent, name);
+		createSource(skeleton);
+		new File(skeleton, "readme", Type.TEXT, 10, false);
+		skeleton.setWritable(false);
+		return skeleton;
+	}
+
+	private static void createSource(Directory parent) {
+		Directory src = new Directory(parent, "src");
+		new File(src, "main", Type.JAVA, 30, false);
+		src.setWritable(false);
+	}
+
+
+	/**********************************************************
+	 * COLLAPSING
+	 **********************************************************/
+
+	@Test
+	public void testCollapseAll_sharesTemplates() {
+		assertEquals(4, deduplicator.collapseAll(root));
+		assertTrue(deduplicator.isCollapsed(copy1));
+		assertTrue(deduplicator.isCollapsed(copy2));
+		assertTrue(deduplicator.isCollapsed(copy3));
+		assertFalse(deduplicator.isCollapsed(root));
+		// other has a writable file, only its src directory is collapsed
+		assertFalse(deduplicator.isCollapsed(other));
+		assertTrue(deduplicator.isCollapsed((Directory) other.getItem("src")));
+		// one template for the skeletons, one for all src directories
+		assertEquals(2, deduplicator.getNbTemplates());
+		assertSame(copy1.getTemplate(), copy3.getTemplate());
+		// nothing left to collapse
+		assertEquals(0, deduplicator.collapseAll(root));
+	}
+
+	@Test
+	public void testCollapse_logicalDiskUsage() {
+		long usage = root.getTotalDiskUsage();
+		deduplicator.collapseAll(root);
+		assertEquals(40, copy2.getTotalDiskUsage());
+		assertEquals(usage, root.getTotalDiskUsage());
+		assertTrue(deduplicator.isCollapsed(copy2));
+	}
+
+	@Test
+	public void testCollapse_servedFromTemplate() {
+		File main = (File) ((Directory) copy1.getItem("src")).getItem("main");
+		Date creationTime = main.getCreationTime();
+		deduplicator.collapse(copy1);
+		assertFalse(main.isTerminated());
+
+		Directory src = (Directory) copy1.getItem("src");
+		assertEquals(2, copy1.getNbItems());
+		assertTrue(copy1.hasProperItems());
+		assertSame(copy1, src.getParentDirectory());
+		assertFalse(src.isWritable());
+		// the item is still referenced, so it keeps its identity
+		File copy = (File) src.getItem("main");
+		assertSame(main, copy);
+		assertEquals(30, copy.getSize());
+		assertEquals(creationTime, copy.getCreationTime());
+		assertTrue(copy.hasProperParentDirectory());
+		assertTrue(root.getItemsModifiedSince(Instant.EPOCH).contains(copy));
+		assertTrue(root.getLargestFiles(Directory.getMaximumNbLargestFiles()).contains(copy));
+		// inspecting the items does not materialize them
+		assertTrue(deduplicator.isCollapsed(copy1));
+	}
+
+	@Test
+	public void testCollapse_itemsCreatedFromTemplate() {
+		File main = (File) ((Directory) copy1.getItem("src")).getItem("main");
+		deduplicator.collapse(copy1);
+		// the items that are no longer in memory are created like this
+		Directory src = (Directory) copy1.getTemplate().createItemAt(2, copy1.getTemplateTimes(), 0);
+		assertEquals("src", src.getName());
+		assertTrue(deduplicator.isCollapsed(src));
+		assertFalse(src.isWritable());
+		assertEquals(1, src.getNbReadOnlyItems());
+		assertEquals(30, src.getTotalDiskUsage());
+		File created = (File) src.getItemAt(1);
+		assertNotSame(main, created);
+		assertSame(created, src.getItem("main"));
+		assertSame(src, created.getParentDirectory());
+		assertEquals(main.getCreationTime(), created.getCreationTime());
+		assertEquals(main.getModificationTime(), created.getModificationTime());
+		assertEquals(Type.JAVA, created.getType());
+		assertFalse(created.isWritable());
+		assertEquals(created, src.getLargestFiles(1).get(0));
+		assertTrue(deduplicator.isCollapsed(src));
+	}
+
+	@Test
+	public void testCollapse_materializedOnChange() {
+		File main = (File) ((Directory) copy1.getItem("src")).getItem("main");
+		deduplicator.collapseAll(root);
+		main.setWritable(true);
+		assertFalse(deduplicator.isCollapsed(copy1));
+		assertSame(main, ((Directory) copy1.getItem("src")).getItem("main"));
+		assertEquals(2, copy1.getNbReadOnlyItems());
+		main.enlarge(5);
+		assertEquals(45, copy1.getTotalDiskUsage());
+		assertEquals(35, root.getLargestFiles(1).get(0).getSize());
+		// the other copies keep sharing the template
+		assertTrue(deduplicator.isCollapsed(copy2));
+		assertEquals(40, copy2.getTotalDiskUsage());
+	}
+
+	@Test
+	public void testCollapse_copyOnWrite() {
+		deduplicator.collapseAll(root);
+		copy1.setWritable(true);
+		new File(copy1, "changed", Type.TEXT);
+		assertEquals(3, copy1.getNbItems());
+		assertTrue(deduplicator.isCollapsed(copy2));
+		assertEquals(2, copy2.getNbItems());
+		assertEquals(40, copy3.getTotalDiskUsage());
+	}
+
+	@Test
+	public void testCollapse_nested() {
+		Directory src = (Directory) copy1.getItem("src");
+		deduplicator.collapse(src);
+		deduplicator.collapse(copy1);
+		assertFalse(src.isTerminated());
+		assertEquals(2, deduplicator.getNbTemplates());
+		assertSame(src, copy1.getItem("src"));
+		File main = (File) ((Directory) copy1.getItem("src")).getItem("main");
+		assertEquals(30, main.getSize());
+		assertEquals(copy2.getTotalDiskUsage(), copy1.getTotalDiskUsage());
+	}
+
+	@Test
+	public void testCanCollapse() {
+		assertTrue(deduplicator.canCollapse(copy1));
+		assertFalse(deduplicator.canCollapse(other));
+		assertFalse(deduplicator.canCollapse(root));
+		assertFalse(deduplicator.canCollapse(null));
+		new Link(root, "link", (File) ((Directory) copy2.getItem("src")).getItem("main"));
+		assertFalse(deduplicator.canCollapse(copy2));
+		deduplicator.collapse(copy1);
+		assertFalse(deduplicator.canCollapse(copy1));
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testCollapse_illegalCase() {
+		deduplicator.collapse(other);
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testCollapseAll_illegalCase() {
+		deduplicator.collapseAll(null);
+	}
+
+}
@@ -0,0 +1,184 @@
+package filesystem;
+
+import java.util.*;
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of immutable templates of the content of read-only directories.
+ *
+ * A template registers the names, types and sizes of the items of a directory, and the
+ * templates of the content of its subdirectories. It does not register times or writability:
+ * all items of a template are read-only, and their times are kept by each directory that
+ * shares the template.
+ *
+ * @invar	The templates of the content of subdirectories are canonical: structurally equal
+ * 			templates in the same deduplicator are the same object.
+ *
+ * @note	Templates are compared structurally. Because the templates of subdirectories are
+ * 			canonical, comparing two templates only compares their own items.
+ *
+ * @version	6.0
+ */
+@Value
+final class SubtreeTemplate {
+
+	/**
+	 * Variable registering the time that represents the absence of a modification time.
+	 */
+	static final long NO_MODIFICATION_TIME = Long.MIN_VALUE;
+
+	/**
+	 * Initialize a new template with the given items.
+	 *
+	 * @param	names
+	 * 			The names of the items, ordered by name.
+	 * @param	types
+	 * 			The types of the items, null for directories.
+	 * @param	sizes
+	 * 			The sizes of the items, 0 for directories.
+	 * @param	contents
+	 * 			The canonical templates of the content of the items, null for files.
+	 */
+	SubtreeTemplate(String[] names, Type[] types, int[] sizes, SubtreeTemplate[] contents) {
+		this.names = names;
+		this.types = types;
+		this.sizes = sizes;
+		this.contents = contents;
+		this.offsets = new int[names.length];
+		int hash = 1;
+		int nbItems = names.length;
+		long totalDiskUsage = 0;
+		boolean hasFiles = false;
+		for (int i = 0; i < names.length; i++) {
+			// the times of the item are followed by those of its content, in preorder
+			offsets[i] = 2 * (nbItems - names.length + i);
+			hash = 31 * hash + names[i].hashCode();
+			hash = 31 * hash + Objects.hashCode(types[i]);
+			hash = 31 * hash + sizes[i];
+			if (contents[i] != null) {
+				hash = 31 * hash + contents[i].hash;
+				nbItems += contents[i].nbItems;
+				totalDiskUsage += contents[i].totalDiskUsage;
+				hasFiles |= contents[i].hasFiles;
+			} else {
+				totalDiskUsage += sizes[i];
+				hasFiles = true;
+			}
+		}
+		this.hash = hash;
+		this.nbItems = nbItems;
+		this.totalDiskUsage = totalDiskUsage;
+		this.hasFiles = hasFiles;
+	}
+
+	/**
+	 * Variables registering the items of this template, one entry per item.
+	 */
+	private final String[] names;
+	private final Type[] types;
+	private final int[] sizes;
+	private final SubtreeTemplate[] contents;
+
+	/**
+	 * Variable registering, for each item of this template, the position of its times in the
+	 * times of this template.
+	 */
+	private final int[] offsets;
+
+	/**
+	 * Variables registering the hash code, the number of items, the total disk usage and
+	 * whether there are any files in this template, computed once.
+	 */
+	private final int hash;
+	private final int nbItems;
+	private final long totalDiskUsage;
+	private final boolean hasFiles;
+
+	/**
+	 * Return the number of items this template directly contains.
+	 */
+	@Basic @Immutable
+	int getNbDirectItems() {
+		return names.length;
+	}
+
+	/**
+	 * Return the number of items this template directly or indirectly contains.
+	 */
+	@Basic @Immutable
+	int getNbItems() {
+		return nbItems;
+	}
+
+	/**
+	 * Return the total disk usage of the items this template directly or indirectly contains.
+	 */
+	@Basic @Immutable
+	long getTotalDiskUsage() {
+		return totalDiskUsage;
+	}
+
+	/**
+	 * Check whether this template directly or indirectly contains any files.
+	 */
+	@Basic @Immutable
+	boolean hasFiles() {
+		return hasFiles;
+	}
+
+	/**
+	 * Create the item at the given index in this template, with the given times.
+	 *
+	 * @param	index
+	 * 			The index of the item to create.
+	 * @param	times
+	 * 			The creation and modification time of each item this template directly or
+	 * 			indirectly contains, in preorder, NO_MODIFICATION_TIME for items that have
+	 * 			not been modified.
+	 * @param	offset
+	 * 			The position of the times of this template in the given times.
+	 * @return	A new read-only root item with the name, type, size and times of the item at the
+	 * 			given index. A directory is collapsed on the template of its content, and shares
+	 * 			the given times.
+	 * @throws	IndexOutOfBoundsException
+	 * 			| index < 1 || index > getNbDirectItems()
+	 *
+	 * @note	Only the item itself is created, the items of a directory are created when they are
+	 * 			accessed in their turn.
+	 */
+	DiskItem createItemAt(int index, long[] times, int offset) throws IndexOutOfBoundsException {
+		int i = Objects.checkIndex(index - 1, names.length);
+		int next = offset + offsets[i];
+		Date creationTime = new Date(times[next]);
+		long modification = times[next + 1];
+		Date modificationTime = (modification == NO_MODIFICATION_TIME) ? null : new Date(modification);
+		if (contents[i] == null)
+			return new File(names[i], types[i], sizes[i], false, creationTime, modificationTime);
+		Directory directory = new Directory(names[i], false, creationTime, modificationTime);
+		directory.restoreCollapsed(contents[i], times, next + 2);
+		return directory;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other)
+			return true;
+		if (!(other instanceof SubtreeTemplate))
+			return false;
+		SubtreeTemplate template = (SubtreeTemplate) other;
+		if (hash != template.hash || !Arrays.equals(names, template.names) ||
+				!Arrays.equals(types, template.types) || !Arrays.equals(sizes, template.sizes))
+			return false;
+		// the templates of subdirectories are canonical
+		for (int i = 0; i < contents.length; i++)
+			if (contents[i] != template.contents[i])
+				return false;
+		return true;
+	}
+
+}
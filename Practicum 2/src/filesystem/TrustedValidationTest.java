@@ -0,0 +1,110 @@
+package filesystem;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+import org.junit.experimental.runners.Enclosed;
+import org.junit.runner.RunWith;
+
+/**
+ * A JUnit (4) test class for testing the file system at the validation level TRUSTED.
+ *
+ * All tests of the other test classes are repeated at this validation level,
+ * since both levels must give the same results and throw the same exceptions.
+ *
+ * @version 6.0
+ */
+@RunWith(Enclosed.class)
+public class TrustedValidationTest {
+
+	public static class TrustedValidationLevelTest {
+
+		@After
+		public void resetValidationLevel() {
+			Directory.setValidationLevel(ValidationLevel.FULL);
+		}
+
+		@Test
+		public void testSetValidationLevel_legalCase() {
+			assertEquals(ValidationLevel.FULL, Directory.getValidationLevel());
+			Directory.setValidationLevel(ValidationLevel.TRUSTED);
+			assertEquals(ValidationLevel.TRUSTED, Directory.getValidationLevel());
+		}
+
+		@Test(expected = IllegalArgumentException.class)
+		public void testSetValidationLevel_illegalCase() {
+			Directory.setValidationLevel(null);
+		}
+	}
+
+	public static class TrustedDiskItemTest extends DiskItemTest {
+
+		@Before @Override
+		public void setUpFileSystem() {
+			Directory.setValidationLevel(ValidationLevel.TRUSTED);
+			super.setUpFileSystem();
+		}
+
+		@After
+		public void resetValidationLevel() {
+			Directory.setValidationLevel(ValidationLevel.FULL);
+		}
+	}
+
+	public static class TrustedActualItemTest extends ActualItemTest {
+
+		@Before @Override
+		public void setUpFileSystem() {
+			Directory.setValidationLevel(ValidationLevel.TRUSTED);
+			super.setUpFileSystem();
+		}
+
+		@After
+		public void resetValidationLevel() {
+			Directory.setValidationLevel(ValidationLevel.FULL);
+		}
+	}
+
+	public static class TrustedDirectoryTest extends DirectoryTest {
+
+		@Before @Override
+		public void setUpFileSystem() {
+			Directory.setValidationLevel(ValidationLevel.TRUSTED);
+			super.setUpFileSystem();
+		}
+
+		@After
+		public void resetValidationLevel() {
+			Directory.setValidationLevel(ValidationLevel.FULL);
+		}
+	}
+
+	public static class TrustedFileTest extends FileTest {
+
+		@Before @Override
+		public void setUpFileSystem() {
+			Directory.setValidationLevel(ValidationLevel.TRUSTED);
+			super.setUpFileSystem();
+		}
+
+		@After
+		public void resetValidationLevel() {
+			Directory.setValidationLevel(ValidationLevel.FULL);
+		}
+	}
+
+	public static class TrustedLinkTest extends LinkTest {
+
+		@Before @Override
+		public void setUpFileSystem() {
+			Directory.setValidationLevel(ValidationLevel.TRUSTED);
+			super.setUpFileSystem();
+		}
+
+		@After
+		public void resetValidationLevel() {
+			Directory.setValidationLevel(ValidationLevel.FULL);
+		}
+	}
+
+}
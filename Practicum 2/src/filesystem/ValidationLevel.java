@@ -0,0 +1,26 @@
+package filesystem;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * An enumeration of levels at which directories validate their content.
+ *
+ * FULL:	All checkers verify their conditions literally, by inspecting every item
+ * 			of a directory. Internal mutators re-validate the conditions that were already
+ * 			checked by the public method calling them.
+ * TRUSTED:	Checkers rely on the class invariants of directories, in particular the ordering of
+ * 			their items, to look up items by binary search. Internal mutators do not re-validate
+ * 			conditions that were already checked by the public method calling them.
+ *
+ * @note	Both levels give the same results and throw the same exceptions, as long as the class
+ * 			invariants of all directories are satisfied. The level FULL is meant for testing and
+ * 			debugging, the level TRUSTED for large file systems.
+ *
+ * @version	6.0
+ */
+@Value
+public enum ValidationLevel {
+
+	FULL, TRUSTED;
+
+}
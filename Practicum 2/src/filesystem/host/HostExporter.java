@@ -0,0 +1,261 @@
+package filesystem.host;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import be.kuleuven.cs.som.annotate.*;
+import filesystem.*;
+
+/**
+ * A class of exporters that materialise directory trees of the file system model
+ * on the host.
+ *
+ * Directories become host directories, files become regular host files with the
+ * size of the file (their content is not defined), and links become symbolic links
+ * with a relative target. Links to items outside the exported tree are skipped.
+ *
+ * @invar	The pool of each exporter must be effective.
+ * 			| getPool() != null
+ *
+ * @note	The tree is exported in parallel, one fork-join task per directory.
+ * 			The symbolic links are created afterwards, once the host path of every
+ * 			exported item is known.
+ * @note	The exported tree may not be modified while it is being exported,
+ * 			since the model itself is not thread-safe.
+ *
+ * @version	6.0
+ */
+public class HostExporter {
+
+	/**********************************************************
+	 * Constructors
+	 **********************************************************/
+
+	/**
+	 * Initialize a new exporter that writes to the host with the given pool.
+	 *
+	 * @param	pool
+	 * 			The fork-join pool in which the host is written.
+	 * @post	The given pool is registered as the pool of this exporter.
+	 * 			| new.getPool() == pool
+	 * @throws	IllegalArgumentException
+	 * 			The given pool is not effective.
+	 * 			| pool == null
+	 */
+	public HostExporter(ForkJoinPool pool) throws IllegalArgumentException {
+		if (pool == null)
+			throw new IllegalArgumentException("The pool is non-effective.");
+		this.pool = pool;
+	}
+
+	/**
+	 * Initialize a new exporter that writes to the host with the common fork-join pool.
+	 *
+	 * @effect	| this(ForkJoinPool.commonPool())
+	 */
+	public HostExporter() {
+		this(ForkJoinPool.commonPool());
+	}
+
+
+	/**********************************************************
+	 * pool
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the fork-join pool in which the host is written.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Return the fork-join pool in which this exporter writes to the host.
+	 */
+	@Basic @Immutable
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+
+	/**********************************************************
+	 * statistics of the last export
+	 **********************************************************/
+
+	/**
+	 * Variable registering the number of host entries created by the last export.
+	 */
+	private long nbExportedItems = 0;
+
+	/**
+	 * Variable registering the number of links skipped by the last export.
+	 */
+	private long nbSkippedLinks = 0;
+
+	/**
+	 * Return the number of host entries created by the last export of this exporter,
+	 * including the host directory for the exported directory itself.
+	 */
+	@Basic
+	public long getNbExportedItems() {
+		return nbExportedItems;
+	}
+
+	/**
+	 * Return the number of links skipped by the last export of this exporter,
+	 * because they refer to an item outside the exported tree.
+	 */
+	@Basic
+	public long getNbSkippedLinks() {
+		return nbSkippedLinks;
+	}
+
+
+	/**********************************************************
+	 * export
+	 **********************************************************/
+
+	/**
+	 * Export the given directory into the given host directory.
+	 *
+	 * @param	directory
+	 * 			The directory to export.
+	 * @param	hostDirectory
+	 * 			The existing host directory in which the given directory must be exported.
+	 * @return	The host path of the exported directory, which is the given host directory
+	 * 			resolved against the name of the given directory.
+	 * 			| result.equals(hostDirectory.resolve(directory.getName()))
+	 * @throws	IllegalArgumentException
+	 * 			The given directory is not effective or terminated, or the given host directory
+	 * 			is not effective or is not a directory.
+	 * 			| directory == null || directory.isTerminated() ||
+	 * 			|	hostDirectory == null || !Files.isDirectory(hostDirectory)
+	 * @throws	FileAlreadyExistsException
+	 * 			The given host directory already contains an entry with the name of the given directory.
+	 * @throws	IOException
+	 * 			The host could not be written.
+	 */
+	public Path exportDirectory(Directory directory, Path hostDirectory) throws IllegalArgumentException, IOException {
+		if (directory == null || directory.isTerminated())
+			throw new IllegalArgumentException("The directory is non-effective or terminated.");
+		if (hostDirectory == null || !Files.isDirectory(hostDirectory))
+			throw new IllegalArgumentException("The host path is not a directory.");
+		Path result = hostDirectory.resolve(directory.getName());
+		Export export = new Export();
+		try {
+			pool.invoke(new ExportTask(directory, result, export));
+			pool.submit(() -> export.links.parallelStream().forEach(export::createLink)).get();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof UncheckedIOException)
+				throw ((UncheckedIOException) e.getCause()).getCause();
+			throw new IllegalStateException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("The export was interrupted.", e);
+		}
+		nbExportedItems = export.nbItems.sum();
+		nbSkippedLinks = export.nbSkippedLinks.sum();
+		return result;
+	}
+
+	/**
+	 * A class registering the shared state of a single export.
+	 */
+	private static class Export {
+
+		/**
+		 * The host paths of the exported actual items.
+		 */
+		private final Map<ActualItem, Path> paths = new ConcurrentHashMap<ActualItem, Path>();
+
+		/**
+		 * The links to be created once all actual items are exported.
+		 */
+		private final Queue<Link> links = new ConcurrentLinkedQueue<Link>();
+
+		/**
+		 * The host paths of the links to be created.
+		 */
+		private final Map<Link, Path> linkPaths = new ConcurrentHashMap<Link, Path>();
+
+		private final LongAdder nbItems = new LongAdder();
+
+		private final LongAdder nbSkippedLinks = new LongAdder();
+
+		/**
+		 * Create a symbolic link on the host for the given link.
+		 */
+		void createLink(Link link) {
+			Path target = paths.get(link.getLinkedItem());
+			if (target == null) {
+				nbSkippedLinks.increment();
+				return;
+			}
+			Path path = linkPaths.get(link);
+			try {
+				Files.createSymbolicLink(path, path.getParent().relativize(target));
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			nbItems.increment();
+		}
+	}
+
+	/**
+	 * A class of fork-join tasks exporting a single directory.
+	 */
+	private static class ExportTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Directory directory;
+
+		private final Path path;
+
+		private final Export export;
+
+		ExportTask(Directory directory, Path path, Export export) {
+			this.directory = directory;
+			this.path = path;
+			this.export = export;
+		}
+
+		@Override
+		protected void compute() {
+			List<ExportTask> subtasks = new ArrayList<ExportTask>();
+			try {
+				Files.createDirectory(path);
+				export.paths.put(directory, path);
+				export.nbItems.increment();
+				for (int i = 1; i <= directory.getNbItems(); i++) {
+					DiskItem item = directory.getItemAt(i);
+					// only files have a host name that differs from their name: it includes the extension
+					Path itemPath = path.resolve(item instanceof File ? item.toString() : item.getName());
+					if (item instanceof Directory) {
+						ExportTask subtask = new ExportTask((Directory) item, itemPath, export);
+						subtask.fork();
+						subtasks.add(subtask);
+					} else if (item instanceof File) {
+						try (RandomAccessFile file = new RandomAccessFile(itemPath.toFile(), "rw")) {
+							file.setLength(((File) item).getSize());
+						}
+						export.paths.put((File) item, itemPath);
+						export.nbItems.increment();
+					} else if (item instanceof Link) {
+						export.linkPaths.put((Link) item, itemPath);
+						export.links.add((Link) item);
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			for (ExportTask subtask : subtasks)
+				subtask.join();
+		}
+	}
+
+}
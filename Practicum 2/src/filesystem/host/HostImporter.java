@@ -0,0 +1,418 @@
+package filesystem.host;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import be.kuleuven.cs.som.annotate.*;
+import filesystem.*;
+
+/**
+ * A class of importers that build directory trees of the file system model
+ * from directories on the host.
+ *
+ * Directories on the host become directories, regular files become files, with
+ * the type determined by their extension, and symbolic links become links.
+ * Host entries that cannot be represented in the model are skipped:
+ * 	- entries with a name that is not a legal name for their kind of disk item,
+ * 	- regular files with an extension that does not correspond to a type,
+ * 	- regular files that are larger than the maximum file size,
+ * 	- entries with a name that clashes (ignoring case) with the name of a sibling,
+ * 	- symbolic links that do not refer to an imported file or directory,
+ * 	- any other kind of host entry (devices, sockets, ...).
+ *
+ * @invar	The pool of each importer must be effective.
+ * 			| getPool() != null
+ *
+ * @note	An import runs in two phases. In the first phase, the host directory is scanned
+ * 			in parallel, one fork-join task per host directory. This builds an intermediate
+ * 			tree in which the entries of each directory are sorted by their name in the model.
+ * 			In the second phase, that tree is loaded into the model by a single thread,
+ * 			since the model itself is not thread-safe.
+ * @note	Because the entries are loaded in the order of their names, every new disk item
+ * 			is appended at the end of its parent directory. The second phase runs at the
+ * 			validation level TRUSTED, so that the cost of loading a directory is linear in
+ * 			its number of items. The previous validation level is restored afterwards.
+ * 			Since the validation level is shared by all directories, other threads see the
+ * 			level TRUSTED while the model is being loaded.
+ * @note	Of host entries with names that clash ignoring case, the one with the smallest
+ * 			host name in the natural ordering of strings is imported, independently of the
+ * 			order in which the host lists them.
+ * @note	All imported items are writable. The permissions on the host are not imported.
+ *
+ * @version	6.0
+ */
+public class HostImporter {
+
+	/**********************************************************
+	 * Constructors
+	 **********************************************************/
+
+	/**
+	 * Initialize a new importer that scans the host with the given pool.
+	 *
+	 * @param	pool
+	 * 			The fork-join pool in which the host is scanned.
+	 * @post	The given pool is registered as the pool of this importer.
+	 * 			| new.getPool() == pool
+	 * @throws	IllegalArgumentException
+	 * 			The given pool is not effective.
+	 * 			| pool == null
+	 */
+	public HostImporter(ForkJoinPool pool) throws IllegalArgumentException {
+		if (pool == null)
+			throw new IllegalArgumentException("The pool is non-effective.");
+		this.pool = pool;
+	}
+
+	/**
+	 * Initialize a new importer that scans the host with the common fork-join pool.
+	 *
+	 * @effect	| this(ForkJoinPool.commonPool())
+	 */
+	public HostImporter() {
+		this(ForkJoinPool.commonPool());
+	}
+
+
+	/**********************************************************
+	 * pool
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the fork-join pool in which the host is scanned.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Return the fork-join pool in which this importer scans the host.
+	 */
+	@Basic @Immutable
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+
+	/**********************************************************
+	 * statistics of the last import
+	 **********************************************************/
+
+	/**
+	 * Variable registering the number of disk items created by the last import.
+	 */
+	private long nbImportedItems = 0;
+
+	/**
+	 * Variable registering the number of host entries skipped by the last import.
+	 */
+	private long nbSkippedEntries = 0;
+
+	/**
+	 * Return the number of disk items created by the last import of this importer,
+	 * including the root directory.
+	 */
+	@Basic
+	public long getNbImportedItems() {
+		return nbImportedItems;
+	}
+
+	/**
+	 * Return the number of host entries skipped by the last import of this importer.
+	 */
+	@Basic
+	public long getNbSkippedEntries() {
+		return nbSkippedEntries;
+	}
+
+
+	/**********************************************************
+	 * import
+	 **********************************************************/
+
+	/**
+	 * Import the given host directory as a new root directory.
+	 *
+	 * @param	hostDirectory
+	 * 			The host directory to import.
+	 * @return	A new writable root directory, with the name of the given host directory,
+	 * 			or the default name if that name is not a legal directory name.
+	 * 			It contains all entries of the given host directory that can be represented
+	 * 			in the model, recursively.
+	 * @throws	IllegalArgumentException
+	 * 			The given host directory is not effective or is not a directory.
+	 * 			| hostDirectory == null || !Files.isDirectory(hostDirectory)
+	 * @throws	IOException
+	 * 			The host directory could not be read.
+	 */
+	public Directory importDirectory(Path hostDirectory) throws IllegalArgumentException, IOException {
+		if (hostDirectory == null || !Files.isDirectory(hostDirectory))
+			throw new IllegalArgumentException("The host path is not a directory.");
+		Path realPath = hostDirectory.toRealPath();
+		LongAdder skipped = new LongAdder();
+		HostEntry rootEntry;
+		try {
+			rootEntry = pool.invoke(new ScanTask(realPath, skipped));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		Path fileName = realPath.getFileName();
+		Directory root = new Directory(fileName == null ? null : fileName.toString());
+		Loader loader = new Loader(skipped);
+		ValidationLevel level = Directory.getValidationLevel();
+		Directory.setValidationLevel(ValidationLevel.TRUSTED);
+		try {
+			loader.load(root, rootEntry, realPath);
+			loader.loadLinks();
+		} finally {
+			Directory.setValidationLevel(level);
+		}
+		nbImportedItems = loader.nbItems;
+		nbSkippedEntries = skipped.sum();
+		return root;
+	}
+
+
+	/**********************************************************
+	 * scanning phase
+	 **********************************************************/
+
+	/**
+	 * An enumeration of kinds of host entries that can be imported.
+	 */
+	private enum Kind {
+		DIRECTORY, FILE, LINK;
+	}
+
+	/**
+	 * A class of scanned host entries.
+	 *
+	 * @param	hostName
+	 * 			The name of the entry on the host.
+	 * @param	name
+	 * 			The name of the disk item representing the entry.
+	 * @param	kind
+	 * 			The kind of the entry.
+	 * @param	type
+	 * 			The type of a file entry, null otherwise.
+	 * @param	size
+	 * 			The size of a file entry, 0 otherwise.
+	 * @param	linkTarget
+	 * 			The real path of the target of a link entry, null otherwise.
+	 * @param	children
+	 * 			The entries of a directory entry, sorted by name; empty otherwise.
+	 */
+	private record HostEntry(String hostName, String name, Kind kind, Type type, int size,
+			Path linkTarget, List<HostEntry> children) {}
+
+	/**
+	 * Variable referencing the ordering of the items in a directory of the model,
+	 * refined by the names on the host to order entries with clashing names.
+	 */
+	private static final Comparator<HostEntry> ORDER =
+			Comparator.comparing(HostEntry::name, String.CASE_INSENSITIVE_ORDER)
+					.thenComparing(HostEntry::hostName);
+
+	/**
+	 * A class of fork-join tasks scanning a single host directory.
+	 */
+	private static class ScanTask extends RecursiveTask<HostEntry> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Path directory;
+
+		private final LongAdder skipped;
+
+		ScanTask(Path directory, LongAdder skipped) {
+			this.directory = directory;
+			this.skipped = skipped;
+		}
+
+		@Override
+		protected HostEntry compute() {
+			List<HostEntry> children = new ArrayList<HostEntry>();
+			List<ScanTask> subtasks = new ArrayList<ScanTask>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+				for (Path child : stream) {
+					BasicFileAttributes attributes = Files.readAttributes(child,
+							BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					String hostName = child.getFileName().toString();
+					if (attributes.isSymbolicLink()) {
+						HostEntry entry = scanLink(child, hostName);
+						if (entry != null) children.add(entry);
+						else skipped.increment();
+					} else if (attributes.isDirectory()) {
+						if (isLegalDirectoryName(hostName)) {
+							ScanTask subtask = new ScanTask(child, skipped);
+							subtask.fork();
+							subtasks.add(subtask);
+						} else {
+							skipped.increment();
+						}
+					} else if (attributes.isRegularFile()) {
+						HostEntry entry = scanFile(hostName, attributes.size());
+						if (entry != null) children.add(entry);
+						else skipped.increment();
+					} else {
+						skipped.increment();
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			for (ScanTask subtask : subtasks)
+				children.add(subtask.join());
+			children.sort(ORDER);
+			String hostName = directory.getFileName() == null ? "" : directory.getFileName().toString();
+			return new HostEntry(hostName, hostName, Kind.DIRECTORY, null, 0, null, children);
+		}
+
+		private static HostEntry scanFile(String hostName, long size) {
+			int dot = hostName.lastIndexOf('.');
+			if (dot < 0 || size > File.getMaximumSize())
+				return null;
+			Type type = getTypeWithExtension(hostName.substring(dot+1));
+			String name = hostName.substring(0, dot);
+			if (type == null || !isLegalName(name))
+				return null;
+			return new HostEntry(hostName, name, Kind.FILE, type, (int) size, null, List.of());
+		}
+
+		private static HostEntry scanLink(Path link, String hostName) {
+			if (!isLegalName(hostName))
+				return null;
+			try {
+				return new HostEntry(hostName, hostName, Kind.LINK, null, 0, link.toRealPath(), List.of());
+			} catch (IOException e) {
+				// dangling link
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Return the type with the given extension, or null if there is no such type.
+	 *
+	 * @param	extension
+	 * 			The extension to look up.
+	 */
+	private static Type getTypeWithExtension(String extension) {
+		for (Type type : Type.values())
+			if (type.getExtension().equals(extension))
+				return type;
+		return null;
+	}
+
+	/**
+	 * Check whether the given name is a legal name for files and links.
+	 *
+	 * @param	name
+	 * 			The name to check.
+	 * @note	This is the rule of DiskItem.canHaveAsName(String), which is not static.
+	 */
+	private static boolean isLegalName(String name) {
+		return LEGAL_NAME.matcher(name).matches();
+	}
+
+	/**
+	 * Variable referencing the pattern of legal names for files and links.
+	 */
+	private static final Pattern LEGAL_NAME = Pattern.compile("[a-zA-Z_0-9.-]+");
+
+	/**
+	 * Check whether the given name is a legal name for directories.
+	 *
+	 * @param	name
+	 * 			The name to check.
+	 * @note	This is the rule of Directory.canHaveAsName(String), which is not static.
+	 */
+	private static boolean isLegalDirectoryName(String name) {
+		return LEGAL_DIRECTORY_NAME.matcher(name).matches();
+	}
+
+	/**
+	 * Variable referencing the pattern of legal names for directories.
+	 */
+	private static final Pattern LEGAL_DIRECTORY_NAME = Pattern.compile("[a-zA-Z_0-9-]+");
+
+
+	/**********************************************************
+	 * loading phase
+	 **********************************************************/
+
+	/**
+	 * A class of loaders that create the disk items for a scanned tree, in a single thread.
+	 */
+	private static class Loader {
+
+		private final LongAdder skipped;
+
+		/**
+		 * The imported actual items, by the real path of the host entry they represent.
+		 */
+		private final Map<Path, ActualItem> items = new HashMap<Path, ActualItem>();
+
+		/**
+		 * The links that are created once all actual items exist.
+		 */
+		private final List<PendingLink> pendingLinks = new ArrayList<PendingLink>();
+
+		private long nbItems = 0;
+
+		private record PendingLink(Directory parent, String name, Path target) {}
+
+		Loader(LongAdder skipped) {
+			this.skipped = skipped;
+		}
+
+		/**
+		 * Create the items of the given directory entry in the given directory,
+		 * which represents the given host path.
+		 */
+		void load(Directory directory, HostEntry entry, Path hostPath) {
+			items.put(hostPath, directory);
+			nbItems++;
+			HostEntry previous = null;
+			for (HostEntry child : entry.children()) {
+				// the entries are sorted, so a clash can only occur with the previous one,
+				// and the first of clashing entries does not depend on the host order
+				if (previous != null && previous.name().equalsIgnoreCase(child.name())) {
+					skipped.increment();
+					continue;
+				}
+				previous = child;
+				Path childPath = hostPath.resolve(child.hostName());
+				switch (child.kind()) {
+					case DIRECTORY -> load(new Directory(directory, child.name()), child, childPath);
+					case FILE -> {
+						items.put(childPath, new File(directory, child.name(), child.type(), child.size(), true));
+						nbItems++;
+					}
+					// the name of the link is reserved by the clash check above
+					case LINK -> pendingLinks.add(new PendingLink(directory, child.name(), child.linkTarget()));
+				}
+			}
+		}
+
+		/**
+		 * Create all pending links to imported items.
+		 */
+		void loadLinks() {
+			for (PendingLink link : pendingLinks) {
+				ActualItem target = items.get(link.target());
+				if (target == null) {
+					skipped.increment();
+				} else {
+					new Link(link.parent(), link.name(), target);
+					nbItems++;
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,230 @@
+package filesystem.host;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.*;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import filesystem.*;
+
+/**
+ * A JUnit (4) test class for testing the import and export of directories from and to the host.
+ *
+ * The benchmark is only run if the system property filesystem.benchmark.files is set to
+ * the number of files of the generated fixture, e.g. -Dfilesystem.benchmark.files=1000000
+ *
+ * @version 6.0
+ */
+public class HostTransferTest {
+
+	// HOST FIXTURE FOR TESTING:
+
+	/*
+	 * host
+	 * |-- docs
+	 * |   |-- a.txt        (10 bytes)
+	 * |   |-- B.pdf        (20 bytes)
+	 * |   |-- b.txt        (clashes with B.pdf, ignoring case)
+	 * |   |-- image.png    (unknown extension)
+	 * |   |-- bad name.txt (illegal name)
+	 * |-- src
+	 * |   |-- Main.java    (30 bytes)
+	 * |-- Readme           (no extension)
+	 * |-- toA              (symbolic link to docs/a.txt)
+	 * |-- toSrc            (symbolic link to src)
+	 * |-- dangling         (symbolic link to a missing file)
+	 */
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path host;
+
+	private HostImporter importer;
+	private HostExporter exporter;
+
+	@Before
+	public void setUpHost() throws IOException {
+		host = folder.newFolder("host").toPath();
+		Path docs = Files.createDirectory(host.resolve("docs"));
+		Path src = Files.createDirectory(host.resolve("src"));
+		createFile(docs.resolve("a.txt"), 10);
+		createFile(docs.resolve("B.pdf"), 20);
+		createFile(docs.resolve("b.txt"), 0);
+		createFile(docs.resolve("image.png"), 0);
+		createFile(docs.resolve("bad name.txt"), 0);
+		createFile(src.resolve("Main.java"), 30);
+		createFile(host.resolve("Readme"), 0);
+		Files.createSymbolicLink(host.resolve("toA"), Paths.get("docs", "a.txt"));
+		Files.createSymbolicLink(host.resolve("toSrc"), Paths.get("src"));
+		Files.createSymbolicLink(host.resolve("dangling"), Paths.get("missing.txt"));
+		importer = new HostImporter();
+		exporter = new HostExporter();
+	}
+
+	private static void createFile(Path path, long size) throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+			file.setLength(size);
+		}
+	}
+
+
+	/**********************************************************
+	 * IMPORT
+	 **********************************************************/
+
+	@Test
+	public void testImportDirectory_legalCase() throws IOException {
+		Directory root = importer.importDirectory(host);
+		assertTrue(root.isRoot());
+		assertEquals("host", root.getName());
+		assertEquals(4, root.getNbItems());
+
+		Directory docs = (Directory) root.getItem("docs");
+		assertEquals(2, docs.getNbItems());
+		File a = (File) docs.getItem("a");
+		assertEquals(Type.TEXT, a.getType());
+		assertEquals(10, a.getSize());
+		File b = (File) docs.getItem("B");
+		assertEquals(Type.PDF, b.getType());
+		assertEquals(20, b.getSize());
+
+		Directory src = (Directory) root.getItem("src");
+		File main = (File) src.getItem("Main");
+		assertEquals(Type.JAVA, main.getType());
+		assertEquals(30, main.getSize());
+
+		assertSame(a, ((Link) root.getItem("toA")).getLinkedItem());
+		assertSame(src, ((Link) root.getItem("toSrc")).getLinkedItem());
+
+		assertTrue(root.hasProperItems());
+		assertTrue(docs.hasProperItems());
+		// host, docs, a, B, src, Main, toA, toSrc
+		assertEquals(8, importer.getNbImportedItems());
+		// b.txt, image.png, bad name.txt, Readme, dangling
+		assertEquals(5, importer.getNbSkippedEntries());
+		assertEquals(ValidationLevel.FULL, Directory.getValidationLevel());
+	}
+
+	@Test
+	public void testImportDirectory_trustedValidation() throws IOException {
+		Directory.setValidationLevel(ValidationLevel.TRUSTED);
+		try {
+			Directory root = importer.importDirectory(host);
+			assertEquals(4, root.getNbItems());
+			assertTrue(root.hasProperItems());
+			assertEquals(8, importer.getNbImportedItems());
+			assertEquals(ValidationLevel.TRUSTED, Directory.getValidationLevel());
+		} finally {
+			Directory.setValidationLevel(ValidationLevel.FULL);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testImportDirectory_illegalCaseNoDirectory() throws IOException {
+		importer.importDirectory(host.resolve("src").resolve("Main.java"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testImportDirectory_illegalCaseNull() throws IOException {
+		importer.importDirectory(null);
+	}
+
+
+	/**********************************************************
+	 * EXPORT
+	 **********************************************************/
+
+	@Test
+	public void testExportDirectory_legalCase() throws IOException {
+		Directory root = new Directory("model");
+		Directory dir = new Directory(root, "dir");
+		File file = new File(dir, "file", Type.PDF, 42, true);
+		new Link(root, "toFile", file);
+		new Link(root, "toDir", dir);
+		Directory other = new Directory("other");
+		new Link(root, "outside", new File(other, "elsewhere", Type.TEXT));
+
+		Path out = folder.newFolder("out").toPath();
+		Path exported = exporter.exportDirectory(root, out);
+
+		assertEquals(out.resolve("model"), exported);
+		assertTrue(Files.isDirectory(exported.resolve("dir")));
+		assertEquals(42, Files.size(exported.resolve("dir").resolve("file.pdf")));
+		assertTrue(Files.isSymbolicLink(exported.resolve("toFile")));
+		assertEquals(Paths.get("dir", "file.pdf"), Files.readSymbolicLink(exported.resolve("toFile")));
+		assertTrue(Files.isDirectory(exported.resolve("toDir")));
+		assertFalse(Files.exists(exported.resolve("outside"), LinkOption.NOFOLLOW_LINKS));
+		// model, dir, file, toFile, toDir
+		assertEquals(5, exporter.getNbExportedItems());
+		assertEquals(1, exporter.getNbSkippedLinks());
+	}
+
+	@Test
+	public void testExportDirectory_roundTrip() throws IOException {
+		Directory root = importer.importDirectory(host);
+		Path out = folder.newFolder("out").toPath();
+		Directory copy = importer.importDirectory(exporter.exportDirectory(root, out));
+		assertEquals(8, importer.getNbImportedItems());
+		assertEquals(0, importer.getNbSkippedEntries());
+		assertEquals(root.getTotalDiskUsage(), copy.getTotalDiskUsage());
+		assertSame(((Directory) copy.getItem("docs")).getItem("a"), ((Link) copy.getItem("toA")).getLinkedItem());
+	}
+
+	@Test(expected = FileAlreadyExistsException.class)
+	public void testExportDirectory_illegalCaseExists() throws IOException {
+		exporter.exportDirectory(new Directory("host"), host.getParent());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testExportDirectory_illegalCaseTerminated() throws IOException {
+		Directory directory = new Directory("terminated");
+		directory.terminate();
+		exporter.exportDirectory(directory, host);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testExportDirectory_illegalCaseNoDirectory() throws IOException {
+		exporter.exportDirectory(new Directory("model"), host.resolve("Readme"));
+	}
+
+
+	/**********************************************************
+	 * BENCHMARK
+	 **********************************************************/
+
+	@Test
+	public void benchmarkImportExport() throws IOException {
+		String property = System.getProperty("filesystem.benchmark.files");
+		Assume.assumeTrue(property != null);
+		int nbFiles = Integer.parseInt(property);
+		int filesPerDirectory = 1000;
+
+		Path fixture = folder.newFolder("fixture").toPath();
+		for (int i = 0; i < nbFiles; i++) {
+			Path directory = fixture.resolve("dir" + (i / filesPerDirectory));
+			if (i % filesPerDirectory == 0)
+				Files.createDirectory(directory);
+			Files.createFile(directory.resolve("file" + i + ".txt"));
+		}
+
+		Directory.setValidationLevel(ValidationLevel.TRUSTED);
+		try {
+			long start = System.nanoTime();
+			Directory root = importer.importDirectory(fixture);
+			long imported = System.nanoTime();
+			exporter.exportDirectory(root, folder.newFolder("export").toPath());
+			long exported = System.nanoTime();
+
+			assertEquals(nbFiles + (nbFiles + filesPerDirectory - 1) / filesPerDirectory + 1, importer.getNbImportedItems());
+			assertEquals(importer.getNbImportedItems(), exporter.getNbExportedItems());
+			System.out.println("Imported " + nbFiles + " files in " + (imported - start) / 1_000_000 + " ms, "
+					+ "exported them in " + (exported - imported) / 1_000_000 + " ms.");
+		} finally {
+			Directory.setValidationLevel(ValidationLevel.FULL);
+		}
+	}
+
+}
@@ -0,0 +1,148 @@
+package filesystem.jobs;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of handles on jobs that run asynchronously on a subtree of the file system.
+ *
+ * @param	<T>
+ * 			The type of the result of the job.
+ *
+ * @note	A cancelled job stops at the next item it processes. Its result is then completed
+ * 			with a CancellationException. Cancelling the result itself has the same effect.
+ *
+ * @version	6.0
+ */
+public class SubtreeJob<T> {
+
+	/**********************************************************
+	 * Constructors
+	 **********************************************************/
+
+	/**
+	 * Initialize a new job that has not processed any items yet.
+	 *
+	 * @post	The new job has not processed any items.
+	 * 			| new.getNbProcessedItems() == 0
+	 * @post	The new job has not been cancelled.
+	 * 			| !new.isCancelRequested()
+	 */
+	SubtreeJob() {
+	}
+
+
+	/**********************************************************
+	 * result
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the future result of this job.
+	 */
+	private final CompletableFuture<T> result = new CompletableFuture<T>();
+
+	/**
+	 * Return the future result of this job.
+	 *
+	 * @note	The result is completed by the thread that processes the last item of the job,
+	 * 			so the effects of the job are visible to threads that wait for the result.
+	 */
+	@Basic @Immutable
+	public CompletableFuture<T> getResult() {
+		return result;
+	}
+
+	/**
+	 * Complete this job with the given value.
+	 */
+	void complete(T value) {
+		result.complete(value);
+	}
+
+	/**
+	 * Complete this job with the given exception.
+	 *
+	 * @note	Exceptions that are wrapped by completion stages are unwrapped first.
+	 */
+	void fail(Throwable exception) {
+		while (exception instanceof CompletionException && exception.getCause() != null)
+			exception = exception.getCause();
+		result.completeExceptionally(exception);
+	}
+
+
+	/**********************************************************
+	 * progress
+	 **********************************************************/
+
+	/**
+	 * Variable registering the number of items this job has processed.
+	 */
+	private final LongAdder nbProcessedItems = new LongAdder();
+
+	/**
+	 * Return the number of items this job has processed so far.
+	 */
+	@Basic
+	public long getNbProcessedItems() {
+		return nbProcessedItems.sum();
+	}
+
+	/**
+	 * Register that this job has processed an item.
+	 */
+	void itemProcessed() {
+		nbProcessedItems.increment();
+	}
+
+	/**
+	 * Register that this job has processed the given number of items at once.
+	 */
+	void itemsProcessed(long nb) {
+		nbProcessedItems.add(nb);
+	}
+
+
+	/**********************************************************
+	 * cancellation
+	 **********************************************************/
+
+	/**
+	 * Variable registering whether this job has been cancelled.
+	 */
+	private volatile boolean isCancelRequested = false;
+
+	/**
+	 * Check whether this job has been cancelled.
+	 */
+	@Basic
+	public boolean isCancelRequested() {
+		return isCancelRequested;
+	}
+
+	/**
+	 * Cancel this job.
+	 *
+	 * @post	This job has been cancelled.
+	 * 			| new.isCancelRequested()
+	 *
+	 * @note	The job is not interrupted: it stops before the next item it would process,
+	 * 			and completes its result with a CancellationException then.
+	 */
+	public void cancel() {
+		isCancelRequested = true;
+	}
+
+	/**
+	 * Throw a CancellationException if this job has been cancelled, or if its result
+	 * has already been completed in some other way.
+	 */
+	void checkCancelled() throws CancellationException {
+		if (isCancelRequested() || result.isDone())
+			throw new CancellationException("The job has been cancelled.");
+	}
+
+}
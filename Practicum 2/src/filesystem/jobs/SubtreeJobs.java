@@ -0,0 +1,200 @@
+package filesystem.jobs;
+
+import java.util.concurrent.*;
+import java.util.function.Function;
+import be.kuleuven.cs.som.annotate.*;
+import filesystem.*;
+
+/**
+ * A class of services that run jobs on subtrees of the file system asynchronously.
+ *
+ * Each job returns immediately with a handle, that offers the future result of the job,
+ * the number of items processed so far, and a way to cancel the job.
+ *
+ * @invar	The executor of each service must be effective.
+ * 			| getExecutor() != null
+ *
+ * @note	Jobs that only inspect a subtree fan out one task per directory on the executor.
+ * 			These tasks never block while waiting for each other, so any executor can be used:
+ * 			a fork-join pool, a fixed thread pool, or a virtual thread per task executor on
+ * 			platforms that offer one.
+ * @note	Jobs that change a subtree run in a single task, because the file system is not
+ * 			thread-safe. They change one item at a time, and check for cancellation in between,
+ * 			so a cancelled job leaves a consistent file system behind.
+ * @note	The file system may not be changed by other threads while a job is running on it.
+ *
+ * @version	6.0
+ */
+public class SubtreeJobs {
+
+	/**********************************************************
+	 * Constructors
+	 **********************************************************/
+
+	/**
+	 * Initialize a new service that runs its jobs on the given executor.
+	 *
+	 * @param	executor
+	 * 			The executor on which the jobs run.
+	 * @post	The given executor is the executor of this service.
+	 * 			| new.getExecutor() == executor
+	 * @throws	IllegalArgumentException
+	 * 			The given executor is not effective.
+	 * 			| executor == null
+	 */
+	public SubtreeJobs(Executor executor) throws IllegalArgumentException {
+		if (executor == null)
+			throw new IllegalArgumentException("The executor is non-effective.");
+		this.executor = executor;
+	}
+
+	/**
+	 * Initialize a new service that runs its jobs on the common fork-join pool.
+	 *
+	 * @effect	| this(ForkJoinPool.commonPool())
+	 */
+	public SubtreeJobs() {
+		this(ForkJoinPool.commonPool());
+	}
+
+
+	/**********************************************************
+	 * executor
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the executor on which the jobs run.
+	 */
+	private final Executor executor;
+
+	/**
+	 * Return the executor on which the jobs run.
+	 */
+	@Basic @Immutable
+	public Executor getExecutor() {
+		return executor;
+	}
+
+
+	/**********************************************************
+	 * jobs
+	 **********************************************************/
+
+	/**
+	 * Delete the given directory recursively, asynchronously.
+	 *
+	 * @param	directory
+	 * 			The directory to delete.
+	 * @return	A job whose result is completed when the given directory and all items it directly
+	 * 			or indirectly contains have been deleted, one at a time and deepest items first.
+	 * 			Each deleted item counts as a processed item.
+	 * 			The result is completed with an IllegalStateException, before any item is deleted,
+	 * 			if the directory cannot be recursively deleted.
+	 * 			| if (!directory.canBeRecursivelyDeleted())
+	 * 			| then result.getResult().isCompletedExceptionally()
+	 * @throws	IllegalArgumentException
+	 * 			The given directory is not effective.
+	 * 			| directory == null
+	 *
+	 * @note	If the job is cancelled, the items that have been deleted remain deleted.
+	 * 			All other items are left untouched in their directories.
+	 */
+	public SubtreeJob<Void> deleteRecursiveAsync(Directory directory) throws IllegalArgumentException {
+		if (directory == null)
+			throw new IllegalArgumentException("The directory is non-effective.");
+		SubtreeJob<Void> job = new SubtreeJob<Void>();
+		getExecutor().execute(() -> {
+			try {
+				if (!directory.canBeRecursivelyDeleted())
+					throw new IllegalStateException("This directory cannot be recursively deleted");
+				deleteContent(directory, job);
+				job.checkCancelled();
+				directory.deleteRecursive();
+				job.itemProcessed();
+				job.complete(null);
+			} catch (RuntimeException e) {
+				job.fail(e);
+			}
+		});
+		return job;
+	}
+
+	/**
+	 * Delete all items that the given directory directly or indirectly contains, deepest items first.
+	 */
+	private static void deleteContent(Directory directory, SubtreeJob<?> job) throws CancellationException {
+		for (int i = directory.getNbItems(); i >= 1; i--) {
+			DiskItem item = directory.getItemAt(i);
+			if (item instanceof Directory)
+				deleteContent((Directory) item, job);
+			job.checkCancelled();
+			// the item is a file, a link or an empty directory: this deletes a single item
+			item.deleteRecursive();
+			job.itemProcessed();
+		}
+	}
+
+	/**
+	 * Compute the total disk usage of the given directory, asynchronously.
+	 *
+	 * @param	directory
+	 * 			The directory whose disk usage must be computed.
+	 * @return	A job whose result is completed with the total disk usage of the given directory.
+	 * 			| result.getResult().join() == directory.getTotalDiskUsage()
+	 * 			Each item that the directory directly or indirectly contains counts as a processed item.
+	 * @throws	IllegalArgumentException
+	 * 			The given directory is not effective.
+	 * 			| directory == null
+	 */
+	public SubtreeJob<Long> getTotalDiskUsageAsync(Directory directory) throws IllegalArgumentException {
+		if (directory == null)
+			throw new IllegalArgumentException("The directory is non-effective.");
+		SubtreeJob<Long> job = new SubtreeJob<Long>();
+		getTotalDiskUsage(directory, job).whenComplete((usage, exception) -> {
+			if (exception == null)
+				job.complete(usage);
+			else
+				job.fail(exception);
+		});
+		return job;
+	}
+
+	/**
+	 * Return a future total disk usage of the given directory, computed by one task for each
+	 * directory in its subtree that is not collapsed.
+	 *
+	 * @note	The usage of a collapsed directory is taken from its template, without fanning out
+	 * 			over its subtree and without materializing its items.
+	 */
+	private CompletableFuture<Long> getTotalDiskUsage(Directory directory, SubtreeJob<?> job) {
+		return CompletableFuture.supplyAsync(() -> {
+			job.checkCancelled();
+			if (directory.isCollapsed())
+				return CompletableFuture.completedFuture(getCollapsedDiskUsage(directory, job));
+			long usage = 0;
+			CompletableFuture<Long> subdirectories = CompletableFuture.completedFuture(0L);
+			for (int i = 1; i <= directory.getNbItems(); i++) {
+				DiskItem item = directory.getItemAt(i);
+				if (item instanceof Directory && ((Directory) item).isCollapsed())
+					usage += getCollapsedDiskUsage((Directory) item, job);
+				else if (item instanceof Directory)
+					subdirectories = subdirectories.thenCombine(getTotalDiskUsage((Directory) item, job), Long::sum);
+				else
+					usage += item.getTotalDiskUsage();
+				job.itemProcessed();
+			}
+			long ownUsage = usage;
+			return subdirectories.thenApply(subdirectoryUsage -> subdirectoryUsage + ownUsage);
+		}, getExecutor()).thenCompose(Function.identity());
+	}
+
+	/**
+	 * Return the total disk usage of the given collapsed directory, and register the items it
+	 * directly or indirectly contains as processed.
+	 */
+	private static long getCollapsedDiskUsage(Directory directory, SubtreeJob<?> job) {
+		job.itemsProcessed(directory.getNbCollapsedItems());
+		return directory.getTotalDiskUsage();
+	}
+
+}
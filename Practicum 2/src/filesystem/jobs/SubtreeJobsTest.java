@@ -0,0 +1,193 @@
+package filesystem.jobs;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.*;
+import org.junit.*;
+import filesystem.*;
+
+/**
+ * A JUnit (4) test class for testing the asynchronous jobs on subtrees.
+ *
+ * @version 6.0
+ */
+public class SubtreeJobsTest {
+
+	// FILE SYSTEM STRUCTURE FOR TESTING:
+
+	/*
+	 * root
+	 * |-- dirA
+	 * |   |-- dirA_1
+	 * |   |   |-- fileA_1_1.txt  (100 bytes)
+	 * |   |-- fileA_1.pdf        (200 bytes)
+	 * |   |-- linkA              (to fileB_1)
+	 * |-- dirB
+	 * |   |-- fileB_1.java       (300 bytes)
+	 * |-- file.txt               (400 bytes)
+	 */
+
+	private static Directory root, dirA, dirA_1, dirB;
+	private static File fileA_1_1, fileA_1, fileB_1, file;
+
+	private Queue<Runnable> tasks;
+	private SubtreeJobs jobs;
+
+	@Before
+	public void setUpFileSystem() {
+		root = new Directory("root");
+		dirA = new Directory(root, "dirA");
+		dirA_1 = new Directory(dirA, "dirA_1");
+		fileA_1_1 = new File(dirA_1, "fileA_1_1", Type.TEXT, 100, true);
+		fileA_1 = new File(dirA, "fileA_1", Type.PDF, 200, true);
+		dirB = new Directory(root, "dirB");
+		fileB_1 = new File(dirB, "fileB_1", Type.JAVA, 300, true);
+		new Link(dirA, "linkA", fileB_1);
+		file = new File(root, "file", Type.TEXT, 400, true);
+
+		// the tasks of the jobs are only run when the test runs them
+		tasks = new ArrayDeque<Runnable>();
+		jobs = new SubtreeJobs(tasks::add);
+	}
+
+	private void runTasks() {
+		Runnable task;
+		while ((task = tasks.poll()) != null)
+			task.run();
+	}
+
+
+	/**********************************************************
+	 * DELETE
+	 **********************************************************/
+
+	@Test
+	public void testDeleteRecursiveAsync_legalCase() {
+		SubtreeJob<Void> job = jobs.deleteRecursiveAsync(dirA);
+		assertFalse(job.getResult().isDone());
+		assertFalse(dirA.isTerminated());
+		runTasks();
+		assertTrue(job.getResult().isDone());
+		assertFalse(job.getResult().isCompletedExceptionally());
+		assertEquals(5, job.getNbProcessedItems());
+		assertTrue(dirA.isTerminated());
+		assertTrue(dirA_1.isTerminated());
+		assertTrue(fileA_1_1.isTerminated());
+		assertTrue(fileA_1.isTerminated());
+		assertEquals(2, root.getNbItems());
+		assertTrue(root.hasProperItems());
+	}
+
+	@Test
+	public void testDeleteRecursiveAsync_cancelled() {
+		SubtreeJob<Void> job = jobs.deleteRecursiveAsync(root);
+		DiskItemListener canceller = new DiskItemListener() {
+			@Override
+			public void itemTerminated(DiskItem item, Directory oldParent) {
+				if (job.getNbProcessedItems() == 2)
+					job.cancel();
+			}
+		};
+		DiskItem.addListener(canceller);
+		try {
+			runTasks();
+		} finally {
+			DiskItem.removeListener(canceller);
+		}
+		assertTrue(job.isCancelRequested());
+		assertTrue(job.getResult().isCancelled());
+		assertEquals(3, job.getNbProcessedItems());
+		// file and dirB with its file are deleted, in reverse order
+		assertTrue(file.isTerminated());
+		assertTrue(fileB_1.isTerminated());
+		assertTrue(dirB.isTerminated());
+		assertFalse(dirA.isTerminated());
+		assertFalse(root.isTerminated());
+		assertEquals(1, root.getNbItems());
+		assertTrue(root.hasProperItems());
+		assertEquals(3, dirA.getNbItems());
+		assertTrue(dirA.hasProperItems());
+	}
+
+	@Test
+	public void testDeleteRecursiveAsync_notDeletable() {
+		fileA_1_1.setWritable(false);
+		SubtreeJob<Void> job = jobs.deleteRecursiveAsync(root);
+		runTasks();
+		assertTrue(job.getResult().isCompletedExceptionally());
+		try {
+			job.getResult().join();
+			fail();
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		assertEquals(0, job.getNbProcessedItems());
+		assertFalse(file.isTerminated());
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testDeleteRecursiveAsync_illegalCase() {
+		jobs.deleteRecursiveAsync(null);
+	}
+
+
+	/**********************************************************
+	 * DISK USAGE
+	 **********************************************************/
+
+	@Test
+	public void testGetTotalDiskUsageAsync_legalCase() {
+		SubtreeJob<Long> job = new SubtreeJobs().getTotalDiskUsageAsync(root);
+		assertEquals(Long.valueOf(1000), job.getResult().join());
+		assertEquals(8, job.getNbProcessedItems());
+	}
+
+	@Test
+	public void testGetTotalDiskUsageAsync_fixedThreadPool() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			SubtreeJob<Long> job = new SubtreeJobs(executor).getTotalDiskUsageAsync(dirA);
+			assertEquals(dirA.getTotalDiskUsage(), job.getResult().join().longValue());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testGetTotalDiskUsageAsync_collapsedDirectory() {
+		Directory copy = new Directory(root, "copy");
+		new File(copy, "fileB_1", Type.JAVA, 300, false);
+		copy.setWritable(false);
+		SubtreeDeduplicator deduplicator = new SubtreeDeduplicator();
+		deduplicator.collapse(copy);
+		assertTrue(copy.isCollapsed());
+		SubtreeJob<Long> job = jobs.getTotalDiskUsageAsync(copy);
+		runTasks();
+		assertEquals(Long.valueOf(300), job.getResult().join());
+		assertEquals(1, job.getNbProcessedItems());
+		// the subtree is neither fanned out over nor materialized
+		assertTrue(copy.isCollapsed());
+		job = jobs.getTotalDiskUsageAsync(root);
+		runTasks();
+		assertEquals(Long.valueOf(1300), job.getResult().join());
+		assertEquals(10, job.getNbProcessedItems());
+		assertTrue(copy.isCollapsed());
+	}
+
+	@Test
+	public void testGetTotalDiskUsageAsync_cancelled() {
+		SubtreeJob<Long> job = jobs.getTotalDiskUsageAsync(root);
+		job.cancel();
+		runTasks();
+		assertTrue(job.getResult().isCancelled());
+		assertEquals(0, job.getNbProcessedItems());
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testConstructor_illegalCase() {
+		new SubtreeJobs(null);
+	}
+
+}
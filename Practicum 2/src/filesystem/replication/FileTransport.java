@@ -0,0 +1,113 @@
+package filesystem.replication;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of transports that keep the replication log in a local file, one encoded entry per line.
+ *
+ * An existing log file is continued: its entries keep their offsets.
+ *
+ * @note	The positions of the entries in the file are kept in memory,
+ * 			so each read seeks directly to its first entry.
+ *
+ * @version	6.0
+ */
+public class FileTransport implements ReplicationTransport, Closeable {
+
+	/**
+	 * Initialize a new transport writing to the given file.
+	 *
+	 * @param	path
+	 * 			The path of the log file, which is created if it does not exist yet.
+	 * @throws	IOException
+	 * 			The log file could not be opened or read.
+	 * @throws	IllegalArgumentException
+	 * 			The existing log file contains an entry that cannot be decoded, or whose
+	 * 			offset does not match its position in the file.
+	 */
+	public FileTransport(Path path) throws IOException, IllegalArgumentException {
+		this.path = path;
+		this.file = new RandomAccessFile(path.toFile(), "rw");
+		String line;
+		long position = file.getFilePointer();
+		while ((line = file.readLine()) != null) {
+			if (LogEntry.decode(line).offset() != positions.size())
+				throw new IllegalArgumentException("The log file is corrupt at offset " + positions.size());
+			positions.add(position);
+			position = file.getFilePointer();
+		}
+	}
+
+	/**
+	 * Variable referencing the path of the log file.
+	 */
+	private final Path path;
+
+	/**
+	 * Variable referencing the open log file.
+	 */
+	private final RandomAccessFile file;
+
+	/**
+	 * Variable referencing the positions of the entries in the log file, in order of their offset.
+	 */
+	private final List<Long> positions = new ArrayList<Long>();
+
+	/**
+	 * Return the path of the log file of this transport.
+	 */
+	@Basic @Immutable
+	public Path getPath() {
+		return path;
+	}
+
+	@Override
+	public synchronized LogEntry append(Mutation mutation, long timestamp) {
+		LogEntry entry = new LogEntry(positions.size(), timestamp, mutation);
+		try {
+			long position = file.length();
+			file.seek(position);
+			file.write((entry.encode() + "\n").getBytes(StandardCharsets.UTF_8));
+			positions.add(position);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return entry;
+	}
+
+	@Override
+	public synchronized List<LogEntry> read(long offset, int maxEntries) throws IllegalArgumentException {
+		if (offset < 0 || offset > positions.size() || maxEntries < 0)
+			throw new IllegalArgumentException("Invalid range of entries.");
+		List<LogEntry> result = new ArrayList<LogEntry>();
+		if (offset == positions.size())
+			return result;
+		try {
+			file.seek(positions.get((int) offset));
+			String line;
+			while (result.size() < maxEntries && (line = file.readLine()) != null)
+				result.add(LogEntry.decode(line));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return result;
+	}
+
+	@Override
+	public synchronized long getEndOffset() {
+		return positions.size();
+	}
+
+	/**
+	 * Close the log file of this transport.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		file.close();
+	}
+
+}
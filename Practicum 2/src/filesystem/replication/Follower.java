@@ -0,0 +1,358 @@
+package filesystem.replication;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import be.kuleuven.cs.som.annotate.*;
+import filesystem.*;
+import filesystem.replication.Mutation.*;
+
+/**
+ * A class of followers that maintain a copy of a replicated tree, by applying the
+ * mutations of a replication log in batches.
+ *
+ * @invar	The transport of each follower must be effective.
+ * 			| getTransport() != null
+ *
+ * @note	The tree of a follower is only changed by the follower itself. Readers must inspect it
+ * 			through read(.), which excludes them from the application of a batch.
+ * @note	The follower applies mutations regardless of the writability of its items: it temporarily
+ * 			makes the items involved writable, and restores their writability afterwards.
+ * @note	A mutation that refers to a disk item that does not exist in the tree of the follower,
+ * 			e.g. one involving a link that was not replicated, is skipped.
+ *
+ * @version	6.0
+ */
+public class Follower {
+
+	/**********************************************************
+	 * Constructors
+	 **********************************************************/
+
+	/**
+	 * Initialize a new follower with an empty tree with the given root name,
+	 * that applies the given transport from its first entry.
+	 *
+	 * @param	transport
+	 * 			The transport from which the mutations are read.
+	 * @param	rootName
+	 * 			The name of the root of the tree of the new follower.
+	 * @effect	| this(transport, new Snapshot(0, rootName, true, List.of()))
+	 */
+	public Follower(ReplicationTransport transport, String rootName) throws IllegalArgumentException {
+		this(transport, new Snapshot(0, rootName, true, List.of()));
+	}
+
+	/**
+	 * Initialize a new follower from the given snapshot, that applies the given transport
+	 * from the offset of the snapshot.
+	 *
+	 * @param	transport
+	 * 			The transport from which the mutations are read.
+	 * @param	snapshot
+	 * 			The snapshot from which the tree is built.
+	 * @post	| new.getTransport() == transport && new.getAppliedOffset() == snapshot.offset()
+	 * @throws	IllegalArgumentException
+	 * 			The given transport or snapshot is not effective,
+	 * 			or the offset of the snapshot is beyond the end of the log.
+	 * 			| transport == null || snapshot == null || snapshot.offset() > transport.getEndOffset()
+	 */
+	public Follower(ReplicationTransport transport, Snapshot snapshot) throws IllegalArgumentException {
+		if (transport == null || snapshot == null || snapshot.offset() > transport.getEndOffset())
+			throw new IllegalArgumentException("Invalid transport or snapshot.");
+		this.transport = transport;
+		this.root = new Directory(snapshot.rootName());
+		for (Mutation mutation : snapshot.mutations())
+			apply(mutation);
+		root.setWritable(snapshot.rootWritable());
+		this.appliedOffset = snapshot.offset();
+	}
+
+
+	/**********************************************************
+	 * tree and transport
+	 **********************************************************/
+
+	private final ReplicationTransport transport;
+
+	private final Directory root;
+
+	/**
+	 * Variable referencing the lock that excludes readers from the application of a batch.
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Return the transport from which this follower reads its mutations.
+	 */
+	@Basic @Immutable
+	public ReplicationTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * Inspect the tree of this follower with the given function.
+	 *
+	 * @param	reader
+	 * 			The function inspecting the root of the tree of this follower.
+	 * @return	The result of the given function.
+	 * @note	No batch is applied while the given function is executing. The function
+	 * 			may not change the tree, nor keep references to it for later use.
+	 */
+	public <T> T read(Function<Directory, T> reader) {
+		lock.readLock().lock();
+		try {
+			return reader.apply(root);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+
+	/**********************************************************
+	 * lag metrics
+	 **********************************************************/
+
+	/**
+	 * Variable registering the offset of the next entry to apply.
+	 */
+	private volatile long appliedOffset;
+
+	/**
+	 * Variable registering the number of mutations that have been skipped.
+	 */
+	private volatile long nbSkippedMutations = 0;
+
+	/**
+	 * Return the offset of the next log entry that this follower will apply.
+	 */
+	@Basic
+	public long getAppliedOffset() {
+		return appliedOffset;
+	}
+
+	/**
+	 * Return the number of mutations that this follower has skipped.
+	 */
+	@Basic
+	public long getNbSkippedMutations() {
+		return nbSkippedMutations;
+	}
+
+	/**
+	 * Return the number of log entries that this follower has not yet applied.
+	 *
+	 * @return	| result == getTransport().getEndOffset() - getAppliedOffset()
+	 */
+	public long getLag() {
+		return transport.getEndOffset() - appliedOffset;
+	}
+
+	/**
+	 * Return the time that the oldest log entry that this follower has not yet applied
+	 * has been waiting, in milliseconds.
+	 *
+	 * @return	0 if all entries have been applied, the time since the entry at the applied offset
+	 * 			was recorded otherwise.
+	 */
+	public long getLagMillis() {
+		List<LogEntry> next = transport.read(appliedOffset, 1);
+		if (next.isEmpty())
+			return 0;
+		return Math.max(0, System.currentTimeMillis() - next.get(0).timestamp());
+	}
+
+
+	/**********************************************************
+	 * application
+	 **********************************************************/
+
+	/**
+	 * Variable referencing the scheduled application of batches, or null if there is none.
+	 */
+	private ScheduledFuture<?> schedule = null;
+
+	/**
+	 * Apply at most the given number of log entries, starting at the applied offset.
+	 *
+	 * @param	maxEntries
+	 * 			The maximum number of entries to apply.
+	 * @return	The number of entries that have been applied.
+	 * @post	| new.getAppliedOffset() == getAppliedOffset() + result
+	 * @throws	IllegalArgumentException
+	 * 			The given maximum is negative.
+	 * 			| maxEntries < 0
+	 */
+	public int applyBatch(int maxEntries) throws IllegalArgumentException {
+		lock.writeLock().lock();
+		try {
+			List<LogEntry> entries = transport.read(appliedOffset, maxEntries);
+			for (LogEntry entry : entries) {
+				apply(entry.mutation());
+				appliedOffset = entry.offset() + 1;
+			}
+			return entries.size();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Start applying batches of log entries asynchronously, with the given executor.
+	 *
+	 * @param	executor
+	 * 			The executor that applies the batches.
+	 * @param	delay
+	 * 			The delay between the end of a batch and the start of the next one.
+	 * @param	unit
+	 * 			The unit of the given delay.
+	 * @param	batchSize
+	 * 			The maximum number of entries in each batch.
+	 * @throws	IllegalStateException
+	 * 			This follower is already applying batches asynchronously.
+	 * @throws	IllegalArgumentException
+	 * 			The given executor or unit is not effective, the given delay is not positive
+	 * 			or the given batch size is not positive.
+	 */
+	public synchronized void start(ScheduledExecutorService executor, long delay, TimeUnit unit, int batchSize)
+			throws IllegalStateException, IllegalArgumentException {
+		if (schedule != null)
+			throw new IllegalStateException("The follower is already started.");
+		if (executor == null || unit == null || delay <= 0 || batchSize <= 0)
+			throw new IllegalArgumentException("Invalid schedule.");
+		schedule = executor.scheduleWithFixedDelay(() -> applyBatch(batchSize), 0, delay, unit);
+	}
+
+	/**
+	 * Stop applying batches asynchronously. A batch that is being applied is completed.
+	 */
+	public synchronized void stop() {
+		if (schedule != null) {
+			schedule.cancel(false);
+			schedule = null;
+		}
+	}
+
+	/**
+	 * Apply the given mutation to the tree of this follower.
+	 */
+	private void apply(Mutation mutation) {
+		try {
+			if (!tryApply(mutation))
+				nbSkippedMutations++;
+		} catch (RuntimeException e) {
+			// the tree of this follower has diverged for this item
+			nbSkippedMutations++;
+		}
+	}
+
+	/**
+	 * Apply the given mutation to the tree of this follower, and return whether it could be applied.
+	 */
+	private boolean tryApply(Mutation mutation) {
+		if (mutation instanceof CreateDirectory m) {
+			if (!(resolve(m.parent()) instanceof Directory parent))
+				return false;
+			asWritable(() -> new Directory(parent, m.name(), m.writable()), parent);
+		} else if (mutation instanceof CreateFile m) {
+			if (!(resolve(m.parent()) instanceof Directory parent))
+				return false;
+			asWritable(() -> new File(parent, m.name(), m.type(), m.size(), m.writable()), parent);
+		} else if (mutation instanceof CreateLink m) {
+			if (!(resolve(m.parent()) instanceof Directory parent) || !(resolve(m.target()) instanceof ActualItem target))
+				return false;
+			asWritable(() -> new Link(parent, m.name(), target), parent);
+		} else if (mutation instanceof Rename m) {
+			DiskItem item = resolve(m.path());
+			if (item == null)
+				return false;
+			asWritable(() -> item.changeName(m.name()), item, item.getParentDirectory());
+		} else if (mutation instanceof RenameAll m) {
+			if (!(resolve(m.parent()) instanceof Directory parent))
+				return false;
+			Map<DiskItem, String> names = new HashMap<DiskItem, String>();
+			for (Map.Entry<String, String> entry : m.names().entrySet()) {
+				DiskItem item = parent.getItem(entry.getKey());
+				if (item == null)
+					return false;
+				names.put(item, entry.getValue());
+			}
+			List<DiskItem> items = new ArrayList<DiskItem>(names.keySet());
+			items.add(parent);
+			asWritable(() -> parent.renameAll(names), items.toArray(new DiskItem[0]));
+		} else if (mutation instanceof Move m) {
+			DiskItem item = resolve(m.path());
+			if (item == null || !(resolve(m.parent()) instanceof Directory parent))
+				return false;
+			asWritable(() -> item.move(parent), item, item.getParentDirectory(), parent);
+		} else if (mutation instanceof Resize m) {
+			if (!(resolve(m.path()) instanceof File file))
+				return false;
+			int delta = m.size() - file.getSize();
+			if (delta > 0)
+				asWritable(() -> file.enlarge(delta), file);
+			else if (delta < 0)
+				asWritable(() -> file.shorten(-delta), file);
+		} else if (mutation instanceof SetWritable m) {
+			if (!(resolve(m.path()) instanceof ActualItem item))
+				return false;
+			item.setWritable(m.writable());
+		} else if (mutation instanceof Delete m) {
+			DiskItem item = resolve(m.path());
+			if (item == null || item == root)
+				return false;
+			delete(item);
+		}
+		return true;
+	}
+
+	/**
+	 * Return the disk item with the given path in the tree of this follower, or null if there is none.
+	 */
+	private DiskItem resolve(List<String> path) {
+		DiskItem item = root;
+		for (String name : path) {
+			if (!(item instanceof Directory directory))
+				return null;
+			item = directory.getItem(name);
+		}
+		return item;
+	}
+
+	/**
+	 * Terminate the given item and all items it directly or indirectly contains.
+	 */
+	private void delete(DiskItem item) {
+		if (item instanceof Directory directory)
+			for (int i = directory.getNbItems(); i >= 1; i--)
+				delete(directory.getItemAt(i));
+		asWritable(item::terminate, item, item.getParentDirectory());
+	}
+
+	/**
+	 * Execute the given action while the given items are writable, and restore their writability afterwards.
+	 *
+	 * @param	action
+	 * 			The action to execute.
+	 * @param	items
+	 * 			The items that must be writable, possibly including null and links.
+	 */
+	private static void asWritable(Runnable action, DiskItem... items) {
+		List<ActualItem> changed = new ArrayList<ActualItem>();
+		for (DiskItem item : items) {
+			if (item instanceof ActualItem actual && !actual.isWritable()) {
+				actual.setWritable(true);
+				changed.add(actual);
+			}
+		}
+		try {
+			action.run();
+		} finally {
+			for (ActualItem item : changed)
+				item.setWritable(false);
+		}
+	}
+
+}
@@ -0,0 +1,37 @@
+package filesystem.replication;
+
+import java.util.*;
+
+/**
+ * A class of transports that keep the replication log in memory.
+ *
+ * @version	6.0
+ */
+public class InMemoryTransport implements ReplicationTransport {
+
+	/**
+	 * Variable referencing the entries of the log, in order of their offset.
+	 */
+	private final List<LogEntry> entries = new ArrayList<LogEntry>();
+
+	@Override
+	public synchronized LogEntry append(Mutation mutation, long timestamp) {
+		LogEntry entry = new LogEntry(entries.size(), timestamp, mutation);
+		entries.add(entry);
+		return entry;
+	}
+
+	@Override
+	public synchronized List<LogEntry> read(long offset, int maxEntries) throws IllegalArgumentException {
+		if (offset < 0 || offset > entries.size() || maxEntries < 0)
+			throw new IllegalArgumentException("Invalid range of entries.");
+		int end = (int) Math.min(entries.size(), offset + maxEntries);
+		return new ArrayList<LogEntry>(entries.subList((int) offset, end));
+	}
+
+	@Override
+	public synchronized long getEndOffset() {
+		return entries.size();
+	}
+
+}
@@ -0,0 +1,274 @@
+package filesystem.replication;
+
+import java.util.*;
+import be.kuleuven.cs.som.annotate.*;
+import filesystem.*;
+import filesystem.replication.Mutation.*;
+
+/**
+ * A class of leaders that record the mutations of a directory tree in a replication log.
+ *
+ * @invar	The root of each leader must be effective.
+ * 			| getRoot() != null
+ * @invar	The transport of each leader must be effective.
+ * 			| getTransport() != null
+ *
+ * @note	A leader listens to the changes of all disk items, and records those that affect
+ * 			its tree. Items that are moved into the tree are recorded as created, together with
+ * 			their content. Items that are moved out of the tree are recorded as deleted.
+ * @note	Links to items outside the tree cannot be replicated, and are not recorded.
+ * 			Modification and creation times are not replicated either.
+ * @note	The root of the tree itself can only be renamed or have its writability changed.
+ * 			Moving or terminating the root is not recorded.
+ *
+ * @version	6.0
+ */
+public class Leader implements DiskItemListener {
+
+	/**
+	 * Initialize a new leader recording the mutations of the given tree to the given transport.
+	 *
+	 * @param	root
+	 * 			The root of the tree to replicate.
+	 * @param	transport
+	 * 			The transport to which the mutations are appended.
+	 * @post	| new.getRoot() == root && new.getTransport() == transport && !new.isStarted()
+	 * @throws	IllegalArgumentException
+	 * 			The given root or transport is not effective, or the given root is terminated.
+	 * 			| root == null || transport == null || root.isTerminated()
+	 */
+	public Leader(Directory root, ReplicationTransport transport) throws IllegalArgumentException {
+		if (root == null || transport == null || root.isTerminated())
+			throw new IllegalArgumentException("Invalid root or transport.");
+		this.root = root;
+		this.transport = transport;
+	}
+
+	private final Directory root;
+
+	private final ReplicationTransport transport;
+
+	/**
+	 * Return the root of the tree replicated by this leader.
+	 */
+	@Basic @Immutable
+	public Directory getRoot() {
+		return root;
+	}
+
+	/**
+	 * Return the transport to which this leader appends its mutations.
+	 */
+	@Basic @Immutable
+	public ReplicationTransport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * Check whether this leader records mutations.
+	 */
+	@Basic
+	public boolean isStarted() {
+		return DiskItem.hasAsListener(this);
+	}
+
+	/**
+	 * Start recording mutations.
+	 *
+	 * @post	| new.isStarted()
+	 */
+	public void start() {
+		if (!isStarted())
+			DiskItem.addListener(this);
+	}
+
+	/**
+	 * Stop recording mutations.
+	 *
+	 * @post	| !new.isStarted()
+	 */
+	public void stop() {
+		DiskItem.removeListener(this);
+	}
+
+	/**
+	 * Return a snapshot of the tree of this leader.
+	 *
+	 * @return	A snapshot that, applied to an empty root, builds a copy of the tree,
+	 * 			at the current end of the replication log.
+	 * 			| result.offset() == getTransport().getEndOffset()
+	 * @note	The tree may not change while the snapshot is taken, since the model is not thread-safe.
+	 * 			Taking the snapshot from the thread that changes the tree guarantees this.
+	 */
+	public Snapshot snapshot() {
+		long offset = transport.getEndOffset();
+		List<Mutation> mutations = new ArrayList<Mutation>();
+		List<Link> links = new ArrayList<Link>();
+		for (int i = 1; i <= root.getNbItems(); i++)
+			collectCreations(root.getItemAt(i), List.of(), mutations, links);
+		collectLinks(links, mutations);
+		return new Snapshot(offset, root.getName(), root.isWritable(), mutations);
+	}
+
+
+	/**********************************************************
+	 * paths
+	 **********************************************************/
+
+	/**
+	 * Return the path of the given item in the tree of this leader, or null if the item is not in that tree.
+	 *
+	 * @param	item
+	 * 			The item whose path must be returned.
+	 */
+	@Model
+	private List<String> getPath(DiskItem item) {
+		LinkedList<String> path = new LinkedList<String>();
+		for (DiskItem current = item; current != null; current = current.getParentDirectory()) {
+			if (current == root)
+				return path;
+			path.addFirst(current.getName());
+		}
+		return null;
+	}
+
+	/**
+	 * Return the path of the item with the given name in the given directory,
+	 * or null if that directory is not in the tree of this leader.
+	 */
+	@Model
+	private List<String> getPath(Directory parent, String name) {
+		List<String> parentPath = getPath(parent);
+		if (parentPath == null)
+			return null;
+		List<String> path = new ArrayList<String>(parentPath);
+		path.add(name);
+		return path;
+	}
+
+
+	/**********************************************************
+	 * recording
+	 **********************************************************/
+
+	/**
+	 * Append the given mutation to the transport of this leader.
+	 */
+	private void record(Mutation mutation) {
+		transport.append(mutation, System.currentTimeMillis());
+	}
+
+	@Override
+	public void itemCreated(DiskItem item) {
+		List<String> parent = getPath(item.getParentDirectory());
+		if (parent != null) {
+			List<Mutation> mutations = new ArrayList<Mutation>();
+			collectCreation(item, parent, mutations);
+			mutations.forEach(this::record);
+		}
+	}
+
+	@Override
+	public void itemRenamed(DiskItem item, String oldName) {
+		List<String> path = (item == root) ? List.of() : getPath(item.getParentDirectory(), oldName);
+		if (path != null)
+			record(new Rename(path, item.getName()));
+	}
+
+	@Override
+	public void itemsRenamed(Directory directory, Map<DiskItem, String> oldNames) {
+		List<String> parent = getPath(directory);
+		if (parent != null) {
+			Map<String, String> names = new LinkedHashMap<String, String>();
+			oldNames.forEach((item, oldName) -> names.put(oldName, item.getName()));
+			record(new RenameAll(parent, names));
+		}
+	}
+
+	@Override
+	public void itemMoved(DiskItem item, Directory oldParent) {
+		if (item == root)
+			return;
+		List<String> oldPath = getPath(oldParent, item.getName());
+		List<String> newParent = getPath(item.getParentDirectory());
+		if (oldPath != null && newParent != null) {
+			record(new Move(oldPath, newParent));
+		} else if (oldPath != null) {
+			record(new Delete(oldPath));
+		} else if (newParent != null) {
+			List<Mutation> mutations = new ArrayList<Mutation>();
+			List<Link> links = new ArrayList<Link>();
+			collectCreations(item, newParent, mutations, links);
+			collectLinks(links, mutations);
+			mutations.forEach(this::record);
+		}
+	}
+
+	@Override
+	public void fileResized(File file, int oldSize) {
+		List<String> path = getPath(file);
+		if (path != null)
+			record(new Resize(path, file.getSize()));
+	}
+
+	@Override
+	public void writabilityChanged(ActualItem item) {
+		List<String> path = getPath(item);
+		if (path != null)
+			record(new SetWritable(path, item.isWritable()));
+	}
+
+	@Override
+	public void itemTerminated(DiskItem item, Directory oldParent) {
+		if (item == root)
+			return;
+		List<String> path = getPath(oldParent, item.getName());
+		if (path != null)
+			record(new Delete(path));
+	}
+
+	/**
+	 * Add the mutation creating the given item in the directory with the given path to the given list.
+	 * Links to items outside the tree of this leader are not added.
+	 */
+	private void collectCreation(DiskItem item, List<String> parent, List<Mutation> mutations) {
+		if (item instanceof Directory directory) {
+			mutations.add(new CreateDirectory(parent, directory.getName(), directory.isWritable()));
+		} else if (item instanceof File file) {
+			mutations.add(new CreateFile(parent, file.getName(), file.getType(), file.getSize(), file.isWritable()));
+		} else if (item instanceof Link link) {
+			List<String> target = getPath(link.getLinkedItem());
+			if (target != null)
+				mutations.add(new CreateLink(parent, link.getName(), target));
+		}
+	}
+
+	/**
+	 * Add the mutations creating the given item and its content in the directory with the given path
+	 * to the given list, except for the links, which are added to the given list of links.
+	 *
+	 * @note	Links are created last, since they may refer to items that are created later.
+	 */
+	private void collectCreations(DiskItem item, List<String> parent, List<Mutation> mutations, List<Link> links) {
+		if (item instanceof Link link) {
+			links.add(link);
+			return;
+		}
+		collectCreation(item, parent, mutations);
+		if (item instanceof Directory directory) {
+			List<String> path = new ArrayList<String>(parent);
+			path.add(directory.getName());
+			for (int i = 1; i <= directory.getNbItems(); i++)
+				collectCreations(directory.getItemAt(i), path, mutations, links);
+		}
+	}
+
+	/**
+	 * Add the mutations creating the given links to the given list.
+	 */
+	private void collectLinks(List<Link> links, List<Mutation> mutations) {
+		for (Link link : links)
+			collectCreation(link, getPath(link.getParentDirectory()), mutations);
+	}
+
+}
@@ -0,0 +1,134 @@
+package filesystem.replication;
+
+import java.util.*;
+import be.kuleuven.cs.som.annotate.*;
+import filesystem.Type;
+import filesystem.replication.Mutation.*;
+
+/**
+ * A class of entries in a replication log.
+ *
+ * @param	offset
+ * 			The position of the entry in the log, starting from 0.
+ * @param	timestamp
+ * 			The time at which the mutation was recorded, in milliseconds since the epoch.
+ * @param	mutation
+ * 			The recorded mutation.
+ *
+ * @version	6.0
+ */
+@Value
+public record LogEntry(long offset, long timestamp, Mutation mutation) {
+
+	/**
+	 * Variable referencing the separator of the fields of an encoded entry.
+	 */
+	private static final String FIELD_SEPARATOR = "\t";
+
+	/**
+	 * Variable referencing the separator of the names in an encoded path.
+	 */
+	private static final String NAME_SEPARATOR = "/";
+
+	/**
+	 * Variables referencing the separators of the pairs of names in an encoded renaming,
+	 * and of the old and new name in such a pair.
+	 */
+	private static final String PAIR_SEPARATOR = ",";
+	private static final String RENAMING_SEPARATOR = "=";
+
+	/**
+	 * Return a single-line textual encoding of this entry.
+	 *
+	 * @return	An encoding from which this entry can be decoded.
+	 * 			| decode(result).equals(this)
+	 * @note	Names of disk items never contain the separators.
+	 */
+	public String encode() {
+		List<String> fields = new ArrayList<String>();
+		fields.add(Long.toString(offset));
+		fields.add(Long.toString(timestamp));
+		fields.add(mutation.getClass().getSimpleName());
+		if (mutation instanceof CreateDirectory m) {
+			fields.addAll(List.of(encode(m.parent()), m.name(), Boolean.toString(m.writable())));
+		} else if (mutation instanceof CreateFile m) {
+			fields.addAll(List.of(encode(m.parent()), m.name(), m.type().name(), Integer.toString(m.size()), Boolean.toString(m.writable())));
+		} else if (mutation instanceof CreateLink m) {
+			fields.addAll(List.of(encode(m.parent()), m.name(), encode(m.target())));
+		} else if (mutation instanceof Rename m) {
+			fields.addAll(List.of(encode(m.path()), m.name()));
+		} else if (mutation instanceof RenameAll m) {
+			fields.addAll(List.of(encode(m.parent()), encodeRenaming(m.names())));
+		} else if (mutation instanceof Move m) {
+			fields.addAll(List.of(encode(m.path()), encode(m.parent())));
+		} else if (mutation instanceof Resize m) {
+			fields.addAll(List.of(encode(m.path()), Integer.toString(m.size())));
+		} else if (mutation instanceof SetWritable m) {
+			fields.addAll(List.of(encode(m.path()), Boolean.toString(m.writable())));
+		} else if (mutation instanceof Delete m) {
+			fields.add(encode(m.path()));
+		}
+		return String.join(FIELD_SEPARATOR, fields);
+	}
+
+	/**
+	 * Return the entry with the given encoding.
+	 *
+	 * @param	line
+	 * 			The encoding of the entry.
+	 * @throws	IllegalArgumentException
+	 * 			The given line is not the encoding of an entry.
+	 */
+	public static LogEntry decode(String line) throws IllegalArgumentException {
+		try {
+			// keep trailing empty fields: the root has an empty path
+			String[] fields = line.split(FIELD_SEPARATOR, -1);
+			long offset = Long.parseLong(fields[0]);
+			long timestamp = Long.parseLong(fields[1]);
+			Mutation mutation = switch (fields[2]) {
+				case "CreateDirectory" -> new CreateDirectory(decodePath(fields[3]), fields[4], Boolean.parseBoolean(fields[5]));
+				case "CreateFile" -> new CreateFile(decodePath(fields[3]), fields[4], Type.valueOf(fields[5]),
+						Integer.parseInt(fields[6]), Boolean.parseBoolean(fields[7]));
+				case "CreateLink" -> new CreateLink(decodePath(fields[3]), fields[4], decodePath(fields[5]));
+				case "Rename" -> new Rename(decodePath(fields[3]), fields[4]);
+				case "RenameAll" -> new RenameAll(decodePath(fields[3]), decodeRenaming(fields[4]));
+				case "Move" -> new Move(decodePath(fields[3]), decodePath(fields[4]));
+				case "Resize" -> new Resize(decodePath(fields[3]), Integer.parseInt(fields[4]));
+				case "SetWritable" -> new SetWritable(decodePath(fields[3]), Boolean.parseBoolean(fields[4]));
+				case "Delete" -> new Delete(decodePath(fields[3]));
+				default -> throw new IllegalArgumentException("Unknown mutation: " + fields[2]);
+			};
+			return new LogEntry(offset, timestamp, mutation);
+		} catch (IndexOutOfBoundsException | NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid log entry: " + line, e);
+		}
+	}
+
+	private static String encode(List<String> path) {
+		return String.join(NAME_SEPARATOR, path);
+	}
+
+	private static List<String> decodePath(String path) {
+		if (path.isEmpty())
+			return List.of();
+		return List.of(path.split(NAME_SEPARATOR));
+	}
+
+	private static String encodeRenaming(Map<String, String> names) {
+		List<String> pairs = new ArrayList<String>();
+		names.forEach((oldName, newName) -> pairs.add(oldName + RENAMING_SEPARATOR + newName));
+		return String.join(PAIR_SEPARATOR, pairs);
+	}
+
+	private static Map<String, String> decodeRenaming(String renaming) {
+		Map<String, String> names = new LinkedHashMap<String, String>();
+		if (!renaming.isEmpty()) {
+			for (String pair : renaming.split(PAIR_SEPARATOR)) {
+				String[] parts = pair.split(RENAMING_SEPARATOR, -1);
+				names.put(parts[0], parts[1]);
+			}
+		}
+		return names;
+	}
+
+}
@@ -0,0 +1,70 @@
+package filesystem.replication;
+
+import java.util.List;
+import java.util.Map;
+import be.kuleuven.cs.som.annotate.*;
+import filesystem.Type;
+
+/**
+ * An interface of mutations of a replicated directory tree.
+ *
+ * Disk items are identified by their path: the names of the directories leading
+ * from the root of the replicated tree to the disk item, followed by the name of
+ * the disk item itself. The root of the replicated tree has the empty path.
+ *
+ * @note	Mutations only refer to disk items by their names, never by reference,
+ * 			so they can be applied to a different tree than the one they were recorded on.
+ *
+ * @version	6.0
+ */
+@Value
+public sealed interface Mutation {
+
+	/**
+	 * A mutation creating a directory.
+	 */
+	record CreateDirectory(List<String> parent, String name, boolean writable) implements Mutation {}
+
+	/**
+	 * A mutation creating a file.
+	 */
+	record CreateFile(List<String> parent, String name, Type type, int size, boolean writable) implements Mutation {}
+
+	/**
+	 * A mutation creating a link to the actual item with the given target path.
+	 */
+	record CreateLink(List<String> parent, String name, List<String> target) implements Mutation {}
+
+	/**
+	 * A mutation changing the name of a disk item.
+	 */
+	record Rename(List<String> path, String name) implements Mutation {}
+
+	/**
+	 * A mutation changing the names of several items of a directory at once,
+	 * mapping their old names to their new names.
+	 */
+	record RenameAll(List<String> parent, Map<String, String> names) implements Mutation {}
+
+	/**
+	 * A mutation moving a disk item to another directory of the tree.
+	 */
+	record Move(List<String> path, List<String> parent) implements Mutation {}
+
+	/**
+	 * A mutation changing the size of a file.
+	 */
+	record Resize(List<String> path, int size) implements Mutation {}
+
+	/**
+	 * A mutation changing the writability of an actual item.
+	 */
+	record SetWritable(List<String> path, boolean writable) implements Mutation {}
+
+	/**
+	 * A mutation removing a disk item, together with all items it directly or indirectly
+	 * contains, from the tree.
+	 */
+	record Delete(List<String> path) implements Mutation {}
+
+}
@@ -0,0 +1,270 @@
+package filesystem.replication;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import filesystem.*;
+
+/**
+ * A JUnit (4) test class for testing the replication of directory trees.
+ *
+ * @version 6.0
+ */
+public class ReplicationTest {
+
+	// FILE SYSTEM STRUCTURE FOR TESTING:
+
+	/*
+	 * leader
+	 * |-- dirA
+	 * |   |-- fileA_1.txt  (100 bytes)
+	 * |   |-- linkA        (to fileB_1)
+	 * |-- dirB             (not writable)
+	 * |   |-- fileB_1.pdf  (200 bytes, not writable)
+	 * |-- file.java        (0 bytes)
+	 *
+	 * outside
+	 * |-- fileO.txt
+	 */
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Directory leaderRoot, dirA, dirB, outside;
+	private static File fileA_1, fileB_1, file, fileO;
+
+	private InMemoryTransport transport;
+	private Leader leader;
+
+	@Before
+	public void setUpFileSystem() {
+		leaderRoot = new Directory("leader");
+		dirA = new Directory(leaderRoot, "dirA");
+		dirB = new Directory(leaderRoot, "dirB");
+		fileA_1 = new File(dirA, "fileA_1", Type.TEXT, 100, true);
+		fileB_1 = new File(dirB, "fileB_1", Type.PDF, 200, false);
+		new Link(dirA, "linkA", fileB_1);
+		file = new File(leaderRoot, "file", Type.JAVA);
+		dirB.setWritable(false);
+		outside = new Directory("outside");
+		fileO = new File(outside, "fileO", Type.TEXT);
+
+		transport = new InMemoryTransport();
+		leader = new Leader(leaderRoot, transport);
+	}
+
+	@After
+	public void stopLeader() {
+		leader.stop();
+	}
+
+	/**
+	 * Return a textual description of the given tree, for comparing trees.
+	 */
+	private static String describe(Directory directory) {
+		StringBuilder result = new StringBuilder();
+		describe(directory, "", result);
+		return result.toString();
+	}
+
+	private static void describe(DiskItem item, String indent, StringBuilder result) {
+		result.append(indent).append(item.getName());
+		if (item instanceof File f)
+			result.append(" file ").append(f.getType()).append(' ').append(f.getSize());
+		if (item instanceof ActualItem actual)
+			result.append(actual.isWritable() ? " writable" : " read-only");
+		if (item instanceof Link link)
+			result.append(" link to ").append(link.getLinkedItem().getName());
+		result.append('\n');
+		if (item instanceof Directory directory)
+			for (int i = 1; i <= directory.getNbItems(); i++)
+				describe(directory.getItemAt(i), indent + "  ", result);
+	}
+
+	/**
+	 * Change the tree of the leader with all kinds of mutations.
+	 */
+	private static void changeLeader() {
+		Directory dirC = new Directory(leaderRoot, "dirC");
+		new File(dirC, "fileC_1", Type.TEXT, 10, true);
+		fileA_1.enlarge(50);
+		fileA_1.changeName("renamed");
+		dirA.renameAll(Map.of(fileA_1, "linkA", dirA.getItem("linkA"), "renamed"));
+		file.move(dirC);
+		dirB.setWritable(true);
+		fileB_1.setWritable(true);
+		fileB_1.shorten(100);
+		new Link(dirC, "linkC", fileA_1);
+		dirA.moveAllInto(dirC, item -> item instanceof File);
+		fileO.move(leaderRoot);
+		dirC.move(outside);
+		dirB.deleteRecursive();
+		leaderRoot.changeName("newRoot");
+	}
+
+
+	/**********************************************************
+	 * LEADER AND FOLLOWER
+	 **********************************************************/
+
+	@Test
+	public void testReplication_inBatches() {
+		Follower follower = new Follower(transport, leader.snapshot());
+		leader.start();
+		changeLeader();
+		assertEquals(transport.getEndOffset(), follower.getLag());
+		while (follower.applyBatch(3) > 0);
+		assertEquals(0, follower.getLag());
+		assertEquals(0, follower.getLagMillis());
+		assertEquals(0, follower.getNbSkippedMutations());
+		assertEquals(describe(leaderRoot), follower.read(ReplicationTest::describe));
+	}
+
+	@Test
+	public void testReplication_fromSnapshot() {
+		leader.start();
+		fileA_1.enlarge(1);
+		Snapshot snapshot = leader.snapshot();
+		assertEquals(1, snapshot.offset());
+		changeLeader();
+		Follower follower = new Follower(transport, snapshot);
+		assertEquals(1, follower.getAppliedOffset());
+		follower.applyBatch(Integer.MAX_VALUE);
+		assertEquals(describe(leaderRoot), follower.read(ReplicationTest::describe));
+	}
+
+	@Test
+	public void testReplication_moveIntoTree() {
+		leader.start();
+		Follower follower = new Follower(transport, leader.snapshot());
+		Directory dirO = new Directory(outside, "dirO");
+		new Link(dirO, "linkO", fileO);
+		new Link(dirO, "linkA", fileA_1);
+		fileO.move(dirO);
+		dirO.move(leaderRoot);
+		follower.applyBatch(Integer.MAX_VALUE);
+		assertEquals(describe(leaderRoot), follower.read(ReplicationTest::describe));
+	}
+
+	@Test
+	public void testReplication_linkOutsideTree() {
+		leader.start();
+		Follower follower = new Follower(transport, leader.snapshot());
+		Link link = new Link(dirA, "linkO", fileO);
+		link.changeName("linkP");
+		follower.applyBatch(Integer.MAX_VALUE);
+		assertNull(follower.read(root -> ((Directory) root.getItem("dirA")).getItem("linkP")));
+		assertEquals(1, follower.getNbSkippedMutations());
+	}
+
+	@Test
+	public void testReplication_asynchronous() throws InterruptedException {
+		Follower follower = new Follower(transport, leader.snapshot());
+		leader.start();
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		try {
+			follower.start(executor, 1, TimeUnit.MILLISECONDS, 2);
+			changeLeader();
+			long deadline = System.currentTimeMillis() + 5000;
+			while (follower.getLag() > 0 && System.currentTimeMillis() < deadline)
+				Thread.sleep(1);
+			follower.stop();
+			assertEquals(0, follower.getLag());
+			assertEquals(describe(leaderRoot), follower.read(ReplicationTest::describe));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testLeader_stopped() {
+		leader.start();
+		assertTrue(leader.isStarted());
+		leader.stop();
+		assertFalse(leader.isStarted());
+		changeLeader();
+		assertEquals(0, transport.getEndOffset());
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testLeader_illegalCase() {
+		new Leader(leaderRoot, null);
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testFollower_illegalCaseSnapshotBeyondLog() {
+		new Follower(transport, new Snapshot(1, "root", true, List.of()));
+	}
+
+	@Test (expected = IllegalStateException.class)
+	public void testFollower_illegalCaseStartedTwice() {
+		Follower follower = new Follower(transport, "root");
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		try {
+			follower.start(executor, 1, TimeUnit.SECONDS, 1);
+			follower.start(executor, 1, TimeUnit.SECONDS, 1);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+
+	/**********************************************************
+	 * TRANSPORTS
+	 **********************************************************/
+
+	@Test
+	public void testFileTransport_replication() throws IOException {
+		Path log = folder.getRoot().toPath().resolve("replication.log");
+		Snapshot snapshot = leader.snapshot();
+		try (FileTransport fileTransport = new FileTransport(log)) {
+			Leader fileLeader = new Leader(leaderRoot, fileTransport);
+			fileLeader.start();
+			try {
+				changeLeader();
+			} finally {
+				fileLeader.stop();
+			}
+		}
+		try (FileTransport fileTransport = new FileTransport(log)) {
+			Follower follower = new Follower(fileTransport, snapshot);
+			assertEquals(fileTransport.getEndOffset(), follower.getLag());
+			follower.applyBatch(Integer.MAX_VALUE);
+			assertEquals(describe(leaderRoot), follower.read(ReplicationTest::describe));
+		}
+	}
+
+	@Test
+	public void testLogEntry_encoding() {
+		List<Mutation> mutations = List.of(
+				new Mutation.CreateDirectory(List.of(), "dir", false),
+				new Mutation.CreateFile(List.of("dir"), "file", Type.PDF, 12, true),
+				new Mutation.CreateLink(List.of("dir"), "link", List.of("dir", "file")),
+				new Mutation.Rename(List.of(), "root"),
+				new Mutation.Move(List.of("dir", "file"), List.of()),
+				new Mutation.Resize(List.of("file"), 7),
+				new Mutation.SetWritable(List.of("dir"), true),
+				new Mutation.Delete(List.of("dir")));
+		for (Mutation mutation : mutations) {
+			LogEntry entry = new LogEntry(3, 42, mutation);
+			assertEquals(entry, LogEntry.decode(entry.encode()));
+		}
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testLogEntry_illegalEncoding() {
+		LogEntry.decode("0\t0\tUnknown");
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testInMemoryTransport_illegalOffset() {
+		transport.read(1, 1);
+	}
+
+}
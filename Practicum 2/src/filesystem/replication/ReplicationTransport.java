@@ -0,0 +1,49 @@
+package filesystem.replication;
+
+import java.util.List;
+
+/**
+ * An interface of transports carrying the replication log from a leader to its followers.
+ *
+ * A transport behaves as an append-only log: each appended mutation gets the next offset,
+ * starting from 0, and can be read any number of times by any number of followers.
+ *
+ * @note	Implementations must allow a leader to append while followers read from other threads.
+ *
+ * @version	6.0
+ */
+public interface ReplicationTransport {
+
+	/**
+	 * Append the given mutation, recorded at the given time, to the log.
+	 *
+	 * @param	mutation
+	 * 			The mutation to append.
+	 * @param	timestamp
+	 * 			The time at which the mutation was recorded, in milliseconds since the epoch.
+	 * @return	The entry that has been appended.
+	 * 			| result.offset() == old.getEndOffset() && getEndOffset() == old.getEndOffset() + 1
+	 */
+	LogEntry append(Mutation mutation, long timestamp);
+
+	/**
+	 * Return at most the given number of entries, starting at the given offset.
+	 *
+	 * @param	offset
+	 * 			The offset of the first entry to read.
+	 * @param	maxEntries
+	 * 			The maximum number of entries to read.
+	 * @return	The entries with consecutive offsets starting at the given offset,
+	 * 			up to the end of the log or the maximum number of entries.
+	 * @throws	IllegalArgumentException
+	 * 			The given offset is negative or beyond the end of the log, or the maximum is negative.
+	 * 			| offset < 0 || offset > getEndOffset() || maxEntries < 0
+	 */
+	List<LogEntry> read(long offset, int maxEntries) throws IllegalArgumentException;
+
+	/**
+	 * Return the offset that the next appended entry will get.
+	 */
+	long getEndOffset();
+
+}
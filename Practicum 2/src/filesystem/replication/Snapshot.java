@@ -0,0 +1,21 @@
+package filesystem.replication;
+
+import java.util.List;
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of snapshots of a replicated tree.
+ *
+ * @param	offset
+ * 			The offset of the first log entry that is not reflected in the snapshot.
+ * @param	rootName
+ * 			The name of the root of the tree.
+ * @param	rootWritable
+ * 			The writability of the root of the tree.
+ * @param	mutations
+ * 			The mutations that build the content of the tree, starting from an empty root.
+ *
+ * @version	6.0
+ */
+@Value
+public record Snapshot(long offset, String rootName, boolean rootWritable, List<Mutation> mutations) {}